@@ -0,0 +1,13 @@
+#! /bin/sh
+# Compiles the simulator and the benchmarks (benchmark/src) and runs the
+# benchmarks. Arguments are passed to benchmark.BenchmarkRunner, e.g.:
+#   ./benchmark.sh micro -save baseline.txt
+#   ./benchmark.sh all -compare baseline.txt -tolerance 5
+targetdir=benchmark/target
+libs=lib/ECLA.jar:lib/DTNConsoleConnection.jar
+
+if [ ! -d "$targetdir" ]; then mkdir $targetdir; fi
+
+javac -nowarn -encoding GBK -sourcepath src:benchmark/src -cp $libs -d $targetdir `find src benchmark/src -name "*.java"` || exit 1
+
+java -Xmx1G -cp $targetdir:$libs benchmark.BenchmarkRunner $*
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import input.StandardEventsReaderBenchmark;
+import interfaces.ConnectivityGridBenchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import movement.map.DijkstraPathFinderBenchmark;
+import routing.MakeRoomForMessageBenchmark;
+import routing.maxprop.MaxPropDijkstraBenchmark;
+import core.MessageReplicateBenchmark;
+
+/**
+ * Runs the microbenchmarks of the simulator's hot paths and the scenario
+ * macrobenchmarks, and optionally saves the results as a baseline or
+ * compares them to a saved baseline. Must be run in the simulator's
+ * directory (see <CODE>benchmark.sh</CODE>).
+ * <P>
+ * Usage: <CODE>BenchmarkRunner [micro|macro|all] [options]</CODE><BR>
+ * Options:<BR>
+ * <CODE>-filter text</CODE> run only benchmarks whose name contains text<BR>
+ * <CODE>-warmup n</CODE> warmup iterations of microbenchmarks (5)<BR>
+ * <CODE>-iterations n</CODE> measured iterations of microbenchmarks (5)<BR>
+ * <CODE>-time ms</CODE> length of a microbenchmark iteration (1000)<BR>
+ * <CODE>-simTime s</CODE> simulated time of the scenarios (3600)<BR>
+ * <CODE>-forks n</CODE> JVMs run per scenario (3)<BR>
+ * <CODE>-save file</CODE> saves the results as a baseline<BR>
+ * <CODE>-compare file</CODE> compares the results to a baseline and exits
+ * with status 1 if a benchmark got slower than the tolerance<BR>
+ * <CODE>-tolerance percent</CODE> allowed slowdown (10)
+ * </P>
+ */
+public class BenchmarkRunner {
+	/** result values the benchmarks returned; read so they're not dead */
+	private static volatile long sink;
+
+	private int warmupIterations = 5;
+	private int iterations = 5;
+	private long iterationTime = 1000;
+	private double simTime = 3600;
+	private int forks = 3;
+	private String filter = "";
+
+	/**
+	 * Returns the microbenchmarks
+	 * @return the microbenchmarks
+	 */
+	private static List<Microbenchmark> getMicrobenchmarks() {
+		List<Microbenchmark> list = new ArrayList<Microbenchmark>();
+		list.add(new ConnectivityGridBenchmark());
+		list.add(new DijkstraPathFinderBenchmark());
+		list.add(new MaxPropDijkstraBenchmark());
+		list.add(new MessageReplicateBenchmark());
+		list.add(new MakeRoomForMessageBenchmark());
+		list.add(new StandardEventsReaderBenchmark());
+		return list;
+	}
+
+	/**
+	 * Runs a microbenchmark
+	 * @param b The benchmark
+	 * @return the result (nanoseconds per operation)
+	 */
+	private Result runMicro(Microbenchmark b) {
+		b.setUp();
+		for (int i = 0; i < warmupIterations; i++) {
+			runIteration(b);
+		}
+		double[] scores = new double[iterations];
+		for (int i = 0; i < iterations; i++) {
+			scores[i] = runIteration(b);
+		}
+		b.tearDown();
+		return new Result(b.getName(), "ns/op", scores);
+	}
+
+	/**
+	 * Runs one iteration of a microbenchmark
+	 * @param b The benchmark
+	 * @return nanoseconds per operation in the iteration
+	 */
+	private double runIteration(Microbenchmark b) {
+		long value = 0;
+		long ops = 0;
+		long start = System.nanoTime();
+		long end = start + iterationTime * 1000000;
+		long now;
+		do {
+			value ^= b.run();
+			ops++;
+			now = System.nanoTime();
+		} while (now < end);
+		sink ^= value;
+		return (double)(now - start) / ops;
+	}
+
+	/**
+	 * Runs the scenario macrobenchmarks
+	 * @return the results (wall clock seconds per run)
+	 */
+	private List<Result> runMacro() {
+		List<Result> results = new ArrayList<Result>();
+		for (String file : ScenarioBenchmark.SCENARIOS) {
+			ScenarioBenchmark sb = new ScenarioBenchmark(file, simTime);
+			if (!sb.getName().contains(filter)) {
+				continue;
+			}
+			double[] scores = new double[forks];
+			for (int i = 0; i < forks; i++) {
+				scores[i] = sb.run();
+			}
+			Result r = new Result(sb.getName(), "s", scores);
+			print(r);
+			System.out.println(String.format("  %.1f sim s/s",
+					simTime / r.score));
+			results.add(r);
+		}
+		return results;
+	}
+
+	/**
+	 * Prints a result
+	 * @param r The result
+	 */
+	private static void print(Result r) {
+		System.out.println(String.format("%-40s %14.3f +- %10.3f %s",
+				r.name, r.score, r.error, r.unit));
+	}
+
+	/**
+	 * Saves results as a baseline
+	 * @param results The results
+	 * @param fileName Name of the baseline file
+	 * @throws IOException if writing failed
+	 */
+	private static void save(List<Result> results, String fileName)
+			throws IOException {
+		PrintWriter out = new PrintWriter(new FileWriter(fileName));
+		out.println("# benchmark score error unit");
+		for (Result r : results) {
+			out.println(r.name + " " + r.score + " " + r.error + " " + r.unit);
+		}
+		out.close();
+	}
+
+	/**
+	 * Compares results to a baseline
+	 * @param results The results
+	 * @param fileName Name of the baseline file
+	 * @param tolerance Allowed slowdown (percent)
+	 * @return true if no benchmark got slower than allowed
+	 * @throws IOException if reading failed
+	 */
+	private static boolean compare(List<Result> results, String fileName,
+			double tolerance) throws IOException {
+		Map<String, Double> baseline = new HashMap<String, Double>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith("#") || line.trim().length() == 0) {
+				continue;
+			}
+			String[] parts = line.trim().split("\\s+");
+			baseline.put(parts[0], Double.parseDouble(parts[1]));
+		}
+		in.close();
+
+		boolean ok = true;
+		System.out.println("\nComparison to " + fileName + ":");
+		for (Result r : results) {
+			Double base = baseline.get(r.name);
+			if (base == null) {
+				System.out.println(String.format("%-40s not in baseline",
+						r.name));
+				continue;
+			}
+			double change = 100 * (r.score / base - 1);
+			boolean slower = change > tolerance;
+			System.out.println(String.format("%-40s %+8.1f%%%s", r.name,
+					change, slower ? "  REGRESSION" : ""));
+			ok &= !slower;
+		}
+		return ok;
+	}
+
+	/**
+	 * Runs the benchmarks
+	 * @param args Command line arguments (see class description)
+	 * @throws IOException if reading or writing a baseline fails
+	 */
+	public static void main(String[] args) throws IOException {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		String mode = "micro";
+		String saveFile = null;
+		String compareFile = null;
+		double tolerance = 10;
+
+		for (int i = 0; i < args.length; i++) {
+			String a = args[i];
+			if (a.equals("micro") || a.equals("macro") || a.equals("all")) {
+				mode = a;
+			} else if (a.equals("-filter")) {
+				runner.filter = args[++i];
+			} else if (a.equals("-warmup")) {
+				runner.warmupIterations = Integer.parseInt(args[++i]);
+			} else if (a.equals("-iterations")) {
+				runner.iterations = Integer.parseInt(args[++i]);
+			} else if (a.equals("-time")) {
+				runner.iterationTime = Long.parseLong(args[++i]);
+			} else if (a.equals("-simTime")) {
+				runner.simTime = Double.parseDouble(args[++i]);
+			} else if (a.equals("-forks")) {
+				runner.forks = Integer.parseInt(args[++i]);
+			} else if (a.equals("-save")) {
+				saveFile = args[++i];
+			} else if (a.equals("-compare")) {
+				compareFile = args[++i];
+			} else if (a.equals("-tolerance")) {
+				tolerance = Double.parseDouble(args[++i]);
+			} else {
+				System.err.println("Unknown argument " + a);
+				System.exit(2);
+			}
+		}
+
+		List<Result> results = new ArrayList<Result>();
+		if (!mode.equals("macro")) {
+			for (Microbenchmark b : getMicrobenchmarks()) {
+				if (b.getName().contains(runner.filter)) {
+					Result r = runner.runMicro(b);
+					print(r);
+					results.add(r);
+				}
+			}
+		}
+		if (!mode.equals("micro")) {
+			results.addAll(runner.runMacro());
+		}
+
+		if (saveFile != null) {
+			save(results, saveFile);
+		}
+		if (compareFile != null && !compare(results, compareFile, tolerance)) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Result of a benchmark: mean and standard deviation of the iterations
+	 */
+	private static class Result {
+		private String name;
+		private String unit;
+		private double score;
+		private double error;
+
+		private Result(String name, String unit, double[] values) {
+			this.name = name;
+			this.unit = unit;
+			double sum = 0;
+			for (double v : values) {
+				sum += v;
+			}
+			this.score = sum / values.length;
+			double sum2 = 0;
+			for (double v : values) {
+				sum2 += (v - score) * (v - score);
+			}
+			this.error = values.length > 1 ?
+					Math.sqrt(sum2 / (values.length - 1)) : 0;
+		}
+	}
+}
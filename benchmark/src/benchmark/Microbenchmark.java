@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import core.Settings;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Superclass of microbenchmarks. A microbenchmark sets up its data once in
+ * {@link #setUp()} and then {@link BenchmarkRunner} calls
+ * {@link #run()} repeatedly for a fixed time in each iteration. The values
+ * returned by {@link #run()} are consumed by the runner so that the JIT
+ * compiler can't remove the measured code.
+ */
+public abstract class Microbenchmark {
+	/** Settings file of the scenario that microbenchmarks use ({@value}) */
+	public static final String SCENARIO_SETTINGS = "default_settings.txt";
+
+	private static SimScenario scenario = null;
+
+	/**
+	 * Returns the name of the benchmark
+	 * @return the name of the benchmark
+	 */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Sets up the data of the benchmark. Called once before the warmup.
+	 */
+	public void setUp() {}
+
+	/**
+	 * Runs one operation of the benchmark
+	 * @return a value computed from the result of the operation
+	 */
+	public abstract long run();
+
+	/**
+	 * Releases the resources of the benchmark. Called after the
+	 * measurement.
+	 */
+	public void tearDown() {}
+
+	/**
+	 * Returns the simulation scenario of {@link #SCENARIO_SETTINGS} (with
+	 * its hosts, routers and map). The scenario is created on the first
+	 * call and shared by all benchmarks.
+	 * @return the scenario
+	 */
+	protected static SimScenario getScenario() {
+		if (scenario == null) {
+			Settings.init(SCENARIO_SETTINGS);
+			SimClock.reset();
+			scenario = SimScenario.getInstance();
+		}
+		return scenario;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Macrobenchmark that runs a whole scenario headless (in batch mode) for a
+ * fixed simulated time in a new JVM and measures the wall clock time of
+ * the run. No reports are written. The scenario settings are read on top
+ * of <CODE>default_settings.txt</CODE>, like when the scenario is run with
+ * <CODE>one.sh</CODE>.
+ */
+public class ScenarioBenchmark {
+	/** The benchmarked scenarios (null = only the default settings) */
+	public static final String[] SCENARIOS = {null,
+		"wdm_settings/Density100.txt", "wdm_settings/Density500.txt",
+		"wdm_settings/Density2000.txt", "wdm_settings/Density2000InfBuffer.txt"};
+	/** Default settings file of the scenarios */
+	public static final String DEFAULT_SETTINGS = "default_settings.txt";
+	/** Maximum heap of the JVM running the scenario */
+	public static final String MAX_HEAP = "-Xmx2G";
+
+	private String scenarioFile;
+	private double simTime;
+
+	/**
+	 * Creates a scenario benchmark
+	 * @param scenarioFile Settings file of the scenario (null for only the
+	 * default settings)
+	 * @param simTime Simulated time (seconds)
+	 */
+	public ScenarioBenchmark(String scenarioFile, double simTime) {
+		this.scenarioFile = scenarioFile;
+		this.simTime = simTime;
+	}
+
+	/**
+	 * Returns the name of the benchmark
+	 * @return the name of the benchmark
+	 */
+	public String getName() {
+		if (scenarioFile == null) {
+			return "scenario:default";
+		}
+		String name = new File(scenarioFile).getName();
+		return "scenario:" + name.substring(0, name.lastIndexOf('.'));
+	}
+
+	/**
+	 * Runs the scenario once
+	 * @return the wall clock time of the run (seconds)
+	 */
+	public double run() {
+		File overrides = null;
+		try {
+			overrides = File.createTempFile("benchmark", ".txt");
+			PrintWriter out = new PrintWriter(new FileWriter(overrides));
+			out.println("Scenario.endTime = " + simTime);
+			out.println("Report.nrofReports = 0");
+			out.close();
+
+			List<String> cmd = new ArrayList<String>();
+			cmd.add(new File(System.getProperty("java.home"), "bin/java")
+					.getPath());
+			cmd.add(MAX_HEAP);
+			cmd.add("-cp");
+			cmd.add(System.getProperty("java.class.path"));
+			cmd.add("core.DTNSim");
+			cmd.add("-b");
+			cmd.add("1");
+			cmd.add(DEFAULT_SETTINGS);
+			if (scenarioFile != null) {
+				cmd.add(scenarioFile);
+			}
+			cmd.add(overrides.getPath());
+
+			long start = System.nanoTime();
+			Process p = new ProcessBuilder(cmd).redirectErrorStream(true)
+				.start();
+			BufferedReader in = new BufferedReader(new InputStreamReader(
+					p.getInputStream()));
+			StringBuilder output = new StringBuilder();
+			String line;
+			while ((line = in.readLine()) != null) {
+				output.append(line).append('\n');
+			}
+			int status = p.waitFor();
+			double duration = (System.nanoTime() - start) / 1e9;
+
+			if (status != 0 || output.indexOf("Can't start") >= 0) {
+				throw new RuntimeException(getName() + " failed:\n" + output);
+			}
+			return duration;
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't run " + getName(), e);
+		} catch (InterruptedException e) {
+			throw new RuntimeException("Interrupted " + getName(), e);
+		} finally {
+			if (overrides != null) {
+				overrides.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.List;
+
+import benchmark.Microbenchmark;
+
+/**
+ * Benchmark of {@link Message#replicate()} with a message that has
+ * traveled {@value #NROF_HOPS} hops and has a few properties, like the
+ * messages that routers copy on every transfer. One operation is one
+ * replication.
+ */
+public class MessageReplicateBenchmark extends Microbenchmark {
+	/** Number of hops on the message's path */
+	public static final int NROF_HOPS = 8;
+
+	private Message message;
+
+	@Override
+	public void setUp() {
+		List<DTNHost> hosts = getScenario().getHosts();
+		message = new Message(hosts.get(0), hosts.get(1), "M1", 100000);
+		for (int i = 1; i <= NROF_HOPS; i++) {
+			message.addNodeOnPath(hosts.get(i % hosts.size()));
+		}
+		message.addProperty("copies", 6);
+		message.addProperty("priority", 1.0);
+		message.setTtl(300);
+	}
+
+	@Override
+	public long run() {
+		return message.replicate().getHopCount();
+	}
+}
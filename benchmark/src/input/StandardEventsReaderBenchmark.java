@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import benchmark.Microbenchmark;
+import core.SimError;
+
+/**
+ * Benchmark of {@link StandardEventsReader#readEvents(int)} with a file
+ * of {@value #NROF_EVENTS} message creation and connection events. One
+ * operation reads the whole file.
+ */
+public class StandardEventsReaderBenchmark extends Microbenchmark {
+	/** Number of events in the file */
+	public static final int NROF_EVENTS = 1000;
+
+	private File eventsFile;
+
+	@Override
+	public void setUp() {
+		Random rng = new Random(1);
+		try {
+			eventsFile = File.createTempFile("events", ".txt");
+			PrintWriter out = new PrintWriter(new FileWriter(eventsFile));
+			out.println("# benchmark events");
+			for (int i = 0; i < NROF_EVENTS; i++) {
+				double time = i * 0.5;
+				int h1 = rng.nextInt(100);
+				int h2 = rng.nextInt(100);
+				if (i % 3 == 0) {
+					out.println(time + " C M" + i + " n" + h1 + " n" + h2 +
+							" " + (1000 + rng.nextInt(100000)));
+				}
+				else {
+					out.println(time + " CONN " + h1 + " " + h2 +
+							(i % 3 == 1 ? " up" : " down"));
+				}
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write events file", e);
+		}
+	}
+
+	@Override
+	public long run() {
+		StandardEventsReader reader = new StandardEventsReader(eventsFile);
+		int n = reader.readEvents(NROF_EVENTS).size();
+		reader.close();
+		return n;
+	}
+
+	@Override
+	public void tearDown() {
+		eventsFile.delete();
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import benchmark.Microbenchmark;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Benchmark of {@link ConnectivityGrid#getNearInterfaces(NetworkInterface)}
+ * with the interfaces of the default scenario's hosts. One operation is
+ * the query of one interface's near interfaces.
+ */
+public class ConnectivityGridBenchmark extends Microbenchmark {
+	/** Key of the benchmark's own grid (not used by the scenario) */
+	private static final int GRID_KEY = -1;
+
+	private ConnectivityGrid grid;
+	private List<NetworkInterface> interfaces;
+	private int next;
+
+	@Override
+	public void setUp() {
+		interfaces = new ArrayList<NetworkInterface>();
+		double range = 0;
+		for (DTNHost h : getScenario().getHosts()) {
+			NetworkInterface ni = h.getInterfaces().get(0);
+			interfaces.add(ni);
+			range = Math.max(range, ni.getTransmitRange());
+		}
+		grid = ConnectivityGrid.ConnectivityGridFactory(GRID_KEY, range);
+		grid.addInterfaces(interfaces);
+		next = 0;
+	}
+
+	@Override
+	public long run() {
+		NetworkInterface ni = interfaces.get(next);
+		next = (next + 1) % interfaces.size();
+		return grid.getNearInterfaces(ni).size();
+	}
+}
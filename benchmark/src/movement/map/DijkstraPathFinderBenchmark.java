@@ -0,0 +1,46 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.List;
+import java.util.Random;
+
+import benchmark.Microbenchmark;
+
+/**
+ * Benchmark of {@link DijkstraPathFinder#getShortestPath(MapNode, MapNode)}
+ * on the map of the default scenario. One operation is a search between a
+ * pair of map nodes; the pairs are drawn from a fixed random sequence.
+ */
+public class DijkstraPathFinderBenchmark extends Microbenchmark {
+	/** Number of precomputed node pairs */
+	private static final int NROF_PAIRS = 1024;
+
+	private DijkstraPathFinder finder;
+	private MapNode[] from;
+	private MapNode[] to;
+	private int next;
+
+	@Override
+	public void setUp() {
+		List<MapNode> nodes = getScenario().getMap().getNodes();
+		Random rng = new Random(1);
+		from = new MapNode[NROF_PAIRS];
+		to = new MapNode[NROF_PAIRS];
+		for (int i = 0; i < NROF_PAIRS; i++) {
+			from[i] = nodes.get(rng.nextInt(nodes.size()));
+			to[i] = nodes.get(rng.nextInt(nodes.size()));
+		}
+		finder = new DijkstraPathFinder(null);
+		next = 0;
+	}
+
+	@Override
+	public long run() {
+		int i = next;
+		next = (next + 1) % NROF_PAIRS;
+		return finder.getShortestPath(from[i], to[i]).size();
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.List;
+
+import benchmark.Microbenchmark;
+import core.DTNHost;
+import core.Message;
+import core.SimError;
+
+/**
+ * Benchmark of {@link ActiveRouter#makeRoomForMessage(int)} with a full
+ * buffer of {@value #MSG_SIZE} byte messages in a host of the default
+ * scenario. One operation makes room for a new message (which drops the
+ * oldest message) and adds the new message, so the buffer stays full.
+ */
+public class MakeRoomForMessageBenchmark extends Microbenchmark {
+	/** Size of the messages */
+	public static final int MSG_SIZE = 50000;
+
+	private ActiveRouter router;
+	/** ring of messages; all but the next one are in the buffer */
+	private Message[] ring;
+	private int next;
+	private double time;
+
+	@Override
+	public void setUp() {
+		List<DTNHost> hosts = getScenario().getHosts();
+		MessageRouter r = hosts.get(0).getRouter();
+		if (!(r instanceof ActiveRouter)) {
+			throw new SimError("Benchmark needs an ActiveRouter, not " + r);
+		}
+		router = (ActiveRouter)r;
+
+		int nrofMessages = (int)(router.getFreeBufferSize() / MSG_SIZE);
+		ring = new Message[nrofMessages + 1];
+		for (int i = 0; i < ring.length; i++) {
+			ring[i] = new Message(hosts.get(0), hosts.get(1), "B" + i,
+					MSG_SIZE);
+		}
+		time = 0;
+		for (next = 0; next < nrofMessages; next++) {
+			ring[next].setReceiveTime(time++);
+			router.addToMessages(ring[next], false);
+		}
+	}
+
+	@Override
+	public long run() {
+		Message m = ring[next];
+		next = (next + 1) % ring.length;
+		boolean ok = router.makeRoomForMessage(MSG_SIZE);
+		m.setReceiveTime(time++);
+		router.addToMessages(m, false);
+		return ok ? 1 : 0;
+	}
+
+	@Override
+	public void tearDown() {
+		for (Message m : ring) {
+			if (router.hasMessage(m.getId())) {
+				router.deleteMessage(m.getId(), false);
+			}
+		}
+	}
+}
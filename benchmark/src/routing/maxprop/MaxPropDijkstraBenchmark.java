@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.maxprop;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import benchmark.Microbenchmark;
+
+/**
+ * Benchmark of {@link MaxPropDijkstra#getCosts(Integer, Set)} with random
+ * meeting probabilities of {@value #NROF_NODES} nodes that have each met
+ * {@value #NROF_MET} other nodes. One operation is a cost calculation
+ * from one node to {@value #NROF_TARGETS} destinations.
+ */
+public class MaxPropDijkstraBenchmark extends Microbenchmark {
+	/** Number of nodes */
+	public static final int NROF_NODES = 500;
+	/** Number of nodes each node has met */
+	public static final int NROF_MET = 30;
+	/** Number of destinations of a cost calculation */
+	public static final int NROF_TARGETS = 20;
+
+	private Map<Integer, MeetingProbabilitySet> probs;
+	private Set<Integer> targets;
+	private int next;
+
+	@Override
+	public void setUp() {
+		Random rng = new Random(1);
+		probs = new HashMap<Integer, MeetingProbabilitySet>();
+		for (int i = 0; i < NROF_NODES; i++) {
+			MeetingProbabilitySet set = new MeetingProbabilitySet();
+			for (int j = 0; j < NROF_MET; j++) {
+				set.updateMeetingProbFor(rng.nextInt(NROF_NODES));
+			}
+			probs.put(i, set);
+		}
+		targets = new HashSet<Integer>();
+		while (targets.size() < NROF_TARGETS) {
+			targets.add(rng.nextInt(NROF_NODES));
+		}
+		next = 0;
+	}
+
+	@Override
+	public long run() {
+		MaxPropDijkstra dijkstra = new MaxPropDijkstra(probs);
+		int from = next;
+		next = (next + 1) % NROF_NODES;
+		return dijkstra.getCosts(from, targets).size();
+	}
+}
@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -32,9 +33,10 @@ import java.util.List;
  * @author mjpitka
  * @author teemuk
  */
-public abstract class Application {
+public abstract class Application implements Serializable {
+	private static final long serialVersionUID = 1L;
 
-	private List<ApplicationListener> aListeners = null;//Ӧóб볡еӦóбͬһ
+	private transient List<ApplicationListener> aListeners = null;//这个应用程序监听器的列表与场景中的应用程序监听器的列表是同一个
 
 	public String	appID	= null;
 
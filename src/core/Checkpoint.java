@@ -0,0 +1,369 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Saves and restores the complete state of a simulation (hosts, their
+ * movement models, routers, interfaces and connections, the event queues,
+ * the simulation clock and the static state of the classes, such as the
+ * shared random number generators) to/from a checkpoint file. A simulation
+ * continued from a checkpoint proceeds as the original simulation would have.
+ * <P>
+ * Checkpoints can be used e.g., for skipping a long movement model warm up
+ * by restoring a checkpoint that was saved right after it, for resuming
+ * a long simulation, or for forking several simulations (e.g., with
+ * different routing settings) from the same state.
+ * </P>
+ * <P>
+ * Reports (and other listeners) are not part of the checkpoint: a restored
+ * simulation uses the reports of the current configuration and they only
+ * see what happens after the checkpoint. Messages that existed when the
+ * checkpoint was saved are reported as warm up messages. The scenario
+ * configuration (e.g., host groups and event generators) must be the same
+ * as when the checkpoint was saved; routing settings can differ if
+ * {@link #KEEP_ROUTING_S} is false.
+ * </P>
+ * <P>
+ * Classes with static state register the state with
+ * {@link #registerStaticState(Class, String...)} (or, if the state belongs
+ * to the routers, with {@link #registerRoutingState(Class, String...)}) in
+ * their static initializer.
+ * All objects reachable from the hosts and event queues must be
+ * serializable.
+ * </P>
+ */
+public class Checkpoint implements UpdateListener {
+	/** Checkpoint settings namespace ({@value}) */
+	public static final String CHECKPOINT_NS = "Checkpoint";
+	/** Restored checkpoint file -setting id ({@value}). If defined, the
+	 * simulation is started from the state stored in the file instead of
+	 * running the movement model warm up. */
+	public static final String RESTORE_S = "restore";
+	/** Keep the restored routing state -setting id ({@value}). Boolean.
+	 * If false, the restored hosts get new routers replicated from the
+	 * current configuration and all restored connections are dropped. The
+	 * static routing state (see {@link #registerRoutingState(Class,
+	 * String...)}) is not restored either. Default = true. */
+	public static final String KEEP_ROUTING_S = "keepRouting";
+	/** Checkpoint interval -setting id ({@value}). Simulated seconds between
+	 * automatically saved checkpoints. Default = 0 (no periodic
+	 * checkpoints). */
+	public static final String INTERVAL_S = "interval";
+	/** Checkpoint after warm up -setting id ({@value}). Boolean. If true,
+	 * a checkpoint is saved right after the movement model warm up.
+	 * Default = false. */
+	public static final String AFTER_WARMUP_S = "afterWarmup";
+	/** Checkpoint file prefix -setting id ({@value}). The simulation time
+	 * and {@link #CHECKPOINT_EXT} are appended to the prefix. Supports value
+	 * filling. Default = {@link #DEF_OUTPUT_DIR} + scenario name. */
+	public static final String OUTPUT_S = "output";
+
+	/** Default directory for checkpoint files ({@value}) */
+	public static final String DEF_OUTPUT_DIR = "checkpoints/";
+	/** Extension of checkpoint files ({@value}) */
+	public static final String CHECKPOINT_EXT = ".ckpt";
+	/** Magic number in the beginning of checkpoint files */
+	public static final int MAGIC = 0x4f4e4543; /* "ONEC" */
+	/** Version of the checkpoint format */
+	public static final int VERSION = 2;
+	/** Stack size of the thread that (de)serializes the state. Default
+	 * serialization recurses along object references (e.g., map node
+	 * neighbors) so the default stack size is not enough for big maps. */
+	private static final long STACK_SIZE = 256L * 1024 * 1024;
+
+	/** registered static fields */
+	private static List<Field> staticFields = new ArrayList<Field>();
+	/** registered static fields that belong to the routing state */
+	private static List<Field> routingFields = new ArrayList<Field>();
+
+	private World world;
+	private String outputPrefix;
+	private double interval;
+	private double nextCheckpoint;
+
+	/**
+	 * Creates a checkpointer that saves checkpoints of the world according
+	 * to the settings in the {@link #CHECKPOINT_NS} namespace.
+	 * @param world The world to checkpoint
+	 */
+	public Checkpoint(World world) {
+		Settings s = new Settings(CHECKPOINT_NS);
+		this.world = world;
+		this.interval = s.getDouble(INTERVAL_S, 0);
+		if (s.contains(OUTPUT_S)) {
+			this.outputPrefix = s.valueFillString(s.getSetting(OUTPUT_S));
+		}
+		else {
+			this.outputPrefix = DEF_OUTPUT_DIR +
+				SimScenario.getInstance().getName();
+		}
+
+		if (this.interval < 0) {
+			throw new SettingsError("Invalid checkpoint interval " +
+					this.interval);
+		}
+		this.nextCheckpoint = SimClock.getTime() + this.interval;
+	}
+
+	/**
+	 * Returns true if periodic checkpoints are enabled
+	 * @return true if periodic checkpoints are enabled
+	 */
+	public boolean isPeriodic() {
+		return this.interval > 0;
+	}
+
+	/**
+	 * Saves a checkpoint if the checkpoint interval has elapsed
+	 * @param hosts All hosts in the world
+	 */
+	public void updated(List<DTNHost> hosts) {
+		if (this.interval > 0 && SimClock.getTime() >= this.nextCheckpoint) {
+			save();
+			while (this.nextCheckpoint <= SimClock.getTime()) {
+				this.nextCheckpoint += this.interval;
+			}
+		}
+	}
+
+	/**
+	 * Saves a checkpoint of the current state to a file whose name is the
+	 * output prefix, the simulation time and the checkpoint extension.
+	 * @return The name of the checkpoint file
+	 */
+	public String save() {
+		String fileName = this.outputPrefix + "_" + SimClock.getIntTime() +
+			CHECKPOINT_EXT;
+		save(this.world, fileName);
+		return fileName;
+	}
+
+	/**
+	 * Registers static fields of a class whose values are stored in and
+	 * restored from checkpoints. Should be called from the static
+	 * initializer of the class.
+	 * @param c The class
+	 * @param fieldNames Names of the static fields
+	 */
+	public static void registerStaticState(Class<?> c, String... fieldNames) {
+		for (String name : fieldNames) {
+			staticFields.add(getStaticField(c, name));
+		}
+	}
+
+	/**
+	 * Registers static fields of a router class whose values are stored in
+	 * checkpoints but restored only if the restored routers are kept (see
+	 * {@link #KEEP_ROUTING_S}). Otherwise the fields keep the values that
+	 * the routers of the current configuration set up. Should be called
+	 * from the static initializer of the class.
+	 * @param c The class
+	 * @param fieldNames Names of the static fields
+	 */
+	public static void registerRoutingState(Class<?> c, String... fieldNames) {
+		for (String name : fieldNames) {
+			Field f = getStaticField(c, name);
+			staticFields.add(f);
+			routingFields.add(f);
+		}
+	}
+
+	/**
+	 * Returns an accessible static field of a class
+	 * @param c The class
+	 * @param name Name of the field
+	 * @return The field
+	 * @throws SimError if the class has no such field
+	 */
+	private static Field getStaticField(Class<?> c, String name) {
+		Field f;
+		try {
+			f = c.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			throw new SimError("No field " + name + " in " + c, e);
+		}
+		assert Modifier.isStatic(f.getModifiers()) : f + " is not static";
+		f.setAccessible(true);
+		return f;
+	}
+
+	/**
+	 * Saves the state of the world and the registered static state to
+	 * a checkpoint file
+	 * @param world The world to save
+	 * @param fileName Path of the checkpoint file
+	 * @throws SimError if saving failed
+	 */
+	public static void save(final World world, final String fileName) {
+		runWithLargeStack(new Runnable() {
+			public void run() {
+				write(world, fileName);
+			}
+		});
+	}
+
+	/**
+	 * Writes the checkpoint file
+	 * @param world The world to save
+	 * @param fileName Path of the checkpoint file
+	 */
+	private static void write(World world, String fileName) {
+		File file = new File(fileName);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		try {
+			DataOutputStream header = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeDouble(SimClock.getTime());
+			header.flush();
+
+			ObjectOutputStream out = new ObjectOutputStream(
+					new GZIPOutputStream(header));
+			world.writeState(out);
+
+			out.writeInt(staticFields.size());
+			for (Field f : staticFields) {
+				out.writeUTF(f.getDeclaringClass().getName());
+				out.writeUTF(f.getName());
+				out.writeObject(f.get(null));
+			}
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't save checkpoint " + fileName + ": " +
+					e.getMessage(), e);
+		} catch (IllegalAccessException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Restores the state of the world and the registered static state
+	 * from a checkpoint file. The world must be created from the same
+	 * scenario configuration as the world whose checkpoint is restored.
+	 * @param world The world whose state is replaced
+	 * @param fileName Path of the checkpoint file
+	 * @param keepRouting If true, the restored routers are used. If false,
+	 * the routers of the current configuration are used instead.
+	 * @throws SimError if restoring failed
+	 */
+	public static void restore(final World world, final String fileName,
+			final boolean keepRouting) {
+		runWithLargeStack(new Runnable() {
+			public void run() {
+				read(world, fileName, keepRouting);
+			}
+		});
+	}
+
+	/**
+	 * Reads the checkpoint file
+	 * @param world The world whose state is replaced
+	 * @param fileName Path of the checkpoint file
+	 * @param keepRouting If true, the restored routers are used
+	 */
+	private static void read(World world, String fileName,
+			boolean keepRouting) {
+		try {
+			DataInputStream header = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(fileName)));
+			if (header.readInt() != MAGIC) {
+				header.close();
+				throw new SimError(fileName + " is not a checkpoint file");
+			}
+			if (header.readInt() != VERSION) {
+				header.close();
+				throw new SimError("Unsupported version of checkpoint " +
+						fileName);
+			}
+			double time = header.readDouble();
+
+			ObjectInputStream in = new ObjectInputStream(
+					new GZIPInputStream(header));
+			world.readState(in, keepRouting);
+
+			for (int i=0, n=in.readInt(); i<n; i++) {
+				String className = in.readUTF();
+				String fieldName = in.readUTF();
+				Object value = in.readObject();
+				Field f = Class.forName(className).getDeclaredField(fieldName);
+				if (!keepRouting && routingFields.contains(f)) {
+					continue; /* the current routers' state is used */
+				}
+				f.setAccessible(true);
+				f.set(null, value);
+			}
+			in.close();
+
+			SimClock.getInstance().setTime(time);
+		} catch (IOException e) {
+			throw new SimError("Couldn't restore checkpoint " + fileName +
+					": " + e.getMessage(), e);
+		} catch (ClassNotFoundException e) {
+			throw new SimError("Checkpoint " + fileName + " contains unknown " +
+					"classes: " + e.getMessage(), e);
+		} catch (NoSuchFieldException e) {
+			throw new SimError("Checkpoint " + fileName + " doesn't match " +
+					"the classes: " + e.getMessage(), e);
+		} catch (IllegalAccessException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Runs a task in a thread with a large stack and waits for it to finish
+	 * @param task The task to run
+	 * @throws SimError if the task failed
+	 */
+	private static void runWithLargeStack(Runnable task) {
+		final Throwable[] error = new Throwable[1];
+		final Runnable r = task;
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					r.run();
+				} catch (StackOverflowError e) {
+					error[0] = new SimError("Checkpoint state is too deep " +
+							"to serialize");
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "Checkpoint", STACK_SIZE);
+
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while processing a checkpoint", e);
+		}
+		if (error[0] instanceof Error) {
+			throw (Error)error[0];
+		}
+		else if (error[0] != null) {
+			throw (RuntimeException)error[0];
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.ContactTrace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Event driven engine for replaying contact traces (e.g., ones recorded
+ * with {@link report.ContactTraceReport}). Movement and connectivity are
+ * not simulated in the replay: the hosts stay at their initial locations
+ * and the connections come only from the trace. By default the engine is
+ * not used: all hosts are updated on every update interval and after every
+ * event, and each contact is made just before the update of the host that
+ * made it in the recorded run (see {@link ContactSweep}). If {@link #FULL_UPDATE_INT_S} is set, only the
+ * hosts that have connections (and the hosts that run applications) are
+ * updated on every update interval. The hosts whose last
+ * connection went down are updated once more so that their routers see the
+ * connection going down. Update intervals during which no host is active
+ * and no event is due are skipped altogether.
+ * <P>
+ * All hosts are updated every {@link #FULL_UPDATE_INT_S} seconds so
+ * that routers of idle hosts drop their expired messages. Since the idle
+ * hosts drop their expired messages later than when all hosts are updated,
+ * the results differ from those of the default replay. Update listeners
+ * are informed only of the update intervals that were not skipped. Energy
+ * models are not supported since the energy of idle hosts is not updated.
+ * </P>
+ */
+public class ContactReplay implements ConnectionListener {
+	/** Contact replay settings namespace ({@value}) */
+	public static final String REPLAY_NS = "Replay";
+	/** Contact trace file -setting id ({@value}). If defined, the contacts
+	 * of the file (binary contact trace or standard external events file)
+	 * are replayed with the event driven engine. Supports value filling. */
+	public static final String CONTACT_TRACE_S = "contactTrace";
+	/** Full update interval -setting id ({@value}). Simulated seconds
+	 * between updates of all hosts. If positive, the replay only updates
+	 * the active hosts between the full updates. Default = 0 (the event
+	 * driven engine is not used and all hosts are updated as usual) */
+	public static final String FULL_UPDATE_INT_S = "fullUpdateInterval";
+
+	private List<DTNHost> hosts;
+	/** number of connections of each host, indexed by address */
+	private int[] nrofConnections;
+	/** is the host always updated (e.g., it runs applications) */
+	private boolean[] alwaysActive;
+	/** is the host in the active hosts list */
+	private boolean[] isActive;
+	/** hosts updated on every update */
+	private ArrayList<DTNHost> activeHosts;
+	/** order of the hosts in the current update */
+	private ArrayList<DTNHost> updateOrder;
+	private boolean randomizeOrder;
+	private double endTime;
+	private double fullUpdateInterval;
+	private double nextFullUpdate;
+
+	/**
+	 * Creates a replay engine for the hosts
+	 * @param hosts All hosts of the simulation, indexed by their addresses
+	 * @param randomizeOrder Should the update order be randomized
+	 * @param endTime End time of the simulation
+	 * @param fullUpdateInterval Simulated seconds between the updates of
+	 * all hosts (see {@link #getFullUpdateInterval()})
+	 */
+	public ContactReplay(List<DTNHost> hosts, boolean randomizeOrder,
+			double endTime, double fullUpdateInterval) {
+		this.fullUpdateInterval = fullUpdateInterval;
+		this.hosts = hosts;
+		this.randomizeOrder = randomizeOrder;
+		this.endTime = endTime;
+		this.nextFullUpdate = fullUpdateInterval;
+		this.nrofConnections = new int[hosts.size()];
+		this.alwaysActive = new boolean[hosts.size()];
+		this.isActive = new boolean[hosts.size()];
+		this.activeHosts = new ArrayList<DTNHost>();
+		this.updateOrder = new ArrayList<DTNHost>();
+
+		for (DTNHost h : hosts) {
+			if (!h.getRouter().getApplications(null).isEmpty()) {
+				alwaysActive[h.getAddress()] = true;
+				activate(h);
+			}
+		}
+	}
+
+	/**
+	 * Returns the contact trace that should be replayed with the event driven
+	 * engine
+	 * @return The trace to replay or null if no trace is defined
+	 */
+	public static ContactTrace getTrace() {
+		Settings s = new Settings(REPLAY_NS);
+		if (!s.contains(CONTACT_TRACE_S)) {
+			return null;
+		}
+		return ContactTrace.readFrom(
+				s.valueFillString(s.getSetting(CONTACT_TRACE_S)));
+	}
+
+	/**
+	 * Returns the full update interval of the replays
+	 * @return The interval (seconds) or 0 if the replays should update all
+	 * hosts on every update interval, i.e., not use the event driven engine
+	 */
+	public static double getFullUpdateInterval() {
+		Settings s = new Settings(REPLAY_NS);
+		double interval = s.getDouble(FULL_UPDATE_INT_S, 0);
+		s.ensurePositiveValue(interval, FULL_UPDATE_INT_S);
+		return interval;
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		nrofConnections[host1.getAddress()]++;
+		nrofConnections[host2.getAddress()]++;
+		activate(host1);
+		activate(host2);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		/* the hosts stay active until their next update */
+		nrofConnections[host1.getAddress()]--;
+		nrofConnections[host2.getAddress()]--;
+	}
+
+	/**
+	 * Adds a host to the active hosts (if it isn't there already)
+	 * @param host The host
+	 */
+	private void activate(DTNHost host) {
+		if (!isActive[host.getAddress()]) {
+			isActive[host.getAddress()] = true;
+			activeHosts.add(host);
+		}
+	}
+
+	/**
+	 * Returns true if some hosts should be updated on the next update
+	 * @return true if there are active hosts
+	 */
+	public boolean hasActiveHosts() {
+		return !activeHosts.isEmpty();
+	}
+
+	/**
+	 * Returns the time when the simulation should be updated the next time
+	 * if no host is active
+	 * @param nextEventTime Time of the next external event
+	 * @return the time of the next event, the next full update or the end
+	 * of the simulation, whichever comes first
+	 */
+	public double getWakeupTime(double nextEventTime) {
+		return Math.min(nextEventTime, Math.min(nextFullUpdate, endTime));
+	}
+
+	/**
+	 * Updates the active hosts, or all hosts if it is time for a full update.
+	 * Hosts that have no connections left are removed from the active hosts
+	 * after the update.
+	 * @param fullUpdateAllowed Can this update be a full update (false for
+	 * the updates between events)
+	 * @param profiler Where the router update times are added (null if the
+	 * times are not measured)
+	 */
+	public void updateHosts(boolean fullUpdateAllowed, Profiler profiler) {
+		boolean fullUpdate = fullUpdateAllowed &&
+			SimClock.getTime() >= nextFullUpdate;
+
+		updateOrder.clear();
+		updateOrder.addAll(fullUpdate ? hosts : activeHosts);
+		if (randomizeOrder) {
+			Collections.shuffle(updateOrder,
+					new Random(SimClock.getIntTime()));
+		}
+		for (int i=0, n = updateOrder.size(); i < n; i++) {
+			updateOrder.get(i).update(false, profiler);
+		}
+
+		for (int i=0; i < activeHosts.size(); ) {
+			int address = activeHosts.get(i).getAddress();
+			if (nrofConnections[address] == 0 && !alwaysActive[address]) {
+				isActive[address] = false;
+				/* swap remove; the order just has to be deterministic */
+				activeHosts.set(i, activeHosts.get(activeHosts.size() - 1));
+				activeHosts.remove(activeHosts.size() - 1);
+			}
+			else {
+				i++;
+			}
+		}
+
+		if (fullUpdate) {
+			while (nextFullUpdate <= SimClock.getTime()) {
+				nextFullUpdate += fullUpdateInterval;
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.ContactTrace;
+
+import java.io.File;
+
+/**
+ * Parameter sweeps over a shared contact stream. When routing settings
+ * are swept (e.g., <CODE>SprayAndWaitRouter.nrofCopies = [2; 4; 8]</CODE>
+ * with <CODE>-b 3</CODE>), movement and connectivity are the same in every
+ * run. With a sweep enabled, the first run simulates movement and
+ * connectivity as usual and records the contact stream; the other runs
+ * replay the recorded contacts (see {@link ContactReplay}), so only the
+ * routing (and reporting) is simulated again.
+ * <P>
+ * The hosts are updated like in the recording run and each contact is made
+ * in the same update round, just before the update of the host that made
+ * it in the recording run. A replay run thus gives the same results as
+ * simulating its configuration without the sweep. Exceptions: the contacts
+ * are replayed for the first interface of the hosts only, update rounds
+ * scheduled by the routing (e.g., by {@link VBRConnection}s) can make the
+ * runs differ, and with the event driven replay
+ * (<CODE>Replay.fullUpdateInterval</CODE>) idle hosts drop their expired
+ * messages later.
+ * </P>
+ * <P>
+ * The contact stream is kept in memory for the following batch runs of the
+ * same simulator instance. If {@link #CONTACT_TRACE_S} is defined, the stream
+ * is also written to that file when the recording run ends and read from
+ * it by all runs if the file exists (in the binary format if the file name
+ * has the {@link ContactTrace#BINARY_EXT} extension). With a trace file,
+ * the replay runs can be divided between several simulator processes that
+ * run in parallel (e.g., <CODE>-b 1:3</CODE> and <CODE>-b 3:5</CODE> after
+ * a <CODE>-b 1</CODE> recording run). The files don't store the update
+ * rounds (see {@link ContactTrace#getRound(int)}), so a replay from a file
+ * may differ if external events are due exactly at the end of an update
+ * interval.
+ * </P>
+ * <P>
+ * Hosts stay at their initial locations in the replay runs, so routers
+ * and reports that use the locations give different results.
+ * </P>
+ */
+public class ContactSweep {
+	/** Sweep settings namespace ({@value}) */
+	public static final String SWEEP_NS = "Sweep";
+	/** Enable sweep -setting id ({@value}). Boolean. Default = false. */
+	public static final String ENABLED_S = "enabled";
+	/** Contact trace file -setting id ({@value}). If the file exists, it is
+	 * replayed by all runs. If not, the contacts of the first run are
+	 * written there. Supports value filling. */
+	public static final String CONTACT_TRACE_S = "contactTrace";
+
+	/* The state is deliberately not reset between batch runs */
+	/** contact trace of the earlier runs (or null) */
+	private static ContactTrace trace = null;
+	/** file of {@link #trace} (or null if kept only in memory) */
+	private static String traceFile = null;
+	/** trace being recorded in the current run (or null) */
+	private static ContactTrace recording = null;
+
+	/**
+	 * Returns true if the sweep is enabled for the current run
+	 * @return true if the sweep is enabled
+	 */
+	public static boolean isEnabled() {
+		Settings s = new Settings(SWEEP_NS);
+		return s.getBoolean(ENABLED_S, false);
+	}
+
+	/**
+	 * Returns the contact trace the current run should replay
+	 * @return The trace to replay, or null if the current run should record
+	 * the contacts
+	 */
+	public static ContactTrace getReplayTrace() {
+		String file = getTraceFile();
+
+		if (trace != null && (file == null ? traceFile == null :
+				file.equals(traceFile))) {
+			return trace;
+		}
+		if (file != null && new File(file).exists()) {
+			trace = ContactTrace.readFrom(file);
+			traceFile = file;
+			return trace;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Starts recording the contacts of the current run
+	 * @param world The world whose contacts are recorded
+	 * @return The listener that records the contacts and that should be
+	 * registered as a connection listener
+	 */
+	public static ConnectionListener startRecording(World world) {
+		recording = new ContactTrace();
+		return new Recorder(recording, world);
+	}
+
+	/**
+	 * Ends the current run. If the run recorded contacts, the recorded
+	 * trace is taken into use for the following runs (and written to the
+	 * trace file, if one is defined).
+	 */
+	public static void runDone() {
+		if (recording == null) {
+			return;
+		}
+
+		trace = recording;
+		traceFile = getTraceFile();
+		recording = null;
+		if (traceFile != null) {
+			trace.writeTo(traceFile);
+		}
+	}
+
+	/**
+	 * Returns the name of the contact trace file or null if not defined
+	 * @return the name of the contact trace file or null
+	 */
+	private static String getTraceFile() {
+		Settings s = new Settings(SWEEP_NS);
+		if (!s.contains(CONTACT_TRACE_S)) {
+			return null;
+		}
+		return s.valueFillString(s.getSetting(CONTACT_TRACE_S));
+	}
+
+	/**
+	 * Records the contacts with the update rounds of the world during
+	 * which they happen
+	 */
+	private static class Recorder implements ConnectionListener {
+		private ContactTrace trace;
+		private World world;
+
+		public Recorder(ContactTrace trace, World world) {
+			this.trace = trace;
+			this.world = world;
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			trace.addContact(SimClock.getTime(), world.getUpdateRound(),
+					host1.getAddress(), host2.getAddress(), true);
+		}
+
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			trace.addContact(SimClock.getTime(), world.getUpdateRound(),
+					host1.getAddress(), host2.getAddress(), false);
+		}
+	}
+}
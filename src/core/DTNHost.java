@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -19,27 +20,29 @@ import static core.Constants.DEBUG;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
-    private static int nextAddress = 0;//ȫֱڱһβʱĵַ
-    private int address;//ַ
-
-    private Coord location; //ͨƶģ͵ķ
-    private Coord destination;  //Ŀ
-
-    private MessageRouter router;//Ϣ·ɶ
-    private MovementModel movement;//ƶģͶ
-    private Path path;//·
-    private double speed;//ƶٶ
-    private double nextTimeToMove;//´ƶʱ䣺ͨƶģ͸ʱ
-    private String name;//
-    private List<MessageListener> msgListeners;//Ϣб
-    private List<MovementListener> movListeners;//ƶб
-    private List<NetworkInterface> net;//ӿڶб
-    private ModuleCommunicationBus comBus;//ģͨ
-    //þ̬ãjvmظʱŵһбڣresetListбڴпԱõ
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+	private static final long serialVersionUID = 1L;
+    private static int nextAddress = 0;//这是全局变量，用于保存下一次产生主机时，赋给主机的地址
+    private int address;//该主机的网络地址
+
+    private Coord location; //该主机的坐标对象；通过移动模型的方法给出的坐标
+    private Coord destination;  //该主机的目的坐标对象
+
+    private MessageRouter router;//该主机的消息路由对象
+    private MovementModel movement;//该主机的移动模型对象
+    private Path path;//该主机的路径
+    private double speed;//该主机的移动速度
+    private double nextTimeToMove;//该主机下次移动的时间：通过移动模型给出的时间
+    private String name;//该主机的名字
+    private transient List<MessageListener> msgListeners;//该主机的消息监听器列表
+    private transient List<MovementListener> movListeners;//该主机的移动监听器列表
+    private List<NetworkInterface> net;//该主机的网络接口对象列表
+    private ModuleCommunicationBus comBus;//该主机的模块通信主线
+    //该静态代码的作用：在jvm加载该类时，将该类放到一个列表内（resetList）这个列表内存放了所有可以被重置的类
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
-		//ÿjvmظʱԶȫֱnextAddressΪ0
+		Checkpoint.registerStaticState(DTNHost.class, "nextAddress");
+		//每次jvm加载该类时，自动将全局变量：nextAddress设置为0；
 		reset();
 	}
 	/**
@@ -52,12 +55,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param mmProto Prototype of the movement model of this host
 	 * @param mRouterProto Prototype of the message router of this host
 	 */
-	//msgLs:ֱӸֵ
-	//movLs:ֱӸֵ
-	//interf:ֵ
-	//comBus:ֱӸֵ
-	//mmProto:ֵ
-	//mRouterProto:ֵ
+	//msgLs:直接赋值
+	//movLs:直接赋值
+	//interf:拷贝赋值
+	//comBus:直接赋值
+	//mmProto:拷贝赋值
+	//mRouterProto:拷贝赋值
 	public DTNHost(List<MessageListener> msgLs,
 			List<MovementListener> movLs,
 			String groupId, List<NetworkInterface> interf,
@@ -144,6 +147,31 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router = router;
 	}
 
+	/**
+	 * Re-attaches the run time state that is not stored in checkpoints
+	 * (the listeners) to a host that was restored from a checkpoint.
+	 * @param template A freshly created host with the same address whose
+	 * listeners are taken into use
+	 * @param keepRouter If true, the restored router is kept. If false, the
+	 * restored router and all connections are dropped and a copy of the
+	 * template's router is used instead.
+	 */
+	void restoreState(DTNHost template, boolean keepRouter) {
+		this.msgListeners = template.msgListeners;
+		this.movListeners = template.movListeners;
+
+		for (int i=0, n=net.size(); i<n; i++) {
+			net.get(i).restoreState(template.net.get(i), keepRouter);
+		}
+
+		if (keepRouter) {
+			router.restoreListeners(msgListeners, template.router);
+		}
+		else {
+			setRouter(template.router.replicate());
+		}
+	}
+
 	/**
 	 * Returns the router of this host
 	 * @return the router of this host
@@ -340,21 +368,39 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param simulateConnections Should network layer be updated too
 	 */
 	public void update(boolean simulateConnections) {
+		update(simulateConnections, null);
+	}
 
-
-	    
+	/**
+	 * Updates node's network layer and router and measures the time spent
+	 * in them.
+	 * @param simulateConnections Should network layer be updated too
+	 * @param profiler Where the interface and router update times are added
+	 * (null if the times are not measured)
+	 */
+	void update(boolean simulateConnections, Profiler profiler) {
 		if (!isRadioActive()) {
 			// Make sure inactive nodes don't have connections
 			tearDownAllConnections();
 			return;
 		}
 
+		long start = (profiler != null ? System.nanoTime() : 0);
 		if (simulateConnections) {
 			for (NetworkInterface i : net) {
 				i.update();
+				if (profiler != null) {
+					start = profiler.updateDone(SimMetrics.PHASE_CONNECTIVITY,
+							Profiler.KIND_INTERFACE, i, start);
+				}
 			}
 		}
+
 		this.router.update();
+		if (profiler != null) {
+			profiler.updateDone(SimMetrics.PHASE_ROUTING,
+					Profiler.KIND_ROUTER, this.router, start);
+		}
 	}
 
 	/**
@@ -401,12 +447,12 @@ public class DTNHost implements Comparable<DTNHost> {
 		distance = this.location.distance(this.destination);
 
 		while (possibleMovement >= distance) {
-		     /*---begin Ǻ--*/
+		     /*---begin 郭亚航--*/
 //		    if( this.address == 3 ) {
 //		         String guoMessage = this.destination+" ";
 //		         GuoLog.log(guoMessage);   
 //		    }
-	        /*---end Ǻ--*/
+	        /*---end 郭亚航--*/
 	        
 			// node can move past its next destination
 			this.location.setLocation(this.destination); // snap to destination
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Batch of message and connection events recorded by an {@link EventBus}.
+ * The events are stored in primitive columns (one array per field) and the
+ * fields that many reports derive from the message (such as the message's
+ * age and hop count) are computed once when the event is recorded. The
+ * batch only holds copies of the values, so it stays valid even though the
+ * messages change after the event.
+ * <P>
+ * The batch's arrays are reused for the next batch after the listeners
+ * have been called, so listeners must not keep references to the batch.
+ * </P>
+ */
+public class EventBatch {
+	/** Event type of a message creation. Host 1 is the creating host. */
+	public static final int MSG_CREATED = 0;
+	/** Event type of a started message transfer (host 1 to host 2) */
+	public static final int MSG_TRANSFER_STARTED = 1;
+	/** Event type of an aborted message transfer (host 1 to host 2) */
+	public static final int MSG_TRANSFER_ABORTED = 2;
+	/** Event type of a finished message transfer (host 1 to host 2) that was
+	 * not the first delivery to the final destination */
+	public static final int MSG_RELAYED = 3;
+	/** Event type of a first delivery of a message to its final destination
+	 * (host 1 to host 2) */
+	public static final int MSG_DELIVERED = 4;
+	/** Event type of a dropped message. Host 1 is where it was dropped. */
+	public static final int MSG_DROPPED = 5;
+	/** Event type of a removed message. Host 1 is where it was removed. */
+	public static final int MSG_REMOVED = 6;
+	/** Event type of a connection up between host 1 and host 2 */
+	public static final int HOSTS_CONNECTED = 7;
+	/** Event type of a connection down between host 1 and host 2 */
+	public static final int HOSTS_DISCONNECTED = 8;
+
+	/** Flag of messages that are responses to other messages */
+	public static final int FLAG_RESPONSE = 1;
+	/** Flag of messages that request a response */
+	public static final int FLAG_RESPONSE_REQUESTED = 2;
+
+	private byte[] types;
+	private double[] times;
+	private int[] hosts1;
+	private int[] hosts2;
+	private String[] messageIds;
+	private int[] sizes;
+	private int[] hopCounts;
+	private double[] ages;
+	private double[] bufferTimes;
+	private double[] requestAges;
+	private byte[] flags;
+	private int size;
+
+	/**
+	 * Creates a batch that can hold the given number of events
+	 * @param capacity The maximum number of events
+	 */
+	EventBatch(int capacity) {
+		this.types = new byte[capacity];
+		this.times = new double[capacity];
+		this.hosts1 = new int[capacity];
+		this.hosts2 = new int[capacity];
+		this.messageIds = new String[capacity];
+		this.sizes = new int[capacity];
+		this.hopCounts = new int[capacity];
+		this.ages = new double[capacity];
+		this.bufferTimes = new double[capacity];
+		this.requestAges = new double[capacity];
+		this.flags = new byte[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Records a message event at the current simulation time
+	 * @param type Type of the event
+	 * @param m The message
+	 * @param host1 The first host of the event
+	 * @param host2 The second host of the event or null
+	 */
+	void addMessageEvent(int type, Message m, DTNHost host1, DTNHost host2) {
+		double time = SimClock.getTime();
+		int i = size++;
+
+		types[i] = (byte)type;
+		times[i] = time;
+		hosts1[i] = host1.getAddress();
+		hosts2[i] = host2 != null ? host2.getAddress() : -1;
+		messageIds[i] = m.getId();
+		sizes[i] = m.getSize();
+		hopCounts[i] = m.getHopCount();
+		ages[i] = time - m.getCreationTime();
+		bufferTimes[i] = time - m.getReceiveTime();
+		requestAges[i] = m.isResponse() ?
+				time - m.getRequest().getCreationTime() : Double.NaN;
+		flags[i] = (byte)((m.isResponse() ? FLAG_RESPONSE : 0) |
+				(m.getResponseSize() > 0 ? FLAG_RESPONSE_REQUESTED : 0));
+	}
+
+	/**
+	 * Records a connection event at the current simulation time
+	 * @param type Type of the event
+	 * @param host1 The first host of the connection
+	 * @param host2 The second host of the connection
+	 */
+	void addConnectionEvent(int type, DTNHost host1, DTNHost host2) {
+		int i = size++;
+
+		types[i] = (byte)type;
+		times[i] = SimClock.getTime();
+		hosts1[i] = host1.getAddress();
+		hosts2[i] = host2.getAddress();
+		messageIds[i] = null;
+		sizes[i] = 0;
+		hopCounts[i] = 0;
+		ages[i] = Double.NaN;
+		bufferTimes[i] = Double.NaN;
+		requestAges[i] = Double.NaN;
+		flags[i] = 0;
+	}
+
+	/**
+	 * Returns true if the batch can't hold more events
+	 * @return true if the batch is full
+	 */
+	boolean isFull() {
+		return size == types.length;
+	}
+
+	/**
+	 * Empties the batch
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of events in the batch
+	 * @return the number of events in the batch
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the type of an event
+	 * @param i Index of the event
+	 * @return the type of the event (e.g., {@link #MSG_DELIVERED})
+	 */
+	public int getType(int i) {
+		return types[i];
+	}
+
+	/**
+	 * Returns the simulation time of an event
+	 * @param i Index of the event
+	 * @return the time of the event
+	 */
+	public double getTime(int i) {
+		return times[i];
+	}
+
+	/**
+	 * Returns the address of the first host of an event (the sending host of
+	 * transfers, the host where a message was created or deleted)
+	 * @param i Index of the event
+	 * @return the address of the first host
+	 */
+	public int getHost1(int i) {
+		return hosts1[i];
+	}
+
+	/**
+	 * Returns the address of the second host of an event (the receiving host
+	 * of transfers)
+	 * @param i Index of the event
+	 * @return the address of the second host or -1 if the event has only
+	 * one host
+	 */
+	public int getHost2(int i) {
+		return hosts2[i];
+	}
+
+	/**
+	 * Returns the ID of the message of a message event
+	 * @param i Index of the event
+	 * @return the ID of the message or null for connection events
+	 */
+	public String getMessageId(int i) {
+		return messageIds[i];
+	}
+
+	/**
+	 * Returns the size of the message of a message event
+	 * @param i Index of the event
+	 * @return the size of the message
+	 */
+	public int getMessageSize(int i) {
+		return sizes[i];
+	}
+
+	/**
+	 * Returns the hop count of the message at the time of the event
+	 * @param i Index of the event
+	 * @return the hop count of the message
+	 */
+	public int getHopCount(int i) {
+		return hopCounts[i];
+	}
+
+	/**
+	 * Returns the time since the creation of the message at the time of the
+	 * event (e.g., the delivery latency for delivery events)
+	 * @param i Index of the event
+	 * @return the age of the message or NaN for connection events
+	 */
+	public double getAge(int i) {
+		return ages[i];
+	}
+
+	/**
+	 * Returns the time since the message was received by its current
+	 * holder at the time of the event (e.g., the buffer time for deletions)
+	 * @param i Index of the event
+	 * @return the buffer time or NaN for connection events
+	 */
+	public double getBufferTime(int i) {
+		return bufferTimes[i];
+	}
+
+	/**
+	 * Returns the time since the creation of the request a response message
+	 * answers (e.g., the round trip time for deliveries of responses)
+	 * @param i Index of the event
+	 * @return the age of the request or NaN if the message isn't a response
+	 */
+	public double getRequestAge(int i) {
+		return requestAges[i];
+	}
+
+	/**
+	 * Returns true if the message of an event is a response to a request
+	 * @param i Index of the event
+	 * @return true if the message is a response
+	 */
+	public boolean isResponse(int i) {
+		return (flags[i] & FLAG_RESPONSE) != 0;
+	}
+
+	/**
+	 * Returns true if the message of an event requests a response
+	 * @param i Index of the event
+	 * @return true if the message requests a response
+	 */
+	public boolean isResponseRequested(int i) {
+		return (flags[i] & FLAG_RESPONSE_REQUESTED) != 0;
+	}
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Interface for classes (typically reports) that want to receive the
+ * message and connection events in batches from an {@link EventBus}
+ * instead of one call per event and listener.
+ */
+public interface EventBatchListener {
+
+	/**
+	 * Method is called with the events that happened since the previous
+	 * batch, in the order they happened. The listener must not keep
+	 * references to the batch after returning.
+	 * @param batch The events
+	 */
+	public void eventsDispatched(EventBatch batch);
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Central recorder of message and connection events. The bus is the only
+ * message and connection listener its subscribers need: each event is
+ * recorded once to an {@link EventBatch} (with the derived fields computed
+ * once for all subscribers) and the batch is dispatched to all subscribers
+ * at the end of every update interval, or earlier if the batch gets full.
+ * <P>
+ * Subscribers see the events after the fact, so they must use the times
+ * and other values of the batch instead of the simulation clock or the
+ * current state of the messages.
+ * </P>
+ */
+public class EventBus implements MessageListener, ConnectionListener,
+		UpdateListener {
+	/** Event bus settings namespace ({@value}) */
+	public static final String EVENT_BUS_NS = "EventBus";
+	/** Batch size -setting id ({@value}). Maximum number of events that are
+	 * buffered before they are dispatched. Default =
+	 * {@link #DEF_BATCH_SIZE}. */
+	public static final String BATCH_SIZE_S = "batchSize";
+	/** Default batch size ({@value}) */
+	public static final int DEF_BATCH_SIZE = 4096;
+
+	private EventBatch batch;
+	private List<EventBatchListener> subscribers;
+
+	/**
+	 * Creates a new event bus with the batch size of the settings
+	 */
+	public EventBus() {
+		Settings s = new Settings(EVENT_BUS_NS);
+		int batchSize = s.getInt(BATCH_SIZE_S, DEF_BATCH_SIZE);
+		s.ensurePositiveValue(batchSize, BATCH_SIZE_S);
+
+		this.batch = new EventBatch(batchSize);
+		this.subscribers = new ArrayList<EventBatchListener>();
+	}
+
+	/**
+	 * Adds a subscriber that gets all the following batches
+	 * @param l The subscriber
+	 */
+	public void subscribe(EventBatchListener l) {
+		this.subscribers.add(l);
+	}
+
+	/**
+	 * Dispatches the recorded events to the subscribers and empties the
+	 * batch
+	 */
+	public void flush() {
+		if (batch.size() == 0) {
+			return;
+		}
+		for (int i=0, n=subscribers.size(); i<n; i++) {
+			subscribers.get(i).eventsDispatched(batch);
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Records a message event and dispatches the batch if it got full
+	 */
+	private void addMessageEvent(int type, Message m, DTNHost host1,
+			DTNHost host2) {
+		batch.addMessageEvent(type, m, host1, host2);
+		if (batch.isFull()) {
+			flush();
+		}
+	}
+
+	/**
+	 * Records a connection event and dispatches the batch if it got full
+	 */
+	private void addConnectionEvent(int type, DTNHost host1, DTNHost host2) {
+		batch.addConnectionEvent(type, host1, host2);
+		if (batch.isFull()) {
+			flush();
+		}
+	}
+
+	public void newMessage(Message m) {
+		addMessageEvent(EventBatch.MSG_CREATED, m, m.getFrom(), null);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		addMessageEvent(EventBatch.MSG_TRANSFER_STARTED, m, from, to);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		addMessageEvent(dropped ? EventBatch.MSG_DROPPED :
+			EventBatch.MSG_REMOVED, m, where, null);
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		addMessageEvent(EventBatch.MSG_TRANSFER_ABORTED, m, from, to);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		addMessageEvent(firstDelivery ? EventBatch.MSG_DELIVERED :
+			EventBatch.MSG_RELAYED, m, from, to);
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		addConnectionEvent(EventBatch.HOSTS_CONNECTED, host1, host2);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		addConnectionEvent(EventBatch.HOSTS_DISCONNECTED, host1, host2);
+	}
+
+	/**
+	 * Dispatches the events of the update interval
+	 */
+	public void updated(List<DTNHost> hosts) {
+		flush();
+	}
+}
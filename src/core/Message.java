@@ -4,58 +4,74 @@
  */
 package core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
+	/** Maximum number of metadata fields ({@value}) */
+	public static final int MAX_METADATA_FIELDS = 64;
+	/** Names of the registered metadata fields (by field index) */
+	private static final List<String> metadataFieldNames =
+		new ArrayList<String>();
    /** Next unique identifier to be given */
-    private static int nextUniqueId;//ȫֱڱһβϢϢid
-	private DTNHost from;//Դ
-	private DTNHost to;//Ŀ
+    private static int nextUniqueId;//全局变量。用于保存下一次产生消息的消息id
+	private DTNHost from;//源主机
+	private DTNHost to;//目的主机
 	/** Identifier of the message */
-	private String id;//Ϣid(String):ϢְɣͬһϢĸͬidͬϢid벻ͬ
+	private String id;//消息id(String):不如叫消息的名字吧，同一个消息的副本就有相同的id，不同消息的id必须不同
 	/** Size of the message (bytes) */
-	private int size;//ϢС
+	private int size;//消息大小
 	/** List of nodes this message has passed */
-	private List<DTNHost> path;//Ϣ·
+	private List<DTNHost> path;//消息经过的主机路径
 	
 
 	/** Unique ID of this message */
-	private int uniqueId;//Ϣһ޶id
+	private int uniqueId;//消息独一无二的id
 	/** The time this message was received */
-	private double timeReceived;//Ϣյʱ
+	private double timeReceived;//消息被接收的时间
 	/** The time when this message was created */
-	private double timeCreated;//Ϣʱ
+	private double timeCreated;//消息被创建的时间
 	/** Initial TTL of the message */
-	private int initTtl;//Ϣĳʼttl
+	private int initTtl;//消息的初始化ttl
 
 	/** if a response to this message is required, this is the size of the
 	 * response message (or 0 if no response is requested) */
-	//ϢԴ͵ĿϢҪĿһӦϢresponseSizeǸӦϢĴС
-	private int responseSize;//ӦϢĴС
-	//ϢһӦϢô˽бͰӦϢ
+	//如果该消息从源主机发送到目的主机；该消息需要从目的主机返回一个响应消息；responseSize就是该响应消息的大小
+	private int responseSize;//响应消息的大小
+	//如果该消息是一个响应消息；那么该私有变量就把其对应的请求消息
 	/** if this message is a response message, this is set to the request msg*/
-	private Message requestMsg;//Ϣ
+	private Message requestMsg;//请求消息
 
 	/** Container for generic message properties. Note that all values
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
-	private Map<String, Object> properties;//
+	private Map<String, Object> properties;//属性
+
+	/** Values of the metadata fields (or null if none has been set).
+	 * Int and double values are stored as long bits. */
+	private transient long[] metadata;
+	/** Bit mask of the metadata fields that have a value */
+	private transient long metadataMask;
 
 	/** Application ID of the application that created the message */
-	private String	appID;//ϢӦõappId(String)
+	private String	appID;//创建该消息的应用的appId(String)
 
 	static {
 		reset();
 		DTNSim.registerForReset(Message.class.getCanonicalName());
+		Checkpoint.registerStaticState(Message.class, "nextUniqueId");
 	}
 
 	/**
@@ -106,7 +122,7 @@ public class Message implements Comparable<Message> {
 	 * Returns the ID of the message
 	 * @return The message id
 	 */
-	//ϢƣǶһ޶id
+	//返回消息的名称（非独一无二的id）
 	public String getId() {
 		return this.id;
 	}
@@ -132,7 +148,7 @@ public class Message implements Comparable<Message> {
 	 * Adds a new node on the list of nodes this message has passed
 	 * @param node The node to add
 	 */
-	//Ϣ·һµĽڵ
+	//在消息经过的路径中增加一个新的节点
 	public void addNodeOnPath(DTNHost node) {
 		this.path.add(node);
 	}
@@ -270,11 +286,133 @@ public class Message implements Comparable<Message> {
 		this.appID = m.appID;
 
 		if (m.properties != null) {
-			Set<String> keys = m.properties.keySet();
-			for (String key : keys) {
-				updateProperty(key, m.getProperty(key));
+			this.properties = new HashMap<String, Object>(m.properties);
+		}
+		if (m.metadata != null) {
+			this.metadata = m.metadata.clone();
+			this.metadataMask = m.metadataMask;
+		}
+	}
+
+	/**
+	 * Registers a typed metadata field for messages. Metadata fields are a
+	 * compact alternative to the generic properties for values that are
+	 * read and updated often (e.g., routing state that is carried with
+	 * each message copy): the values are stored unboxed in an array that is
+	 * copied as a whole when the message is replicated. A class should
+	 * register its fields once (e.g., in a static initializer) and use the
+	 * returned index with the getters and setters. Registering the same name
+	 * again returns the same index.
+	 * @param name Name of the field; should be unique for the class, like
+	 * property keys
+	 * @return Index of the field
+	 * @throws SimError if too many fields have been registered
+	 */
+	public static synchronized int registerMetadataField(String name) {
+		int index = metadataFieldNames.indexOf(name);
+		if (index >= 0) {
+			return index;
+		}
+		if (metadataFieldNames.size() == MAX_METADATA_FIELDS) {
+			throw new SimError("Can't register metadata field " + name +
+					"; already " + MAX_METADATA_FIELDS + " fields");
+		}
+		metadataFieldNames.add(name);
+		return metadataFieldNames.size() - 1;
+	}
+
+	/**
+	 * Returns true if a value has been set for the metadata field
+	 * @param field Index of the field
+	 * @return true if the field has a value
+	 */
+	public boolean hasMetadata(int field) {
+		return (this.metadataMask & (1L << field)) != 0;
+	}
+
+	/**
+	 * Returns the long value of a metadata field
+	 * @param field Index of the field
+	 * @return The value or 0 if no value has been set
+	 */
+	public long getLongMetadata(int field) {
+		if (this.metadata == null || field >= this.metadata.length) {
+			return 0;
+		}
+		return this.metadata[field];
+	}
+
+	/**
+	 * Sets the long value of a metadata field
+	 * @param field Index of the field
+	 * @param value The value
+	 */
+	public void setLongMetadata(int field, long value) {
+		if (this.metadata == null || field >= this.metadata.length) {
+			/* lazy creation (with room for all fields registered so far) */
+			long[] values = new long[Math.max(field + 1,
+					metadataFieldNames.size())];
+			if (this.metadata != null) {
+				System.arraycopy(this.metadata, 0, values, 0,
+						this.metadata.length);
 			}
+			this.metadata = values;
 		}
+		this.metadata[field] = value;
+		this.metadataMask |= 1L << field;
+	}
+
+	/**
+	 * Returns the int value of a metadata field
+	 * @param field Index of the field
+	 * @return The value or 0 if no value has been set
+	 */
+	public int getIntMetadata(int field) {
+		return (int)getLongMetadata(field);
+	}
+
+	/**
+	 * Sets the int value of a metadata field
+	 * @param field Index of the field
+	 * @param value The value
+	 */
+	public void setIntMetadata(int field, int value) {
+		setLongMetadata(field, value);
+	}
+
+	/**
+	 * Adds the int value of a metadata field that has no value yet. Works
+	 * like {@link #addProperty(String, Object)} for the metadata fields.
+	 * @param field Index of the field
+	 * @param value The value
+	 * @throws SimError if the message already has a value for the field
+	 */
+	public void addIntMetadata(int field, int value) throws SimError {
+		if (hasMetadata(field)) {
+			/* check to prevent accidental name space collisions */
+			throw new SimError("Message " + this + " already contains value " +
+					"for a metadata field " + metadataFieldNames.get(field));
+		}
+
+		setIntMetadata(field, value);
+	}
+
+	/**
+	 * Returns the double value of a metadata field
+	 * @param field Index of the field
+	 * @return The value or 0 if no value has been set
+	 */
+	public double getDoubleMetadata(int field) {
+		return Double.longBitsToDouble(getLongMetadata(field));
+	}
+
+	/**
+	 * Sets the double value of a metadata field
+	 * @param field Index of the field
+	 * @param value The value
+	 */
+	public void setDoubleMetadata(int field, double value) {
+		setLongMetadata(field, Double.doubleToRawLongBits(value));
 	}
 
 	/**
@@ -366,4 +504,32 @@ public class Message implements Comparable<Message> {
 		this.appID = appID;
 	}
 
+	/**
+	 * Writes the metadata fields by name, since the field indexes can
+	 * differ in the JVM that reads them.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(Long.bitCount(this.metadataMask));
+		for (int i = 0; i < MAX_METADATA_FIELDS; i++) {
+			if (hasMetadata(i)) {
+				out.writeUTF(metadataFieldNames.get(i));
+				out.writeLong(this.metadata[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads the metadata fields and puts them to the fields' indexes in
+	 * this JVM.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			String name = in.readUTF();
+			setLongMetadata(registerMetadataField(name), in.readLong());
+		}
+	}
+
 }
@@ -23,7 +23,7 @@ public interface MessageListener {
 	 * @param from Node where the message is transferred from
 	 * @param to Node where the message is transferred to
 	 */
-	//Ϣ俪ʼʱø÷
+	//当消息传输开始时调用该方法
 	public void messageTransferStarted(Message m, DTNHost from, DTNHost to);
 
 	/**
@@ -52,7 +52,7 @@ public interface MessageListener {
 	 * @param firstDelivery Was the target node final destination of the message
 	 * and received this message for the first time.
 	 */
-	//ĿĽڵϢĿĽڵ㣻ͬʱĿǵһνոϢʱfirstDeliveryΪtrue
+	//如果目的节点是消息的最终目的节点；同时目的主机是第一次接收该消息时，firstDelivery设置为true
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery);
 }
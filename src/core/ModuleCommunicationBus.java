@@ -4,36 +4,114 @@
  */
 package core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Intermodule communication bus. Works as a blackboard where modules can
  * post data, subscribe to data changes and also poll for data values.
  * This is fairly similar to Message class' property interface, but these
  * values are shared for a node instead of message.
+ * <P>
+ * Every key is registered once (for all buses) to an integer slot
+ * (see {@link #getSlot(String)}) when a value is stored or a listener
+ * subscribed for it, and the values are stored in arrays
+ * indexed by the slot. Double and Integer values are stored unboxed, so
+ * modules that read or update numeric values often can cache the slot of
+ * the key and use the slot versions of the methods (e.g.,
+ * {@link #getDouble(int, double)} and {@link #setDouble(int, double)});
+ * such accesses are array loads without hashing or boxing. The values are
+ * only boxed for the listeners of the key, if there are any.
+ * </P>
  */
-//ģͨ
-public class ModuleCommunicationBus {
+//模块间的通信总线
+public class ModuleCommunicationBus implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Initial capacity for the listener lists (instead of 10) */
 	private static int INIT_CAPACITY = 3;
-	/** The values in the blackboard (or null if none)*/
-	private HashMap<String, Object> values;
-	/** Subscribed listeners (or null if none)*/
-	//listenersModuleCommunicationBusе˽гԱHashMap<String, Object> values
-	//keyֵı仯HashMapkeyֵͨӦģvaluesĳkeyӦֵ˱仯
-	//ͨͬkeyȥlistenersList<ModuleCommunicationListener>Ȼеļ
-	private HashMap<String, List<ModuleCommunicationListener>> listeners;
+
+	/** Type of an empty slot */
+	private static final byte NO_VALUE = 0;
+	/** Type of a slot with an object value */
+	private static final byte OBJECT_VALUE = 1;
+	/** Type of a slot with a (unboxed) Double value */
+	private static final byte DOUBLE_VALUE = 2;
+	/** Type of a slot with a (unboxed) Integer value */
+	private static final byte INT_VALUE = 3;
+
+	/** slots of the registered keys (shared by all buses) */
+	private static final HashMap<String, Integer> slots =
+		new HashMap<String, Integer>();
+	/** registered keys by slot */
+	private static final List<String> keys = new ArrayList<String>();
+
+	/** Types of the values in the slots (or null if no values).
+	 * The slot arrays are indexed by the slot of the key and grow when
+	 * values are stored for new slots. */
+	private transient byte[] types;
+	/** Double and Integer values by slot */
+	private transient double[] numbers;
+	/** Other values by slot */
+	private transient Object[] objects;
+	/** Subscribed listeners by slot (or null if none)*/
+	//listeners本质上用来监听ModuleCommunicationBus对象中各个key对应的值的变化；
+	//当某个key对应的值发生了变化，就通过该key的slot找到List<ModuleCommunicationListener>，
+	//然后遍历所有的监听器
+	private transient List<ModuleCommunicationListener>[] listeners;
 
 	/**
 	 * Constructor.
 	 */
 	public ModuleCommunicationBus() {
-		this.values = null; /* use lazy creation  */
+		this.types = null; /* use lazy creation  */
 		this.listeners = null;
 	}
 
+	/**
+	 * Returns the slot of a key. The key is registered to a new slot the
+	 * first time its slot is asked for; after that the slot of the key stays
+	 * the same (in all buses) for the lifetime of the JVM. The slots of
+	 * commonly used keys should be fetched once and cached.
+	 * @param key The key
+	 * @return The slot of the key
+	 */
+	public static synchronized int getSlot(String key) {
+		Integer slot = slots.get(key);
+		if (slot == null) {
+			slot = keys.size();
+			slots.put(key, slot);
+			keys.add(key);
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the slot of a key without registering the key
+	 * @param key The key
+	 * @return The slot of the key or -1 if the key hasn't been registered
+	 * (i.e., no bus has had a value or listener for it)
+	 */
+	public static synchronized int findSlot(String key) {
+		Integer slot = slots.get(key);
+		return (slot != null ? slot : -1);
+	}
+
+	/**
+	 * Returns the key of a slot
+	 * @param slot The slot
+	 * @return The key that was registered to the slot
+	 */
+	public static synchronized String getKey(int slot) {
+		return keys.get(slot);
+	}
+
 	/**
 	 * Adds a new property for this node. The key can be any string but
 	 * it should be such that no other class accidently uses the same value.
@@ -44,13 +122,24 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if there is already a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.values != null && this.values.containsKey(key)) {
+		addProperty(getSlot(key), value);
+	}
+
+	/**
+	 * Adds a new property for this node using the slot of the key.
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param value The value to store
+	 * @throws SimError if there is already a value for the given key
+	 * @see #addProperty(String, Object)
+	 */
+	public void addProperty(int slot, Object value) throws SimError {
+		if (containsProperty(slot)) {
 			/* check to prevent accidental name space collisions */
-			throw new SimError("A value for the key " + key +
+			throw new SimError("A value for the key " + getKey(slot) +
 					" already exists");
 		}
 
-		this.updateProperty(key, value);
+		this.updateProperty(slot, value);
 	}
 
 	/**
@@ -60,10 +149,26 @@ public class ModuleCommunicationBus {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
-		if (this.values == null) {
+		return getProperty(findSlot(key));
+	}
+
+	/**
+	 * Returns an object that was stored using the key of the slot.
+	 * Double and Integer values are returned boxed.
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @return The stored object or null if it isn't found
+	 */
+	public Object getProperty(int slot) {
+		switch (typeOf(slot)) {
+		case OBJECT_VALUE:
+			return this.objects[slot];
+		case DOUBLE_VALUE:
+			return this.numbers[slot];
+		case INT_VALUE:
+			return (int)this.numbers[slot];
+		default:
 			return null;
 		}
-		return this.values.get(key);
 	}
 
 	/**
@@ -72,10 +177,16 @@ public class ModuleCommunicationBus {
 	 * @return true if the value exists, false if not
 	 */
 	public boolean containsProperty(String key) {
-		if (this.values == null) {
-			return false;
-		}
-		return this.values.containsKey(key);
+		return containsProperty(findSlot(key));
+	}
+
+	/**
+	 * Returns true if the bus contains a value for the key of the slot
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @return true if the value exists, false if not
+	 */
+	public boolean containsProperty(int slot) {
+		return typeOf(slot) != NO_VALUE;
 	}
 
 	/**
@@ -86,14 +197,55 @@ public class ModuleCommunicationBus {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
-		if (this.values == null) {
-			/* lazy creation to prevent performance overhead for classes
-			   that don't use the property feature  */
-			this.values = new HashMap<String, Object>();
+		updateProperty(getSlot(key), value);
+	}
+
+	/**
+	 * Updates a value for an existing property using the slot of the key.
+	 * Double and Integer values are stored unboxed.
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param value The new value to store
+	 * @see #updateProperty(String, Object)
+	 */
+	public void updateProperty(int slot, Object value) throws SimError {
+		store(slot, value);
+		notifyListeners(slot, value);
+	}
+
+	/**
+	 * Stores a double value for the key of the slot (as with
+	 * {@link #updateProperty(int, Object)}, but without boxing the value
+	 * unless someone has subscribed to the key's changes)
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param value The new value to store
+	 */
+	public void setDouble(int slot, double value) {
+		ensureSlot(slot);
+		this.types[slot] = DOUBLE_VALUE;
+		this.numbers[slot] = value;
+		this.objects[slot] = null;
+		if (this.listeners != null && slot < this.listeners.length &&
+				this.listeners[slot] != null) {
+			notifyListeners(slot, value);
 		}
+	}
 
-		this.values.put(key, value);
-		notifyListeners(key, value);
+	/**
+	 * Stores an integer value for the key of the slot (as with
+	 * {@link #updateProperty(int, Object)}, but without boxing the value
+	 * unless someone has subscribed to the key's changes)
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param value The new value to store
+	 */
+	public void setInt(int slot, int value) {
+		ensureSlot(slot);
+		this.types[slot] = INT_VALUE;
+		this.numbers[slot] = value;
+		this.objects[slot] = null;
+		if (this.listeners != null && slot < this.listeners.length &&
+				this.listeners[slot] != null) {
+			notifyListeners(slot, value);
+		}
 	}
 
 	/**
@@ -104,19 +256,29 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double updateDouble(String key, double delta) throws SimError {
-		double current;
-		try {
-			current = (Double)getProperty(key);
-			updateProperty(key, current + delta);
-		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
+		return updateDouble(getSlot(key), delta);
+	}
+
+	/**
+	 * Changes the Double value of the key of the slot with the value delta
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param delta Value added to the old value
+	 * @return The new value
+	 * @throws SimError if the value with the given key was not a Double
+	 */
+	public double updateDouble(int slot, double delta) throws SimError {
+		byte type = typeOf(slot);
+		if (type == NO_VALUE || (type == OBJECT_VALUE &&
+				this.objects[slot] == null)) {
+			throw new SimError("No value for key " + getKey(slot));
 		}
-		catch (NullPointerException npe) {
-			throw new SimError("No value for key " + key);
+		if (type != DOUBLE_VALUE) {
+			throw new SimError("No Double value for key " + getKey(slot));
 		}
 
-		return current + delta;
+		double value = this.numbers[slot] + delta;
+		setDouble(slot, value);
+		return value;
 	}
 
 	/**
@@ -127,16 +289,27 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not a Double
 	 */
 	public double getDouble(String key, double naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
-			return naValue;
-		}
-		try {
-			return (Double)value;
+		return getDouble(findSlot(key), naValue);
+	}
+
+	/**
+	 * Returns a double value from the communication bus using the slot of
+	 * the key.
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not a Double
+	 */
+	public double getDouble(int slot, double naValue) throws SimError {
+		byte type = typeOf(slot);
+		if (type == DOUBLE_VALUE) {
+			return this.numbers[slot];
 		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Double value for key " + key);
+		if (type == NO_VALUE || (type == OBJECT_VALUE &&
+				this.objects[slot] == null)) {
+			return naValue;
 		}
+		throw new SimError("No Double value for key " + getKey(slot));
 	}
 
 	/**
@@ -147,16 +320,27 @@ public class ModuleCommunicationBus {
 	 * @throws SimError if the value with the given key was not an Integer
 	 */
 	public int getInt(String key, int naValue) throws SimError {
-		Object value = this.getProperty(key);
-		if (value == null) {
-			return naValue;
-		}
-		try {
-			return (Integer)value;
+		return getInt(findSlot(key), naValue);
+	}
+
+	/**
+	 * Returns an integer value from the communication bus using the slot of
+	 * the key.
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param naValue The value to return if there is no value for the key
+	 * @return The value of the key, or the naValue if they key was not found
+	 * @throws SimError if the value with the given key was not an Integer
+	 */
+	public int getInt(int slot, int naValue) throws SimError {
+		byte type = typeOf(slot);
+		if (type == INT_VALUE) {
+			return (int)this.numbers[slot];
 		}
-		catch (ClassCastException cce) {
-			throw new SimError("No Integer value for key " + key);
+		if (type == NO_VALUE || (type == OBJECT_VALUE &&
+				this.objects[slot] == null)) {
+			return naValue;
 		}
+		throw new SimError("No Integer value for key " + getKey(slot));
 	}
 
 	/**
@@ -165,17 +349,22 @@ public class ModuleCommunicationBus {
 	 * @param module The module to subscribe.
 	 */
 	public void subscribe(String key, ModuleCommunicationListener module) {
-		if (this.listeners == null) {
-			/* first listener for the whole node */
-			this.listeners =
-				new HashMap<String, List<ModuleCommunicationListener>>();
-		}
+		subscribe(getSlot(key), module);
+	}
 
-		List<ModuleCommunicationListener> list = this.listeners.get(key);
+	/**
+	 * Subscribes a module to changes of the value of the slot's key.
+	 * @param slot The slot of the key (see {@link #getSlot(String)})
+	 * @param module The module to subscribe.
+	 */
+	public void subscribe(int slot, ModuleCommunicationListener module) {
+		ensureListenerSlot(slot);
+
+		List<ModuleCommunicationListener> list = this.listeners[slot];
 		if (list == null) {
 			/* first listener for this key */
 			list = new ArrayList<ModuleCommunicationListener>(INIT_CAPACITY);
-			this.listeners.put(key, list);
+			this.listeners[slot] = list;
 		}
 
 		list.add(module);
@@ -187,13 +376,22 @@ public class ModuleCommunicationBus {
 	 * @param module The module to whose subscription is removed
 	 */
 	public void unsubscribe(String key, ModuleCommunicationListener module) {
-		List<ModuleCommunicationListener> list;
+		unsubscribe(findSlot(key), module);
+	}
 
-		if (this.listeners == null) {
+	/**
+	 * Removes a notification subscription
+	 * @param slot The slot of the key for which the subscription should be
+	 * removed
+	 * @param module The module to whose subscription is removed
+	 */
+	public void unsubscribe(int slot, ModuleCommunicationListener module) {
+		if (this.listeners == null || slot < 0 ||
+				slot >= this.listeners.length) {
 			return; /* no subscriptions */
 		}
 
-		list = this.listeners.get(key);
+		List<ModuleCommunicationListener> list = this.listeners[slot];
 		if (list == null) {
 			return; /* no subscriptions for the key */
 		}
@@ -201,33 +399,173 @@ public class ModuleCommunicationBus {
 		list.remove(module);
 	}
 
+	/**
+	 * Returns the type of the value in a slot
+	 * @param slot The slot (or -1 for an unregistered key)
+	 * @return The type ({@link #NO_VALUE} if there's no value)
+	 */
+	private byte typeOf(int slot) {
+		if (this.types == null || slot < 0 || slot >= this.types.length) {
+			return NO_VALUE;
+		}
+		return this.types[slot];
+	}
+
+	/**
+	 * Makes sure the value arrays have room for the given slot
+	 * @param slot The slot
+	 */
+	private void ensureSlot(int slot) {
+		if (this.types == null) {
+			/* lazy creation to prevent performance overhead for classes
+			   that don't use the property feature  */
+			int size = Math.max(slot + 1, keys.size());
+			this.types = new byte[size];
+			this.numbers = new double[size];
+			this.objects = new Object[size];
+		}
+		else if (slot >= this.types.length) {
+			int size = Math.max(slot + 1, keys.size());
+			this.types = Arrays.copyOf(this.types, size);
+			this.numbers = Arrays.copyOf(this.numbers, size);
+			this.objects = Arrays.copyOf(this.objects, size);
+		}
+	}
+
+	/**
+	 * Stores a value to a slot (without notifying the listeners)
+	 * @param slot The slot
+	 * @param value The value
+	 */
+	private void store(int slot, Object value) {
+		ensureSlot(slot);
+		if (value instanceof Double) {
+			this.types[slot] = DOUBLE_VALUE;
+			this.numbers[slot] = (Double)value;
+			this.objects[slot] = null;
+		}
+		else if (value instanceof Integer) {
+			this.types[slot] = INT_VALUE;
+			this.numbers[slot] = (Integer)value;
+			this.objects[slot] = null;
+		}
+		else {
+			this.types[slot] = OBJECT_VALUE;
+			this.objects[slot] = value;
+		}
+	}
+
+	/**
+	 * Makes sure the listener array has room for the given slot
+	 * @param slot The slot
+	 */
+	private void ensureListenerSlot(int slot) {
+		if (this.listeners == null) {
+			/* first listener for the whole node */
+			@SuppressWarnings("unchecked")
+			List<ModuleCommunicationListener>[] array =
+				(List<ModuleCommunicationListener>[])
+				new List<?>[Math.max(slot + 1, keys.size())];
+			this.listeners = array;
+		}
+		else if (slot >= this.listeners.length) {
+			this.listeners = Arrays.copyOf(this.listeners,
+					Math.max(slot + 1, keys.size()));
+		}
+	}
 
 	/**
 	 * Notifies all listeners that have subscribed to the given key
-	 * @param key The key which got new value
+	 * @param slot The slot of the key which got new value
 	 * @param newValue The new value for the key
 	 */
-	private void notifyListeners(String key, Object newValue) {
+	private void notifyListeners(int slot, Object newValue) {
 		List<ModuleCommunicationListener> list;
 
-		if (this.listeners == null) {
+		if (this.listeners == null || slot >= this.listeners.length) {
 			return;
 		}
-		list = this.listeners.get(key);
+		list = this.listeners[slot];
 
 		if (list == null) {
 			return;
 		}
 
+		String key = getKey(slot);
 		for (ModuleCommunicationListener mcl : list) {
 			mcl.moduleValueChanged(key, newValue);
 		}
 	}
 
+	/**
+	 * Returns the values of this bus in a map by key
+	 * @return the values or null if there are no values
+	 */
+	private HashMap<String, Object> getValueMap() {
+		if (this.types == null) {
+			return null;
+		}
+		HashMap<String, Object> values = new HashMap<String, Object>();
+		for (int i = 0; i < this.types.length; i++) {
+			if (this.types[i] != NO_VALUE) {
+				values.put(getKey(i), getProperty(i));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Writes the values and listeners by key, since the slots of the keys
+	 * can differ in the JVM that reads them.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(getValueMap());
+		HashMap<String, List<ModuleCommunicationListener>> lmap = null;
+		if (this.listeners != null) {
+			lmap = new HashMap<String, List<ModuleCommunicationListener>>();
+			for (int i = 0; i < this.listeners.length; i++) {
+				if (this.listeners[i] != null) {
+					lmap.put(getKey(i), this.listeners[i]);
+				}
+			}
+		}
+		out.writeObject(lmap);
+	}
+
+	/**
+	 * Reads the values and listeners and puts them to the slots of their
+	 * keys in this JVM.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		HashMap<String, Object> values = (HashMap<String, Object>)
+			in.readObject();
+		HashMap<String, List<ModuleCommunicationListener>> lmap =
+			(HashMap<String, List<ModuleCommunicationListener>>)
+			in.readObject();
+
+		if (values != null) {
+			for (Map.Entry<String, Object> e : values.entrySet()) {
+				store(getSlot(e.getKey()), e.getValue());
+			}
+		}
+		if (lmap != null) {
+			for (Map.Entry<String, List<ModuleCommunicationListener>> e :
+					lmap.entrySet()) {
+				int slot = getSlot(e.getKey());
+				ensureListenerSlot(slot);
+				this.listeners[slot] = e.getValue();
+			}
+		}
+	}
 
 	@Override
 	public String toString() {
-		return "ComBus with mapping: " + (this.values != null ?
-				this.values.toString() : "n/a");
+		HashMap<String, Object> values = getValueMap();
+		return "ComBus with mapping: " + (values != null ?
+				values.toString() : "n/a");
 	}
 }
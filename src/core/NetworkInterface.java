@@ -7,6 +7,7 @@ package core;
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -18,7 +19,9 @@ import util.ActivenessHandler;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener,
+		Serializable {
+	private static final long serialVersionUID = 1L;
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -45,6 +48,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "transmission speed"
     variable. Value type: integer */
 	public static final String SPEED_ID = "Network.speed";
+	/** Bus slot of {@link #SCAN_INTERVAL_ID} */
+	public static final int SCAN_INTERVAL_SLOT =
+		ModuleCommunicationBus.getSlot(SCAN_INTERVAL_ID);
+	/** Bus slot of {@link #RANGE_ID} */
+	public static final int RANGE_SLOT =
+		ModuleCommunicationBus.getSlot(RANGE_ID);
+	/** Bus slot of {@link #SPEED_ID} */
+	public static final int SPEED_SLOT =
+		ModuleCommunicationBus.getSlot(SPEED_ID);
 
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
@@ -54,7 +66,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	protected String interfacetype;
 	protected List<Connection> connections; // connected hosts
-	private List<ConnectionListener> cListeners = null; // list of listeners// List<ConnectionListener>볡е List<ConnectionListener>ͬһ
+	private transient List<ConnectionListener> cListeners = null; // list of listeners//该 List<ConnectionListener>与场景中的 List<ConnectionListener>是同一个
 	private int address; // network interface address
 	protected double transmitRange;
 	protected double oldTransmitRange;
@@ -70,9 +82,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private int activenessJitterMax;
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
+	/** simulation time when the activeness was computed (-1 if not yet) */
+	private double activenessTime = -1;
+	/** activeness of the interface at {@link #activenessTime} */
+	private boolean active;
+	/** simulation time when the scanning state was computed (-1 if not
+	 * yet) */
+	private double scanStateTime = -1;
+	/** scanning state of the interface at {@link #scanStateTime} */
+	private boolean scanning;
+	/** has the interface subscribed to the host's energy level */
+	private boolean energySubscribed;
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
+		Checkpoint.registerStaticState(NetworkInterface.class, "rng");
 		reset();
 	}
 
@@ -142,16 +166,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.host = host;
 		ModuleCommunicationBus comBus = host.getComBus();
 
-		if (!comBus.containsProperty(SCAN_INTERVAL_ID) &&
-		    !comBus.containsProperty(RANGE_ID)) {
+		if (!comBus.containsProperty(SCAN_INTERVAL_SLOT) &&
+		    !comBus.containsProperty(RANGE_SLOT)) {
 			/* add properties and subscriptions only for the 1st interface */
 			/* TODO: support for multiple interfaces */
-			comBus.addProperty(SCAN_INTERVAL_ID, this.scanInterval);
-			comBus.addProperty(RANGE_ID, this.transmitRange);
-			comBus.addProperty(SPEED_ID, this.transmitSpeed);
-			comBus.subscribe(SCAN_INTERVAL_ID, this);
-			comBus.subscribe(RANGE_ID, this);
-			comBus.subscribe(SPEED_ID, this);
+			comBus.addProperty(SCAN_INTERVAL_SLOT, this.scanInterval);
+			comBus.addProperty(RANGE_SLOT, this.transmitRange);
+			comBus.addProperty(SPEED_SLOT, this.transmitSpeed);
+			comBus.subscribe(SCAN_INTERVAL_SLOT, this);
+			comBus.subscribe(RANGE_SLOT, this);
+			comBus.subscribe(SPEED_SLOT, this);
 		}
 
 		if (transmitRange > 0) {
@@ -163,6 +187,22 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * Re-attaches the connection listeners to an interface that was restored
+	 * from a simulation checkpoint.
+	 * @param template Interface of a freshly created host whose listeners
+	 * are taken into use
+	 * @param keepConnections If false, all connections of this interface are
+	 * dropped without informing anyone (the interfaces connect again on
+	 * the next update)
+	 */
+	void restoreState(NetworkInterface template, boolean keepConnections) {
+		this.cListeners = template.cListeners;
+		if (!keepConnections) {
+			this.connections.clear();
+		}
+	}
+
 	/**
 	 * Sets group-based settings for the network interface
 	 * @param s The settings object using the right group namespace
@@ -225,39 +265,65 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	}
 
 	/**
-	 * Returns true if the interface is on at the moment (false if not)
+	 * Returns true if the interface is on at the moment (false if not).
+	 * The activeness is computed on the first call at each simulation time
+	 * (and again if the energy level of the host crosses zero); the other
+	 * calls only read the stored state. The radio range is zeroed (or
+	 * restored) on every call, as before.
 	 * @return true if the interface is on at the moment (false if not)
 	 */
 	public boolean isActive() {
-		boolean active;
-
 		if (ah == null) {
 			return true; /* no handler: always active */
 		}
+		if (this.activenessTime != SimClock.getTime() ||
+				(!this.energySubscribed && host.getComBus().containsProperty(
+						EnergyModel.ENERGY_VALUE_SLOT))) {
+			updateActiveness();
+		}
+
+		if (this.active == false && this.transmitRange > 0) {
+			/* not active -> make range 0 */
+			this.oldTransmitRange = this.transmitRange;
+			host.getComBus().setDouble(RANGE_SLOT, 0.0);
+		} else if (this.active == true && this.transmitRange == 0.0) {
+			/* active, but range == 0 -> restore range  */
+			host.getComBus().setDouble(RANGE_SLOT, this.oldTransmitRange);
+		}
+		return this.active;
+	}
+
+	/**
+	 * Computes the activeness of the interface for the current simulation
+	 * time from the activeness handler and the energy level
+	 */
+	private void updateActiveness() {
+		boolean active;
+
+		if (!this.energySubscribed && host.getComBus().containsProperty(
+				EnergyModel.ENERGY_VALUE_SLOT)) {
+			/* the host has an energy model: follow the energy level */
+			host.getComBus().subscribe(EnergyModel.ENERGY_VALUE_SLOT, this);
+			this.energySubscribed = true;
+		}
 
 		active = ah.isActive(this.activenessJitterValue);
 
-		if (active && host.getComBus().getDouble(EnergyModel.ENERGY_VALUE_ID,
-					1) <= 0) {
+		if (active && host.getComBus().getDouble(
+					EnergyModel.ENERGY_VALUE_SLOT, 1) <= 0) {
 			/* TODO: better way to check battery level */
 			/* no battery -> inactive */
 			active = false;
 		}
 
-		if (active == false && this.transmitRange > 0) {
-			/* not active -> make range 0 */
-			this.oldTransmitRange = this.transmitRange;
-			host.getComBus().updateProperty(RANGE_ID, 0.0);
-		} else if (active == true && this.transmitRange == 0.0) {
-			/* active, but range == 0 -> restore range  */
-			host.getComBus().updateProperty(RANGE_ID,
-					this.oldTransmitRange);
-		}
-		return active;
+		this.active = active;
+		this.activenessTime = SimClock.getTime();
 	}
 
 	/**
-	 * Checks if this interface is currently in the scanning mode
+	 * Checks if this interface is currently in the scanning mode. The
+	 * scanning state is computed on the first call at each simulation time
+	 * and the result is stored for the other calls at the same time.
 	 * @return True if the interface is scanning; false if not
 	 */
 	public boolean isScanning() {
@@ -267,6 +333,20 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			return false;
 		}
 
+		if (this.scanStateTime != simTime) {
+			this.scanning = computeScanning(simTime);
+			this.scanStateTime = simTime;
+		}
+		return this.scanning;
+	}
+
+	/**
+	 * Computes the scanning state and starts a new scan round if it's time
+	 * for one
+	 * @param simTime The current simulation time
+	 * @return True if the interface is scanning; false if not
+	 */
+	private boolean computeScanning(double simTime) {
 		if (scanInterval > 0.0) {
 			if (simTime < lastScanTime) {
 				return false; /* not time for the first scan */
@@ -423,7 +503,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 
 	/**
 	 * This method is called by the {@link ModuleCommunicationBus} when/if
-	 * someone changes the scanning interval, transmit speed, or range
+	 * someone changes the scanning interval, transmit speed, range, or
+	 * the energy level
 	 * @param key Identifier of the changed value
 	 * @param newValue New value for the variable
 	 */
@@ -437,6 +518,17 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;
 		}
+		else if (key.equals(EnergyModel.ENERGY_VALUE_ID)) {
+			double energy = (Double)newValue;
+			/* the energy level only affects the activeness when it crosses
+			 * zero: an active interface ran out of energy or an inactive
+			 * one got energy back (the handler may still keep it inactive) */
+			boolean ranOut = this.active && energy <= 0;
+			boolean restored = !this.active && energy > 0;
+			if (ranOut || restored) {
+				this.activenessTime = -1; /* recompute on next isActive() */
+			}
+		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
 		}
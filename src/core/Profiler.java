@@ -0,0 +1,290 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import report.StreamingStats;
+
+/**
+ * Measures where the time of {@link World#update()} goes. The time of each
+ * phase of the update (events, movement, connectivity, routing and
+ * reports) is added to the {@link SimMetrics} (if metrics are collected)
+ * on every update. Every {@link #getSampleInterval()}th update is also
+ * profiled: the time of each phase and of each movement model, network
+ * interface, router and update listener class is summed up per update and
+ * the per update times are collected to statistics, so that both the
+ * totals and the spread of the times can be reported (see
+ * {@link report.ProfileReport}).
+ * <P>
+ * The timing is done with <CODE>System.nanoTime()</CODE> around each
+ * host's move, interface update and router update, so message listeners
+ * called by a router are counted to the router and the measured times
+ * include some overhead of the timing itself.
+ * </P>
+ */
+public class Profiler {
+	/** Kind of the entries of update phases */
+	public static final int KIND_PHASE = 0;
+	/** Kind of the entries of movement model classes */
+	public static final int KIND_MOVEMENT = 1;
+	/** Kind of the entries of network interface classes */
+	public static final int KIND_INTERFACE = 2;
+	/** Kind of the entries of router classes */
+	public static final int KIND_ROUTER = 3;
+	/** Kind of the entries of update listener (report) classes */
+	public static final int KIND_LISTENER = 4;
+	private static final String[] KINDS = {"phase", "movement", "interface",
+		"router", "listener"};
+	/** Number of update phases */
+	private static final int NROF_PHASES = 5;
+
+	private SimMetrics metrics;
+	private int sampleInterval;
+	private long nrofUpdates;
+	private long nrofProfiled;
+	/** is the current update profiled */
+	private boolean profiling;
+
+	private Entry[] phases;
+	/** entries of classes, one map per kind */
+	private List<Map<Class<?>, Entry>> classes;
+	/** all entries in the order of creation */
+	private List<Entry> entries;
+
+	/**
+	 * Creates a profiler that doesn't profile any updates or collect
+	 * metrics until enabled with {@link #setSampleInterval(int)} or
+	 * {@link #setMetrics(SimMetrics)}
+	 */
+	Profiler() {
+		this.entries = new ArrayList<Entry>();
+		this.phases = new Entry[NROF_PHASES];
+		for (int i = 0; i < NROF_PHASES; i++) {
+			phases[i] = newEntry(KIND_PHASE, SimMetrics.getPhaseName(i));
+		}
+		this.classes = new ArrayList<Map<Class<?>, Entry>>();
+		for (int i = 0; i < KINDS.length; i++) {
+			classes.add(new IdentityHashMap<Class<?>, Entry>());
+		}
+	}
+
+	/**
+	 * Sets the metrics where the phase times are added
+	 * @param metrics The metrics or null if phase times are not collected
+	 */
+	void setMetrics(SimMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets how often the updates are profiled
+	 * @param sampleInterval Every sampleInterval'th update is profiled
+	 * (0 = none)
+	 */
+	void setSampleInterval(int sampleInterval) {
+		if (sampleInterval < 0) {
+			throw new SimError("Invalid profiling interval " + sampleInterval);
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Starts a new update
+	 * @return true if the update should be timed
+	 */
+	boolean startUpdate() {
+		nrofUpdates++;
+		profiling = sampleInterval > 0 &&
+			(nrofUpdates - 1) % sampleInterval == 0;
+		return profiling || metrics != null;
+	}
+
+	/**
+	 * Ends an update. If the update was profiled, the per update times are
+	 * added to the statistics of all entries.
+	 */
+	void endUpdate() {
+		if (!profiling) {
+			return;
+		}
+		for (Entry e : entries) {
+			e.endUpdate();
+		}
+		nrofProfiled++;
+		profiling = false;
+	}
+
+	/**
+	 * Adds the time since start to an update phase
+	 * @param phase Index of the phase (e.g., {@link SimMetrics#PHASE_EVENTS})
+	 * @param start Start time of the phase (nano time)
+	 * @return the current nano time
+	 */
+	long phaseDone(int phase, long start) {
+		long now = System.nanoTime();
+		if (metrics != null) {
+			metrics.addTime(phase, now - start);
+		}
+		if (profiling) {
+			phases[phase].add(now - start);
+		}
+		return now;
+	}
+
+	/**
+	 * Adds the time since start to an update phase and to the entry of
+	 * the class of the object that was updated
+	 * @param phase Index of the phase (e.g., {@link SimMetrics#PHASE_ROUTING})
+	 * @param kind Kind of the object (e.g., {@link #KIND_ROUTER})
+	 * @param updated The object that was updated
+	 * @param start Start time of the update (nano time)
+	 * @return the current nano time
+	 */
+	long updateDone(int phase, int kind, Object updated, long start) {
+		long now = phaseDone(phase, start);
+		if (profiling) {
+			Map<Class<?>, Entry> map = classes.get(kind);
+			Entry e = map.get(updated.getClass());
+			if (e == null) {
+				e = newEntry(kind, updated.getClass().getSimpleName());
+				map.put(updated.getClass(), e);
+			}
+			e.add(now - start);
+		}
+		return now;
+	}
+
+	/**
+	 * Returns true if the current update is profiled
+	 * @return true if the current update is profiled
+	 */
+	boolean isProfiling() {
+		return this.profiling;
+	}
+
+	/**
+	 * Returns how often the updates are profiled
+	 * @return every how manieth update is profiled (0 = none)
+	 */
+	public int getSampleInterval() {
+		return this.sampleInterval;
+	}
+
+	/**
+	 * Returns the number of updates since the profiler was created
+	 * @return the number of updates
+	 */
+	public long getNrofUpdates() {
+		return this.nrofUpdates;
+	}
+
+	/**
+	 * Returns the number of profiled updates
+	 * @return the number of profiled updates
+	 */
+	public long getNrofProfiledUpdates() {
+		return this.nrofProfiled;
+	}
+
+	/**
+	 * Returns the entries of phases and classes. The phases are first.
+	 * @return the entries
+	 */
+	public List<Entry> getEntries() {
+		return this.entries;
+	}
+
+	/**
+	 * Creates and adds an entry
+	 * @param kind Kind of the entry
+	 * @param name Name of the entry
+	 * @return the new entry
+	 */
+	private Entry newEntry(int kind, String name) {
+		Entry e = new Entry(KINDS[kind], name);
+		/* updates profiled before the entry existed took no time */
+		for (long i = 0; i < nrofProfiled; i++) {
+			e.endUpdate();
+		}
+		entries.add(e);
+		return e;
+	}
+
+	/**
+	 * Times of a phase or a class in the profiled updates
+	 */
+	public static class Entry {
+		private String kind;
+		private String name;
+		private long total;
+		private long calls;
+		/** time in the current update */
+		private long current;
+		/** time per profiled update (microseconds) */
+		private StreamingStats perUpdate;
+
+		private Entry(String kind, String name) {
+			this.kind = kind;
+			this.name = name;
+			this.perUpdate = new StreamingStats();
+		}
+
+		private void add(long nanos) {
+			current += nanos;
+			total += nanos;
+			calls++;
+		}
+
+		private void endUpdate() {
+			perUpdate.add(current / 1000.0);
+			current = 0;
+		}
+
+		/**
+		 * Returns the kind of the entry ("phase", "movement", "interface",
+		 * "router" or "listener")
+		 * @return the kind of the entry
+		 */
+		public String getKind() {
+			return this.kind;
+		}
+
+		/**
+		 * Returns the name of the phase or the simple name of the class
+		 * @return the name of the entry
+		 */
+		public String getName() {
+			return this.name;
+		}
+
+		/**
+		 * Returns the total time in the profiled updates
+		 * @return the total time (seconds)
+		 */
+		public double getTotalTime() {
+			return total / 1e9;
+		}
+
+		/**
+		 * Returns the number of timed calls in the profiled updates
+		 * @return the number of calls
+		 */
+		public long getNrofCalls() {
+			return this.calls;
+		}
+
+		/**
+		 * Returns the statistics of the time per profiled update
+		 * @return the statistics (microseconds)
+		 */
+		public StreamingStats getTimePerUpdate() {
+			return this.perUpdate;
+		}
+	}
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process counters and timers of the simulation for watching long (batch)
+ * runs from outside. The counters count processed events, contacts,
+ * message transfers and drops; the timers sum up the wall clock time spent
+ * in each phase of {@link World#update()}. The metrics are exposed as the
+ * JMX MBean {@value #OBJECT_NAME} and, if {@link #HTTP_PORT_S} is set, in
+ * the Prometheus text format at <CODE>http://localhost:port/metrics</CODE>
+ * until {@link #stop()} is called.
+ * <P>
+ * There is one instance per JVM: the counters and timers accumulate over
+ * all runs of a batch and the <CODE>run_index</CODE> gauge tells which run
+ * is going on. The values are updated only by the simulation thread and
+ * can be read from any thread.
+ * </P>
+ */
+public class SimMetrics implements MessageListener, ConnectionListener,
+		DynamicMBean {
+	/** Metrics settings namespace ({@value}) */
+	public static final String METRICS_NS = "Metrics";
+	/** Are metrics collected -setting id ({@value}). Boolean.
+	 * Default = false. */
+	public static final String ENABLED_S = "enabled";
+	/** Port of the local HTTP endpoint -setting id ({@value}). Integer.
+	 * If not set, the metrics are available only through JMX. */
+	public static final String HTTP_PORT_S = "httpPort";
+	/** Name of the JMX MBean ({@value}) */
+	public static final String OBJECT_NAME = "ONE:type=SimMetrics";
+
+	/** Counter of processed external events */
+	public static final int EVENTS = 0;
+	/** Counter of world updates */
+	public static final int UPDATES = 1;
+	/** Counter of connections that went up */
+	public static final int CONTACTS_UP = 2;
+	/** Counter of connections that went down */
+	public static final int CONTACTS_DOWN = 3;
+	/** Counter of started message transfers */
+	public static final int TRANSFERS_STARTED = 4;
+	/** Counter of aborted message transfers */
+	public static final int TRANSFERS_ABORTED = 5;
+	/** Counter of completed message transfers */
+	public static final int TRANSFERS_COMPLETED = 6;
+	/** Counter of created messages */
+	public static final int MESSAGES_CREATED = 7;
+	/** Counter of first deliveries of messages */
+	public static final int MESSAGES_DELIVERED = 8;
+	/** Counter of messages dropped from buffers */
+	public static final int MESSAGES_DROPPED = 9;
+	private static final String[] COUNTERS = {"events_processed",
+		"updates", "contacts_up", "contacts_down", "transfers_started",
+		"transfers_aborted", "transfers_completed", "messages_created",
+		"messages_delivered", "messages_dropped"};
+
+	/** Timer of processing external events */
+	public static final int PHASE_EVENTS = 0;
+	/** Timer of moving the hosts */
+	public static final int PHASE_MOVEMENT = 1;
+	/** Timer of updating the network interfaces (connectivity) */
+	public static final int PHASE_CONNECTIVITY = 2;
+	/** Timer of updating the routers (including the message listeners
+	 * they call) */
+	public static final int PHASE_ROUTING = 3;
+	/** Timer of calling the update listeners (reports) */
+	public static final int PHASE_REPORTS = 4;
+	private static final String[] PHASES = {"events", "movement",
+		"connectivity", "routing", "reports"};
+
+	/** Gauge index of the current simulation time (double bits) */
+	private static final int SIM_TIME = 0;
+	/** Gauge index of the current batch run index */
+	private static final int RUN_INDEX = 1;
+
+	private static SimMetrics instance = null;
+
+	/** counter values */
+	private final AtomicLongArray counters;
+	/** timer values (nanoseconds) */
+	private final AtomicLongArray timers;
+	private final AtomicLongArray gauges;
+	private final long startTime;
+	private final MBeanInfo info;
+	private HttpServer server;
+
+	/**
+	 * Creates the metrics. Use {@link #start()} to get the instance.
+	 */
+	private SimMetrics() {
+		this.counters = new AtomicLongArray(COUNTERS.length);
+		this.timers = new AtomicLongArray(PHASES.length);
+		this.gauges = new AtomicLongArray(2);
+		this.startTime = System.nanoTime();
+
+		String[] names = getAttributeNames();
+		MBeanAttributeInfo[] attrs = new MBeanAttributeInfo[names.length];
+		for (int i = 0; i < names.length; i++) {
+			String type = (i < COUNTERS.length || names[i].equals(
+					"run_index") ? Long.class : Double.class).getName();
+			attrs[i] = new MBeanAttributeInfo(names[i], type, names[i],
+					true, false, false);
+		}
+		this.info = new MBeanInfo(getClass().getName(),
+				"ONE simulation metrics", attrs, null, null, null);
+	}
+
+	/**
+	 * Starts collecting metrics for a new run if metrics are enabled in the
+	 * settings. The instance (and its MBean and HTTP endpoint) is created
+	 * on the first call; later calls reuse it.
+	 * @return the metrics or null if metrics are not enabled
+	 * @throws SimError if the MBean or the HTTP endpoint can't be set up
+	 */
+	public static SimMetrics start() {
+		Settings s = new Settings(METRICS_NS);
+		if (!s.getBoolean(ENABLED_S, false)) {
+			return null;
+		}
+
+		if (instance == null) {
+			instance = new SimMetrics();
+			instance.register();
+			if (s.contains(HTTP_PORT_S)) {
+				instance.startServer(s.getInt(HTTP_PORT_S));
+			}
+		}
+		instance.gauges.lazySet(RUN_INDEX, Settings.getRunIndex());
+		return instance;
+	}
+
+	/**
+	 * Stops the HTTP endpoint and unregisters the MBean (if metrics were
+	 * started). Must be called when all runs are done: the endpoint keeps
+	 * the JVM running.
+	 */
+	public static void stop() {
+		if (instance == null) {
+			return;
+		}
+		if (instance.server != null) {
+			instance.server.stop(0);
+		}
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			throw new SimError("Couldn't unregister metrics MBean: " +
+					e.getMessage(), e);
+		}
+		instance = null;
+	}
+
+	/**
+	 * Adds one to a counter
+	 * @param counter Index of the counter (e.g., {@link #EVENTS})
+	 */
+	public void count(int counter) {
+		/* single writer: no atomic read-modify-write needed */
+		counters.lazySet(counter, counters.get(counter) + 1);
+	}
+
+	/**
+	 * Adds time to a phase timer
+	 * @param phase Index of the phase (e.g., {@link #PHASE_MOVEMENT})
+	 * @param nanos Time to add (nanoseconds)
+	 */
+	public void addTime(int phase, long nanos) {
+		timers.lazySet(phase, timers.get(phase) + nanos);
+	}
+
+	/**
+	 * Sets the current simulation time
+	 * @param simTime The simulation time
+	 */
+	public void setSimTime(double simTime) {
+		gauges.lazySet(SIM_TIME, Double.doubleToRawLongBits(simTime));
+	}
+
+	/**
+	 * Returns the value of a counter
+	 * @param counter Index of the counter
+	 * @return the value of the counter
+	 */
+	public long getCount(int counter) {
+		return counters.get(counter);
+	}
+
+	/**
+	 * Returns the time spent in a phase
+	 * @param phase Index of the phase
+	 * @return the time (seconds)
+	 */
+	public double getTime(int phase) {
+		return timers.get(phase) / 1e9;
+	}
+
+	/**
+	 * Returns the name of an update phase
+	 * @param phase Index of the phase (e.g., {@link #PHASE_MOVEMENT})
+	 * @return the name of the phase
+	 */
+	public static String getPhaseName(int phase) {
+		return PHASES[phase];
+	}
+
+	/**
+	 * Writes the metrics in the Prometheus text exposition format
+	 * @return the metrics as text
+	 */
+	public String toPrometheusText() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < COUNTERS.length; i++) {
+			String name = "one_" + COUNTERS[i] + "_total";
+			sb.append("# TYPE ").append(name).append(" counter\n");
+			sb.append(name).append(' ').append(counters.get(i)).append('\n');
+		}
+		sb.append("# TYPE one_phase_seconds_total counter\n");
+		for (int i = 0; i < PHASES.length; i++) {
+			sb.append("one_phase_seconds_total{phase=\"").append(PHASES[i]);
+			sb.append("\"} ").append(getTime(i)).append('\n');
+		}
+		String[] names = getAttributeNames();
+		for (int i = COUNTERS.length + PHASES.length; i < names.length; i++) {
+			String name = "one_" + names[i];
+			sb.append("# TYPE ").append(name).append(" gauge\n");
+			sb.append(name).append(' ').append(getGauge(names[i]));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the names of all metrics (the JMX attribute names)
+	 * @return the names
+	 */
+	private static String[] getAttributeNames() {
+		String[] gaugeNames = {"sim_time_seconds", "run_index",
+				"wall_time_seconds", "heap_used_bytes", "heap_max_bytes"};
+		String[] names = new String[COUNTERS.length + PHASES.length +
+		                            gaugeNames.length];
+		int n = 0;
+		for (String c : COUNTERS) {
+			names[n++] = c;
+		}
+		for (String p : PHASES) {
+			names[n++] = "phase_" + p + "_seconds";
+		}
+		for (String g : gaugeNames) {
+			names[n++] = g;
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the value of a gauge
+	 * @param name Name of the gauge
+	 * @return the value or null if there's no such gauge
+	 */
+	private Number getGauge(String name) {
+		MemoryUsage heap = null;
+		if (name.startsWith("heap_")) {
+			heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		}
+
+		if (name.equals("sim_time_seconds")) {
+			return Double.longBitsToDouble(gauges.get(SIM_TIME));
+		} else if (name.equals("run_index")) {
+			return gauges.get(RUN_INDEX);
+		} else if (name.equals("wall_time_seconds")) {
+			return (System.nanoTime() - startTime) / 1e9;
+		} else if (name.equals("heap_used_bytes")) {
+			return (double)heap.getUsed();
+		} else if (name.equals("heap_max_bytes")) {
+			return (double)heap.getMax();
+		}
+		return null;
+	}
+
+	/**
+	 * Registers the MBean to the platform MBean server
+	 */
+	private void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName(OBJECT_NAME));
+		} catch (JMException e) {
+			throw new SimError("Couldn't register metrics MBean: " +
+					e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Starts the HTTP endpoint on the loopback interface
+	 * @param port The port to listen to
+	 */
+	private void startServer(int port) {
+		try {
+			server = HttpServer.create(new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			throw new SimError("Couldn't start metrics endpoint on port " +
+					port + ": " + e.getMessage(), e);
+		}
+		server.createContext("/metrics", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = toPrometheusText().getBytes("UTF-8");
+				exchange.getResponseHeaders().set("Content-Type",
+						"text/plain; version=0.0.4; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream os = exchange.getResponseBody();
+				os.write(body);
+				os.close();
+			}
+		});
+		server.setExecutor(Executors.newSingleThreadExecutor(
+				new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "metrics-http");
+				t.setDaemon(true);
+				return t;
+			}
+		}));
+		server.start();
+	}
+
+	// MessageListener and ConnectionListener methods
+
+	public void newMessage(Message m) {
+		count(MESSAGES_CREATED);
+	}
+
+	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
+		count(TRANSFERS_STARTED);
+	}
+
+	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
+		if (dropped) {
+			count(MESSAGES_DROPPED);
+		}
+	}
+
+	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
+		count(TRANSFERS_ABORTED);
+	}
+
+	public void messageTransferred(Message m, DTNHost from, DTNHost to,
+			boolean firstDelivery) {
+		count(TRANSFERS_COMPLETED);
+		if (firstDelivery) {
+			count(MESSAGES_DELIVERED);
+		}
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		count(CONTACTS_UP);
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		count(CONTACTS_DOWN);
+	}
+
+	// DynamicMBean methods
+
+	public Object getAttribute(String attribute)
+			throws AttributeNotFoundException {
+		for (int i = 0; i < COUNTERS.length; i++) {
+			if (COUNTERS[i].equals(attribute)) {
+				return counters.get(i);
+			}
+		}
+		for (int i = 0; i < PHASES.length; i++) {
+			if (attribute.equals("phase_" + PHASES[i] + "_seconds")) {
+				return getTime(i);
+			}
+		}
+		Number value = getGauge(attribute);
+		if (value == null) {
+			throw new AttributeNotFoundException(attribute);
+		}
+		return value;
+	}
+
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		for (String name : attributes) {
+			try {
+				list.add(new Attribute(name, getAttribute(name)));
+			} catch (AttributeNotFoundException e) {
+				/* unknown attributes are left out of the list */
+			}
+		}
+		return list;
+	}
+
+	public MBeanInfo getMBeanInfo() {
+		return this.info;
+	}
+
+	public Object invoke(String actionName, Object[] params,
+			String[] signature) throws ReflectionException {
+		/* no operations */
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	public void setAttribute(Attribute attribute)
+			throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metrics are read-only: " +
+				attribute.getName());
+	}
+
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+}
@@ -9,12 +9,28 @@ import routing.MessageRouter;
 /**
  * A connection between two DTN nodes.  The transmission speed
  * is updated every round from the end point transmission speeds
+ * while a message is being transferred. The speed of an idle connection
+ * is not tracked but computed when it is asked for.
+ * <P>
+ * When the speed changes, the time when the current transfer completes
+ * at the new speed is computed. If that time is before the next update
+ * round, an update is scheduled for it with {@link World#scheduleUpdate},
+ * so transfers complete at the exact time instead of at the first update
+ * round after it.
+ * </P>
  */
 public class VBRConnection extends Connection {
+	private static final long serialVersionUID = 1L;
 	private int msgsize;
-	private int msgsent;
+	/** bytes of the current message sent so far (long so that the sum
+	 * doesn't overflow with large messages or fast links) */
+	private long msgsent;
 	private int currentspeed = 0;
 	private double lastUpdate = 0;
+	/** time when the current transfer completes at the current speed */
+	private double completionTime = Double.MAX_VALUE;
+	/** has an update been scheduled for the completion time */
+	private boolean completionScheduled;
 
 
 	/**
@@ -56,6 +72,9 @@ public class VBRConnection extends Connection {
 			this.msgOnFly = newMessage;
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
+			this.lastUpdate = SimClock.getTime();
+			this.currentspeed = 0;
+			updateSpeed();
 		}
 
 		return retVal;
@@ -64,26 +83,68 @@ public class VBRConnection extends Connection {
 	/**
 	 * Calculate the current transmission speed from the information
 	 * given by the interfaces, and calculate the missing data amount.
-	 *
+	 * The speed is calculated only once per simulation time instance
+	 * (both ends of the connection update it) and only if a message is
+	 * being transferred, since the sent amount is reset when a transfer
+	 * starts. The data sent since the previous update is calculated with
+	 * the speed of the previous update.
 	 */
 	public void update() {
-		currentspeed =  this.fromInterface.getTransmitSpeed(toInterface);
-		int othspeed =  this.toInterface.getTransmitSpeed(fromInterface);
-		double now = core.SimClock.getTime();
+		double now = SimClock.getTime();
+		if (now == this.lastUpdate) {
+			return; /* already updated (by the other end) */
+		}
+		if (this.msgOnFly == null) {
+			this.lastUpdate = now;
+			return;
+		}
 
-		if (othspeed < currentspeed) {
-			currentspeed = othspeed;
+		if (now >= this.completionTime) {
+			/* don't let rounding errors of the sum delay the completion */
+			msgsent = msgsize;
+		} else {
+			msgsent += currentspeed * (now - this.lastUpdate);
 		}
+		this.lastUpdate = now;
 
+		if (msgsent < msgsize) {
+			updateSpeed();
+		}
+	}
 
-		msgsent += currentspeed * (now - this.lastUpdate);
-		this.lastUpdate = now;
+	/**
+	 * Updates the current speed from the end point transmission speeds and,
+	 * if it changed, the completion time of the current transfer. Schedules
+	 * an update for the completion time if it is before the next update round.
+	 */
+	private void updateSpeed() {
+		int speed = Math.min(fromInterface.getTransmitSpeed(toInterface),
+				toInterface.getTransmitSpeed(fromInterface));
+
+		if (speed != currentspeed) {
+			currentspeed = speed;
+			completionTime = (speed > 0 ?
+					lastUpdate + (double)(msgsize - msgsent) / speed :
+					Double.MAX_VALUE);
+			completionScheduled = false;
+		}
+
+		SimScenario scen = SimScenario.getInstance();
+		if (!completionScheduled &&
+				completionTime < lastUpdate + scen.getUpdateInterval()) {
+			scen.getWorld().scheduleUpdate(completionTime);
+			completionScheduled = true;
+		}
 	}
 
 	/**
 	 * returns the current speed of the connection
 	 */
 	public double getSpeed() {
+		if (this.msgOnFly == null) {
+			return Math.min(fromInterface.getTransmitSpeed(toInterface),
+					toInterface.getTransmitSpeed(fromInterface));
+		}
 		return this.currentspeed;
 	}
 
@@ -94,8 +155,8 @@ public class VBRConnection extends Connection {
      * @return the amount of bytes to be transferred
      */
     public int getRemainingByteCount() {
-	int bytesLeft = msgsize - msgsent;
-	return (bytesLeft > 0 ? bytesLeft : 0);
+	long bytesLeft = msgsize - msgsent;
+	return (bytesLeft > 0 ? (int)bytesLeft : 0);
     }
 
 	/**
@@ -5,9 +5,15 @@
 package core;
 
 import input.EventQueue;
+import input.EventQueueMerger;
+import input.ContactTrace;
+import input.ContactTraceQueue;
 import input.ExternalEvent;
 import input.ScheduledUpdatesQueue;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,35 +35,55 @@ public class World {
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
-	//ڵĸ˳ǷģĬΪtrue
+	//节点的更新顺序是否是随机的，默认为true
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
 
 	/**
 	 * Should the connectivity simulation be stopped after one round
 	 * -setting id ({@value}). Boolean (true/false) variable.
 	 */
-	//ģһ֮Ƿֹͣ
+	//模拟在一轮之后是否停止
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
-	//ʾĴС
+	//表示世界的大小
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;//¼б
-	private double updateInterval;//¼
-	private SimClock simClock;//ʱ
-	private double nextQueueEventTime;//һ¼дʱ
-	private EventQueue nextEventQueue;//һ¼
+	private List<EventQueue> eventQueues;//事件队列列表
+	private double updateInterval;//更新间隔
+	private SimClock simClock;//仿真时钟
+	private double nextQueueEventTime;//下一次事件队列触发时间
+	/** merges the event queues by their next event time */
+	private EventQueueMerger eventMerger;
 	/** list of nodes; nodes are indexed by their network address */
-	private List<DTNHost> hosts;//ڵбַ
+	private List<DTNHost> hosts;//节点列表，排序根据其网络地址
 	private boolean simulateConnections;
 	/** nodes in the order they should be updated (if the order should be
 	 * randomized; null value means that the order should not be randomized) */
-	private ArrayList<DTNHost> updateOrder;//ڵбе˳򱻸
+	private ArrayList<DTNHost> updateOrder;//节点以这个列表中的顺序被更新
 	/** is cancellation of simulation requested from UI */
-	private boolean isCancelled;//ǷUI汻ֹ
-	private List<UpdateListener> updateListeners;//UpdateListener洢б
+	private boolean isCancelled;//仿真是否在UI界面被终止
+	private List<UpdateListener> updateListeners;//UpdateListener存储列表
 	/** Queue of scheduled update requests */
-	private ScheduledUpdatesQueue scheduledUpdates;//ƻбEventQueueӿڵһʵ֣ķʱ䴥һ¼
+	private ScheduledUpdatesQueue scheduledUpdates;//：计划更新需求列表，该类是EventQueue接口的一个实现，可以满足在特殊的仿真时间触发一个更新事件。
 	private boolean simulateConOnce;
+	/** should the hosts be moved */
+	private boolean simulateMovement;
+	/** event driven contact replay engine (null if not replaying) */
+	private ContactReplay replay;
+	/** contacts replayed inside the update rounds (null if not replaying
+	 * or if the event driven engine replays them) */
+	private ContactTrace replayTrace;
+	/** index of the next contact of {@link #replayTrace} */
+	private int nextContact;
+	/** simulation time of the latest update round of the hosts */
+	private double roundTime = Double.NaN;
+	/** number of update rounds done at {@link #roundTime} */
+	private int roundsDone;
+	/** where the events and updates are counted (null if not counted) */
+	private SimMetrics metrics;
+	/** measures the update phases (null if nothing is measured) */
+	private Profiler profiler;
+	/** the profiler if the current update is timed, otherwise null */
+	private Profiler timing;
 
 	/**
 	 * Constructor.
@@ -75,7 +101,9 @@ public class World {
 
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
+		this.eventMerger = new EventQueueMerger();
 		this.isCancelled = false;
+		this.simulateMovement = true;
 
 		setNextEventQueue();
 		initSettings();
@@ -112,6 +140,10 @@ public class World {
 		if (time <= 0) {
 			return;
 		}
+		if (!simulateMovement) {
+			simClock.setTime(0);
+			return;
+		}
 
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
@@ -126,22 +158,13 @@ public class World {
 
 	/**
 	 * Goes through all event Queues and sets the
-	 * event queue that has the next event.
+	 * event queue that has the next event. Done at the start of every
+	 * update so that any changes in the queues are noticed; between the
+	 * events of an update, only the queues that changed are re-read.
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.eventMerger.setQueues(scheduledUpdates, eventQueues);
+		this.nextQueueEventTime = eventMerger.getNextTime();
 	}
 
 	/**
@@ -150,6 +173,14 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		this.timing = (profiler != null && profiler.startUpdate() ?
+				profiler : null);
+
+		if (this.replay != null) {
+			updateReplay();
+			return;
+		}
+
 		double runUntil = SimClock.getTime() + this.updateInterval;
 
 		setNextEventQueue();
@@ -157,10 +188,9 @@ public class World {
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
+			processNextEvent();
 			updateHosts(); // update all hosts after every event
-			setNextEventQueue();
+			this.nextQueueEventTime = eventMerger.getNextTime();
 		}
 
 		moveHosts(this.updateInterval);
@@ -168,9 +198,78 @@ public class World {
 
 		updateHosts();
 
-		/* inform all update listeners */
+		updateListeners();
+	}
+
+	/**
+	 * Update of the event driven contact replay. Works like
+	 * {@link #update()} but skips the update intervals during which nothing
+	 * happens, doesn't move the hosts and lets the replay engine choose
+	 * which hosts are updated.
+	 */
+	private void updateReplay() {
+		double runUntil = SimClock.getTime() + this.updateInterval;
+
+		setNextEventQueue();
+
+		if (!replay.hasActiveHosts()) {
+			/* advance in steps of update interval to keep the same
+			 * update times as without skipping */
+			double wakeup = replay.getWakeupTime(this.nextQueueEventTime);
+			while (runUntil < wakeup) {
+				runUntil += this.updateInterval;
+			}
+		}
+
+		while (this.nextQueueEventTime <= runUntil) {
+			simClock.setTime(this.nextQueueEventTime);
+			processNextEvent();
+			replay.updateHosts(false, timing);
+			this.nextQueueEventTime = eventMerger.getNextTime();
+		}
+
+		simClock.setTime(runUntil);
+		replay.updateHosts(true, timing);
+
+		updateListeners();
+	}
+
+	/**
+	 * Processes the next external event of the next event queue
+	 */
+	private void processNextEvent() {
+		long start = (timing != null ? System.nanoTime() : 0);
+		int queue = eventMerger.getNextIndex();
+		ExternalEvent ee = eventMerger.getNextQueue().nextEvent();
+		eventMerger.update(queue);
+		ee.processEvent(this);
+		if (timing != null) {
+			timing.phaseDone(SimMetrics.PHASE_EVENTS, start);
+		}
+		if (metrics != null) {
+			metrics.count(SimMetrics.EVENTS);
+		}
+	}
+
+	/**
+	 * Informs all update listeners about the end of an update
+	 */
+	private void updateListeners() {
+		long start = (timing != null ? System.nanoTime() : 0);
 		for (UpdateListener ul : this.updateListeners) {
 			ul.updated(this.hosts);
+			if (timing != null) {
+				start = timing.updateDone(SimMetrics.PHASE_REPORTS,
+						Profiler.KIND_LISTENER, ul, start);
+			}
+		}
+
+		if (metrics != null) {
+			metrics.count(SimMetrics.UPDATES);
+			metrics.setSimTime(SimClock.getTime());
+		}
+		if (profiler != null) {
+			profiler.endUpdate();
 		}
 	}
 
@@ -180,12 +279,17 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		int round = getUpdateRound();
+		if (this.replayTrace != null) {
+			replayContacts(round - 1, -1); /* left from the earlier rounds */
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
 					break;
 				}
-				hosts.get(i).update(simulateConnections);
+				updateHost(hosts.get(i), round);
 			}
 		}
 		else { // update order randomizing is on
@@ -197,24 +301,154 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}
-				this.updateOrder.get(i).update(simulateConnections);
+				updateHost(this.updateOrder.get(i), round);
 			}
 		}
 
+		if (this.replayTrace != null) {
+			replayContacts(round, -1);
+		}
+		this.roundTime = SimClock.getTime();
+		this.roundsDone = round + 1;
+
 		if (simulateConOnce && simulateConnections) {
 			simulateConnections = false;
 		}
 	}
 
+	/**
+	 * Updates a host. When contacts are replayed, the contacts the host
+	 * made in its update of the recorded run are made first, so the host's
+	 * router sees them like it did in the recorded run.
+	 * @param host The host to update
+	 * @param round Index of the update round at the current time
+	 */
+	private void updateHost(DTNHost host, int round) {
+		if (this.replayTrace != null) {
+			replayContacts(round, host.getAddress());
+		}
+		host.update(simulateConnections, timing);
+	}
+
+	/**
+	 * Returns the index of the update round of the hosts at the current
+	 * simulation time: 0 for the first round at this time, 1 for the
+	 * second one etc. Between the rounds, the index of the next round is
+	 * returned. Several rounds are done at the same time if external
+	 * events are due at that time.
+	 * @return The index of the update round
+	 */
+	int getUpdateRound() {
+		return (SimClock.getTime() == this.roundTime ? this.roundsDone : 0);
+	}
+
+	/**
+	 * Replays the recorded contacts that are due: all contacts of the
+	 * earlier times and of the earlier update rounds at the current time
+	 * and, of the given round, the contacts that the given host made
+	 * before the next host's contacts in the recorded order (or all of
+	 * the round's contacts if the address is negative).
+	 * @param round Index of the update round at the current time
+	 * @param address Address of the host that is updated next, or -1 for
+	 * all hosts
+	 */
+	private void replayContacts(int round, int address) {
+		double now = SimClock.getTime();
+		for (int n = replayTrace.size(); nextContact < n; nextContact++) {
+			int i = nextContact;
+			double time = replayTrace.getTime(i);
+			if (time > now) {
+				break;
+			}
+			if (time == now) {
+				int r = replayTrace.getRound(i);
+				if (r > round || (r == round && address >= 0 &&
+						replayTrace.getHost1(i) != address)) {
+					break;
+				}
+			}
+			getNodeByAddress(replayTrace.getHost1(i)).forceConnection(
+					getNodeByAddress(replayTrace.getHost2(i)), null,
+					replayTrace.isUp(i));
+		}
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (!simulateMovement) {
+			return;
+		}
+		long start = (timing != null ? System.nanoTime() : 0);
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);
+			if (timing != null) {
+				start = timing.updateDone(SimMetrics.PHASE_MOVEMENT,
+						Profiler.KIND_MOVEMENT, host.getMovement(), start);
+			}
+		}
+	}
+
+	/**
+	 * Switches the world to the contact replay: the hosts are not moved and
+	 * the connections come from the trace. If the replay has a full update
+	 * interval (see {@link ContactReplay#getFullUpdateInterval()}), the
+	 * contacts are replayed as external events and only the hosts chosen by
+	 * the event driven replay engine are updated. Otherwise all hosts are
+	 * updated as usual and each contact is made in the same update round
+	 * and just before the update of the same host as in the recorded run
+	 * (see {@link #getUpdateRound()}). Connectivity must not be simulated.
+	 * @param trace The contacts to replay
+	 * @param endTime End time of the simulation
+	 * @return The replay engine that must be registered as a connection
+	 * listener of the hosts' interfaces, or null if all hosts are updated
+	 * @see ContactReplay
+	 */
+	ContactReplay startContactReplay(ContactTrace trace, double endTime) {
+		assert !simulateConnections : "Connectivity simulated in replay";
+		this.simulateMovement = false;
+		double fullUpdateInterval = ContactReplay.getFullUpdateInterval();
+		if (fullUpdateInterval == 0) {
+			this.replayTrace = trace;
+			this.nextContact = 0;
+			return null;
 		}
+		this.eventQueues.add(new ContactTraceQueue(trace));
+		this.replay = new ContactReplay(this.hosts, this.updateOrder != null,
+				endTime, fullUpdateInterval);
+		return this.replay;
+	}
+
+	/**
+	 * Sets the metrics where the time spent in each phase of the updates
+	 * and the number of processed events are collected
+	 * @param metrics The metrics or null to stop collecting
+	 */
+	public void setMetrics(SimMetrics metrics) {
+		this.metrics = metrics;
+		if (this.profiler == null) {
+			this.profiler = new Profiler();
+		}
+		this.profiler.setMetrics(metrics);
+	}
+
+	/**
+	 * Starts profiling the updates: every sampleInterval'th update, the
+	 * time of each update phase and of each movement model, interface,
+	 * router and update listener class is measured.
+	 * @param sampleInterval How often the updates are profiled
+	 * @return The profiler that collects the times
+	 * @see Profiler
+	 */
+	public Profiler startProfiling(int sampleInterval) {
+		if (this.profiler == null) {
+			this.profiler = new Profiler();
+		}
+		this.profiler.setSampleInterval(sampleInterval);
+		return this.profiler;
 	}
 
 	/**
@@ -266,6 +500,73 @@ public class World {
 		return node;
 	}
 
+	/**
+	 * Writes the state of the world (hosts, event queues, the update
+	 * order and the position of the contact replay) to a checkpoint stream.
+	 * @param out The stream to write to
+	 * @throws IOException if writing failed
+	 * @see Checkpoint
+	 */
+	void writeState(ObjectOutputStream out) throws IOException {
+		out.writeObject(new ArrayList<DTNHost>(this.hosts));
+		out.writeObject(this.updateOrder);
+		out.writeBoolean(this.simulateConnections);
+		out.writeObject(new ArrayList<EventQueue>(this.eventQueues));
+		out.writeObject(this.scheduledUpdates);
+		out.writeInt(this.nextContact);
+	}
+
+	/**
+	 * Replaces the state of the world with a state read from a checkpoint
+	 * stream. The restored hosts replace the current hosts (in the same
+	 * list) and take the listeners of the current hosts into use.
+	 * @param in The stream to read from
+	 * @param keepRouting If false, the restored routers and connections are
+	 * dropped and the current hosts' (freshly configured) routers are
+	 * replicated for the restored hosts instead
+	 * @throws IOException if reading failed
+	 * @throws ClassNotFoundException if the checkpoint contains unknown
+	 * classes
+	 * @see Checkpoint
+	 */
+	@SuppressWarnings("unchecked")
+	void readState(ObjectInputStream in, boolean keepRouting)
+			throws IOException, ClassNotFoundException {
+		List<DTNHost> restored = (List<DTNHost>)in.readObject();
+		ArrayList<DTNHost> order = (ArrayList<DTNHost>)in.readObject();
+		boolean simCon = in.readBoolean();
+		List<EventQueue> queues = (List<EventQueue>)in.readObject();
+		ScheduledUpdatesQueue updates = (ScheduledUpdatesQueue)in.readObject();
+		int contact = in.readInt();
+
+		if (restored.size() != this.hosts.size()) {
+			throw new SimError("Checkpoint has " + restored.size() +
+					" hosts but the scenario has " + this.hosts.size());
+		}
+		if (queues.size() != this.eventQueues.size()) {
+			throw new SimError("Checkpoint has " + queues.size() +
+					" event queues but the scenario has " +
+					this.eventQueues.size());
+		}
+
+		for (int i=0, n=restored.size(); i<n; i++) {
+			restored.get(i).restoreState(this.hosts.get(i), keepRouting);
+		}
+
+		this.hosts.clear();
+		this.hosts.addAll(restored);
+		if (this.updateOrder != null) {
+			this.updateOrder = (order != null ? order :
+				new ArrayList<DTNHost>(this.hosts));
+		}
+		this.simulateConnections = simCon;
+		this.eventQueues.clear();
+		this.eventQueues.addAll(queues);
+		this.scheduledUpdates = updates;
+		this.nextContact = contact;
+		setNextEventQueue();
+	}
+
 	/**
 	 * Schedules an update request to all nodes to happen at the specified
 	 * simulation time.
@@ -273,5 +574,6 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		eventMerger.update(0); /* the scheduled updates are the first queue */
 	}
 }
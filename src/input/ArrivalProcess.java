@@ -0,0 +1,26 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Arrival process of messages for {@link WorkloadMessageGenerator}.
+ * Implementations are loaded by the class name given with
+ * {@link WorkloadMessageGenerator#ARRIVALS_S} and must have a constructor
+ * that takes the generator's {@link core.Settings} as the only parameter.
+ */
+public interface ArrivalProcess extends Serializable {
+
+	/**
+	 * Returns the time from the previous arrival to the next one. The
+	 * rates of the process are per second of the generator's operational
+	 * time (that is stretched by a diurnal curve, if one is used).
+	 * @param rng The random number generator to use
+	 * @return the interval to the next arrival (seconds)
+	 */
+	public double nextInterval(Random rng);
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Arrays;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Message creation -external events generator for high message rates.
+ * Creates messages like {@link MessageEventGenerator}, but optionally
+ * several messages at each creation time (see {@link #BATCH_SIZE_S}), and
+ * returns all the messages due at the same time as one
+ * {@link MessageCreateBatchEvent}. The world updates the hosts once after
+ * each event, so the hosts are updated once per creation time instead of
+ * once per created message.
+ * <P>
+ * The random draws are done in the same order as in
+ * {@link MessageEventGenerator}, so with the default batch size of one,
+ * the generator creates exactly the same messages (IDs, end points, sizes
+ * and creation times) as {@link MessageEventGenerator} with the same
+ * settings. With a batch size of <CODE>n</CODE>, the end points and sizes
+ * of all <CODE>n</CODE> messages are drawn before the interval to the next
+ * creation time.
+ * </P>
+ */
+public class BatchMessageEventGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = 1L;
+	/** Number of messages created at each creation time -setting id
+	 * ({@value}). Default = 1. */
+	public static final String BATCH_SIZE_S = "batchSize";
+	/** Maximum number of messages in one event -setting id ({@value}).
+	 * Messages due at the same time beyond this are returned as further
+	 * events with the same time. Default = {@value #DEF_MAX_BATCH}. */
+	public static final String MAX_BATCH_S = "maxBatch";
+	/** Default value for the maximum number of messages in an event */
+	public static final int DEF_MAX_BATCH = 10000;
+
+	private int batchSize;
+	private int maxBatch;
+	/** messages of the current creation time not returned yet */
+	private int leftInBatch;
+
+	/** end points, sizes and IDs of the messages of the next event */
+	private int[] fromAddrs;
+	private int[] toAddrs;
+	private int[] sizes;
+	private String[] ids;
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator.
+	 */
+	public BatchMessageEventGenerator(Settings s) {
+		super(s);
+		this.batchSize = s.getInt(BATCH_SIZE_S, 1);
+		this.maxBatch = s.getInt(MAX_BATCH_S, DEF_MAX_BATCH);
+		if (batchSize < 1) {
+			throw new SettingsError("Invalid " + BATCH_SIZE_S + " " +
+					batchSize);
+		}
+		if (maxBatch < 1) {
+			throw new SettingsError("Invalid " + MAX_BATCH_S + " " + maxBatch);
+		}
+		this.leftInBatch = batchSize;
+
+		int capacity = Math.min(batchSize, maxBatch);
+		this.fromAddrs = new int[capacity];
+		this.toAddrs = new int[capacity];
+		this.sizes = new int[capacity];
+		this.ids = new String[capacity];
+	}
+
+	/**
+	 * Returns an event that creates all the messages due at the next
+	 * creation time (or {@link #MAX_BATCH_S} of them)
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		double time = this.nextEventsTime;
+		int n = 0;
+
+		while (n < maxBatch && this.nextEventsTime == time) {
+			if (n == fromAddrs.length) {
+				grow();
+			}
+
+			/* Get two *different* nodes randomly from the host ranges */
+			int from = drawHostAddress(this.hostRange);
+			fromAddrs[n] = from;
+			toAddrs[n] = drawToAddress(hostRange, from);
+			sizes[n] = drawMessageSize();
+			ids[n] = getID();
+			n++;
+
+			if (--leftInBatch == 0) {
+				/* batch done; advance to next creation time */
+				leftInBatch = batchSize;
+				this.nextEventsTime += drawNextEventTimeDiff();
+
+				if (this.msgTime != null &&
+						this.nextEventsTime > this.msgTime[1]) {
+					/* next event would be later than the end time */
+					this.nextEventsTime = Double.MAX_VALUE;
+				}
+			}
+		}
+
+		return new MessageCreateBatchEvent(fromAddrs, toAddrs, sizes, ids, n,
+				time);
+	}
+
+	/**
+	 * Doubles the capacity of the message arrays (up to the maximum
+	 * batch size)
+	 */
+	private void grow() {
+		int capacity = (int)Math.min((long)fromAddrs.length * 2, maxBatch);
+		this.fromAddrs = Arrays.copyOf(fromAddrs, capacity);
+		this.toAddrs = Arrays.copyOf(toAddrs, capacity);
+		this.sizes = Arrays.copyOf(sizes, capacity);
+		this.ids = Arrays.copyOf(ids, capacity);
+	}
+}
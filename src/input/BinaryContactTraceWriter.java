@@ -0,0 +1,107 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Writes connection up and down events to a binary contact trace file
+ * (see {@link ContactTrace} for the format) as they happen. Nothing is kept
+ * in memory so the writer can record traces of any length.
+ */
+public class BinaryContactTraceWriter implements ConnectionListener {
+	private DataOutputStream out;
+	private String fileName;
+	private int nrofContacts;
+
+	/**
+	 * Creates the trace file and writes the file header
+	 * @param fileName Path of the file
+	 * @throws SimError if the file couldn't be created
+	 */
+	public BinaryContactTraceWriter(String fileName) {
+		File file = new File(fileName);
+		if (file.getParentFile() != null) {
+			file.getParentFile().mkdirs();
+		}
+
+		this.fileName = fileName;
+		this.nrofContacts = 0;
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file)));
+			this.out.writeInt(ContactTrace.MAGIC);
+			this.out.writeInt(ContactTrace.VERSION);
+		} catch (IOException e) {
+			throw new SimError("Couldn't create contact trace " + fileName +
+					": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes a contact event to the trace
+	 * @param time Time of the event
+	 * @param host1 Address of the first host
+	 * @param host2 Address of the second host
+	 * @param up True for a connection up event, false for a down event
+	 * @throws SimError if writing failed
+	 */
+	public void write(double time, int host1, int host2, boolean up) {
+		try {
+			out.writeDouble(time);
+			out.writeInt(up ? host1 | ContactTrace.UP_FLAG : host1);
+			out.writeInt(host2);
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace " + fileName +
+					": " + e.getMessage(), e);
+		}
+		nrofContacts++;
+	}
+
+	/**
+	 * Writes a connection up event at the current simulation time
+	 */
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		write(SimClock.getTime(), host1.getAddress(), host2.getAddress(), true);
+	}
+
+	/**
+	 * Writes a connection down event at the current simulation time
+	 */
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		write(SimClock.getTime(), host1.getAddress(), host2.getAddress(),
+				false);
+	}
+
+	/**
+	 * Returns the number of contact events written so far
+	 * @return the number of contact events written so far
+	 */
+	public int getNrofContacts() {
+		return this.nrofContacts;
+	}
+
+	/**
+	 * Flushes and closes the trace file
+	 * @throws SimError if writing failed
+	 */
+	public void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace " + fileName +
+					": " + e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,469 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.Tuple;
+
+import core.Coord;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * Reader for time-indexed binary movement traces. Binary traces are created
+ * from the text traces of {@link ExternalMovementReader} with
+ * {@link #storeToBinaryFile(String, String)}; the conversion is a single
+ * pass over the text file. The binary file is memory-mapped in windows so
+ * only the records of the next few time instances are materialized at a
+ * time, independent of the size of the trace.
+ * <P>
+ * File layout (all values big-endian):<BR>
+ * <CODE>magic version minTime maxTime minX maxX minY maxY
+ * nrofInstances nrofIds idTableOffset indexOffset</CODE> header,
+ * the records (<CODE>idIndex routeId x y</CODE>) of all time instances in
+ * time order, the node ID table and the time index
+ * (<CODE>time recordOffset nrofRecords</CODE> per time instance).
+ * </P>
+ * <P>
+ * Serialized readers store only the header values and the read position;
+ * the file is re-mapped when a reader is deserialized.
+ * </P>
+ */
+public class BinaryMovementReader implements MovementTraceReader {
+	private static final long serialVersionUID = 1L;
+	/** Extension of binary movement trace files */
+	public static final String BINARY_EXT = ".binmov";
+	/** Magic number in the beginning of binary movement traces */
+	public static final int MAGIC = 0x4f4e454d; /* "ONEM" */
+	/** Version of the binary format */
+	public static final int VERSION = 1;
+	/** Size of the mapped windows (bytes) */
+	public static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+	/** size of the fixed header (bytes) */
+	private static final int HEADER_SIZE = 4 + 4 + 6*8 + 8 + 4 + 8 + 8;
+	/** size of one movement record (bytes) */
+	private static final int RECORD_SIZE = 4 + 4 + 8 + 8;
+	/** size of one time index entry (bytes) */
+	private static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+
+	private transient RandomAccessFile file;
+	private transient FileChannel channel;
+	private String inFilePath;
+	private String[] ids;
+	private long nrofInstances;
+	private long idTableOffset;
+	private long indexOffset;
+	private long nextInstance;
+	private double lastTimeStamp = -1;
+
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private boolean normalize;
+
+	private transient Window recordWindow;
+	private transient Window indexWindow;
+
+	/**
+	 * Constructor. Creates a new reader for a binary trace file.
+	 * @param inFilePath Path to the binary trace file
+	 * @throws SettingsError if the file wasn't found or it is not a valid
+	 * binary movement trace
+	 */
+	public BinaryMovementReader(String inFilePath) {
+		this.normalize = true;
+		this.inFilePath = inFilePath;
+
+		try {
+			this.file = new RandomAccessFile(inFilePath, "r");
+			this.channel = file.getChannel();
+
+			if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+				throw new SettingsError(inFilePath + " is not a valid " +
+						"binary movement trace");
+			}
+			minTime = file.readDouble();
+			maxTime = file.readDouble();
+			minX = file.readDouble();
+			maxX = file.readDouble();
+			minY = file.readDouble();
+			maxY = file.readDouble();
+			nrofInstances = file.readLong();
+			ids = new String[file.readInt()];
+			idTableOffset = file.readLong();
+			indexOffset = file.readLong();
+
+			file.seek(idTableOffset);
+			for (int i=0; i < ids.length; i++) {
+				ids[i] = file.readUTF();
+			}
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read binary movement trace " +
+					inFilePath + ": " + e.getMessage());
+		}
+
+		createWindows();
+		this.nextInstance = 0;
+	}
+
+	/**
+	 * Creates the mapped windows for the records and the time index
+	 */
+	private void createWindows() {
+		this.recordWindow = new Window(HEADER_SIZE, idTableOffset);
+		this.indexWindow = new Window(indexOffset,
+				indexOffset + nrofInstances * INDEX_ENTRY_SIZE);
+	}
+
+	/**
+	 * Re-opens the trace file of a deserialized reader
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		try {
+			this.file = new RandomAccessFile(inFilePath, "r");
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't re-open binary movement trace " +
+					inFilePath + ": " + e.getMessage());
+		}
+		this.channel = file.getChannel();
+		createWindows();
+	}
+
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	/**
+	 * Reads all id-coordinate tuples of the next time instance
+	 * @return A list of tuples or empty list if there were no more moves
+	 */
+	public List<Tuple<String, Coord>> readNextMovements() {
+		if (nextInstance >= nrofInstances) {
+			return new ArrayList<Tuple<String, Coord>>(0);
+		}
+
+		MappedByteBuffer index = indexWindow.map(indexOffset +
+				nextInstance * INDEX_ENTRY_SIZE, INDEX_ENTRY_SIZE);
+		double time = index.getDouble();
+		long recordOffset = index.getLong();
+		int nrofRecords = index.getInt();
+		nextInstance++;
+
+		List<Tuple<String, Coord>> moves =
+			new ArrayList<Tuple<String, Coord>>(nrofRecords);
+		MappedByteBuffer records = recordWindow.map(recordOffset,
+				nrofRecords * RECORD_SIZE);
+		for (int i=0; i < nrofRecords; i++) {
+			String id = ids[records.getInt()];
+			int routeId = records.getInt();
+			double x = records.getDouble();
+			double y = records.getDouble();
+			if (normalize) {
+				x -= minX;
+				y -= minY;
+			}
+			moves.add(new Tuple<String, Coord>(id, new Coord(x, y, routeId)));
+		}
+
+		lastTimeStamp = normalize ? time - minTime : time;
+		return moves;
+	}
+
+	/**
+	 * Moves the reader to the first time instance whose time stamp is equal
+	 * to or greater than the given time. Uses a binary search over the time
+	 * index so no records are read while seeking.
+	 * @param time The time to seek to (normalized if normalizing is on)
+	 */
+	public void seek(double time) {
+		if (normalize) {
+			time += minTime;
+		}
+		long low = 0;
+		long high = nrofInstances;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (instanceTime(mid) < time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		this.nextInstance = low;
+	}
+
+	/**
+	 * Returns the (non-normalized) time stamp of a time instance
+	 * @param instance Index of the time instance
+	 * @return The time stamp
+	 */
+	private double instanceTime(long instance) {
+		return indexWindow.map(indexOffset + instance * INDEX_ENTRY_SIZE,
+				INDEX_ENTRY_SIZE).getDouble();
+	}
+
+	public double getLastTimeStamp() {
+		return lastTimeStamp;
+	}
+
+	/**
+	 * Returns the number of time instances in the trace
+	 * @return the number of time instances in the trace
+	 */
+	public long getNrofInstances() {
+		return nrofInstances;
+	}
+
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	public double getMaxX() {
+		return maxX;
+	}
+
+	public double getMaxY() {
+		return maxY;
+	}
+
+	public double getMinTime() {
+		return minTime;
+	}
+
+	public double getMinX() {
+		return minX;
+	}
+
+	public double getMinY() {
+		return minY;
+	}
+
+	public void close() {
+		try {
+			recordWindow = null;
+			indexWindow = null;
+			file.close();
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Checks if the given file is a binary movement trace file
+	 * @param file The file to check
+	 * @return True if the file is a binary movement trace, false if not
+	 */
+	public static boolean isBinaryMovementFile(File file) {
+		if (!file.getName().endsWith(BINARY_EXT) || !file.isFile()) {
+			return false;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC && in.readInt() == VERSION;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Converts a text trace (see {@link ExternalMovementReader}) to a binary
+	 * trace. The text trace is read only once and only one time instance
+	 * of it is kept in memory at a time.
+	 * @param textFile Path to the text trace
+	 * @param binaryFile Path of the binary trace to create
+	 * @throws IOException if something in storing went wrong
+	 * @throws SettingsError if the text trace is not sorted by time
+	 */
+	public static void storeToBinaryFile(String textFile, String binaryFile)
+			throws IOException {
+		ExternalMovementReader reader = new ExternalMovementReader(textFile);
+		reader.setNormalize(false);
+
+		File indexFile = File.createTempFile("binmov", ".idx");
+		indexFile.deleteOnExit();
+		DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(indexFile)));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(binaryFile)));
+
+		Map<String, Integer> idTable = new HashMap<String, Integer>();
+		List<String> idList = new ArrayList<String>();
+		long nrofInstances = 0;
+		long offset = HEADER_SIZE;
+		double lastTime = Double.NEGATIVE_INFINITY;
+
+		out.write(new byte[HEADER_SIZE]); /* header is written last */
+
+		try {
+			List<Tuple<String, Coord>> moves = reader.readNextMovements();
+			while (moves.size() > 0) {
+				double time = reader.getLastTimeStamp();
+				if (time <= lastTime) {
+					throw new SettingsError("External movement trace " +
+							textFile + " is not sorted by time (" + time +
+							" after " + lastTime + ")");
+				}
+				lastTime = time;
+
+				index.writeDouble(time);
+				index.writeLong(offset);
+				index.writeInt(moves.size());
+
+				for (Tuple<String, Coord> t : moves) {
+					Integer idIndex = idTable.get(t.getKey());
+					if (idIndex == null) {
+						idIndex = idList.size();
+						idTable.put(t.getKey(), idIndex);
+						idList.add(t.getKey());
+					}
+					Coord c = t.getValue();
+					out.writeInt(idIndex);
+					out.writeInt(c.getRouteId());
+					out.writeDouble(c.getX());
+					out.writeDouble(c.getY());
+				}
+
+				offset += (long)moves.size() * RECORD_SIZE;
+				nrofInstances++;
+				moves = reader.readNextMovements();
+			}
+
+			long idTableOffset = offset;
+			for (String id : idList) {
+				out.writeUTF(id);
+			}
+			index.close();
+			out.close();
+
+			RandomAccessFile raf = new RandomAccessFile(binaryFile, "rw");
+			try {
+				long indexOffset = raf.length();
+				appendFile(raf, indexFile);
+
+				raf.seek(0);
+				raf.writeInt(MAGIC);
+				raf.writeInt(VERSION);
+				raf.writeDouble(reader.getMinTime());
+				raf.writeDouble(reader.getMaxTime());
+				raf.writeDouble(reader.getMinX());
+				raf.writeDouble(reader.getMaxX());
+				raf.writeDouble(reader.getMinY());
+				raf.writeDouble(reader.getMaxY());
+				raf.writeLong(nrofInstances);
+				raf.writeInt(idList.size());
+				raf.writeLong(idTableOffset);
+				raf.writeLong(indexOffset);
+			} finally {
+				raf.close();
+			}
+		} finally {
+			reader.close();
+			index.close();
+			out.close();
+			indexFile.delete();
+		}
+	}
+
+	/**
+	 * Appends the contents of a file to the end of a random access file
+	 * @param raf The file to append to
+	 * @param source The file whose contents are appended
+	 * @throws IOException if copying failed
+	 */
+	private static void appendFile(RandomAccessFile raf, File source)
+			throws IOException {
+		BufferedInputStream in = new BufferedInputStream(
+				new FileInputStream(source));
+		byte[] buffer = new byte[64 * 1024];
+		int read;
+		raf.seek(raf.length());
+		try {
+			while ((read = in.read(buffer)) > 0) {
+				raf.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A read-only memory-mapped window over a region of the trace file.
+	 * The window is remapped when a read falls outside of it.
+	 */
+	private class Window {
+		private long regionStart;
+		private long regionEnd;
+		private long windowStart;
+		private long windowEnd;
+		private MappedByteBuffer buffer;
+
+		/**
+		 * Creates a window for a region of the file
+		 * @param regionStart Offset of the first byte of the region
+		 * @param regionEnd Offset of the first byte after the region
+		 */
+		public Window(long regionStart, long regionEnd) {
+			this.regionStart = regionStart;
+			this.regionEnd = regionEnd;
+			this.windowStart = this.windowEnd = -1;
+		}
+
+		/**
+		 * Returns the mapped buffer positioned at the given file offset.
+		 * At least <CODE>length</CODE> bytes can be read from the buffer.
+		 * @param offset The file offset
+		 * @param length Number of bytes that will be read
+		 * @return The buffer
+		 */
+		public MappedByteBuffer map(long offset, int length) {
+			assert offset >= regionStart && offset + length <= regionEnd :
+				"Read outside of the mapped region";
+
+			if (offset < windowStart || offset + length > windowEnd) {
+				long size = Math.min(Math.max(WINDOW_SIZE, length),
+						regionEnd - offset);
+				try {
+					buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+							offset, size);
+				} catch (IOException e) {
+					throw new SimError(e);
+				}
+				windowStart = offset;
+				windowEnd = offset + size;
+			}
+
+			buffer.position((int)(offset - windowStart));
+			return buffer;
+		}
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import core.ConnectionListener;
+import core.DTNHost;
+import core.SimClock;
+import core.SimError;
+
+/**
+ * Time ordered sequence of connection up and down events. Contacts are
+ * stored in primitive arrays so that even long traces take little memory.
+ * A trace can be recorded from a running simulation (the trace is a
+ * {@link ConnectionListener}), stored to a file and read from a file in the
+ * {@link StandardEventsReader} format (<CODE>time CONN host1 host2
+ * up|down</CODE>) or in a compact binary format, and replayed with a
+ * {@link ContactTraceQueue}.
+ * <P>
+ * Binary trace files (extension {@link #BINARY_EXT}) start with
+ * {@link #MAGIC} and {@link #VERSION} (ints), followed by one 16 byte record
+ * per event: time (double), address of the first host (int, with
+ * {@link #UP_FLAG} set for up events) and address of the second host (int).
+ * See {@link BinaryContactTraceWriter}.
+ * </P>
+ */
+public class ContactTrace implements ConnectionListener, Serializable {
+	private static final long serialVersionUID = 1L;
+	/** initial capacity of the arrays */
+	private static final int INIT_CAPACITY = 1024;
+	/** Extension of binary contact trace files ({@value}) */
+	public static final String BINARY_EXT = ".bincon";
+	/** Magic number in the beginning of binary contact trace files */
+	public static final int MAGIC = 0x4f4e454b; /* "ONEK" */
+	/** Version of the binary contact trace format */
+	public static final int VERSION = 1;
+	/** Flag of up events in the first host address of binary records */
+	public static final int UP_FLAG = 0x80000000;
+
+	private double[] times;
+	/** update round of each event (see {@link #getRound(int)}) */
+	private int[] rounds;
+	private int[] hosts1;
+	private int[] hosts2;
+	private BitSet ups;
+	private int size;
+
+	/**
+	 * Creates a new, empty contact trace
+	 */
+	public ContactTrace() {
+		this.times = new double[INIT_CAPACITY];
+		this.rounds = new int[INIT_CAPACITY];
+		this.hosts1 = new int[INIT_CAPACITY];
+		this.hosts2 = new int[INIT_CAPACITY];
+		this.ups = new BitSet(INIT_CAPACITY);
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a contact event of the first update round to the end of the trace
+	 * @param time Time of the event
+	 * @param host1 Address of the first host
+	 * @param host2 Address of the second host
+	 * @param up True for a connection up event, false for a down event
+	 */
+	public void addContact(double time, int host1, int host2, boolean up) {
+		addContact(time, 0, host1, host2, up);
+	}
+
+	/**
+	 * Adds a contact event to the end of the trace
+	 * @param time Time of the event
+	 * @param round Index of the update round at the time of the event
+	 * @param host1 Address of the first host
+	 * @param host2 Address of the second host
+	 * @param up True for a connection up event, false for a down event
+	 */
+	public void addContact(double time, int round, int host1, int host2,
+			boolean up) {
+		assert size == 0 || time >= times[size-1] : "Contacts out of order";
+		if (size == times.length) {
+			int capacity = times.length * 2;
+			times = Arrays.copyOf(times, capacity);
+			rounds = Arrays.copyOf(rounds, capacity);
+			hosts1 = Arrays.copyOf(hosts1, capacity);
+			hosts2 = Arrays.copyOf(hosts2, capacity);
+		}
+		times[size] = time;
+		rounds[size] = round;
+		hosts1[size] = host1;
+		hosts2[size] = host2;
+		ups.set(size, up);
+		size++;
+	}
+
+	/**
+	 * Records a connection up event at the current simulation time
+	 */
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		addContact(SimClock.getTime(), host1.getAddress(), host2.getAddress(),
+				true);
+	}
+
+	/**
+	 * Records a connection down event at the current simulation time
+	 */
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		addContact(SimClock.getTime(), host1.getAddress(), host2.getAddress(),
+				false);
+	}
+
+	/**
+	 * Returns the number of contact events in the trace
+	 * @return the number of contact events in the trace
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the time of a contact event
+	 * @param index Index of the event
+	 * @return the time of the event
+	 */
+	public double getTime(int index) {
+		return this.times[index];
+	}
+
+	/**
+	 * Returns the index of the update round of the hosts during (or before)
+	 * which a contact event happened. When external events are due at the
+	 * same time, the hosts are updated once per event and once more at the
+	 * end of the update interval; these rounds are numbered from 0.
+	 * The rounds are not stored in trace files: the events of a trace that
+	 * is read from a file are all in round 0.
+	 * @param index Index of the event
+	 * @return the index of the update round
+	 */
+	public int getRound(int index) {
+		return this.rounds[index];
+	}
+
+	/**
+	 * Returns the address of the first host of a contact event
+	 * @param index Index of the event
+	 * @return the address of the first host
+	 */
+	public int getHost1(int index) {
+		return this.hosts1[index];
+	}
+
+	/**
+	 * Returns the address of the second host of a contact event
+	 * @param index Index of the event
+	 * @return the address of the second host
+	 */
+	public int getHost2(int index) {
+		return this.hosts2[index];
+	}
+
+	/**
+	 * Returns true if a contact event is a connection up event
+	 * @param index Index of the event
+	 * @return true for up events, false for down events
+	 */
+	public boolean isUp(int index) {
+		return this.ups.get(index);
+	}
+
+	/**
+	 * Writes the trace to a file. Files with the {@link #BINARY_EXT}
+	 * extension are written in the binary format and other files in the
+	 * standard external events format.
+	 * @param fileName Path of the file
+	 * @throws SimError if writing failed
+	 */
+	public void writeTo(String fileName) {
+		if (fileName.endsWith(BINARY_EXT)) {
+			BinaryContactTraceWriter writer =
+				new BinaryContactTraceWriter(fileName);
+			for (int i=0; i < size; i++) {
+				writer.write(times[i], hosts1[i], hosts2[i], isUp(i));
+			}
+			writer.close();
+			return;
+		}
+
+		PrintWriter out = null;
+		try {
+			out = new PrintWriter(new BufferedWriter(
+					new FileWriter(fileName)));
+			for (int i=0; i < size; i++) {
+				out.println(times[i] + " " + StandardEventsReader.CONNECTION +
+						" " + hosts1[i] + " " + hosts2[i] + " " +
+						(isUp(i) ? StandardEventsReader.CONNECTION_UP :
+							StandardEventsReader.CONNECTION_DOWN));
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace " + fileName +
+					": " + e.getMessage(), e);
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads a contact trace from a binary contact trace file or the
+	 * connection events of a standard external events file. Other events
+	 * in standard external events files are ignored.
+	 * @param fileName Path of the file
+	 * @return The trace
+	 * @throws SimError if reading failed
+	 */
+	public static ContactTrace readFrom(String fileName) {
+		if (isBinary(fileName)) {
+			return readBinary(fileName);
+		}
+
+		ContactTrace trace = new ContactTrace();
+		StandardEventsReader reader = new StandardEventsReader(
+				new File(fileName));
+		List<ExternalEvent> events;
+
+		while ((events = reader.readEvents(INIT_CAPACITY)).size() > 0) {
+			for (ExternalEvent ee : events) {
+				if (ee instanceof ConnectionEvent) {
+					ConnectionEvent ce = (ConnectionEvent)ee;
+					trace.addContact(ce.getTime(), ce.fromAddr, ce.toAddr,
+							ce.isUp);
+				}
+			}
+		}
+		reader.close();
+
+		return trace;
+	}
+
+	/**
+	 * Returns true if the file is a binary contact trace file
+	 * @param fileName Path of the file
+	 * @return true if the file starts with the binary format's magic number
+	 */
+	private static boolean isBinary(String fileName) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(fileName));
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			return false; /* too short (or unreadable) for a binary trace */
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					/* nothing to do */
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a binary contact trace file
+	 * @param fileName Path of the file
+	 * @return The trace
+	 */
+	private static ContactTrace readBinary(String fileName) {
+		ContactTrace trace = new ContactTrace();
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(fileName)));
+			in.readInt(); /* magic */
+			if (in.readInt() != VERSION) {
+				throw new SimError("Unsupported version of contact trace " +
+						fileName);
+			}
+
+			while (true) {
+				double time;
+				try {
+					time = in.readDouble();
+				} catch (EOFException e) {
+					break; /* no more records */
+				}
+				int host1 = in.readInt();
+				int host2 = in.readInt();
+				trace.addContact(time, host1 & ~UP_FLAG, host2,
+						(host1 & UP_FLAG) != 0);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact trace " + fileName +
+					": " + e.getMessage(), e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					/* nothing to do */
+				}
+			}
+		}
+
+		return trace;
+	}
+}
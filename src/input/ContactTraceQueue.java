@@ -0,0 +1,53 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+/**
+ * Event queue that replays the connection events of a {@link ContactTrace}.
+ * The connections are created for the first interface of the hosts.
+ */
+public class ContactTraceQueue implements EventQueue {
+	private static final long serialVersionUID = 1L;
+	private ContactTrace trace;
+	private int nextIndex;
+
+	/**
+	 * Creates a queue that replays the given trace from the beginning
+	 * @param trace The trace to replay
+	 */
+	public ContactTraceQueue(ContactTrace trace) {
+		this.trace = trace;
+		this.nextIndex = 0;
+	}
+
+	/**
+	 * Returns the next connection event or an event with time of
+	 * Double.MAX_VALUE if there are no events left
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (nextIndex >= trace.size()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		ExternalEvent ee = new ConnectionEvent(trace.getHost1(nextIndex),
+				trace.getHost2(nextIndex), null, trace.isUp(nextIndex),
+				trace.getTime(nextIndex));
+		nextIndex++;
+		return ee;
+	}
+
+	/**
+	 * Returns next event's time or Double.MAX_VALUE if there are no
+	 * events left
+	 * @return Next event's time
+	 */
+	public double nextEventsTime() {
+		if (nextIndex >= trace.size()) {
+			return Double.MAX_VALUE;
+		}
+		return trace.getTime(nextIndex);
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import util.AliasTable;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Traffic matrix read from a CSV file. Each line of the file has the
+ * source address, destination address and the relative amount of traffic
+ * between them, separated by commas (e.g., <CODE>0,12,2.5</CODE>). Pairs
+ * that are not in the file get no traffic. Empty lines and lines starting
+ * with <CODE>#</CODE> are skipped.
+ */
+public class CsvTrafficMatrix implements TrafficMatrix {
+	private static final long serialVersionUID = 1L;
+	/** Traffic matrix file -setting id ({@value}) */
+	public static final String FILE_S = "matrixFile";
+
+	private int[] from;
+	private int[] to;
+	private AliasTable pairs;
+
+	/**
+	 * Constructor.
+	 * @param s Settings of the message generator
+	 */
+	public CsvTrafficMatrix(Settings s) {
+		String file = s.valueFillString(s.getSetting(FILE_S));
+		int n = 0;
+		int[] fromAddrs = new int[16];
+		int[] toAddrs = new int[16];
+		double[] weights = new double[16];
+
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			String line;
+			int lineNr = 0;
+			while ((line = in.readLine()) != null) {
+				lineNr++;
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				String[] parts = line.split(",");
+				if (parts.length != 3) {
+					in.close();
+					throw new SettingsError("Invalid line " + lineNr + " in " +
+							file + ": " + line);
+				}
+				if (n == weights.length) {
+					fromAddrs = Arrays.copyOf(fromAddrs, n * 2);
+					toAddrs = Arrays.copyOf(toAddrs, n * 2);
+					weights = Arrays.copyOf(weights, n * 2);
+				}
+				try {
+					fromAddrs[n] = Integer.parseInt(parts[0].trim());
+					toAddrs[n] = Integer.parseInt(parts[1].trim());
+					weights[n] = Double.parseDouble(parts[2].trim());
+				} catch (NumberFormatException e) {
+					in.close();
+					throw new SettingsError("Invalid number at line " + lineNr +
+							" in " + file + ": " + line);
+				}
+				if (fromAddrs[n] < 0 || toAddrs[n] < 0 ||
+						fromAddrs[n] == toAddrs[n] || !(weights[n] >= 0)) {
+					in.close();
+					throw new SettingsError("Invalid pair at line " + lineNr +
+							" in " + file + ": " + line);
+				}
+				if (weights[n] > 0) {
+					n++;
+				}
+			}
+			in.close();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read traffic matrix " + file, e);
+		}
+
+		if (n == 0) {
+			throw new SettingsError("No traffic in matrix " + file);
+		}
+		this.from = Arrays.copyOf(fromAddrs, n);
+		this.to = Arrays.copyOf(toAddrs, n);
+		this.pairs = new AliasTable(Arrays.copyOf(weights, n));
+	}
+
+	public void drawEndPoints(Random rng, int[] endPoints) {
+		int i = pairs.draw(rng);
+		endPoints[0] = from[i];
+		endPoints[1] = to[i];
+	}
+}
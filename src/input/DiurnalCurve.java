@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.Serializable;
+
+import core.SettingsError;
+
+/**
+ * Periodic, piecewise constant rate curve (e.g., a load profile over the
+ * hours of a day). The period is divided into equal length slots that each
+ * have a rate multiplier. The curve maps simulation time to operational
+ * time, where one second of simulation time in a slot is as many seconds
+ * of operational time as the slot's multiplier. Arrivals generated with
+ * constant rates in operational time have the rates multiplied by the curve
+ * in simulation time.
+ */
+public class DiurnalCurve implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private double period;
+	private double slotLength;
+	private double[] multipliers;
+	/** operational time at the start of each slot (and at the end of the
+	 * period) */
+	private double[] cumulative;
+
+	/**
+	 * Creates a curve
+	 * @param multipliers Rate multipliers of the slots (non-negative, at
+	 * least one positive)
+	 * @param period Length of the period (seconds)
+	 * @throws SettingsError if the multipliers or period are not valid
+	 */
+	public DiurnalCurve(double[] multipliers, double period) {
+		if (!(period > 0) || Double.isInfinite(period)) {
+			throw new SettingsError("Invalid diurnal period " + period);
+		}
+		this.period = period;
+		this.multipliers = multipliers.clone();
+		this.slotLength = period / multipliers.length;
+		this.cumulative = new double[multipliers.length + 1];
+		for (int i = 0; i < multipliers.length; i++) {
+			if (!(multipliers[i] >= 0) || Double.isInfinite(multipliers[i])) {
+				throw new SettingsError("Invalid diurnal multiplier " +
+						multipliers[i]);
+			}
+			cumulative[i + 1] = cumulative[i] + multipliers[i] * slotLength;
+		}
+		if (!(cumulative[multipliers.length] > 0)) {
+			throw new SettingsError("All diurnal multipliers are zero");
+		}
+	}
+
+	/**
+	 * Returns the rate multiplier at the given time
+	 * @param time Simulation time
+	 * @return the multiplier
+	 */
+	public double getMultiplier(double time) {
+		double r = time - Math.floor(time / period) * period;
+		return multipliers[Math.min((int)(r / slotLength),
+				multipliers.length - 1)];
+	}
+
+	/**
+	 * Converts simulation time to operational time
+	 * @param time Simulation time
+	 * @return the operational time
+	 */
+	public double toOperational(double time) {
+		double periods = Math.floor(time / period);
+		double r = time - periods * period;
+		int slot = Math.min((int)(r / slotLength), multipliers.length - 1);
+		return periods * cumulative[multipliers.length] + cumulative[slot] +
+			multipliers[slot] * (r - slot * slotLength);
+	}
+
+	/**
+	 * Converts operational time to simulation time. If the operational
+	 * time falls on the border of slots with zero multipliers, the
+	 * earliest simulation time is returned.
+	 * @param opTime Operational time
+	 * @return the simulation time
+	 */
+	public double toSimTime(double opTime) {
+		double total = cumulative[multipliers.length];
+		double periods = Math.floor(opTime / total);
+		double r = opTime - periods * total;
+
+		/* find the slot where the operational time is (the first slot
+		 * whose end is after r; it has a positive multiplier) */
+		int lo = 0;
+		int hi = multipliers.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid + 1] > r) {
+				hi = mid;
+			}
+			else {
+				lo = mid + 1;
+			}
+		}
+		if (multipliers[lo] == 0) {
+			/* rounding put r at the very end of the period */
+			return (periods + 1) * period;
+		}
+		return periods * period + lo * slotLength +
+			(r - cumulative[lo]) / multipliers[lo];
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.List;
+
+/**
+ * Merges event queues so that the queue with the next event is found in
+ * constant time. The queues are kept in a binary heap keyed by their
+ * next event's time; ties are broken by the order of the queues (the first
+ * queue wins), which is the same order a linear scan over the queues
+ * would give.
+ * <P>
+ * The heap doesn't notice if a queue's next event time changes on its own.
+ * After taking an event from a queue, or otherwise changing a queue, the
+ * queue must be updated with {@link #update(int)}. {@link #refresh()}
+ * re-reads the times of all queues for queues whose time can change
+ * without the merger knowing (e.g., events received from outside the
+ * simulator).
+ * </P>
+ */
+public class EventQueueMerger {
+	private EventQueue[] queues;
+	/** next event time of each queue when it was last updated */
+	private double[] times;
+	/** heap of queue indexes */
+	private int[] heap;
+	/** position of each queue in the heap */
+	private int[] pos;
+
+	/**
+	 * Creates a merger without any queues
+	 */
+	public EventQueueMerger() {
+		setQueues(null, null);
+	}
+
+	/**
+	 * Sets the merged queues and reads their next event times
+	 * @param first The first queue (wins ties with the others) or null
+	 * @param others The other queues (in the order of tie breaking) or null
+	 */
+	public void setQueues(EventQueue first, List<EventQueue> others) {
+		int n = (first != null ? 1 : 0) + (others != null ? others.size() : 0);
+		if (this.queues == null || this.queues.length != n) {
+			this.queues = new EventQueue[n];
+			this.times = new double[n];
+			this.heap = new int[n];
+			this.pos = new int[n];
+		}
+		int i = 0;
+		if (first != null) {
+			this.queues[i++] = first;
+		}
+		if (others != null) {
+			for (EventQueue eq : others) {
+				this.queues[i++] = eq;
+			}
+		}
+		refresh();
+	}
+
+	/**
+	 * Re-reads the next event times of all queues and rebuilds the heap
+	 */
+	public void refresh() {
+		int n = queues.length;
+		for (int i = 0; i < n; i++) {
+			times[i] = queues[i].nextEventsTime();
+			heap[i] = i;
+			pos[i] = i;
+		}
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Re-reads the next event time of a queue and moves the queue to its
+	 * place in the heap
+	 * @param index Index of the queue (the first queue has index 0)
+	 */
+	public void update(int index) {
+		double old = times[index];
+		times[index] = queues[index].nextEventsTime();
+		if (times[index] < old) {
+			siftUp(pos[index]);
+		}
+		else {
+			siftDown(pos[index]);
+		}
+	}
+
+	/**
+	 * Returns the index of the queue that has the next event
+	 * @return the index of the queue or -1 if there are no queues
+	 */
+	public int getNextIndex() {
+		return queues.length > 0 ? heap[0] : -1;
+	}
+
+	/**
+	 * Returns the queue that has the next event
+	 * @return the queue or null if there are no queues
+	 */
+	public EventQueue getNextQueue() {
+		return queues.length > 0 ? queues[heap[0]] : null;
+	}
+
+	/**
+	 * Returns the time of the next event in any of the queues
+	 * @return the time or Double.MAX_VALUE if there are no events
+	 */
+	public double getNextTime() {
+		return queues.length > 0 ? times[heap[0]] : Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns true if queue a's next event is before queue b's
+	 * @param a Index of queue a
+	 * @param b Index of queue b
+	 * @return true if a is before b
+	 */
+	private boolean before(int a, int b) {
+		return times[a] < times[b] || (times[a] == times[b] && a < b);
+	}
+
+	private void siftUp(int i) {
+		int q = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(q, heap[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			pos[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = q;
+		pos[q] = i;
+	}
+
+	private void siftDown(int i) {
+		int n = queues.length;
+		int q = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= n) {
+				break;
+			}
+			if (child + 1 < n && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], q)) {
+				break;
+			}
+			heap[i] = heap[child];
+			pos[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = q;
+		pos[q] = i;
+	}
+}
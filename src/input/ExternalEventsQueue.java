@@ -5,6 +5,8 @@
 package input;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,9 +14,12 @@ import core.Settings;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. When the queue is
+ * serialized, only the buffered events and the read position are stored;
+ * the events file is re-opened on deserialization.
  */
 public class ExternalEventsQueue implements EventQueue {
+	private static final long serialVersionUID = 1L;
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
@@ -26,7 +31,9 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final int DEFAULT_NROF_PRELOAD = 500;
 
 	private File eventsFile;
-	private ExternalEventsReader reader;
+	private transient ExternalEventsReader reader;
+	/** how many events have been read from the reader */
+	private long nrofEventsRead;
 	private int nextEventIndex;
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
@@ -76,16 +83,22 @@ public class ExternalEventsQueue implements EventQueue {
 
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
+		openReader();
+		this.queue = readEvents(nrofPreload);
+		this.nextEventIndex = 0;
+	}
 
+	/**
+	 * Creates a reader for the events file
+	 */
+	private void openReader() {
 		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
 		else {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
-
-		this.queue = readEvents(nrofPreload);
-		this.nextEventIndex = 0;
+		this.nrofEventsRead = 0;
 	}
 
 	/**
@@ -151,6 +164,7 @@ public class ExternalEventsQueue implements EventQueue {
 		}
 
 		List<ExternalEvent> events = reader.readEvents(nrof);
+		nrofEventsRead += events.size();
 
 		if (nrof > 0 && events.size() == 0) {
 			reader.close();
@@ -160,4 +174,27 @@ public class ExternalEventsQueue implements EventQueue {
 		return events;
 	}
 
+	/**
+	 * Re-opens the events file of a deserialized queue and skips the events
+	 * that were already read before serialization.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (allEventsRead) {
+			return;
+		}
+
+		long skip = this.nrofEventsRead;
+		openReader();
+		while (nrofEventsRead < skip) {
+			int nrof = (int)Math.min(skip - nrofEventsRead, nrofPreload);
+			List<ExternalEvent> events = reader.readEvents(nrof);
+			if (events.size() == 0) {
+				break;
+			}
+			nrofEventsRead += events.size();
+		}
+	}
+
 }
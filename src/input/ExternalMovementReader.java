@@ -4,8 +4,12 @@
  */
 package input;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -27,7 +31,7 @@ import core.SettingsError;
  * in the file.
  * <P>
  * Following lines' syntax should be:<BR>
- * <CODE>time id xPos yPos</CODE><BR>
+ * <CODE>time id routeId xPos yPos</CODE><BR>
  * where <CODE>time</CODE> is the time when a node with <CODE>id</CODE> should
  * be at location <CODE>(xPos, yPos)</CODE>.
  * </P>
@@ -35,11 +39,26 @@ import core.SettingsError;
  * All lines must be sorted by time. Sampling interval (time difference between
  * two time instances) must be same for the whole file.
  * </P>
+ * <P>
+ * Lines are read with a buffered reader and tokenized by hand; for repeated
+ * runs with big traces, see {@link BinaryMovementReader}.
+ * </P>
+ * <P>
+ * When a reader is serialized (e.g., as a part of a simulation checkpoint),
+ * only the read position is stored; the file is re-opened and the read lines
+ * are skipped when the reader is deserialized.
+ * </P>
  */
-public class ExternalMovementReader {
+public class ExternalMovementReader implements MovementTraceReader {
+	private static final long serialVersionUID = 1L;
 	/* Prefix for comment lines (lines starting with this are ignored) */
 	public static final String COMMENT_PREFIX = "#";
-	private Scanner scanner;
+	private transient BufferedReader reader;
+	private String inFilePath;
+	/** how many lines have been read from the file */
+	private long nrofLinesRead;
+	/** the line after {@link #lastLine} or null if the file has ended */
+	private String nextLine;
 	private double lastTimeStamp = -1;
 	private String lastLine;
 	private double minTime;
@@ -56,18 +75,13 @@ public class ExternalMovementReader {
 	 * @param inFilePath Path to the file where the data is read
 	 * @throws SettingsError if the file wasn't found
 	 */
-	//캯,һµĶȡڴļжȡ
+	//构造函数,创建一个新的读取器用于从文件中读取数据
 	public ExternalMovementReader(String inFilePath) {
 	    this.normalize = true;
-		File inFile = new File(inFilePath);
-		try {
-			scanner = new Scanner(inFile);
-		} catch (FileNotFoundException e) {
-			throw new SettingsError("Couldn't find external movement input " +
-					"file " + inFile);
-		}
+		this.inFilePath = inFilePath;
+		openFile();
 
-		String offsets = scanner.nextLine();
+		String offsets = readLine();
 
 		try {
 			Scanner lineScan = new Scanner(offsets);
@@ -81,7 +95,56 @@ public class ExternalMovementReader {
 			throw new SettingsError("Invalid offset line '" + offsets + "'");
 		}
 
-		lastLine = scanner.nextLine();
+		lastLine = readLine();
+		nextLine = readLine();
+	}
+
+	/**
+	 * Opens the input file for reading from the beginning
+	 * @throws SettingsError if the file wasn't found
+	 */
+	private void openFile() {
+		File inFile = new File(inFilePath);
+		try {
+			reader = new BufferedReader(new FileReader(inFile));
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find external movement input " +
+					"file " + inFile);
+		}
+		this.nrofLinesRead = 0;
+	}
+
+	/**
+	 * Reads the next line from the input file.
+	 * @return The line or null if the end of the file was reached
+	 * @throws SettingsError if reading failed
+	 */
+	private String readLine() {
+		try {
+			nrofLinesRead++;
+			return reader.readLine();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read external movement input: " +
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the next line of the file and reads a new look-ahead line.
+	 * @return The next line
+	 */
+	private String nextLine() {
+		String line = nextLine;
+		nextLine = readLine();
+		return line;
+	}
+
+	/**
+	 * Returns true if there are more lines to read
+	 * @return true if there are more lines to read
+	 */
+	private boolean hasNextLine() {
+		return nextLine != null;
 	}
 
 	/**
@@ -96,7 +159,7 @@ public class ExternalMovementReader {
 
 	/**
 	 * Reads all new id-coordinate tuples that belong to the same time instance
-	 * ȡͬʱ id-Ԫ
+	 * 读取属于同时间的 所有新id-坐标元组
 	 * @return A list of tuples or empty list if there were no more moves
 	 * @throws SettingError if an invalid line was read
 	 */
@@ -104,11 +167,11 @@ public class ExternalMovementReader {
 		ArrayList<Tuple<String, Coord>> moves =
 			new ArrayList<Tuple<String, Coord>>();
 
-		if (!scanner.hasNextLine()) {
+		if (!hasNextLine()) {
 			return moves;
 		}
 
-		Scanner lineScan = new Scanner(lastLine);
+		LineParser lineScan = new LineParser(lastLine);
 		double time = lineScan.nextDouble();
 		String id = lineScan.next();
 		int routeId = lineScan.nextInt();//add the routeId by SB
@@ -122,8 +185,8 @@ public class ExternalMovementReader {
 		}
 
 		lastTimeStamp = time;
-		while (scanner.hasNextLine() && lastTimeStamp == time) {
-			lastLine = scanner.nextLine();
+		while (hasNextLine() && lastTimeStamp == time) {
+			lastLine = nextLine();
 
 			if (lastLine.trim().length() == 0 ||
 					lastLine.startsWith(COMMENT_PREFIX)) {
@@ -133,7 +196,7 @@ public class ExternalMovementReader {
 			// add previous line's tuple
 			moves.add(new Tuple<String, Coord>(id, new Coord(x,y,routeId)));
 
-			lineScan = new Scanner(lastLine);
+			lineScan.reset(lastLine);
 
 			try {
 				time = lineScan.nextDouble();
@@ -152,7 +215,7 @@ public class ExternalMovementReader {
 			}
 		}
 
-		if (!scanner.hasNextLine()) {	// add the last tuple of the file
+		if (!hasNextLine()) {	// add the last tuple of the file
 			moves.add(new Tuple<String, Coord>(id, new Coord(x,y,routeId)));
 		}
 
@@ -216,4 +279,79 @@ public class ExternalMovementReader {
 		return minY;
 	}
 
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't close external movement input: " +
+					e.getMessage());
+		}
+	}
+
+	/**
+	 * Re-opens the input file of a deserialized reader and skips the lines
+	 * that were already read before serialization.
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		long skip = this.nrofLinesRead;
+		openFile();
+		while (nrofLinesRead < skip) {
+			readLine();
+		}
+	}
+
+	/**
+	 * Whitespace tokenizer for a single trace line. Parses the values
+	 * directly from the line without creating a Scanner (and its regular
+	 * expression machinery) for every line.
+	 */
+	private static class LineParser {
+		private String line;
+		private int pos;
+
+		public LineParser(String line) {
+			reset(line);
+		}
+
+		/**
+		 * Starts parsing a new line
+		 * @param line The line to parse
+		 */
+		public void reset(String line) {
+			this.line = line;
+			this.pos = 0;
+		}
+
+		/**
+		 * Returns the next whitespace delimited token of the line
+		 * @return The token
+		 * @throws SettingsError if there are no more tokens in the line
+		 */
+		public String next() {
+			int len = line.length();
+			while (pos < len && Character.isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+			if (pos == len) {
+				throw new SettingsError("Too few values in line '" +
+						line + "'");
+			}
+			int start = pos;
+			while (pos < len && !Character.isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+			return line.substring(start, pos);
+		}
+
+		public double nextDouble() {
+			return Double.parseDouble(next());
+		}
+
+		public int nextInt() {
+			return Integer.parseInt(next());
+		}
+	}
+
 }
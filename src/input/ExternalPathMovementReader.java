@@ -47,7 +47,8 @@ import core.SettingsError;
  *
  * <p>Trace and activity files ending in .zip are assumed to be
  * compressed and will be automatically uncompressed during reading. The whole
- * trace is loaded into memory at once.</p>
+ * trace is loaded into memory at once. For big traces, see
+ * {@link ExternalPathStore} that keeps the paths on disk.</p>
  *
  * @author teemuk
  *
@@ -60,7 +61,7 @@ public class ExternalPathMovementReader {
 	/**
 	 * Represents a point on the path.
 	 */
-	public class Entry {
+	public static class Entry {
 		public double time;
 		public double x;
 		public double y;
@@ -69,7 +70,7 @@ public class ExternalPathMovementReader {
 	/**
 	 * Describes a node's activity time
 	 */
-	public class ActiveTime {
+	public static class ActiveTime {
 		public double start;
 		public double end;
 	}
@@ -105,23 +106,9 @@ public class ExternalPathMovementReader {
 		long readSize = 0;
 		long printSize = 5*1024*1024;
 
-		BufferedReader reader = null;
-		try {
-			if (traceFilePath.endsWith(".zip")) {
-				// Grab the first entry from the zip file
-				// TODO: try to find the correct entry based on file name
-				ZipFile zf = new ZipFile(traceFilePath);
-				ZipEntry ze = zf.entries().nextElement();
-				reader = new BufferedReader(
-						new InputStreamReader(zf.getInputStream(ze)));
-				traceSize = ze.getSize();
-			} else {
-				reader = new BufferedReader(
-					new FileReader(traceFilePath));
-			}
-		} catch (FileNotFoundException e1) {
-			throw new SettingsError("Couldn't find external movement input " +
-					"file " + inFile);
+		BufferedReader reader = openFile(traceFilePath);
+		if (traceFilePath.endsWith(".zip")) {
+			traceSize = getZipEntrySize(traceFilePath);
 		}
 
 		/*Scanner scanner = null;
@@ -203,23 +190,7 @@ public class ExternalPathMovementReader {
 
 		// Parse activity times
 		inFile = new File(activityFilePath);
-		reader = null;
-		try {
-			if (activityFilePath.endsWith(".zip")) {
-				// Grab the first entry from the zip file
-				// TODO: try to find the correct entry based on file name
-				ZipFile zf = new ZipFile(activityFilePath);
-				ZipEntry ze = zf.entries().nextElement();
-				reader = new BufferedReader(
-						new InputStreamReader(zf.getInputStream(ze)));
-			} else {
-				reader = new BufferedReader(
-					new FileReader(activityFilePath));
-			}
-		} catch (FileNotFoundException e) {
-			throw new SettingsError("Couldn't find external activity input " +
-					"file " + inFile);
-		}
+		reader = openFile(activityFilePath);
 
 		// Init activity cache
 		this.activeTimes = new ArrayList<List<ActiveTime>>(this.maxID + 1);
@@ -248,6 +219,47 @@ public class ExternalPathMovementReader {
 		}
 	}
 
+	/**
+	 * Opens a trace or activity file for reading. Files ending in .zip are
+	 * uncompressed on the fly (the first entry of the zip file is read).
+	 * @param filePath Path to the file
+	 * @return A reader for the file
+	 * @throws IOException if opening a zip file failed
+	 * @throws SettingsError if the file was not found
+	 */
+	static BufferedReader openFile(String filePath) throws IOException {
+		try {
+			if (filePath.endsWith(".zip")) {
+				// Grab the first entry from the zip file
+				// TODO: try to find the correct entry based on file name
+				ZipFile zf = new ZipFile(filePath);
+				ZipEntry ze = zf.entries().nextElement();
+				return new BufferedReader(
+						new InputStreamReader(zf.getInputStream(ze)));
+			} else {
+				return new BufferedReader(new FileReader(filePath));
+			}
+		} catch (FileNotFoundException e) {
+			throw new SettingsError("Couldn't find external movement input " +
+					"file " + filePath);
+		}
+	}
+
+	/**
+	 * Returns the uncompressed size of the first entry of a zip file
+	 * @param filePath Path to the zip file
+	 * @return The size of the entry
+	 * @throws IOException if reading the zip file failed
+	 */
+	private static long getZipEntrySize(String filePath) throws IOException {
+		ZipFile zf = new ZipFile(filePath);
+		try {
+			return zf.entries().nextElement().getSize();
+		} finally {
+			zf.close();
+		}
+	}
+
 	/**
 	 * Returns the path for the node with the given ID.
 	 *
@@ -0,0 +1,625 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * <p>On-disk, indexed store for path format traces (see
+ * {@link ExternalPathMovementReader} for the trace and activity file
+ * formats). Only a small per-node index (start time, offset and length of
+ * every path) is kept in memory; the path entries themselves are read from
+ * the disk when they are needed.</p>
+ *
+ * <p>The store file is created from the text trace and activity files with a
+ * single pass over them and it is reused as long as it is newer than the text
+ * files. Every path is stored as a separately compressed block: the bits of
+ * every value are XORed with the previous entry's value (consecutive
+ * entries of a path share most of their high bits) and the result is
+ * deflated. The encoding is lossless.</p>
+ *
+ * <p>Paths can be prefetched in a background thread with
+ * {@link #prefetchPath(int, int)}. Reads use positional file channel
+ * access so prefetching and reading paths can happen concurrently.</p>
+ */
+public class ExternalPathStore {
+	/** Extension of the store files */
+	public static final String STORE_EXT = ".binpath";
+	/** Magic number in the beginning of store files */
+	public static final int MAGIC = 0x4f4e4550; /* "ONEP" */
+	/** Version of the store format */
+	public static final int VERSION = 1;
+
+	/** size of the fixed header (bytes) */
+	private static final int HEADER_SIZE = 4 + 4 + 4 + 6*8;
+	/** size of one node's entry in the node table (bytes) */
+	private static final int NODE_ENTRY_SIZE = 8 + 4 + 8 + 4;
+	/** size of one path's entry in a node's path directory (bytes) */
+	private static final int PATH_ENTRY_SIZE = 8 + 4 + 8;
+	/** size of one activity time (bytes) */
+	private static final int ACTIVE_TIME_SIZE = 8 + 8;
+
+	private static Map<String, ExternalPathStore> stores =
+		new HashMap<String, ExternalPathStore>();
+	/** background thread for prefetching paths (lazily created) */
+	private static ExecutorService prefetcher = null;
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int maxID;
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+
+	/** path start times, offsets and lengths of the loaded nodes */
+	private PathDirectory[] directories;
+
+	/**
+	 * Opens a store file.
+	 * @param storeFilePath Path to the store file
+	 * @throws IOException if reading the file failed
+	 */
+	private ExternalPathStore(String storeFilePath) throws IOException {
+		this.file = new RandomAccessFile(storeFilePath, "r");
+		this.channel = file.getChannel();
+
+		if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+			throw new SettingsError(storeFilePath + " is not a valid path " +
+					"store file");
+		}
+		this.maxID = file.readInt();
+		this.minTime = file.readDouble();
+		this.maxTime = file.readDouble();
+		this.minX = file.readDouble();
+		this.maxX = file.readDouble();
+		this.minY = file.readDouble();
+		this.maxY = file.readDouble();
+		this.directories = new PathDirectory[maxID + 1];
+	}
+
+	/**
+	 * Returns the number of paths a node has
+	 * @param id ID of the node
+	 * @return The number of paths
+	 */
+	public int getNrofPaths(int id) {
+		return getDirectory(id).startTimes.length;
+	}
+
+	/**
+	 * Returns the (normalized) start time of a path, i.e., the time of its
+	 * first entry. No path data is read from the disk.
+	 * @param id ID of the node
+	 * @param index Index of the node's path
+	 * @return The start time
+	 */
+	public double getPathStartTime(int id, int index) {
+		return getDirectory(id).startTimes[index] - minTime;
+	}
+
+	/**
+	 * Reads a path of a node from the disk.
+	 * @param id ID of the node
+	 * @param index Index of the node's path
+	 * @return The (normalized) entries of the path
+	 */
+	public List<ExternalPathMovementReader.Entry> readPath(int id,
+			int index) {
+		PathDirectory dir = getDirectory(id);
+		ByteBuffer block = read(dir.offsets[index], dir.lengths[index]);
+		return decodePath(block.array(), minTime, minX, minY);
+	}
+
+	/**
+	 * Starts reading a path in the background thread.
+	 * @param id ID of the node
+	 * @param index Index of the node's path
+	 * @return Future that gives the path once it has been read
+	 */
+	public Future<List<ExternalPathMovementReader.Entry>> prefetchPath(
+			final int id, final int index) {
+		getDirectory(id); /* directories are only loaded by sim thread */
+		return getPrefetcher().submit(
+				new Callable<List<ExternalPathMovementReader.Entry>>() {
+			public List<ExternalPathMovementReader.Entry> call() {
+				return readPath(id, index);
+			}
+		});
+	}
+
+	/**
+	 * Reads the activity times of a node from the disk.
+	 * @param id ID of the node
+	 * @return The (normalized) activity times of the node
+	 */
+	public List<ExternalPathMovementReader.ActiveTime> readActive(int id) {
+		ByteBuffer node = read(nodeEntryOffset(id), NODE_ENTRY_SIZE);
+		node.getLong();
+		node.getInt();
+		long activeOffset = node.getLong();
+		int nrofActive = node.getInt();
+
+		List<ExternalPathMovementReader.ActiveTime> active =
+			new ArrayList<ExternalPathMovementReader.ActiveTime>(nrofActive);
+		ByteBuffer times = read(activeOffset, nrofActive * ACTIVE_TIME_SIZE);
+		for (int i=0; i < nrofActive; i++) {
+			ExternalPathMovementReader.ActiveTime a =
+				new ExternalPathMovementReader.ActiveTime();
+			a.start = times.getDouble() - minTime;
+			a.end = times.getDouble() - minTime;
+			active.add(a);
+		}
+		return active;
+	}
+
+	/**
+	 * Returns the path directory of a node and loads it if needed
+	 * @param id ID of the node
+	 * @return The directory
+	 */
+	private PathDirectory getDirectory(int id) {
+		if (id < 0 || id > maxID) {
+			throw new SimError("No paths for node ID " + id + " in the path " +
+					"store (max ID " + maxID + ")");
+		}
+		if (directories[id] != null) {
+			return directories[id];
+		}
+
+		ByteBuffer node = read(nodeEntryOffset(id), NODE_ENTRY_SIZE);
+		long dirOffset = node.getLong();
+		int nrofPaths = node.getInt();
+
+		PathDirectory dir = new PathDirectory(nrofPaths);
+		ByteBuffer entries = read(dirOffset, nrofPaths * PATH_ENTRY_SIZE);
+		for (int i=0; i < nrofPaths; i++) {
+			dir.offsets[i] = entries.getLong();
+			dir.lengths[i] = entries.getInt();
+			dir.startTimes[i] = entries.getDouble();
+		}
+
+		directories[id] = dir;
+		return dir;
+	}
+
+	/**
+	 * Returns the file offset of a node's entry in the node table
+	 * @param id ID of the node
+	 * @return The offset
+	 */
+	private long nodeEntryOffset(int id) {
+		return HEADER_SIZE + (long)id * NODE_ENTRY_SIZE;
+	}
+
+	/**
+	 * Reads bytes from the store file. Uses positional reads so this
+	 * method can be called from multiple threads.
+	 * @param offset File offset of the first byte
+	 * @param length Number of bytes to read
+	 * @return The bytes in a buffer positioned at the first byte
+	 */
+	private ByteBuffer read(long offset, int length) {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		try {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset + buffer.position()) < 0) {
+					throw new SimError("Unexpected end of path store");
+				}
+			}
+		} catch (IOException e) {
+			throw new SimError(e);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Returns offset maxID
+	 * @return the maxID
+	 */
+	public int getMaxID() {
+		return maxID;
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Get an instance of the store for the given trace files. The store file
+	 * (trace file path + {@value #STORE_EXT}) is created if it doesn't exist
+	 * or if it is older than the trace or activity file.
+	 * @param traceFilePath path where the trace file is read from
+	 * @param activeFilePath path where the activity file is read from
+	 * @return instance of the store for the given trace file
+	 */
+	public static synchronized ExternalPathStore getInstance(
+			String traceFilePath, String activeFilePath) {
+		ExternalPathStore store = stores.get(traceFilePath);
+		if (store != null) {
+			return store;
+		}
+
+		String storeFilePath = traceFilePath + STORE_EXT;
+		File storeFile = new File(storeFilePath);
+		try {
+			if (!storeFile.exists() ||
+				storeFile.lastModified() <
+					new File(traceFilePath).lastModified() ||
+				storeFile.lastModified() <
+					new File(activeFilePath).lastModified()) {
+				storeToFile(traceFilePath, activeFilePath, storeFilePath);
+			}
+			store = new ExternalPathStore(storeFilePath);
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't create path store " +
+					storeFilePath + ": " + e.getMessage());
+		}
+
+		stores.put(traceFilePath, store);
+		return store;
+	}
+
+	/**
+	 * Returns the background prefetching thread's executor
+	 * @return the executor
+	 */
+	private static synchronized ExecutorService getPrefetcher() {
+		if (prefetcher == null) {
+			prefetcher = Executors.newSingleThreadExecutor(
+					new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "PathPrefetcher");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return prefetcher;
+	}
+
+	/**
+	 * Creates a store file from text trace and activity files. Paths are
+	 * written in the order they appear in the trace file; only the path
+	 * directories (20 bytes per path) are kept in memory during conversion.
+	 * @param traceFilePath Path to the trace file
+	 * @param activeFilePath Path to the activity file
+	 * @param storeFilePath Path of the store file to create
+	 * @throws IOException if reading or writing failed
+	 */
+	public static void storeToFile(String traceFilePath,
+			String activeFilePath, String storeFilePath) throws IOException {
+		BufferedReader reader = ExternalPathMovementReader.openFile(
+				traceFilePath);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(storeFilePath)));
+		long offset;
+		int maxID;
+		double[] offsets = new double[6];
+
+		try {
+			String header = reader.readLine();
+			if (header == null) {
+				throw new SettingsError("No offset line found.");
+			}
+			try {
+				Scanner lineScan = new Scanner(header);
+				maxID = lineScan.nextInt();
+				for (int i=0; i < offsets.length; i++) {
+					offsets[i] = lineScan.nextDouble();
+				}
+			} catch (Exception e) {
+				throw new SettingsError("Invalid offset line '" + header + "'");
+			}
+
+			/* header and node table are written when all paths are known */
+			offset = HEADER_SIZE + (long)(maxID + 1) * NODE_ENTRY_SIZE;
+			out.write(new byte[(int)offset]);
+
+			List<List<long[]>> pathDirs = new ArrayList<List<long[]>>(maxID+1);
+			for (int i=0; i <= maxID; i++) {
+				pathDirs.add(new ArrayList<long[]>(0));
+			}
+
+			Deflater deflater = new Deflater();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.equals("")) {
+					continue; // Skip empty lines
+				}
+				line = line.trim();
+				int idEnd = 0;
+				while (idEnd < line.length() &&
+						!Character.isWhitespace(line.charAt(idEnd))) {
+					idEnd++;
+				}
+				int id = Integer.parseInt(line.substring(0, idEnd));
+				List<double[]> entries = parseEntries(line, idEnd);
+				if (entries.size() == 0) {
+					continue;
+				}
+
+				byte[] block = encodePath(entries, deflater);
+				out.write(block);
+				pathDirs.get(id).add(new long[] {offset, block.length,
+						Double.doubleToRawLongBits(entries.get(0)[0])});
+				offset += block.length;
+			}
+			deflater.end();
+			reader.close();
+
+			/* path directories */
+			long[] dirOffsets = new long[maxID + 1];
+			for (int id=0; id <= maxID; id++) {
+				dirOffsets[id] = offset;
+				for (long[] p : pathDirs.get(id)) {
+					out.writeLong(p[0]);
+					out.writeInt((int)p[1]);
+					out.writeLong(p[2]);
+					offset += PATH_ENTRY_SIZE;
+				}
+			}
+
+			/* activity times */
+			List<List<double[]>> activeTimes =
+				new ArrayList<List<double[]>>(maxID + 1);
+			for (int i=0; i <= maxID; i++) {
+				activeTimes.add(new ArrayList<double[]>(1));
+			}
+			reader = ExternalPathMovementReader.openFile(activeFilePath);
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().equals("")) {
+					continue;
+				}
+				Scanner traceScan = new Scanner(line);
+				int id = traceScan.nextInt();
+				activeTimes.get(id).add(new double[] {traceScan.nextDouble(),
+						traceScan.nextDouble()});
+			}
+			long[] activeOffsets = new long[maxID + 1];
+			for (int id=0; id <= maxID; id++) {
+				activeOffsets[id] = offset;
+				for (double[] a : activeTimes.get(id)) {
+					out.writeDouble(a[0]);
+					out.writeDouble(a[1]);
+					offset += ACTIVE_TIME_SIZE;
+				}
+			}
+			out.close();
+
+			RandomAccessFile raf = new RandomAccessFile(storeFilePath, "rw");
+			try {
+				raf.writeInt(MAGIC);
+				raf.writeInt(VERSION);
+				raf.writeInt(maxID);
+				for (double d : offsets) {
+					raf.writeDouble(d);
+				}
+				ByteArrayOutputStream table = new ByteArrayOutputStream();
+				DataOutputStream tableOut = new DataOutputStream(table);
+				for (int id=0; id <= maxID; id++) {
+					tableOut.writeLong(dirOffsets[id]);
+					tableOut.writeInt(pathDirs.get(id).size());
+					tableOut.writeLong(activeOffsets[id]);
+					tableOut.writeInt(activeTimes.get(id).size());
+				}
+				raf.write(table.toByteArray());
+			} finally {
+				raf.close();
+			}
+		} finally {
+			reader.close();
+			out.close();
+		}
+	}
+
+	/**
+	 * Parses the <code>time,x,y</code> data points of a trace line
+	 * @param line The line
+	 * @param start Index where the data points start
+	 * @return The data points as (time, x, y) arrays
+	 */
+	private static List<double[]> parseEntries(String line, int start) {
+		List<double[]> entries = new ArrayList<double[]>();
+		int len = line.length();
+		int pos = start;
+		while (pos < len) {
+			while (pos < len && Character.isWhitespace(line.charAt(pos))) {
+				pos++;
+			}
+			if (pos == len) {
+				break;
+			}
+			int end = pos;
+			while (end < len && !Character.isWhitespace(line.charAt(end))) {
+				end++;
+			}
+			int d1 = line.indexOf(',', pos);
+			int d2 = line.indexOf(',', d1+1);
+			if (d1 < 0 || d2 < 0 || d2 >= end) {
+				throw new SettingsError("Invalid data point '" +
+						line.substring(pos, end) + "'");
+			}
+			entries.add(new double[] {
+					Double.parseDouble(line.substring(pos, d1)),
+					Double.parseDouble(line.substring(d1+1, d2)),
+					Double.parseDouble(line.substring(d2+1, end))});
+			pos = end;
+		}
+		return entries;
+	}
+
+	/**
+	 * Encodes and compresses one path
+	 * @param entries The (time, x, y) entries of the path
+	 * @param deflater Deflater to use for the compression
+	 * @return The compressed block
+	 */
+	private static byte[] encodePath(List<double[]> entries,
+			Deflater deflater) {
+		ByteBuffer raw = ByteBuffer.allocate(4 + entries.size() * 3 * 8);
+		raw.putInt(entries.size());
+		long[] prev = new long[3];
+		for (double[] e : entries) {
+			for (int i=0; i < 3; i++) {
+				long bits = Double.doubleToRawLongBits(e[i]);
+				raw.putLong(bits ^ prev[i]);
+				prev[i] = bits;
+			}
+		}
+
+		deflater.reset();
+		deflater.setInput(raw.array());
+		deflater.finish();
+		ByteArrayOutputStream block = new ByteArrayOutputStream(
+				raw.capacity() / 2);
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buffer);
+			block.write(buffer, 0, n);
+		}
+		return block.toByteArray();
+	}
+
+	/**
+	 * Uncompresses and decodes one path
+	 * @param block The compressed block
+	 * @param minTime Time offset to normalize with
+	 * @param minX X offset to normalize with
+	 * @param minY Y offset to normalize with
+	 * @return The entries of the path
+	 */
+	private static List<ExternalPathMovementReader.Entry> decodePath(
+			byte[] block, double minTime, double minX, double minY) {
+		Inflater inflater = new Inflater();
+		ByteBuffer raw;
+		try {
+			inflater.setInput(block);
+			byte[] sizeBytes = new byte[4];
+			inflater.inflate(sizeBytes);
+			int size = ByteBuffer.wrap(sizeBytes).getInt();
+			raw = ByteBuffer.allocate(size * 3 * 8);
+			while (raw.hasRemaining()) {
+				int n = inflater.inflate(raw.array(), raw.position(),
+						raw.remaining());
+				if (n == 0 && (inflater.finished() ||
+						inflater.needsInput())) {
+					throw new SimError("Truncated path in the path store");
+				}
+				raw.position(raw.position() + n);
+			}
+			raw.flip();
+		} catch (DataFormatException e) {
+			throw new SimError(e);
+		} finally {
+			inflater.end();
+		}
+
+		int size = raw.remaining() / (3 * 8);
+		List<ExternalPathMovementReader.Entry> path =
+			new ArrayList<ExternalPathMovementReader.Entry>(size);
+		long time = 0, x = 0, y = 0;
+		for (int i=0; i < size; i++) {
+			time ^= raw.getLong();
+			x ^= raw.getLong();
+			y ^= raw.getLong();
+			ExternalPathMovementReader.Entry e =
+				new ExternalPathMovementReader.Entry();
+			e.time = Double.longBitsToDouble(time) - minTime;
+			e.x = Double.longBitsToDouble(x) - minX;
+			e.y = Double.longBitsToDouble(y) - minY;
+			path.add(e);
+		}
+		return path;
+	}
+
+	/**
+	 * Path index of a single node
+	 */
+	private static class PathDirectory {
+		private long[] offsets;
+		private int[] lengths;
+		private double[] startTimes;
+
+		public PathDirectory(int nrofPaths) {
+			this.offsets = new long[nrofPaths];
+			this.lengths = new int[nrofPaths];
+			this.startTimes = new double[nrofPaths];
+		}
+	}
+}
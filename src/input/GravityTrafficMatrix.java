@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Random;
+
+import util.AliasTable;
+import util.ParetoRNG;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Gravity model traffic matrix: every host has a mass and the traffic from
+ * host i to host j is proportional to mass(i) * mass(j). The masses are
+ * drawn from a Pareto distribution, so a few popular hosts send and receive
+ * much of the traffic. The host ranges are configured like with
+ * {@link UniformTrafficMatrix}.
+ */
+public class GravityTrafficMatrix implements TrafficMatrix {
+	private static final long serialVersionUID = 1L;
+	/** Shape of the Pareto distribution of the masses -setting id
+	 * ({@value}). Smaller values give more skewed traffic.
+	 * Default = {@value #DEF_SHAPE} */
+	public static final String SHAPE_S = "gravityShape";
+	/** Default shape of the mass distribution */
+	public static final double DEF_SHAPE = 1.5;
+
+	private double shape;
+	private int[] hostRange;
+	private int[] toHostRange;
+	/** tables of source and destination masses (created on first use) */
+	private AliasTable sources;
+	private AliasTable destinations;
+
+	/**
+	 * Constructor.
+	 * @param s Settings of the message generator
+	 */
+	public GravityTrafficMatrix(Settings s) {
+		this.shape = s.getDouble(SHAPE_S, DEF_SHAPE);
+		if (!(shape > 0)) {
+			throw new SettingsError("Invalid " + SHAPE_S + " " + shape);
+		}
+		this.hostRange = s.getCsvInts(MessageEventGenerator.HOST_RANGE_S, 2);
+		s.assertValidRange(hostRange, MessageEventGenerator.HOST_RANGE_S);
+		if (s.contains(MessageEventGenerator.TO_HOST_RANGE_S)) {
+			this.toHostRange = s.getCsvInts(
+					MessageEventGenerator.TO_HOST_RANGE_S, 2);
+			s.assertValidRange(toHostRange,
+					MessageEventGenerator.TO_HOST_RANGE_S);
+		}
+		else {
+			this.toHostRange = hostRange;
+		}
+		if (Math.max(hostRange[1], toHostRange[1]) -
+				Math.min(hostRange[0], toHostRange[0]) < 2) {
+			throw new SettingsError("Host ranges must contain at least two " +
+					"hosts");
+		}
+	}
+
+	/**
+	 * Draws the masses of the hosts and creates the sampling tables
+	 * @param rng The random number generator
+	 */
+	private void init(Random rng) {
+		int first = Math.min(hostRange[0], toHostRange[0]);
+		int last = Math.max(hostRange[1], toHostRange[1]);
+		ParetoRNG pareto = new ParetoRNG(rng, shape, 1, -1);
+		double[] masses = new double[last - first];
+		for (int i = 0; i < masses.length; i++) {
+			masses[i] = pareto.getDouble();
+		}
+
+		double[] w = new double[hostRange[1] - hostRange[0]];
+		System.arraycopy(masses, hostRange[0] - first, w, 0, w.length);
+		this.sources = new AliasTable(w);
+		w = new double[toHostRange[1] - toHostRange[0]];
+		System.arraycopy(masses, toHostRange[0] - first, w, 0, w.length);
+		this.destinations = new AliasTable(w);
+	}
+
+	public void drawEndPoints(Random rng, int[] endPoints) {
+		if (sources == null) {
+			init(rng);
+		}
+		int from = hostRange[0] + sources.draw(rng);
+		int to;
+		do {
+			to = toHostRange[0] + destinations.draw(rng);
+		} while (to == from);
+		endPoints[0] = from;
+		endPoints[1] = to;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Markov-modulated Poisson process: the process moves through states in
+ * a cycle, stays in each state an exponentially distributed time and
+ * creates arrivals as a Poisson process with the state's rate. With two
+ * states this is the usual on/off or high/low load model.
+ */
+public class MMPPArrivals implements ArrivalProcess {
+	private static final long serialVersionUID = 1L;
+	/** Arrival rates of the states -setting id ({@value}). Comma
+	 * separated messages per second values (zero for an off state). */
+	public static final String RATES_S = "mmppRates";
+	/** Mean durations of the states -setting id ({@value}). Comma
+	 * separated seconds, one per state. */
+	public static final String DURATIONS_S = "mmppDurations";
+
+	private double[] rates;
+	private double[] durations;
+	private int state;
+	/** time left in the current state (-1 = not drawn yet) */
+	private double stateLeft;
+
+	/**
+	 * Constructor.
+	 * @param s Settings of the message generator
+	 */
+	public MMPPArrivals(Settings s) {
+		this.rates = s.getCsvDoubles(RATES_S);
+		this.durations = s.getCsvDoubles(DURATIONS_S, rates.length);
+		boolean positive = false;
+		for (int i = 0; i < rates.length; i++) {
+			if (!(rates[i] >= 0) || Double.isInfinite(rates[i])) {
+				throw new SettingsError("Invalid rate " + rates[i] + " in " +
+						RATES_S);
+			}
+			if (!(durations[i] > 0) || Double.isInfinite(durations[i])) {
+				throw new SettingsError("Invalid duration " + durations[i] +
+						" in " + DURATIONS_S);
+			}
+			positive |= rates[i] > 0;
+		}
+		if (!positive) {
+			throw new SettingsError("At least one of " + RATES_S +
+					" must be positive");
+		}
+		this.state = 0;
+		this.stateLeft = -1;
+	}
+
+	public double nextInterval(Random rng) {
+		if (stateLeft < 0) {
+			stateLeft = exponential(rng, durations[state]);
+		}
+		double interval = 0;
+		while (true) {
+			double next = rates[state] > 0 ?
+					exponential(rng, 1 / rates[state]) : Double.MAX_VALUE;
+			if (next < stateLeft) {
+				stateLeft -= next;
+				return interval + next;
+			}
+			/* no arrival in this state; move to the next one */
+			interval += stateLeft;
+			state = (state + 1) % rates.length;
+			stateLeft = exponential(rng, durations[state]);
+		}
+	}
+
+	/**
+	 * Draws an exponentially distributed value
+	 * @param rng The random number generator
+	 * @param mean Mean of the distribution
+	 * @return the value
+	 */
+	private static double exponential(Random rng, double mean) {
+		return -Math.log(1 - rng.nextDouble()) * mean;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+import core.Message;
+import core.World;
+
+/**
+ * External event for creating several messages at the same time. The
+ * messages are created in order, like with one
+ * {@link MessageCreateEvent} per message, but the world updates the hosts
+ * only after all of them are created.
+ */
+public class MessageCreateBatchEvent extends ExternalEvent {
+	private static final long serialVersionUID = 1L;
+	private int[] fromAddrs;
+	private int[] toAddrs;
+	private int[] sizes;
+	private String[] ids;
+
+	/**
+	 * Creates a message creation event for the first n messages of the
+	 * given arrays (the values are copied)
+	 * @param from Addresses of the creators of the messages
+	 * @param to Addresses of the destinations of the messages
+	 * @param sizes Sizes of the messages
+	 * @param ids IDs of the messages
+	 * @param n Number of messages
+	 * @param time Time, when the messages are created
+	 */
+	public MessageCreateBatchEvent(int[] from, int[] to, int[] sizes,
+			String[] ids, int n, double time) {
+		super(time);
+		this.fromAddrs = Arrays.copyOf(from, n);
+		this.toAddrs = Arrays.copyOf(to, n);
+		this.sizes = Arrays.copyOf(sizes, n);
+		this.ids = Arrays.copyOf(ids, n);
+	}
+
+	/**
+	 * Returns the number of messages the event creates
+	 * @return the number of messages
+	 */
+	public int getNrofMessages() {
+		return this.ids.length;
+	}
+
+	/**
+	 * Creates the messages this event represents.
+	 */
+	@Override
+	public void processEvent(World world) {
+		for (int i = 0; i < ids.length; i++) {
+			DTNHost to = world.getNodeByAddress(this.toAddrs[i]);
+			DTNHost from = world.getNodeByAddress(this.fromAddrs[i]);
+
+			Message m = new Message(from, to, this.ids[i], this.sizes[i]);
+			m.setResponseSize(0);
+			from.createNewMessage(m);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MSG @" + this.time + " " + (ids.length > 0 ? ids[0] : "") +
+			(ids.length > 1 ? ".." + ids[ids.length - 1] : "") +
+			" (" + ids.length + " messages) CREATE";
+	}
+}
@@ -16,6 +16,7 @@ import guologutils.GuoLog;
  * be configured.
  */
 public class MessageEventGenerator implements EventQueue {
+	private static final long serialVersionUID = 1L;
 	/** Message size range -setting id ({@value}). Can be either a single
 	 * value or a range (min, max) of uniformly distributed random values.
 	 * Defines the message size (bytes). */
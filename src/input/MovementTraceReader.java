@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.Serializable;
+import java.util.List;
+
+import util.Tuple;
+
+import core.Coord;
+
+/**
+ * Interface for readers of time-location traces used by the
+ * ExternalMovement movement model. Readers return the traces one time
+ * instance at a time so that only the next few sampling intervals need to
+ * be in memory. Readers are serializable so that the read position can be
+ * stored in simulation checkpoints.
+ */
+public interface MovementTraceReader extends Serializable {
+
+	/**
+	 * Sets normalizing of read values on/off. If on, returned values are
+	 * decremented by minimum values of the offsets.
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize);
+
+	/**
+	 * Reads all new id-coordinate tuples that belong to the same time instance
+	 * @return A list of tuples or empty list if there were no more moves
+	 */
+	public List<Tuple<String, Coord>> readNextMovements();
+
+	/**
+	 * Returns the time stamp where the last moves read with
+	 * {@link #readNextMovements()} belong to.
+	 * @return The time stamp
+	 */
+	public double getLastTimeStamp();
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime();
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime();
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX();
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX();
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY();
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY();
+
+	/**
+	 * Closes the input file(s) of the reader.
+	 */
+	public void close();
+}
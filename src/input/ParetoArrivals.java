@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Random;
+
+import util.ParetoRNG;
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Renewal arrival process with Pareto distributed intervals between
+ * arrivals. Gives bursty, heavy-tailed traffic. The minimum interval is
+ * chosen so that the mean rate is {@link PoissonArrivals#RATE_S} (when
+ * the intervals are not capped).
+ */
+public class ParetoArrivals implements ArrivalProcess {
+	private static final long serialVersionUID = 1L;
+	/** Shape (coefficient) of the Pareto distribution -setting id
+	 * ({@value}). Must be over 1 for the mean to exist. Smaller values give
+	 * burstier traffic. Default = {@value #DEF_SHAPE} */
+	public static final String SHAPE_S = "paretoShape";
+	/** Maximum interval -setting id ({@value}). Longer intervals are
+	 * redrawn. Default = no maximum. */
+	public static final String MAX_INTERVAL_S = "paretoMaxInterval";
+	/** Default shape of the distribution */
+	public static final double DEF_SHAPE = 1.5;
+
+	private double shape;
+	private double minInterval;
+	private double maxInterval;
+	/** created on first use (with the generator's rng) */
+	private transient ParetoRNG pareto;
+
+	/**
+	 * Constructor.
+	 * @param s Settings of the message generator
+	 */
+	public ParetoArrivals(Settings s) {
+		double rate = s.getDouble(PoissonArrivals.RATE_S);
+		this.shape = s.getDouble(SHAPE_S, DEF_SHAPE);
+		this.maxInterval = s.getDouble(MAX_INTERVAL_S, -1);
+		if (!(rate > 0) || Double.isInfinite(rate)) {
+			throw new SettingsError("Invalid " + PoissonArrivals.RATE_S +
+					" " + rate);
+		}
+		if (!(shape > 1)) {
+			throw new SettingsError("Invalid " + SHAPE_S + " " + shape +
+					" (must be over 1)");
+		}
+		/* mean of Pareto is min * shape / (shape - 1) */
+		this.minInterval = (shape - 1) / (shape * rate);
+		if (maxInterval != -1 && !(maxInterval > minInterval)) {
+			throw new SettingsError("Invalid " + MAX_INTERVAL_S + " " +
+					maxInterval + " (must be over the minimum interval " +
+					minInterval + ")");
+		}
+	}
+
+	public double nextInterval(Random rng) {
+		if (pareto == null) {
+			pareto = new ParetoRNG(rng, shape, minInterval, maxInterval);
+		}
+		return pareto.getDouble();
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Poisson arrival process: exponentially distributed intervals between
+ * arrivals.
+ */
+public class PoissonArrivals implements ArrivalProcess {
+	private static final long serialVersionUID = 1L;
+	/** Mean arrival rate -setting id ({@value}). Messages per second. */
+	public static final String RATE_S = "rate";
+
+	private double rate;
+
+	/**
+	 * Constructor.
+	 * @param s Settings of the message generator
+	 */
+	public PoissonArrivals(Settings s) {
+		this.rate = s.getDouble(RATE_S);
+		if (!(rate > 0) || Double.isInfinite(rate)) {
+			throw new SettingsError("Invalid " + RATE_S + " " + rate);
+		}
+	}
+
+	public double nextInterval(Random rng) {
+		return -Math.log(1 - rng.nextDouble()) / rate;
+	}
+}
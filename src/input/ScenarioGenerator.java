@@ -0,0 +1,409 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import core.SettingsError;
+
+/**
+ * Generator of parameterised synthetic scenarios. Writes a settings file
+ * (to be read on top of <CODE>default_settings.txt</CODE>) with one group
+ * of hosts that move in an open world (no map) and have one
+ * {@link interfaces.SimpleBroadcastInterface}, and with
+ * {@link MessageEventGenerator}s that create messages between random
+ * hosts at the requested rate. The number of hosts, world size, radio
+ * range, message rate, router etc. can be set with the setters or command
+ * line options, so that scenarios of any size can be created for scaling
+ * tests.
+ * <P>
+ * Usage: <CODE>java input.ScenarioGenerator [options] [-out file]</CODE>
+ * (see {@link #setOption(String, String)} for the options). Without
+ * <CODE>-out</CODE> the settings are printed to the standard output.
+ * </P>
+ * <P>
+ * Since message generators take the inter-message interval as whole
+ * seconds, rates over half a message per second are split to several
+ * generators (with different ID prefixes) and the realised rate (see
+ * {@link #getRealisedMsgRate()}) is close to, but not exactly, the
+ * requested one.
+ * </P>
+ */
+public class ScenarioGenerator {
+	/** Name of the interface in the generated settings ({@value}) */
+	public static final String INTERFACE_NS = "synthInterface";
+	/** Group ID of the hosts in the generated settings ({@value}) */
+	public static final String GROUP_ID = "n";
+	/** Message ID prefix of the first message generator ({@value}).
+	 * The others get a running number after it. */
+	public static final String MESSAGE_PREFIX = "M";
+
+	private String name = null;
+	private int nrofHosts = 100;
+	private int[] worldSize = {4500, 3400};
+	private double range = 10;
+	private String transmitSpeed = "250k";
+	private double msgRate = 1.0 / 30;
+	private String msgSize = "500k,1M";
+	private String router = "EpidemicRouter";
+	private String movementModel = "RandomWaypoint";
+	private String bufferSize = "5M";
+	private int msgTtl = 300;
+	private double endTime = 43200;
+	private double updateInterval = 0.1;
+	private double warmup = 1000;
+	private long seed = 1;
+	private String report = "MessageStatsReport";
+
+	/**
+	 * Sets a parameter of the scenario by its command line option name.
+	 * The options (and their defaults) are:<BR>
+	 * <CODE>-name</CODE> scenario name (generated from the parameters)<BR>
+	 * <CODE>-nodes</CODE> number of hosts (100)<BR>
+	 * <CODE>-worldSize</CODE> width and height of the world (4500,3400)<BR>
+	 * <CODE>-range</CODE> transmit range in meters (10)<BR>
+	 * <CODE>-speed</CODE> transmit speed in bytes per second (250k)<BR>
+	 * <CODE>-msgRate</CODE> created messages per second (1/30)<BR>
+	 * <CODE>-msgSize</CODE> message size or size range (500k,1M)<BR>
+	 * <CODE>-router</CODE> router class (EpidemicRouter)<BR>
+	 * <CODE>-movement</CODE> movement model class (RandomWaypoint)<BR>
+	 * <CODE>-bufferSize</CODE> buffer size of the hosts (5M)<BR>
+	 * <CODE>-ttl</CODE> message TTL in minutes (300)<BR>
+	 * <CODE>-endTime</CODE> simulated time in seconds (43200)<BR>
+	 * <CODE>-updateInterval</CODE> update interval in seconds (0.1)<BR>
+	 * <CODE>-warmup</CODE> movement warmup in seconds (1000)<BR>
+	 * <CODE>-seed</CODE> movement model rng seed (1)<BR>
+	 * <CODE>-report</CODE> report class or "none" (MessageStatsReport)
+	 * @param option The option (with the leading dash)
+	 * @param value Value of the option
+	 * @return true if the option was a scenario parameter, false if not
+	 * @throws SettingsError if the value is not valid for the option
+	 */
+	public boolean setOption(String option, String value) {
+		try {
+			if (option.equals("-name")) {
+				this.name = value;
+			} else if (option.equals("-nodes")) {
+				setNrofHosts(Integer.parseInt(value));
+			} else if (option.equals("-worldSize")) {
+				String[] wh = value.split(",");
+				if (wh.length != 2) {
+					throw new SettingsError("World size must be width,height");
+				}
+				setWorldSize(Integer.parseInt(wh[0].trim()),
+						Integer.parseInt(wh[1].trim()));
+			} else if (option.equals("-range")) {
+				this.range = Double.parseDouble(value);
+			} else if (option.equals("-speed")) {
+				this.transmitSpeed = value;
+			} else if (option.equals("-msgRate")) {
+				this.msgRate = parseRate(value);
+			} else if (option.equals("-msgSize")) {
+				this.msgSize = value;
+			} else if (option.equals("-router")) {
+				this.router = value;
+			} else if (option.equals("-movement")) {
+				this.movementModel = value;
+			} else if (option.equals("-bufferSize")) {
+				this.bufferSize = value;
+			} else if (option.equals("-ttl")) {
+				this.msgTtl = Integer.parseInt(value);
+			} else if (option.equals("-endTime")) {
+				this.endTime = Double.parseDouble(value);
+			} else if (option.equals("-updateInterval")) {
+				this.updateInterval = Double.parseDouble(value);
+			} else if (option.equals("-warmup")) {
+				this.warmup = Double.parseDouble(value);
+			} else if (option.equals("-seed")) {
+				this.seed = Long.parseLong(value);
+			} else if (option.equals("-report")) {
+				this.report = value.equals("none") ? null : value;
+			} else {
+				return false;
+			}
+		} catch (NumberFormatException e) {
+			throw new SettingsError("Invalid value '" + value +
+					"' for option " + option);
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a rate that can be given as a fraction (e.g., "1/30")
+	 * @param value The rate
+	 * @return the rate
+	 */
+	private static double parseRate(String value) {
+		int slash = value.indexOf('/');
+		double rate;
+		if (slash >= 0) {
+			rate = Double.parseDouble(value.substring(0, slash)) /
+				Double.parseDouble(value.substring(slash + 1));
+		}
+		else {
+			rate = Double.parseDouble(value);
+		}
+		if (!(rate > 0)) {
+			throw new SettingsError("Message rate must be positive");
+		}
+		return rate;
+	}
+
+	/**
+	 * Sets the number of hosts
+	 * @param nrofHosts The number of hosts
+	 */
+	public void setNrofHosts(int nrofHosts) {
+		if (nrofHosts < 2) {
+			throw new SettingsError("Scenario needs at least two hosts");
+		}
+		this.nrofHosts = nrofHosts;
+	}
+
+	/**
+	 * Returns the number of hosts
+	 * @return the number of hosts
+	 */
+	public int getNrofHosts() {
+		return this.nrofHosts;
+	}
+
+	/**
+	 * Sets the size of the world
+	 * @param width Width of the world (meters)
+	 * @param height Height of the world (meters)
+	 */
+	public void setWorldSize(int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new SettingsError("Invalid world size " + width + "," +
+					height);
+		}
+		this.worldSize = new int[] {width, height};
+	}
+
+	/**
+	 * Returns the size of the world
+	 * @return width and height of the world (meters)
+	 */
+	public int[] getWorldSize() {
+		return this.worldSize;
+	}
+
+	/**
+	 * Returns the transmit range of the hosts
+	 * @return the range (meters)
+	 */
+	public double getRange() {
+		return this.range;
+	}
+
+	/**
+	 * Returns the requested message creation rate
+	 * @return messages per second
+	 */
+	public double getMsgRate() {
+		return this.msgRate;
+	}
+
+	/**
+	 * Returns the message creation rate that the generated message
+	 * generators realise. Can differ a bit from the requested rate since
+	 * the generators' intervals are whole seconds.
+	 * @return messages per second
+	 */
+	public double getRealisedMsgRate() {
+		long[] generators = getGenerators();
+		return generators[0] / ((generators[1] + generators[2] - 1) / 2.0);
+	}
+
+	/**
+	 * Returns the number of message generators and their interval range
+	 * for the requested message rate. The rate is split to enough
+	 * generators that their mean interval is at least two seconds (or one
+	 * generator for low rates).
+	 * @return number of generators, min interval and max interval (the
+	 * max is exclusive unless it equals the min)
+	 */
+	private long[] getGenerators() {
+		long nrofGenerators = Math.max(1, (long)Math.ceil(2 * msgRate));
+		double meanInterval = nrofGenerators / msgRate;
+		/* uniform [min, max) intervals whose mean is close to meanInterval */
+		long minInterval = Math.max(1, Math.round(meanInterval / 2));
+		long maxInterval = Math.max(minInterval + 1,
+				Math.round(2 * meanInterval - minInterval + 1));
+		return new long[] {nrofGenerators, minInterval, maxInterval};
+	}
+
+	/**
+	 * Returns the router class of the hosts
+	 * @return the router class name
+	 */
+	public String getRouter() {
+		return this.router;
+	}
+
+	/**
+	 * Returns the simulated time of the scenario
+	 * @return the end time (seconds)
+	 */
+	public double getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * Returns the name of the scenario. If no name was set, the name is
+	 * composed of the main parameters.
+	 * @return the name of the scenario
+	 */
+	public String getName() {
+		if (this.name != null) {
+			return this.name;
+		}
+		return "synthetic_" + router + "_n" + nrofHosts + "_" +
+			worldSize[0] + "x" + worldSize[1] + "_r" +
+			format(range);
+	}
+
+	/**
+	 * Writes the settings of the scenario
+	 * @param out Where to write to
+	 */
+	public void write(PrintWriter out) {
+		long[] generators = getGenerators();
+		long nrofGenerators = generators[0];
+		long minInterval = generators[1];
+		long maxInterval = generators[2];
+
+		out.println("# Synthetic scenario generated by " +
+				getClass().getName());
+		out.println("# realised message rate " + getRealisedMsgRate() +
+				" messages/s");
+		out.println("Scenario.name = " + getName());
+		out.println("Scenario.simulateConnections = true");
+		out.println("Scenario.updateInterval = " + format(updateInterval));
+		out.println("Scenario.endTime = " + format(endTime));
+		out.println("Scenario.nrofHostGroups = 1");
+		out.println();
+		out.println(INTERFACE_NS + ".type = SimpleBroadcastInterface");
+		out.println(INTERFACE_NS + ".transmitSpeed = " + transmitSpeed);
+		out.println(INTERFACE_NS + ".transmitRange = " + format(range));
+		out.println();
+		out.println("Group.movementModel = " + movementModel);
+		out.println("Group.router = " + router);
+		out.println("Group.bufferSize = " + bufferSize);
+		out.println("Group.msgTtl = " + msgTtl);
+		out.println("Group.nrofInterfaces = 1");
+		out.println("Group.interface1 = " + INTERFACE_NS);
+		out.println("Group1.groupID = " + GROUP_ID);
+		out.println("Group1.nrofHosts = " + nrofHosts);
+		out.println();
+		out.println("Events.nrof = " + nrofGenerators);
+		for (int i = 1; i <= nrofGenerators; i++) {
+			String ns = "Events" + i + ".";
+			out.println(ns + "class = MessageEventGenerator");
+			out.println(ns + "interval = " + minInterval + "," + maxInterval);
+			out.println(ns + "size = " + msgSize);
+			out.println(ns + "hosts = 0," + nrofHosts);
+			out.println(ns + "prefix = " + MESSAGE_PREFIX +
+					(i > 1 ? Integer.toString(i) : ""));
+		}
+		out.println();
+		out.println("MovementModel.rngSeed = " + seed);
+		out.println("MovementModel.worldSize = " + worldSize[0] + ", " +
+				worldSize[1]);
+		out.println("MovementModel.warmup = " + format(warmup));
+		out.println();
+		if (report != null) {
+			out.println("Report.nrofReports = 1");
+			out.println("Report.report1 = " + report);
+		}
+		else {
+			out.println("Report.nrofReports = 0");
+		}
+	}
+
+	/**
+	 * Writes the settings of the scenario to a file. Creates the file's
+	 * directory if it doesn't exist.
+	 * @param fileName Name of the file
+	 * @throws IOException if writing failed
+	 */
+	public void write(String fileName) throws IOException {
+		File dir = new File(fileName).getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Couldn't create directory " + dir);
+		}
+		PrintWriter out = new PrintWriter(new BufferedWriter(
+				new FileWriter(fileName)));
+		write(out);
+		out.close();
+		if (out.checkError()) {
+			throw new IOException("Couldn't write " + fileName);
+		}
+	}
+
+	/**
+	 * Formats a number without a fraction part if it has none
+	 * @param value The number
+	 * @return the number as a string
+	 */
+	private static String format(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long)value);
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Generates a scenario with the parameters given as command line options
+	 * @param args Options (see {@link #setOption(String, String)}) and
+	 * optionally <CODE>-out file</CODE>
+	 */
+	public static void main(String[] args) {
+		ScenarioGenerator gen = new ScenarioGenerator();
+		String outFile = null;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (i + 1 >= args.length) {
+					throw new SettingsError("No value for option " + args[i]);
+				}
+				if (args[i].equals("-out")) {
+					outFile = args[++i];
+				}
+				else if (!gen.setOption(args[i], args[i + 1])) {
+					throw new SettingsError("Unknown option " + args[i]);
+				}
+				else {
+					i++;
+				}
+			}
+		} catch (SettingsError e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: java input.ScenarioGenerator " +
+					"[options] [-out file]");
+			System.exit(1);
+		}
+
+		if (outFile != null) {
+			try {
+				gen.write(outFile);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+			}
+		}
+		else {
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(
+					System.out));
+			gen.write(out);
+			out.flush();
+		}
+	}
+}
@@ -4,25 +4,31 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time
- * are merged to a single update.
+ * are merged to a single update. The update times are kept in a binary
+ * heap, so adding an update and taking the next one take logarithmic time;
+ * requests for the same time are merged when the time comes up.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	private static final long serialVersionUID = 1L;
+	/** Initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** binary min-heap of the update times */
+	private double[] times;
+	/** number of times in the heap */
+	private int size;
 
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.times = new double[INITIAL_CAPACITY];
+		this.size = 0;
 	}
 
 	/**
@@ -31,16 +37,16 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+
+		double time = removeFirst();
+		while (this.size > 0 && this.times[0] == time) {
+			removeFirst(); /* merge the requests for the same time */
 		}
 
-		return event;
+		return new ExternalEvent(time);
 	}
 
 	/**
@@ -49,7 +55,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return this.size > 0 ? this.times[0] : Double.MAX_VALUE;
 	}
 
 	/**
@@ -57,47 +63,67 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
+		if (this.size > 0 && this.times[0] == simTime) {
+			return; // this update is already next
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		if (this.size == this.times.length) {
+			this.times = Arrays.copyOf(this.times, this.size * 2);
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+
+		/* sift up from the end of the heap */
+		int i = this.size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (this.times[parent] <= simTime) {
+				break;
+			}
+			this.times[i] = this.times[parent];
+			i = parent;
 		}
+		this.times[i] = simTime;
 	}
 
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Removes the first (earliest) time from the heap
+	 * @return the removed time
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
+	private double removeFirst() {
+		double first = this.times[0];
+		double last = this.times[--this.size];
 
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+		/* sift the last time down from the root */
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.size) {
+				break;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			if (child + 1 < this.size &&
+					this.times[child + 1] < this.times[child]) {
+				child++;
 			}
+			if (this.times[child] >= last) {
+				break;
+			}
+			this.times[i] = this.times[child];
+			i = child;
 		}
+		this.times[i] = last;
 
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);
+		return first;
 	}
 
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		double[] sorted = Arrays.copyOf(this.times, this.size);
+		Arrays.sort(sorted);
+		String times = "updates @ " + (this.size > 0 ? "" :
+			Double.toString(Double.MAX_VALUE));
 
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i = 0; i < sorted.length; i++) {
+			if (i > 0 && sorted[i] == sorted[i - 1]) {
+				continue;
+			}
+			times += (i > 0 ? ", " : "") + sorted[i];
 		}
 
 		return times;
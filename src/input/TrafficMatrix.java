@@ -0,0 +1,27 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Traffic matrix of {@link WorkloadMessageGenerator}: draws the source
+ * and destination of each message. Implementations are loaded by the
+ * class name given with {@link WorkloadMessageGenerator#MATRIX_S} and must
+ * have a constructor that takes the generator's {@link core.Settings} as
+ * the only parameter.
+ */
+public interface TrafficMatrix extends Serializable {
+
+	/**
+	 * Draws the end points of a message. The source and destination are
+	 * different hosts.
+	 * @param rng The random number generator to use
+	 * @param endPoints Array where the source address is stored at index 0
+	 * and the destination address at index 1
+	 */
+	public void drawEndPoints(Random rng, int[] endPoints);
+}
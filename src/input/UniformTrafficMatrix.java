@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Traffic matrix where all source and destination pairs are equally likely.
+ * The hosts are configured like with {@link MessageEventGenerator}: the
+ * sources (and destinations) are from the
+ * {@link MessageEventGenerator#HOST_RANGE_S} range and, if
+ * {@link MessageEventGenerator#TO_HOST_RANGE_S} is defined, the
+ * destinations are from that range.
+ */
+public class UniformTrafficMatrix implements TrafficMatrix {
+	private static final long serialVersionUID = 1L;
+	private int[] hostRange;
+	private int[] toHostRange;
+
+	/**
+	 * Constructor.
+	 * @param s Settings of the message generator
+	 */
+	public UniformTrafficMatrix(Settings s) {
+		this.hostRange = s.getCsvInts(MessageEventGenerator.HOST_RANGE_S, 2);
+		s.assertValidRange(hostRange, MessageEventGenerator.HOST_RANGE_S);
+		if (s.contains(MessageEventGenerator.TO_HOST_RANGE_S)) {
+			this.toHostRange = s.getCsvInts(
+					MessageEventGenerator.TO_HOST_RANGE_S, 2);
+			s.assertValidRange(toHostRange,
+					MessageEventGenerator.TO_HOST_RANGE_S);
+		}
+		else {
+			this.toHostRange = hostRange;
+		}
+		if (toHostRange[1] - toHostRange[0] < 2 &&
+				hostRange[1] - hostRange[0] < 2 &&
+				toHostRange[0] == hostRange[0]) {
+			throw new SettingsError("Host ranges must allow at least two " +
+					"different end points");
+		}
+	}
+
+	public void drawEndPoints(Random rng, int[] endPoints) {
+		int from = draw(rng, hostRange);
+		int to;
+		do {
+			to = draw(rng, toHostRange);
+		} while (to == from);
+		endPoints[0] = from;
+		endPoints[1] = to;
+	}
+
+	/**
+	 * Draws a host address from a range
+	 * @param rng The random number generator
+	 * @param range The range (upper bound exclusive)
+	 * @return the address
+	 */
+	private static int draw(Random rng, int[] range) {
+		if (range[1] <= range[0] + 1) {
+			return range[0];
+		}
+		return range[0] + rng.nextInt(range[1] - range[0]);
+	}
+}
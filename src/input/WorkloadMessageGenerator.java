@@ -0,0 +1,246 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import core.Settings;
+import core.SettingsError;
+
+/**
+ * Message creation -external events generator for configurable workloads.
+ * The creation times come from a pluggable {@link ArrivalProcess}
+ * ({@link PoissonArrivals}, {@link ParetoArrivals} or {@link MMPPArrivals}),
+ * optionally shaped with a {@link DiurnalCurve}, and the end points of the
+ * messages from a pluggable {@link TrafficMatrix}
+ * ({@link UniformTrafficMatrix}, {@link GravityTrafficMatrix} or
+ * {@link CsvTrafficMatrix}). The messages are generated lazily, one event
+ * at a time, so workloads of any length take no extra memory.
+ * <P>
+ * Example:<BR>
+ * <CODE>
+ * Events1.class = WorkloadMessageGenerator<BR>
+ * Events1.prefix = W<BR>
+ * Events1.hosts = 0,5000<BR>
+ * Events1.size = 1k,100k<BR>
+ * Events1.arrivals = MMPPArrivals<BR>
+ * Events1.mmppRates = 50, 2000<BR>
+ * Events1.mmppDurations = 600, 60<BR>
+ * Events1.matrix = GravityTrafficMatrix<BR>
+ * Events1.diurnal = 0.2,0.2,0.2,0.2,0.3,0.5,1,1.5,2,2,2,2,2,2,2,2,2,2,1.5,
+ * 1,0.8,0.5,0.3,0.2<BR>
+ * Events1.quantum = 1
+ * </CODE>
+ * </P>
+ * <P>
+ * With high rates, {@link #QUANTUM_S} makes the generator create the
+ * messages that arrive within the same quantum as one
+ * {@link MessageCreateBatchEvent} at the end of the quantum, so that the
+ * hosts are not updated once per message (see
+ * {@link BatchMessageEventGenerator}).
+ * </P>
+ */
+public class WorkloadMessageGenerator implements EventQueue {
+	private static final long serialVersionUID = 1L;
+	/** Arrival process class -setting id ({@value}). Name of a class in
+	 * the input package implementing {@link ArrivalProcess}.
+	 * Default = {@value #DEF_ARRIVALS} */
+	public static final String ARRIVALS_S = "arrivals";
+	/** Traffic matrix class -setting id ({@value}). Name of a class in
+	 * the input package implementing {@link TrafficMatrix}.
+	 * Default = {@value #DEF_MATRIX} */
+	public static final String MATRIX_S = "matrix";
+	/** Diurnal rate curve -setting id ({@value}). Comma separated rate
+	 * multipliers of equal length slots of the period. By default the rate
+	 * is not varied. */
+	public static final String DIURNAL_S = "diurnal";
+	/** Period of the diurnal curve -setting id ({@value}). Seconds.
+	 * Default = {@value #DEF_DIURNAL_PERIOD} */
+	public static final String DIURNAL_PERIOD_S = "diurnalPeriod";
+	/** Creation time quantum -setting id ({@value}). If positive, the
+	 * messages arriving within each quantum are created together at the
+	 * end of the quantum. Default = 0 (every message is created at its
+	 * arrival time) */
+	public static final String QUANTUM_S = "quantum";
+	/** Seed of the random number generator -setting id ({@value}).
+	 * Default = hash code of the message ID prefix */
+	public static final String SEED_S = "seed";
+
+	/** Default arrival process class */
+	public static final String DEF_ARRIVALS = "PoissonArrivals";
+	/** Default traffic matrix class */
+	public static final String DEF_MATRIX = "UniformTrafficMatrix";
+	/** Default diurnal period (one day) */
+	public static final double DEF_DIURNAL_PERIOD = 86400;
+	/** Maximum number of messages in a batch event */
+	public static final int MAX_BATCH = 10000;
+
+	private ArrivalProcess arrivals;
+	private TrafficMatrix matrix;
+	private DiurnalCurve curve;
+	private Random rng;
+	private String idPrefix;
+	private int id;
+	private int[] sizeRange;
+	private double endTime;
+	private double quantum;
+
+	/** operational time of the next arrival */
+	private double nextOpTime;
+	/** simulation time of the next arrival (MAX_VALUE if none) */
+	private double nextArrival;
+	private int[] endPoints;
+
+	/** end points, sizes and IDs of the messages of the next batch event */
+	private int[] fromAddrs;
+	private int[] toAddrs;
+	private int[] sizes;
+	private String[] ids;
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator.
+	 */
+	public WorkloadMessageGenerator(Settings s) {
+		this.idPrefix = s.getSetting(MessageEventGenerator.MESSAGE_ID_PREFIX_S);
+		this.rng = new Random(s.contains(SEED_S) ? s.getInt(SEED_S) :
+			idPrefix.hashCode());
+
+		this.sizeRange = s.getCsvInts(MessageEventGenerator.MESSAGE_SIZE_S);
+		if (sizeRange.length == 1) {
+			sizeRange = new int[] {sizeRange[0], sizeRange[0]};
+		}
+		else {
+			s.assertValidRange(sizeRange, MessageEventGenerator.MESSAGE_SIZE_S);
+		}
+
+		double startTime = 0;
+		this.endTime = Double.MAX_VALUE;
+		if (s.contains(MessageEventGenerator.MESSAGE_TIME_S)) {
+			double[] times = s.getCsvDoubles(
+					MessageEventGenerator.MESSAGE_TIME_S, 2);
+			startTime = times[0];
+			endTime = times[1];
+		}
+
+		this.quantum = s.getDouble(QUANTUM_S, 0);
+		if (!(quantum >= 0)) {
+			throw new SettingsError("Invalid " + QUANTUM_S + " " + quantum);
+		}
+
+		if (s.contains(DIURNAL_S)) {
+			this.curve = new DiurnalCurve(s.getCsvDoubles(DIURNAL_S),
+					s.getDouble(DIURNAL_PERIOD_S, DEF_DIURNAL_PERIOD));
+		}
+
+		String pkg = EventQueueHandler.CLASS_PACKAGE + ".";
+		this.arrivals = (ArrivalProcess)s.createIntializedObject(pkg +
+				s.getSetting(ARRIVALS_S, DEF_ARRIVALS));
+		this.matrix = (TrafficMatrix)s.createIntializedObject(pkg +
+				s.getSetting(MATRIX_S, DEF_MATRIX));
+
+		this.endPoints = new int[2];
+		if (quantum > 0) {
+			this.fromAddrs = new int[16];
+			this.toAddrs = new int[16];
+			this.sizes = new int[16];
+			this.ids = new String[16];
+		}
+		this.nextOpTime = curve != null ? curve.toOperational(startTime) :
+			startTime;
+		advance();
+	}
+
+	/**
+	 * Draws the next arrival
+	 */
+	private void advance() {
+		nextOpTime += arrivals.nextInterval(rng);
+		nextArrival = curve != null ? curve.toSimTime(nextOpTime) :
+			nextOpTime;
+		if (nextArrival > endTime) {
+			nextArrival = Double.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Returns the creation time of a message that arrives at the given time
+	 * @param arrival The arrival time
+	 * @return the creation time
+	 */
+	private double creationTime(double arrival) {
+		if (quantum == 0 || arrival == Double.MAX_VALUE) {
+			return arrival;
+		}
+		return Math.ceil(arrival / quantum) * quantum;
+	}
+
+	/**
+	 * Generates a (random) message size
+	 * @return message size
+	 */
+	private int drawMessageSize() {
+		return sizeRange[0] + (sizeRange[0] == sizeRange[1] ? 0 :
+			rng.nextInt(sizeRange[1] - sizeRange[0]));
+	}
+
+	/**
+	 * Returns the next message creation event (or an event creating all
+	 * messages of the next quantum)
+	 * @see input.EventQueue#nextEvent()
+	 */
+	public ExternalEvent nextEvent() {
+		double time = creationTime(nextArrival);
+		if (time == Double.MAX_VALUE) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+
+		if (quantum == 0) {
+			matrix.drawEndPoints(rng, endPoints);
+			MessageCreateEvent mce = new MessageCreateEvent(endPoints[0],
+					endPoints[1], idPrefix + (++id), drawMessageSize(), 0,
+					time);
+			advance();
+			return mce;
+		}
+
+		int n = 0;
+		do {
+			if (n == fromAddrs.length) {
+				grow();
+			}
+			matrix.drawEndPoints(rng, endPoints);
+			fromAddrs[n] = endPoints[0];
+			toAddrs[n] = endPoints[1];
+			sizes[n] = drawMessageSize();
+			ids[n] = idPrefix + (++id);
+			n++;
+			advance();
+		} while (n < MAX_BATCH && creationTime(nextArrival) == time);
+
+		return new MessageCreateBatchEvent(fromAddrs, toAddrs, sizes, ids, n,
+				time);
+	}
+
+	/**
+	 * Doubles the capacity of the batch arrays (up to the maximum batch size)
+	 */
+	private void grow() {
+		int capacity = Math.min(fromAddrs.length * 2, MAX_BATCH);
+		this.fromAddrs = Arrays.copyOf(fromAddrs, capacity);
+		this.toAddrs = Arrays.copyOf(toAddrs, capacity);
+		this.sizes = Arrays.copyOf(sizes, capacity);
+		this.ids = Arrays.copyOf(ids, capacity);
+	}
+
+	/**
+	 * Returns next message creation event's time
+	 * @see input.EventQueue#nextEventsTime()
+	 */
+	public double nextEventsTime() {
+		return creationTime(nextArrival);
+	}
+}
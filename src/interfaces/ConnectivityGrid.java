@@ -4,12 +4,14 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 
 import movement.MovementModel;
 
+import core.Checkpoint;
 import core.Coord;
 import core.DTNSim;
 import core.NetworkInterface;
@@ -40,6 +42,7 @@ import core.World;
  * from zero to conserve memory.
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Cell based optimization cell size multiplier -setting id ({@value}).
@@ -67,6 +70,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
+		Checkpoint.registerStaticState(ConnectivityGrid.class, "gridobjects");
 		reset();
 	}
 
@@ -264,7 +268,8 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * A single cell in the cell grid. Contains the interfaces that are
 	 * currently in that part of the grid.
 	 */
-	public class GridCell {
+	public class GridCell implements Serializable {
+		private static final long serialVersionUID = 1L;
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
 		private ArrayList<NetworkInterface> interfaces;
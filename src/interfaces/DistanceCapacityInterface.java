@@ -17,6 +17,7 @@ import core.VBRConnection;
  * values using setting {@link #TRANSMIT_SPEEDS_S}.
  */
 public class DistanceCapacityInterface extends NetworkInterface {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Comma-separated list of speed values -setting id ({@value} ). The first
@@ -18,6 +18,7 @@ import core.VBRConnection;
  * transmissions. The configured transmit speed is the maximum obtainable speed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	private static final long serialVersionUID = 1L;
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
 
@@ -4,11 +4,13 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 
 import movement.map.SimMap;
+import core.Checkpoint;
 import core.Coord;
 import core.DTNSim;
 
@@ -19,7 +21,8 @@ import core.DTNSim;
  *
  * @author Frans Ekman
  */
-public class BusControlSystem {
+public class BusControlSystem implements Serializable {
+	private static final long serialVersionUID = 1L;
 	public static final String BUS_CONTROL_SYSTEM_NR = "busControlSystemNr";
 
 	private static HashMap<Integer, BusControlSystem> systems;
@@ -32,6 +35,7 @@ public class BusControlSystem {
 
 	static {
 		DTNSim.registerForReset(BusControlSystem.class.getCanonicalName());
+		Checkpoint.registerStaticState(BusControlSystem.class, "systems");
 		reset();
 	}
 
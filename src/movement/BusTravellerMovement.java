@@ -27,6 +27,7 @@ import core.Settings;
  */
 public class BusTravellerMovement extends MapBasedMovement implements
 	SwitchableMovement, TransportMovement {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PROBABILITIES_STRING = "probs";
 	public static final String PROBABILITY_TAKE_OTHER_BUS = "probTakeOtherBus";
@@ -26,6 +26,7 @@ import core.Settings;
  */
 public class EveningActivityMovement extends MapBasedMovement
 	implements SwitchableMovement {
+	private static final long serialVersionUID = 1L;
 
 	private static final int WALKING_TO_MEETING_SPOT_MODE = 0;
 	private static final int EVENING_ACTIVITY_MODE = 1;
@@ -4,85 +4,104 @@
  */
 package movement;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 
+import core.Checkpoint;
 import core.Coord;
 import core.DTNSim;
 import core.Settings;
 import core.SimClock;
+import core.SettingsError;
 import guologutils.GuoLog;
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
+import input.MovementTraceReader;
 import util.Tuple;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The data can be
+ * a text trace (see {@link ExternalMovementReader}) or a binary trace
+ * (see {@link BinaryMovementReader}) whose name ends with
+ * {@value BinaryMovementReader#BINARY_EXT}.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** Namespace for settings */
-    //ռ
+    //命名空间
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
-	//ⲿļ·
+	//外部坐标文件路径
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** convert text traces to binary traces -setting id ({@value}).
+	 * Boolean. If true, a text trace is converted (once) to a binary trace
+	 * in the same directory and the binary trace is used instead. The
+	 * conversion is redone only if the text trace is newer than the binary
+	 * one. Default = false. */
+	public static final String BINARY_CACHE_S = "binaryCache";
 
 	/** default initial location for excess nodes */
-	//Ĭϳʼλ
+	//默认初始化位置
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
-	private static ExternalMovementReader reader;
+	private static MovementTraceReader reader;
 	private static String inputFileName;
 
 	
 	/** mapping of external id to movement model */
-	//ⲿidƶģ͵ӳmapping
+	//外部id与移动模型的映射mapping
 	private static Map<String, ExternalMovement> idMapping;
 	/** initial locations for nodes */
-	//ڵĳʼλ
+	//节点的初始化位置
 	private static List<Tuple<String, Coord>> initLocations;
 	/** time of the very first location data */
-	//һλݵʱ䣬ⲿڵݼĵһ(С)ʱ
+	//第一个位置数据的时间，即外部节点坐标数据集的第一个(最小的)时间戳
 	private static double initTime;
 	/** sampling interval (seconds) of the location data */
-	//λݵĲ
+	//位置数据的采样间隔
 	private static double samplingInterval;
 	/** last read time stamp after preloading */
-	//Ԥ֮¶ȡʱ
+	//预加载之后，最新读取时间
 	private static double lastPreloadTime;
 	/** how many time intervals to load on every preload run */
-	//Ԥʱ֮ļ
+	//预加载时间之间的间隔
 	private static double nrofPreload = 10;
 	/** minimum number intervals that should be preloaded ahead of sim time */
-	//ڷʱ֮ǰԤصСʱ
+	//在仿真时间之前，预加载的最小时间间隔
 	private static final double MIN_AHEAD_INTERVALS = 2;
 
 	/** the very first location of the node */
-	//ڵĳʼλ
+	//节点的初始化位置
 	private Coord intialLocation;
 	/** queue of path-start-time, path tuples */
 	private Queue<Tuple<Double, Path>> pathQueue;
 
 	/** when was the path currently under construction started */
-	//ǰpathʱ
+	//当前的path构造的时间
 	private double latestPathStartTime;
 	/** the last location of path waypoint */
-	//µ·λ
+	//最新的路径点的位置坐标
 	private Coord latestLocation;
 	/** the path currently under construction */
-	//µpath
+	//最新的path对象
 	private Path latestPath;
 
 	/** is this node active */
-	//жϽڵǷڻԾ״̬
+	//判断节点书是否处于活跃状态
 	private boolean isActive;
-   /**ڵڵ·id*/
+   /**节点所在的路径id*/
 	private Integer routId;
 	static {
 		DTNSim.registerForReset(ExternalMovement.class.getCanonicalName());
+		Checkpoint.registerStaticState(ExternalMovement.class, "reader",
+				"idMapping", "initLocations", "initTime", "samplingInterval",
+				"lastPreloadTime", "nrofPreload");
 		reset();
 	}
 
@@ -98,8 +117,17 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
-			//˷ʱ0ʱпýڵĳʼλ [984:(7258.00,26128.00), 1121:(15516.00,38476.00),]
+			if (s.getBoolean(BINARY_CACHE_S, false)) {
+				inputFileName = toBinaryTrace(inputFileName);
+			}
+			if (BinaryMovementReader.isBinaryMovementFile(
+					new File(inputFileName))) {
+				reader = new BinaryMovementReader(inputFileName);
+			}
+			else {
+				reader = new ExternalMovementReader(inputFileName);
+			}
+			//保存了仿真时间的0时刻所有可用节点的初始位置 [984:(7258.00,26128.00), 1121:(15516.00,38476.00),。。。]
 			initLocations = reader.readNextMovements();
 			initTime = reader.getLastTimeStamp();
 			samplingInterval = -1;
@@ -123,7 +151,7 @@ public class ExternalMovement extends MovementModel {
 	private ExternalMovement(MovementModel mm) {
 		super(mm);
 
-		pathQueue = new LinkedList<Tuple<Double, Path>>();
+		pathQueue = new ArrayDeque<Tuple<Double, Path>>();
 		latestPath = null;
 
 		if (initLocations.size() > 0) { // we have location data left
@@ -283,10 +311,42 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 
+	/**
+	 * Returns the path of a binary version of a trace file. If the file
+	 * is a text trace, it is converted to a binary trace unless an up-to-date
+	 * binary trace already exists.
+	 * @param fileName Path of the trace file
+	 * @return Path of the binary trace
+	 */
+	private static String toBinaryTrace(String fileName) {
+		File inFile = new File(fileName);
+		if (BinaryMovementReader.isBinaryMovementFile(inFile)) {
+			return fileName;
+		}
+
+		String binName = fileName + BinaryMovementReader.BINARY_EXT;
+		File binFile = new File(binName);
+		if (!BinaryMovementReader.isBinaryMovementFile(binFile) ||
+				binFile.lastModified() < inFile.lastModified()) {
+			try {
+				BinaryMovementReader.storeToBinaryFile(fileName, binName);
+			} catch (IOException e) {
+				throw new SettingsError("Couldn't convert external movement " +
+						"file " + fileName + " to " + binName + ": " +
+						e.getMessage());
+			}
+		}
+		return binName;
+	}
+
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
+		if (reader != null) {
+			reader.close();
+			reader = null;
+		}
 		idMapping = null;
 	}
 /*-------------begin-------------*/
@@ -5,39 +5,69 @@
 package movement;
 
 import input.ExternalPathMovementReader;
+import input.ExternalPathStore;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import core.Coord;
 import core.DTNHost;
 import core.Settings;
 import core.SimClock;
+import core.SimError;
 
 /**
  * External movement trace reader for traces that are in path format.
  * See <code>ExternalPathMovementReader</code> for details.
+ * If {@link #PATH_STORE_S} is set, the paths are read lazily from an
+ * on-disk {@link ExternalPathStore} instead of loading the whole trace into
+ * memory, and the next path of every node is prefetched in the background.
+ * The paths are not stored in simulation checkpoints but re-read when
+ * the model is deserialized.
  *
  * @author teemuk
  *
  */
 public class ExternalPathMovement extends MovementModel {
+	private static final long serialVersionUID = 1L;
 	/** external locations file's path -setting id ({@value})*/
 	public static final String MOVEMENT_FILE_S = "traceFile";
 	/** activity file's path -setting id ({@value})*/
 	public static final String ACTIVITY_FILE_S = "activeFile";
+	/** use the on-disk path store -setting id ({@value}). Boolean.
+	 * Default = false (whole trace is loaded into memory). */
+	public static final String PATH_STORE_S = "pathStore";
+	/** prefetch the next path in the background when path store is used
+	 * -setting id ({@value}). Boolean. Default = true. */
+	public static final String PREFETCH_S = "prefetchPaths";
 
 	// Settings
 	private String traceFile;
 	private String activeFile;
+	private boolean usePathStore;
+	private boolean prefetch;
+
+	// Path store (null if the store is not used) and the node's ID in traces
+	private transient ExternalPathStore store;
+	private int storeID;
+	private int nrofPaths;
+	// The prefetched path and its index (null if no prefetch is pending)
+	private transient Future<List<ExternalPathMovementReader.Entry>> nextPath;
+	private int nextPathIndex;
 
 	// Node's paths
-	private List<List<ExternalPathMovementReader.Entry>> paths;
+	private transient List<List<ExternalPathMovementReader.Entry>> paths;
 	private int curPath=0;
-	private List<ExternalPathMovementReader.ActiveTime> active;
+	private transient List<ExternalPathMovementReader.ActiveTime> active;
 
 	public ExternalPathMovement(Settings settings) {
 		this.traceFile = settings.getSetting(MOVEMENT_FILE_S);
 		this.activeFile = settings.getSetting(ACTIVITY_FILE_S);
+		this.usePathStore = settings.getBoolean(PATH_STORE_S, false);
+		this.prefetch = settings.getBoolean(PREFETCH_S, true);
 	}
 
 	/**
@@ -48,6 +78,8 @@ public class ExternalPathMovement extends MovementModel {
 	public ExternalPathMovement(ExternalPathMovement mm) {
 		this.traceFile = mm.traceFile;
 		this.activeFile = mm.activeFile;
+		this.usePathStore = mm.usePathStore;
+		this.prefetch = mm.prefetch;
 	}
 
 	/**
@@ -55,12 +87,38 @@ public class ExternalPathMovement extends MovementModel {
 	 * host.
 	 */
 	private void init() {
+		this.storeID = getHost().getAddress();
+		loadPaths();
+	}
+
+	/**
+	 * Loads the paths (or opens the path store) of the node
+	 */
+	private void loadPaths() {
+		if (this.usePathStore) {
+			this.store = ExternalPathStore.getInstance(this.traceFile,
+					this.activeFile);
+			this.nrofPaths = store.getNrofPaths(storeID);
+			this.active = store.readActive(storeID);
+			prefetchPath(this.curPath);
+			return;
+		}
+
 		// Get paths for this node
 		ExternalPathMovementReader reader =
 			ExternalPathMovementReader.getInstance(this.traceFile,
 					this.activeFile);
-		this.paths = reader.getPaths(getHost().getAddress());
-		this.active = reader.getActive(getHost().getAddress());
+		this.paths = reader.getPaths(storeID);
+		this.active = reader.getActive(storeID);
+	}
+
+	/**
+	 * Re-loads the paths of a deserialized movement model
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		loadPaths();
 	}
 
 	@Override
@@ -90,14 +148,15 @@ public class ExternalPathMovement extends MovementModel {
 
 		// Check whether we're moving or waiting for the next path to start
 		double t = SimClock.getTime();
-		if (t < this.paths.get(this.curPath).get(0).time) {
+		if (t < this.nextPathAvailable()) {
 			return null;
 		}
 
 		// Get the path
-		List<ExternalPathMovementReader.Entry> path =
-			this.paths.get(this.curPath);
+		List<ExternalPathMovementReader.Entry> path = getStoredPath(
+				this.curPath);
 		this.curPath++;
+		prefetchPath(this.curPath);
 
 		// Drop the node to the the beginning of the new path in case the
 		// previous path ended somewhere else.
@@ -134,8 +193,69 @@ public class ExternalPathMovement extends MovementModel {
 		return p;
 	}
 
+	/**
+	 * Returns one of the node's paths
+	 * @param index Index of the path
+	 * @return The path
+	 */
+	private List<ExternalPathMovementReader.Entry> getStoredPath(int index) {
+		if (this.store == null) {
+			return this.paths.get(index);
+		}
+
+		if (this.nextPath != null && this.nextPathIndex == index) {
+			Future<List<ExternalPathMovementReader.Entry>> f = this.nextPath;
+			this.nextPath = null;
+			return waitForPath(f);
+		}
+
+		return this.store.readPath(this.storeID, index);
+	}
+
+	/**
+	 * Waits until a prefetched path has been read
+	 * @param f The future of the prefetched path
+	 * @return The path
+	 */
+	private List<ExternalPathMovementReader.Entry> waitForPath(
+			Future<List<ExternalPathMovementReader.Entry>> f) {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			throw new SimError(e);
+		} catch (ExecutionException e) {
+			throw new SimError("Couldn't read a path from the path store", e);
+		}
+	}
+
+	/**
+	 * Starts reading a path from the path store in the background (if
+	 * path store and prefetching are used and the path exists)
+	 * @param index Index of the path
+	 */
+	private void prefetchPath(int index) {
+		if (this.store == null || !this.prefetch || index >= this.nrofPaths) {
+			return;
+		}
+		this.nextPath = this.store.prefetchPath(this.storeID, index);
+		this.nextPathIndex = index;
+	}
+
 	@Override
 	public Coord getInitialLocation() {
+		if (this.store != null) {
+			if (this.nrofPaths == 0) {
+				return new Coord(0.0, 0.0);
+			}
+			/* peek at the first path but keep it prefetched for getPath */
+			List<ExternalPathMovementReader.Entry> first =
+				(this.nextPath != null && this.nextPathIndex == 0) ?
+					waitForPath(this.nextPath) :
+					this.store.readPath(this.storeID, 0);
+			ExternalPathMovementReader.Entry e = first.get(0);
+			return new Coord(e.x, e.y);
+		}
+
 		// Return the first point of the first path
 		if (this.paths.size() > 0 &&
 				this.paths.get(0).size() > 0) {
@@ -154,6 +274,13 @@ public class ExternalPathMovement extends MovementModel {
 
 	@Override
 	public double nextPathAvailable() {
+		if (this.store != null) {
+			if (this.curPath < this.nrofPaths) {
+				return this.store.getPathStartTime(this.storeID, this.curPath);
+			}
+			return Double.MAX_VALUE;
+		}
+
 		if (this.curPath < this.paths.size())
 			return this.paths.get(this.curPath).get(0).time;
 		else
@@ -20,6 +20,7 @@ import core.Settings;
  */
 public class ModifiedRandomDirection
 extends RandomDirection {
+	private static final long serialVersionUID = 1L;
 
     public ModifiedRandomDirection( Settings settings ) {
         super( settings );
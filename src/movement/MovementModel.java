@@ -4,10 +4,12 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import util.ActivenessHandler;
 
+import core.Checkpoint;
 import core.Coord;
 import core.DTNHost;
 import core.DTNSim;
@@ -26,7 +28,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -66,6 +69,7 @@ public abstract class MovementModel {
 	// static initialization of all movement models' random number generator
 	static {
 		DTNSim.registerForReset(MovementModel.class.getCanonicalName());
+		Checkpoint.registerStaticState(MovementModel.class, "rng");
 		reset();
 	}
 
@@ -76,7 +80,7 @@ public abstract class MovementModel {
 	 * @param min The minimum setting
 	 * @param max The maximum setting
 	 */
-	//Сٶٶȶ0ٶȴСٶ
+	//最小速度与最大速度都必须大于0，并且最大速度大于最小速度
 	private static void checkMinAndMaxSetting(String name,
 		double min, double max) {
 		if (min < 0 || max < 0) {
@@ -156,7 +160,7 @@ public abstract class MovementModel {
 	 * Returns the largest X coordinate value this model uses
 	 * @return Maximum of X coordinate values
 	 */
-	//شģʹõX
+	//返回此模型使用的最大X坐标
 	public int getMaxX() {
 		return this.maxX;
 	}
@@ -165,7 +169,7 @@ public abstract class MovementModel {
 	 * Returns the largest Y coordinate value this model uses
 	 * @return Maximum of Y coordinate values
 	 */
-	//شģʹõY
+	//返回此模型使用的最大Y坐标
 	public int getMaxY() {
 		return this.maxY;
 	}
@@ -176,7 +180,7 @@ public abstract class MovementModel {
 	 * {@link #WAIT_TIME} setting.
 	 * @return A new speed between min and max values
 	 */
-	//һٶȣmin < v < max
+	//返回一个速度，min < v < max
 	protected double generateSpeed() {
 		if (rng == null) {
 			return 1;
@@ -190,7 +194,7 @@ public abstract class MovementModel {
 	 * {@link #WAIT_TIME} setting).
 	 * @return The time as a double
 	 */
-	//һȴʱ䣬min < waitTime < max
+	//返回一个等待时间，min < waitTime < max
 	protected double generateWaitTime() {
 		if (rng == null) {
 			return 0;
@@ -242,7 +246,7 @@ public abstract class MovementModel {
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
 	 * @return The sim time when node should ask the next time for a path
 	 */
-	//һʱ䣬ǰʱ+Ҫȴʱ=һ·ʱ
+	//返回一个时间，当前仿真时间+需要等待的时间=下一次请求路径的时间
 	public double nextPathAvailable() {
 		return SimClock.getTime() + generateWaitTime();
 	}
@@ -251,7 +255,7 @@ public abstract class MovementModel {
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
 	 */
-	//ôƶģ͵ģͨ
+	//设置此移动模型的模块通信总线
 	public void setComBus(ModuleCommunicationBus comBus) {
 		this.comBus = comBus;
 	}
@@ -20,6 +20,7 @@ import core.Settings;
  */
 public class RandomDirection
 extends MovementModel {
+	private static final long serialVersionUID = 1L;
 
     private Coord lastWaypoint;
 
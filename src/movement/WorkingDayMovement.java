@@ -17,6 +17,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class WorkingDayMovement extends ExtendedMovementModel {
+	private static final long serialVersionUID = 1L;
 
 	public static final String PROBABILITY_TO_OWN_CAR_SETTING = "ownCarProb";
 	public static final String PROBABILITY_TO_GO_SHOPPING_SETTING =
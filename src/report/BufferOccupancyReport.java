@@ -82,9 +82,7 @@ public class BufferOccupancyReport extends Report implements UpdateListener {
 		double E_X = bufferOccupancy / hosts.size();
 		double Var_X = bo2 / hosts.size() - (E_X*E_X)/100.0;
 
-		String output = format(SimClock.getTime()) + " " + format(E_X) + " " +
-			format(Var_X);
-		write(output);
+		write(SimClock.getTime(), E_X, Var_X);
 	}
 
 }
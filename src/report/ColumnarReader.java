@@ -0,0 +1,440 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import core.SimError;
+
+/**
+ * Reader of the binary columnar report files written with
+ * {@link ColumnarWriter}. The rows are read one at a time with
+ * {@link #nextRow()} and their values with the typed getters, or formatted
+ * to the report's text layout with {@link #formatRow()}.
+ * <P>
+ * Can also be run as a program that converts a columnar report file to the
+ * text layout of the report:<BR>
+ * <CODE>java report.ColumnarReader input.col [output.txt]</CODE><BR>
+ * If no output file is given, the text is written to standard output.
+ * </P>
+ */
+public class ColumnarReader {
+	private DataInputStream in;
+	private String fileName;
+	private Inflater inflater;
+	private List<TableInfo> tables;
+
+	/** table of the current block (null before the first block) */
+	private TableInfo current;
+	private int nrofRows;
+	/** index of the current row in the block */
+	private int row;
+	private boolean finished;
+	/** reusable builder of formatted rows */
+	private StringBuilder line;
+
+	/**
+	 * Opens a columnar report file for reading
+	 * @param fileName Path of the file
+	 * @throws SimError if the file can't be read
+	 */
+	public ColumnarReader(String fileName) {
+		this.fileName = fileName;
+		this.inflater = new Inflater();
+		this.tables = new ArrayList<TableInfo>();
+		this.finished = false;
+		this.line = new StringBuilder();
+
+		try {
+			this.in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(fileName)));
+			if (in.readInt() != ColumnarWriter.MAGIC) {
+				in.close();
+				throw new SimError(fileName + " is not a columnar report");
+			}
+			if (in.readInt() != ColumnarWriter.VERSION) {
+				in.close();
+				throw new SimError("Unsupported version of columnar report " +
+						fileName);
+			}
+		} catch (IOException e) {
+			throw error(e);
+		}
+	}
+
+	/**
+	 * Moves to the next row
+	 * @return true if there was a next row, false at the end of the file
+	 * @throws SimError if reading failed
+	 */
+	public boolean nextRow() {
+		row++;
+		while (current == null || row >= nrofRows) {
+			if (finished || !readRecord()) {
+				finished = true;
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the name of the table of the current row
+	 * @return the name of the table
+	 */
+	public String getTableName() {
+		return current.name;
+	}
+
+	/**
+	 * Returns the number of columns of the current row
+	 * @return the number of columns
+	 */
+	public int getNrofColumns() {
+		return current.types.length;
+	}
+
+	/**
+	 * Returns the name of a column of the current row's table
+	 * @param column Index of the column
+	 * @return the name of the column
+	 */
+	public String getColumnName(int column) {
+		return current.names[column];
+	}
+
+	/**
+	 * Returns an int value of the current row
+	 * @param column Index of the column
+	 * @return the value
+	 */
+	public int getInt(int column) {
+		return ((int[])current.data[column])[row];
+	}
+
+	/**
+	 * Returns a double value of the current row
+	 * @param column Index of the column
+	 * @return the value
+	 */
+	public double getDouble(int column) {
+		return ((double[])current.data[column])[row];
+	}
+
+	/**
+	 * Returns a string value of the current row
+	 * @param column Index of the column
+	 * @return the value (can be null)
+	 */
+	public String getString(int column) {
+		return ((String[])current.data[column])[row];
+	}
+
+	/**
+	 * Formats the current row with its table's text template
+	 * @return the row in the text layout of the report
+	 */
+	public String formatRow() {
+		StringBuilder sb = this.line;
+		sb.setLength(0);
+		for (int i = 0; i < current.literals.length; i++) {
+			sb.append(current.literals[i]);
+			if (i >= current.placeholders.length) {
+				break;
+			}
+			int c = current.placeholders[i];
+			if (current.types[c] == ColumnarWriter.TYPE_STRING) {
+				String value = getString(c);
+				if (value != null) {
+					sb.append(current.prefixes[i]).append(value);
+				}
+			}
+			else {
+				appendValue(sb.append(current.prefixes[i]), c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Closes the file
+	 */
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			throw error(e);
+		}
+		inflater.end();
+	}
+
+	/**
+	 * Appends a formatted int or double value of the current row
+	 * @param sb The builder where the value is appended
+	 * @param column Index of the column
+	 */
+	private void appendValue(StringBuilder sb, int column) {
+		if (current.types[column] == ColumnarWriter.TYPE_INT) {
+			sb.append(getInt(column));
+		}
+		else if (current.precisions[column] >= 0) {
+			FixedPointFormat.append(sb, getDouble(column),
+					current.precisions[column]);
+		}
+		else if (current.formats[column].length() == 0) {
+			sb.append(getDouble(column));
+		}
+		else {
+			sb.append(String.format(current.formats[column],
+					getDouble(column)));
+		}
+	}
+
+	/**
+	 * Reads the next record and all table definitions before it
+	 * @return true if a block was read, false at the end of the file
+	 */
+	private boolean readRecord() {
+		try {
+			byte type = in.readByte();
+			while (type == ColumnarWriter.REC_TABLE) {
+				readDefinition();
+				type = in.readByte();
+			}
+			if (type == ColumnarWriter.REC_END) {
+				return false;
+			}
+			if (type != ColumnarWriter.REC_BLOCK) {
+				throw new SimError("Invalid record " + type +
+						" in columnar report " + fileName);
+			}
+			readBlock();
+			return true;
+		} catch (IOException e) {
+			throw error(e);
+		}
+	}
+
+	/**
+	 * Reads a table definition
+	 * @throws IOException if reading failed
+	 */
+	private void readDefinition() throws IOException {
+		int id = in.readInt();
+		String name = in.readUTF();
+		String template = in.readUTF();
+		int nrofColumns = in.readInt();
+		TableInfo t = new TableInfo(name, template, nrofColumns);
+		for (int i = 0; i < nrofColumns; i++) {
+			t.names[i] = in.readUTF();
+			t.types[i] = in.readByte();
+			t.formats[i] = in.readUTF();
+		}
+		t.parseTemplate();
+		t.parseFormats();
+
+		assert id == tables.size() : "Unexpected table id " + id;
+		tables.add(t);
+	}
+
+	/**
+	 * Reads and decompresses a block
+	 * @throws IOException if reading failed
+	 */
+	private void readBlock() throws IOException {
+		current = tables.get(in.readInt());
+		nrofRows = in.readInt();
+		byte[] bytes = new byte[in.readInt()];
+		byte[] compressed = new byte[in.readInt()];
+		in.readFully(compressed);
+
+		inflater.reset();
+		inflater.setInput(compressed);
+		try {
+			int length = 0;
+			while (length < bytes.length) {
+				int n = inflater.inflate(bytes, length, bytes.length - length);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					throw new IOException("truncated block");
+				}
+				length += n;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("corrupted block: " + e.getMessage());
+		}
+
+		DataInputStream data = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+		current.data = new Object[current.types.length];
+		for (int c = 0; c < current.types.length; c++) {
+			switch (current.types[c]) {
+			case ColumnarWriter.TYPE_INT:
+				int[] ints = new int[nrofRows];
+				for (int i = 0; i < nrofRows; i++) {
+					ints[i] = data.readInt();
+				}
+				current.data[c] = ints;
+				break;
+			case ColumnarWriter.TYPE_DOUBLE:
+				double[] doubles = new double[nrofRows];
+				for (int i = 0; i < nrofRows; i++) {
+					doubles[i] = data.readDouble();
+				}
+				current.data[c] = doubles;
+				break;
+			default:
+				String[] distinct = new String[data.readInt()];
+				for (int i = 0; i < distinct.length; i++) {
+					distinct[i] = data.readUTF();
+				}
+				String[] strings = new String[nrofRows];
+				for (int i = 0; i < nrofRows; i++) {
+					int index = data.readInt();
+					strings[i] = index < 0 ? null : distinct[index];
+				}
+				current.data[c] = strings;
+			}
+		}
+		row = 0;
+	}
+
+	/**
+	 * Creates an error for a failed read
+	 * @param e The cause
+	 * @return the error
+	 */
+	private SimError error(IOException e) {
+		return new SimError("Couldn't read columnar report " + fileName +
+				": " + e.getMessage(), e);
+	}
+
+	/**
+	 * Converts a columnar report file to the text layout of the report
+	 * @param fileName Path of the columnar report file
+	 * @param out Where the text is written
+	 */
+	public static void toText(String fileName, PrintWriter out) {
+		ColumnarReader reader = new ColumnarReader(fileName);
+		while (reader.nextRow()) {
+			out.println(reader.formatRow());
+		}
+		reader.close();
+		out.flush();
+	}
+
+	/**
+	 * Converts a columnar report file to text
+	 * @param args The columnar report file and optionally the text file
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: java report.ColumnarReader " +
+					"input.col [output.txt]");
+			System.exit(1);
+		}
+
+		PrintWriter out;
+		if (args.length == 2) {
+			out = new PrintWriter(new BufferedWriter(new FileWriter(args[1])));
+		}
+		else {
+			out = new PrintWriter(new BufferedWriter(
+					new OutputStreamWriter(System.out)));
+		}
+		toText(args[0], out);
+		out.close();
+	}
+
+	/**
+	 * Definition and the current block of a table
+	 */
+	private static class TableInfo {
+		private String name;
+		private String template;
+		private String[] names;
+		private byte[] types;
+		private String[] formats;
+		/** decimals of "%.Nf" formatted double columns (-1 for others) */
+		private int[] precisions;
+		/** literal text before each placeholder (and after the last) */
+		private String[] literals;
+		/** column index of each placeholder */
+		private int[] placeholders;
+		/** text printed before each placeholder's non-null value */
+		private String[] prefixes;
+		private Object[] data;
+
+		private TableInfo(String name, String template, int nrofColumns) {
+			this.name = name;
+			this.template = template;
+			this.names = new String[nrofColumns];
+			this.types = new byte[nrofColumns];
+			this.formats = new String[nrofColumns];
+		}
+
+		/**
+		 * Finds the double columns whose values can be formatted with
+		 * {@link FixedPointFormat}
+		 */
+		private void parseFormats() {
+			precisions = new int[formats.length];
+			for (int i = 0; i < formats.length; i++) {
+				precisions[i] = -1;
+				if (types[i] == ColumnarWriter.TYPE_DOUBLE &&
+						formats[i].matches("%\\.\\d{1,2}f")) {
+					precisions[i] = Integer.parseInt(
+							formats[i].substring(2, formats[i].length() - 1));
+				}
+			}
+		}
+
+		/**
+		 * Splits the template to literals and placeholders
+		 */
+		private void parseTemplate() {
+			List<String> lits = new ArrayList<String>();
+			List<Integer> cols = new ArrayList<Integer>();
+			List<String> pres = new ArrayList<String>();
+
+			int pos = 0;
+			int open;
+			while ((open = template.indexOf('{', pos)) >= 0) {
+				int close = template.indexOf('}', open);
+				if (close < 0) {
+					throw new SimError("Invalid template " + template);
+				}
+				lits.add(template.substring(pos, open));
+				String spec = template.substring(open + 1, close);
+				int digits = spec.length();
+				while (digits > 0 && Character.isDigit(spec.charAt(digits-1))) {
+					digits--;
+				}
+				pres.add(spec.substring(0, digits));
+				cols.add(Integer.parseInt(spec.substring(digits)));
+				pos = close + 1;
+			}
+			lits.add(template.substring(pos));
+
+			literals = lits.toArray(new String[0]);
+			prefixes = pres.toArray(new String[0]);
+			placeholders = new int[cols.size()];
+			for (int i = 0; i < placeholders.length; i++) {
+				placeholders[i] = cols.get(i);
+			}
+		}
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import core.SimError;
+
+/**
+ * Writer of binary columnar report files. A report file consists of rows of
+ * one or more {@link Table}s. The rows are written in blocks of
+ * consecutive rows of the same table; inside a block the values are stored
+ * column by column (ints and doubles in binary, strings with a per block
+ * dictionary) and the block is compressed with deflate. The file is self
+ * describing: the definition of each table (column names and types and a
+ * text template) is stored in the file before the table's first block, so
+ * {@link ColumnarReader} can read any report file and convert it to the
+ * report's text layout.
+ * <P>
+ * File format (big endian, strings in modified UTF-8):
+ * <CODE>MAGIC VERSION record* END</CODE> where records are either table
+ * definitions (<CODE>TABLE id name template nrofColumns (name type
+ * format)*</CODE>) or blocks (<CODE>BLOCK tableId nrofRows rawLength
+ * compressedLength data</CODE>).
+ * </P>
+ * <P>
+ * Rows are written with {@link #startRow(Table)}, one <CODE>add</CODE> call
+ * per column in the column order and {@link #endRow()}.
+ * </P>
+ */
+public class ColumnarWriter {
+	/** Magic number in the beginning of columnar report files */
+	public static final int MAGIC = 0x4f4e4552; /* "ONER" */
+	/** Version of the columnar report format */
+	public static final int VERSION = 1;
+	/** Column type of int values */
+	public static final byte TYPE_INT = 1;
+	/** Column type of double values */
+	public static final byte TYPE_DOUBLE = 2;
+	/** Column type of string values (can be null) */
+	public static final byte TYPE_STRING = 3;
+	/** Record type of the end of file */
+	static final byte REC_END = 0;
+	/** Record type of table definitions */
+	static final byte REC_TABLE = 1;
+	/** Record type of blocks of rows */
+	static final byte REC_BLOCK = 2;
+	/** Maximum number of rows in a block */
+	public static final int BLOCK_ROWS = 4096;
+
+	/** Table of plain text lines (see {@link #writeLine(String)}) */
+	public static final Table TEXT_TABLE = new Table("text", "{0}",
+			stringColumn("line"));
+
+	private DataOutputStream out;
+	private String fileName;
+	private Deflater deflater;
+	private ByteArrayOutputStream rawBytes;
+	private DataOutputStream raw;
+	private byte[] compressed;
+
+	/** buffers of the tables used in this file */
+	private Map<Table, TableBuffer> buffers;
+	/** table of the current block */
+	private TableBuffer current;
+	/** index of the next column of the current row */
+	private int column;
+
+	/**
+	 * Creates a new columnar report file
+	 * @param fileName Path of the file
+	 * @throws SimError if the file couldn't be created
+	 */
+	public ColumnarWriter(String fileName) {
+		this.fileName = fileName;
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+		this.rawBytes = new ByteArrayOutputStream();
+		this.raw = new DataOutputStream(rawBytes);
+		this.compressed = new byte[1024];
+		this.buffers = new IdentityHashMap<Table, TableBuffer>();
+		this.column = -1;
+
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(fileName)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new SimError("Couldn't create columnar report " + fileName +
+					": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Creates a definition of an int column
+	 * @param name Name of the column
+	 * @return the column definition
+	 */
+	public static Column intColumn(String name) {
+		return new Column(name, TYPE_INT, "");
+	}
+
+	/**
+	 * Creates a definition of a double column
+	 * @param name Name of the column
+	 * @param format Format of the values in the text layout
+	 * (<CODE>String.format</CODE> pattern, or empty for
+	 * <CODE>Double.toString</CODE>)
+	 * @return the column definition
+	 */
+	public static Column doubleColumn(String name, String format) {
+		return new Column(name, TYPE_DOUBLE, format);
+	}
+
+	/**
+	 * Creates a definition of a string column
+	 * @param name Name of the column
+	 * @return the column definition
+	 */
+	public static Column stringColumn(String name) {
+		return new Column(name, TYPE_STRING, "");
+	}
+
+	/**
+	 * Writes a line of text (to the {@link #TEXT_TABLE})
+	 * @param line The line
+	 */
+	public void writeLine(String line) {
+		startRow(TEXT_TABLE);
+		addString(line);
+		endRow();
+	}
+
+	/**
+	 * Starts a new row of a table
+	 * @param table The table
+	 */
+	public void startRow(Table table) {
+		assert column == -1 : "Previous row not ended";
+		if (current == null || current.table != table) {
+			flushBlock();
+			current = buffers.get(table);
+			if (current == null) {
+				current = new TableBuffer(table, buffers.size());
+				buffers.put(table, current);
+				writeDefinition(current);
+			}
+		}
+		column = 0;
+	}
+
+	/**
+	 * Adds an int value to the current row
+	 * @param value The value
+	 */
+	public void addInt(int value) {
+		assert current.table.columns[column].type == TYPE_INT;
+		((int[])current.data[column++])[current.nrofRows] = value;
+	}
+
+	/**
+	 * Adds a double value to the current row
+	 * @param value The value
+	 */
+	public void addDouble(double value) {
+		assert current.table.columns[column].type == TYPE_DOUBLE;
+		((double[])current.data[column++])[current.nrofRows] = value;
+	}
+
+	/**
+	 * Adds a string value to the current row
+	 * @param value The value (can be null)
+	 */
+	public void addString(String value) {
+		assert current.table.columns[column].type == TYPE_STRING;
+		((String[])current.data[column++])[current.nrofRows] = value;
+	}
+
+	/**
+	 * Ends the current row
+	 */
+	public void endRow() {
+		assert column == current.table.columns.length : "Row of " +
+			current.table.name + " has " + column + " values";
+		column = -1;
+		current.nrofRows++;
+		if (current.nrofRows == BLOCK_ROWS) {
+			flushBlock();
+		}
+	}
+
+	/**
+	 * Writes the buffered rows and closes the file
+	 * @throws SimError if writing failed
+	 */
+	public void close() {
+		flushBlock();
+		try {
+			out.writeByte(REC_END);
+			out.close();
+		} catch (IOException e) {
+			throw error(e);
+		}
+		deflater.end();
+	}
+
+	/**
+	 * Writes the definition of a table
+	 * @param buffer Buffer of the table
+	 */
+	private void writeDefinition(TableBuffer buffer) {
+		Table t = buffer.table;
+		try {
+			out.writeByte(REC_TABLE);
+			out.writeInt(buffer.id);
+			out.writeUTF(t.name);
+			out.writeUTF(t.template);
+			out.writeInt(t.columns.length);
+			for (Column c : t.columns) {
+				out.writeUTF(c.name);
+				out.writeByte(c.type);
+				out.writeUTF(c.format);
+			}
+		} catch (IOException e) {
+			throw error(e);
+		}
+	}
+
+	/**
+	 * Writes the buffered rows of the current table as a compressed block
+	 */
+	private void flushBlock() {
+		if (current == null || current.nrofRows == 0) {
+			return;
+		}
+
+		int n = current.nrofRows;
+		try {
+			rawBytes.reset();
+			for (int c = 0; c < current.data.length; c++) {
+				switch (current.table.columns[c].type) {
+				case TYPE_INT:
+					int[] ints = (int[])current.data[c];
+					for (int i = 0; i < n; i++) {
+						raw.writeInt(ints[i]);
+					}
+					break;
+				case TYPE_DOUBLE:
+					double[] doubles = (double[])current.data[c];
+					for (int i = 0; i < n; i++) {
+						raw.writeDouble(doubles[i]);
+					}
+					break;
+				default:
+					writeStrings((String[])current.data[c], n);
+				}
+			}
+			raw.flush();
+
+			byte[] bytes = rawBytes.toByteArray();
+			deflater.reset();
+			deflater.setInput(bytes);
+			deflater.finish();
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == compressed.length) {
+					byte[] bigger = new byte[compressed.length * 2];
+					System.arraycopy(compressed, 0, bigger, 0, length);
+					compressed = bigger;
+				}
+				length += deflater.deflate(compressed, length,
+						compressed.length - length);
+			}
+
+			out.writeByte(REC_BLOCK);
+			out.writeInt(current.id);
+			out.writeInt(n);
+			out.writeInt(bytes.length);
+			out.writeInt(length);
+			out.write(compressed, 0, length);
+		} catch (IOException e) {
+			throw error(e);
+		}
+
+		current.nrofRows = 0;
+	}
+
+	/**
+	 * Writes a string column: the distinct values of the block followed by
+	 * the index of each row's value (-1 for null)
+	 * @param values Values of the column
+	 * @param n Number of rows
+	 * @throws IOException if writing failed
+	 */
+	private void writeStrings(String[] values, int n) throws IOException {
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		int[] indexes = new int[n];
+		for (int i = 0; i < n; i++) {
+			if (values[i] == null) {
+				indexes[i] = -1;
+				continue;
+			}
+			Integer index = dictionary.get(values[i]);
+			if (index == null) {
+				index = dictionary.size();
+				dictionary.put(values[i], index);
+			}
+			indexes[i] = index;
+		}
+
+		String[] distinct = new String[dictionary.size()];
+		for (Map.Entry<String, Integer> e : dictionary.entrySet()) {
+			distinct[e.getValue()] = e.getKey();
+		}
+		raw.writeInt(distinct.length);
+		for (String s : distinct) {
+			raw.writeUTF(s);
+		}
+		for (int i = 0; i < n; i++) {
+			raw.writeInt(indexes[i]);
+		}
+	}
+
+	/**
+	 * Creates an error for a failed write
+	 * @param e The cause
+	 * @return the error
+	 */
+	private SimError error(IOException e) {
+		return new SimError("Couldn't write columnar report " + fileName +
+				": " + e.getMessage(), e);
+	}
+
+	/**
+	 * Definition of a column
+	 */
+	public static class Column {
+		private final String name;
+		private final byte type;
+		private final String format;
+
+		private Column(String name, byte type, String format) {
+			this.name = name;
+			this.type = type;
+			this.format = format;
+		}
+	}
+
+	/**
+	 * Definition of a table: name, columns and a text template. In the
+	 * template, <CODE>{i}</CODE> is replaced by the value of the i:th column
+	 * and <CODE>{text i}</CODE> by the text followed by the value, or by
+	 * nothing if the value is null. Templates can't contain other braces.
+	 */
+	public static class Table {
+		private final String name;
+		private final String template;
+		private final Column[] columns;
+
+		/**
+		 * Creates a table definition
+		 * @param name Name of the table
+		 * @param template Text template of the rows
+		 * @param columns The columns
+		 */
+		public Table(String name, String template, Column... columns) {
+			this.name = name;
+			this.template = template;
+			this.columns = columns;
+		}
+	}
+
+	/**
+	 * Buffered rows of a table
+	 */
+	private static class TableBuffer {
+		private final Table table;
+		private final int id;
+		private final Object[] data;
+		private int nrofRows;
+
+		private TableBuffer(Table table, int id) {
+			this.table = table;
+			this.id = id;
+			this.data = new Object[table.columns.length];
+			for (int i = 0; i < data.length; i++) {
+				switch (table.columns[i].type) {
+				case TYPE_INT:
+					data[i] = new int[BLOCK_ROWS];
+					break;
+				case TYPE_DOUBLE:
+					data[i] = new double[BLOCK_ROWS];
+					break;
+				default:
+					data[i] = new String[BLOCK_ROWS];
+				}
+			}
+			this.nrofRows = 0;
+		}
+	}
+}
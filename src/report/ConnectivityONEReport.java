@@ -10,10 +10,19 @@ import core.DTNHost;
 /**
  * Link connectivity report generator for ONE StandardEventsReader input.
  * Connections that start during the warm up period are ignored.
+ * Supports {@link Report#COLUMNAR_S} output.
  */
 public class ConnectivityONEReport extends Report
 	implements ConnectionListener {
 
+	/** Table of the connection events in columnar output */
+	private static final ColumnarWriter.Table CONNECTIONS =
+		new ColumnarWriter.Table("connections", "{0} CONN {1} {2} {3}",
+			ColumnarWriter.doubleColumn("time", "%.2f"),
+			ColumnarWriter.intColumn("host1"),
+			ColumnarWriter.intColumn("host2"),
+			ColumnarWriter.stringColumn("state"));
+
 	/**
 	 * Constructor.
 	 */
@@ -27,6 +36,10 @@ public class ConnectivityONEReport extends Report
 			return;
 		}
 		newEvent();
+		if (isColumnar()) {
+			writeColumnar(h1, h2, "up");
+			return;
+		}
 		write(createTimeStamp() + " CONN " + connectionString(h1, h2) + " up");
 	}
 
@@ -38,9 +51,30 @@ public class ConnectivityONEReport extends Report
 			return;
 		}
 
+		if (isColumnar()) {
+			writeColumnar(h1, h2, "down");
+			return;
+		}
 		write(createTimeStamp() + " CONN " + conString + " down");
 	}
 
+	/**
+	 * Writes a connection event to the columnar output. The node with the
+	 * lower network address is first.
+	 * @param h1 The other node of the connection
+	 * @param h2 The other node of the connection
+	 * @param state State of the connection ("up" or "down")
+	 */
+	private void writeColumnar(DTNHost h1, DTNHost h2, String state) {
+		ColumnarWriter out = getColumnarOutput();
+		out.startRow(CONNECTIONS);
+		out.addDouble(getSimTime());
+		out.addInt(Math.min(h1.getAddress(), h2.getAddress()));
+		out.addInt(Math.max(h1.getAddress(), h2.getAddress()));
+		out.addString(state);
+		out.endRow();
+	}
+
 	/**
 	 * Creates and returns a "@" prefixed time stamp of the current simulation
 	 * time
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+/**
+ * Table of values for (unordered) host pairs, e.g., start times of ongoing
+ * contacts. A pair is stored as a single long key packed from the smaller
+ * and the bigger address, and the keys and values are kept in primitive
+ * arrays with open addressing (linear probing), so adding or removing
+ * a pair doesn't create any objects. Memory use depends on the number of
+ * pairs in the table, not on the number of hosts.
+ * <P>
+ * The used slots can be iterated with:<BR>
+ * <CODE>for (int s = t.nextSlot(0); s >= 0; s = t.nextSlot(s + 1))</CODE>
+ * </P>
+ */
+public class ContactPairTable {
+	/** key of empty slots (valid keys are non-negative) */
+	private static final long EMPTY = -1;
+	/** initial number of slots (power of two) */
+	private static final int INIT_CAPACITY = 64;
+
+	private long[] keys;
+	private double[] values;
+	private int size;
+	/** number of slots minus one (capacity is always a power of two) */
+	private int mask;
+
+	/**
+	 * Creates a new, empty table
+	 */
+	public ContactPairTable() {
+		this.keys = new long[INIT_CAPACITY];
+		this.values = new double[INIT_CAPACITY];
+		this.mask = INIT_CAPACITY - 1;
+		this.size = 0;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * Returns the key of a host pair. The order of the addresses doesn't
+	 * matter.
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return the key of the pair
+	 */
+	public static long key(int address1, int address2) {
+		if (address1 > address2) {
+			int tmp = address1;
+			address1 = address2;
+			address2 = tmp;
+		}
+		return ((long)address1 << 32) | address2;
+	}
+
+	/**
+	 * Sets the value of a pair
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @param value The value
+	 * @return true if the pair wasn't in the table before
+	 */
+	public boolean put(int address1, int address2, double value) {
+		long key = key(address1, address2);
+		int slot = find(key);
+		if (keys[slot] == key) {
+			values[slot] = value;
+			return false;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		if (size * 4 > keys.length * 3) { /* load factor 0.75 */
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the pair is in the table
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return true if the pair is in the table
+	 */
+	public boolean contains(int address1, int address2) {
+		long key = key(address1, address2);
+		return keys[find(key)] == key;
+	}
+
+	/**
+	 * Returns the value of a pair
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return the value or NaN if the pair isn't in the table
+	 */
+	public double get(int address1, int address2) {
+		long key = key(address1, address2);
+		int slot = find(key);
+		return keys[slot] == key ? values[slot] : Double.NaN;
+	}
+
+	/**
+	 * Removes a pair from the table
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return the value of the removed pair or NaN if the pair wasn't in the
+	 * table
+	 */
+	public double remove(int address1, int address2) {
+		long key = key(address1, address2);
+		int slot = find(key);
+		if (keys[slot] != key) {
+			return Double.NaN;
+		}
+
+		double value = values[slot];
+		size--;
+
+		/* backward shift deletion: move the following entries of the probe
+		 * sequence to fill the hole so that no tombstones are needed */
+		int hole = slot;
+		for (int s = (slot + 1) & mask; keys[s] != EMPTY; s = (s + 1) & mask) {
+			int home = hash(keys[s]);
+			/* can the entry at s move to the hole (is the hole between the
+			 * entry's home slot and s, cyclically)? */
+			if (((s - home) & mask) >= ((s - hole) & mask)) {
+				keys[hole] = keys[s];
+				values[hole] = values[s];
+				hole = s;
+			}
+		}
+		keys[hole] = EMPTY;
+
+		return value;
+	}
+
+	/**
+	 * Returns the number of pairs in the table
+	 * @return the number of pairs in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the first used slot at or after the given slot
+	 * @param slot The slot where to start
+	 * @return index of the used slot or -1 if there are no more used slots
+	 */
+	public int nextSlot(int slot) {
+		for (int s = slot; s < keys.length; s++) {
+			if (keys[s] != EMPTY) {
+				return s;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the smaller address of the pair in a used slot
+	 * @param slot Index of the slot
+	 * @return the smaller address
+	 */
+	public int getAddress1(int slot) {
+		return (int)(keys[slot] >>> 32);
+	}
+
+	/**
+	 * Returns the bigger address of the pair in a used slot
+	 * @param slot Index of the slot
+	 * @return the bigger address
+	 */
+	public int getAddress2(int slot) {
+		return (int)keys[slot];
+	}
+
+	/**
+	 * Returns the value of the pair in a used slot
+	 * @param slot Index of the slot
+	 * @return the value
+	 */
+	public double getValue(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Returns the slot of the key or the empty slot where it would be put
+	 * @param key The key
+	 * @return index of the slot
+	 */
+	private int find(long key) {
+		int slot = hash(key);
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the home slot of a key
+	 * @param key The key
+	 * @return index of the home slot
+	 */
+	private int hash(long key) {
+		/* mixing step of MurmurHash3's 64 bit finalizer */
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int)key & mask;
+	}
+
+	/**
+	 * Doubles the number of slots and rehashes the pairs
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+
+		keys = new long[oldKeys.length * 2];
+		values = new double[oldKeys.length * 2];
+		mask = keys.length - 1;
+		Arrays.fill(keys, EMPTY);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+}
@@ -4,8 +4,7 @@
  */
 package report;
 
-import java.util.HashMap;
-import java.util.Vector;
+import java.util.Arrays;
 
 import core.ConnectionListener;
 import core.DTNHost;
@@ -18,8 +17,12 @@ import core.Settings;
  * <code>time nrofContacts</code>
  */
 public class ContactTimesReport extends Report implements ConnectionListener {
-	protected HashMap<ConnectionInfo, ConnectionInfo> connections;
-	private Vector<Integer> nrofContacts;
+	/** start times of the ongoing connections */
+	protected ContactPairTable connections;
+	/** number of contacts per time interval (index = time / granularity) */
+	private int[] nrofContacts;
+	/** number of used intervals in {@link #nrofContacts} */
+	private int nrofIntervals;
 
 	/** Granularity -setting id ({@value}). Defines how many simulated seconds
 	 * are grouped in one reported interval. */
@@ -45,8 +48,9 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.connections = new HashMap<ConnectionInfo,ConnectionInfo>();
-		this.nrofContacts = new Vector<Integer>();
+		this.connections = new ContactPairTable();
+		this.nrofContacts = new int[16];
+		this.nrofIntervals = 0;
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
@@ -58,29 +62,42 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
+		double time = removeConnection(host1, host2);
 
-		if (ci == null) {
+		if (time < 0) {
 			return; /* the connection was started during the warm up period */
 		}
 
-		ci.connectionEnd();
-		increaseTimeCount(ci.getConnectionTime());
+		increaseTimeCount(time);
 	}
 
+	/**
+	 * Starts counting time for a connection between two hosts
+	 * @param host1 One of the hosts
+	 * @param host2 The other host
+	 */
 	protected void addConnection(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = new ConnectionInfo(host1, host2);
-
-		assert !connections.containsKey(ci) : "Already contained "+
-			" a connection of " + host1 + " and " + host2;
+		boolean isNew = connections.put(host1.getAddress(),
+				host2.getAddress(), getSimTime());
 
-		connections.put(ci,ci);
+		assert isNew : "Already contained a connection of " + host1 +
+			" and " + host2;
 	}
 
-	protected ConnectionInfo removeConnection(DTNHost host1, DTNHost host2) {
-		ConnectionInfo ci = new ConnectionInfo(host1, host2);
-		ci = connections.remove(ci);
-		return ci;
+	/**
+	 * Stops counting time for a connection between two hosts
+	 * @param host1 One of the hosts
+	 * @param host2 The other host
+	 * @return The simulated seconds since the connection was added or -1 if
+	 * there was no such connection
+	 */
+	protected double removeConnection(DTNHost host1, DTNHost host2) {
+		double startTime = connections.remove(host1.getAddress(),
+				host2.getAddress());
+		if (Double.isNaN(startTime)) {
+			return -1;
+		}
+		return getSimTime() - startTime;
 	}
 
 	/**
@@ -90,124 +107,28 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	protected void increaseTimeCount(double time) {
 		int index = (int)(time/this.granularity);
 
-		if (index >= this.nrofContacts.size()) {
-			/* if biggest index so far, fill array with nulls up to
-			  index+2 to keep the last time count always zero */
-			this.nrofContacts.setSize(index + 2);
+		if (index >= this.nrofIntervals) {
+			/* if biggest index so far, use intervals up to index+2 to keep
+			 * the last time count always zero */
+			this.nrofIntervals = index + 2;
+			if (this.nrofIntervals > this.nrofContacts.length) {
+				this.nrofContacts = Arrays.copyOf(this.nrofContacts,
+						Math.max(this.nrofIntervals,
+								this.nrofContacts.length * 2));
+			}
 		}
 
-		Integer curValue = this.nrofContacts.get(index);
-		if (curValue == null) { // no value found -> put the first
-			this.nrofContacts.set(index, 1);
-		}
-		else { // value found -> increase the number by one
-			this.nrofContacts.set(index, curValue+1);
-		}
+		this.nrofContacts[index]++;
 	}
 
 	@Override
 	public void done() {
 
-		for (int i=0, n=this.nrofContacts.size(); i<n; i++) {
-			Integer contacts = nrofContacts.get(i);
-			if (contacts == null) {
-				contacts = 0;
-			}
+		for (int i=0; i<this.nrofIntervals; i++) {
 			//     time(interval)             nrofContacts
-			write((i*this.granularity) + " " + contacts);
+			write((i*this.granularity) + " " + this.nrofContacts[i]);
 		}
 
 		super.done();
 	}
-
-
-	/**
-	 * Objects of this class store time information about contacts.
-	 */
-	protected class ConnectionInfo {
-		private double startTime;
-		private double endTime;
-		private DTNHost h1;
-		private DTNHost h2;
-
-		public ConnectionInfo (DTNHost h1, DTNHost h2){
-			this.h1 = h1;
-			this.h2 = h2;
-			this.startTime = getSimTime();
-			this.endTime = -1;
-		}
-
-		/**
-		 * Should be called when the connection ended to record the time.
-		 * Otherwise {@link #getConnectionTime()} will use end time as
-		 * the time of the request.
-		 */
-		public void connectionEnd() {
-			this.endTime = getSimTime();
-		}
-
-		/**
-		 * Returns the time that passed between creation of this info
-		 * and call to {@link #connectionEnd()}. Unless connectionEnd() is
-		 * called, the difference between start time and current sim time
-		 * is returned.
-		 * @return The amount of simulated seconds passed between creation of
-		 * this info and calling connectionEnd()
-		 */
-		public double getConnectionTime() {
-			if (this.endTime == -1) {
-				return getSimTime() - this.startTime;
-			}
-			else {
-				return this.endTime - this.startTime;
-			}
-		}
-
-		/**
-		 * Returns true if the other connection info contains the same hosts.
-		 */
-		public boolean equals(Object other) {
-			if (!(other instanceof ConnectionInfo)) {
-				return false;
-			}
-
-			ConnectionInfo ci = (ConnectionInfo)other;
-
-			if ((h1 == ci.h1 && h2 == ci.h2)) {
-				return true;
-			}
-			else if ((h1 == ci.h2 && h2 == ci.h1)) {
-				// bidirectional connection the other way
-				return true;
-			}
-			return false;
-		}
-
-		/**
-		 * Returns the same hash for ConnectionInfos that have the
-		 * same two hosts.
-		 * @return Hash code
-		 */
-		public int hashCode() {
-			String hostString;
-
-			if (this.h1.compareTo(this.h2) < 0) {
-				hostString = h1.toString() + "-" + h2.toString();
-			}
-			else {
-				hostString = h2.toString() + "-" + h1.toString();
-			}
-
-			return hostString.hashCode();
-		}
-
-		/**
-		 * Returns a string representation of the info object
-		 * @return a string representation of the info object
-		 */
-		public String toString() {
-			return this.h1 + "<->" + this.h2 + " [" + this.startTime
-				+"-"+ (this.endTime >0 ? this.endTime : "n/a") + "]";
-		}
-	}
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import input.BinaryContactTraceWriter;
+import input.ContactTrace;
+import core.ConnectionListener;
+import core.DTNHost;
+
+/**
+ * Records all connection up and down events to a binary contact trace file
+ * (see {@link ContactTrace}) that can be replayed with
+ * {@link core.ContactReplay}. Unlike {@link ConnectivityONEReport}, the
+ * connections of the warm up period are recorded too so that the replay
+ * reproduces the connectivity of the whole run. Unless an output file is
+ * given in the settings, the trace is written to the report directory with
+ * the {@link ContactTrace#BINARY_EXT} extension.
+ */
+public class ContactTraceReport extends Report implements ConnectionListener {
+	private BinaryContactTraceWriter writer;
+
+	/**
+	 * Constructor.
+	 */
+	public ContactTraceReport() {
+		String fileName = getOutputFileName();
+		if (!getSettings().contains(OUTPUT_SETTING) &&
+				fileName.endsWith(OUT_SUFFIX)) {
+			fileName = fileName.substring(0, fileName.length() -
+					OUT_SUFFIX.length()) + ContactTrace.BINARY_EXT;
+		}
+		this.writer = new BinaryContactTraceWriter(fileName);
+	}
+
+	public void hostsConnected(DTNHost h1, DTNHost h2) {
+		writer.hostsConnected(h1, h2);
+	}
+
+	public void hostsDisconnected(DTNHost h1, DTNHost h2) {
+		writer.hostsDisconnected(h1, h2);
+	}
+
+	@Override
+	public void done() {
+		writer.close();
+		super.done();
+	}
+}
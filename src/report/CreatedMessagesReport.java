@@ -37,10 +37,17 @@ public class CreatedMessagesReport extends Report implements MessageListener {
 		}
 
 		int ttl = m.getTtl();
-		write(format(getSimTime()) + " " + m.getId() + " " +
-				m.getSize() + " " + m.getFrom() + " " + m.getTo() + " " +
-				(ttl != Integer.MAX_VALUE ? ttl : "n/a") +
-				(m.isResponse() ? " Y " : " N "));
+		StringBuilder sb = newLine();
+		append(sb, getSimTime()).append(' ').append(m.getId()).append(' ');
+		sb.append(m.getSize()).append(' ').append(m.getFrom()).append(' ');
+		sb.append(m.getTo()).append(' ');
+		if (ttl != Integer.MAX_VALUE) {
+			sb.append(ttl);
+		}
+		else {
+			sb.append("n/a");
+		}
+		write(sb.append(m.isResponse() ? " Y " : " N "));
 	}
 
 	// nothing to implement for the rest
@@ -33,31 +33,40 @@ public class DeliveredMessagesReport extends Report implements MessageListener {
 	}
 
 	/**
-	 * Returns the given messages hop path as a string
+	 * Appends the given messages hop path to a string builder
+	 * @param sb The builder where the path is appended
 	 * @param m The message
-	 * @return hop path as a string
+	 * @return the builder
 	 */
-	private String getPathString(Message m) {
+	private StringBuilder appendPath(StringBuilder sb, Message m) {
 		List<DTNHost> hops = m.getHops();
-		String str = m.getFrom().toString();
+		sb.append(m.getFrom());
 
 		for (int i=1; i<hops.size(); i++) {
-			str += "->" + hops.get(i);
+			sb.append("->").append(hops.get(i));
 		}
 
-		return str;
+		return sb;
 	}
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to,
 			boolean firstDelivery) {
 		if (!isWarmupID(m.getId()) && firstDelivery) {
 			int ttl = m.getTtl();
-			write(format(getSimTime()) + " " + m.getId() + " " +
-					m.getSize() + " " + m.getHopCount() + " " +
-					format(getSimTime() - m.getCreationTime()) + " " +
-					m.getFrom() + " " + m.getTo() + " " +
-					(ttl != Integer.MAX_VALUE ? ttl : "n/a") +
-					(m.isResponse() ? " Y " : " N ") + getPathString(m));
+			StringBuilder sb = newLine();
+			append(sb, getSimTime()).append(' ').append(m.getId()).append(' ');
+			sb.append(m.getSize()).append(' ').append(m.getHopCount());
+			append(sb.append(' '), getSimTime() - m.getCreationTime());
+			sb.append(' ').append(m.getFrom()).append(' ').append(m.getTo());
+			sb.append(' ');
+			if (ttl != Integer.MAX_VALUE) {
+				sb.append(ttl);
+			}
+			else {
+				sb.append("n/a");
+			}
+			sb.append(m.isResponse() ? " Y " : " N ");
+			write(appendPath(sb, m));
 		}
 	}
 
@@ -87,8 +87,10 @@ public class DistanceDelayReport extends Report implements MessageListener {
 	 */
 	private void report(String id, double startDistance, double time,
 			int hopCount) {
-		write(format(startDistance) + " " + format(time) + " " + hopCount +
-				" " + id);
+		StringBuilder sb = newLine();
+		append(sb, startDistance).append(' ');
+		append(sb, time).append(' ').append(hopCount).append(' ').append(id);
+		write(sb);
 	}
 
 	/* nothing to implement for the rest */
@@ -15,7 +15,7 @@ import input.StandardEventsReader;
  * like {@link input.StandardEventsReader} input. Message relying event has
  * extra one-letter identifier to tell whether that message was delivered to
  * final destination, delivered there again, or just normally relayed
- * (see the public constants).
+ * (see the public constants). Supports {@link Report#COLUMNAR_S} output.
  */
 public class EventLogReport extends Report
 	implements ConnectionListener, MessageListener {
@@ -27,6 +27,16 @@ public class EventLogReport extends Report
 	/** Extra info for message relayed event ("delivered again"): {@value} */
 	public static final String MESSAGE_TRANS_DELIVERED_AGAIN = "A";
 
+	/** Table of the events in columnar output */
+	private static final ColumnarWriter.Table EVENTS = new ColumnarWriter.Table(
+			"events", "{0} {1} {2}{ 3}{ 4}{ 5}",
+			ColumnarWriter.doubleColumn("time", ""),
+			ColumnarWriter.stringColumn("action"),
+			ColumnarWriter.stringColumn("host1"),
+			ColumnarWriter.stringColumn("host2"),
+			ColumnarWriter.stringColumn("message"),
+			ColumnarWriter.stringColumn("extra"));
+
 	/**
 	 * Processes a log event by writing a line to the report file
 	 * @param action The action as a string
@@ -37,6 +47,18 @@ public class EventLogReport extends Report
 	 */
 	private void processEvent(final String action, final DTNHost host1,
 			final DTNHost host2, final Message message, final String extra) {
+		if (isColumnar()) {
+			ColumnarWriter out = getColumnarOutput();
+			out.startRow(EVENTS);
+			out.addDouble(getSimTime());
+			out.addString(action);
+			out.addString(host1 != null ? host1.toString() : "");
+			out.addString(host2 != null ? host2.toString() : null);
+			out.addString(message != null ? message.toString() : null);
+			out.addString(extra);
+			out.endRow();
+			return;
+		}
 		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
 				+ (host2 != null ? (" " + host2) : "")
 				+ (message != null ? " " + message : "")
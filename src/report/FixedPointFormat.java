@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Fixed precision formatting of double values that appends the digits
+ * directly to a <CODE>StringBuilder</CODE>. The result is the same as with
+ * <CODE>String.format("%.<i>precision</i>f", value)</CODE>, but no format
+ * string, <CODE>Formatter</CODE> or intermediate strings are created.
+ * <P>
+ * The digits are computed by scaling the value with a power of ten and
+ * rounding it to a long. Values whose scaled fraction is so close to one
+ * half that the rounding direction could depend on the floating point
+ * error, values that are too big for the scaling and non-finite values are
+ * formatted with <CODE>String.format</CODE> (as are all values if the
+ * default locale doesn't use '.' and '0' as the decimal separator and zero
+ * digit).
+ * </P>
+ */
+public class FixedPointFormat {
+	/** Largest precision formatted without <CODE>String.format</CODE> */
+	public static final int MAX_PRECISION = 15;
+	/** Scaled values must be smaller than this for the exact long rounding */
+	private static final double MAX_SCALED = 1e15;
+	/** Relative distance from one half where the rounding is unsure */
+	private static final double TIE_MARGIN = 1e-13;
+	/** Absolute distance from one half where the rounding is unsure */
+	private static final double MIN_TIE_MARGIN = 1e-9;
+
+	private static final long[] POWERS = new long[MAX_PRECISION + 1];
+	static {
+		POWERS[0] = 1;
+		for (int i = 1; i < POWERS.length; i++) {
+			POWERS[i] = POWERS[i-1] * 10;
+		}
+	}
+
+	/** Is the fast path allowed with the default locale */
+	private static final boolean PLAIN_LOCALE = isPlainLocale();
+
+	/**
+	 * Appends a double value with the given number of decimals
+	 * @param sb The builder where the value is appended
+	 * @param value The value to append
+	 * @param precision Number of decimals (non-negative)
+	 * @return the builder
+	 */
+	public static StringBuilder append(StringBuilder sb, double value,
+			int precision) {
+		if (!PLAIN_LOCALE || precision > MAX_PRECISION) {
+			return appendSlow(sb, value, precision);
+		}
+
+		double scaled = Math.abs(value) * POWERS[precision];
+		if (!(scaled < MAX_SCALED)) { /* also NaN */
+			return appendSlow(sb, value, precision);
+		}
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+		if (Math.abs(fraction - 0.5) <= scaled * TIE_MARGIN + MIN_TIE_MARGIN) {
+			return appendSlow(sb, value, precision);
+		}
+
+		long digits = (long)floor + (fraction > 0.5 ? 1 : 0);
+		if (Double.doubleToRawLongBits(value) < 0) { /* also -0.0 */
+			sb.append('-');
+		}
+
+		long unit = POWERS[precision];
+		sb.append(digits / unit);
+		if (precision > 0) {
+			long decimals = digits % unit;
+			sb.append('.');
+			for (long p = unit / 10; p > 1 && decimals < p; p /= 10) {
+				sb.append('0'); /* leading zeros of the decimals */
+			}
+			sb.append(decimals);
+		}
+		return sb;
+	}
+
+	/**
+	 * Appends a value using <CODE>String.format</CODE>
+	 * @param sb The builder where the value is appended
+	 * @param value The value to append
+	 * @param precision Number of decimals
+	 * @return the builder
+	 */
+	private static StringBuilder appendSlow(StringBuilder sb, double value,
+			int precision) {
+		return sb.append(String.format("%." + precision + "f", value));
+	}
+
+	/**
+	 * Returns true if the default formatting locale uses the plain decimal
+	 * separator and digits
+	 * @return true if the fast path gives the same result as String.format
+	 */
+	private static boolean isPlainLocale() {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(
+				Locale.getDefault(Locale.Category.FORMAT));
+		return symbols.getDecimalSeparator() == '.' &&
+			symbols.getZeroDigit() == '0';
+	}
+}
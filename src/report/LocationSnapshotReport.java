@@ -12,13 +12,29 @@ import core.DTNHost;
  * Node location snapshot report. Reports the location of all 
  * (or only some, see {@link SnapshotReport#REPORTED_NODES}) nodes every 
  * configurable-amount-of seconds (see {@link SnapshotReport#GRANULARITY}).
- * Uses {@link Report#format} for location formatting.
+ * Uses {@link Report#format} for location formatting. Supports
+ * {@link Report#COLUMNAR_S} output.
  */
 public class LocationSnapshotReport extends SnapshotReport {
+	/** Table of the locations in columnar output */
+	private ColumnarWriter.Table locations = new ColumnarWriter.Table(
+			"locations", "{0} {1} {2}",
+			ColumnarWriter.stringColumn("host"),
+			ColumnarWriter.doubleColumn("x", getDoubleFormat()),
+			ColumnarWriter.doubleColumn("y", getDoubleFormat()));
 
 	@Override
 	protected void writeSnapshot(DTNHost h) {
 		Coord location = h.getLocation();
+		if (isColumnar()) {
+			ColumnarWriter out = getColumnarOutput();
+			out.startRow(locations);
+			out.addString(h.toString());
+			out.addDouble(location.getX());
+			out.addDouble(location.getY());
+			out.endRow();
+			return;
+		}
 		write(h.toString() + " " +  format(location.getX()) + 
 				" " + format(location.getY()));
 	}
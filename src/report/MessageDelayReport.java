@@ -7,20 +7,27 @@ package report;
 import java.util.ArrayList;
 import java.util.List;
 
-import core.DTNHost;
-import core.Message;
-import core.MessageListener;
+import core.EventBatch;
+import core.EventBatchListener;
 
 /**
  * Reports delivered messages' delays (one line per delivered message)
  * and cumulative delivery probability sorted by message delays.
  * Ignores the messages that were created during the warm up period.
+ * With {@link Report#STREAMING_STATS_S} enabled, the delays are collected
+ * to {@link StreamingStats} and one line is reported per sketch bucket
+ * (the bucket's representative delay and the cumulative delivery
+ * probability up to and including the bucket) instead of one line per
+ * delivered message. The report receives the message events in batches
+ * from the {@link core.EventBus}.
  */
-public class MessageDelayReport extends Report implements MessageListener {
+public class MessageDelayReport extends Report implements EventBatchListener {
 	public static final String HEADER =
 	    "# messageDelay  cumulativeProbability";
 	/** all message delays */
 	private List<Double> delays;
+	/** streaming statistics of the delays (if enabled) */
+	private StreamingStats delayStats;
 	private int nrofCreated;
 
 	/**
@@ -34,29 +41,45 @@ public class MessageDelayReport extends Report implements MessageListener {
 	public void init() {
 		super.init();
 		write(HEADER);
-		this.delays = new ArrayList<Double>();
-		this.nrofCreated = 0;
-	}
-
-	public void newMessage(Message m) {
-		if (isWarmup()) {
-			addWarmupID(m.getId());
+		if (isStreamingStats()) {
+			this.delayStats = newStreamingStats();
 		}
 		else {
-			this.nrofCreated++;
+			this.delays = new ArrayList<Double>();
 		}
+		this.nrofCreated = 0;
 	}
 
-	public void messageTransferred(Message m, DTNHost from, DTNHost to,
-			boolean firstDelivery) {
-		if (firstDelivery && !isWarmupID(m.getId())) {
-			this.delays.add(getSimTime() - m.getCreationTime());
+	public void eventsDispatched(EventBatch batch) {
+		for (int i=0, n=batch.size(); i<n; i++) {
+			int type = batch.getType(i);
+			if (type == EventBatch.MSG_CREATED) {
+				if (isWarmup(batch.getTime(i))) {
+					addWarmupID(batch.getMessageId(i));
+				}
+				else {
+					this.nrofCreated++;
+				}
+			}
+			else if (type == EventBatch.MSG_DELIVERED &&
+					!isWarmupID(batch.getMessageId(i))) {
+				double delay = batch.getAge(i);
+				if (this.delayStats != null) {
+					this.delayStats.add(delay);
+				}
+				else {
+					this.delays.add(delay);
+				}
+			}
 		}
-
 	}
 
 	@Override
 	public void done() {
+		if (this.delayStats != null) {
+			writeStreamingStats();
+			return;
+		}
 		if (delays.size() == 0) {
 			write("# no messages delivered in sim time "+format(getSimTime()));
 			super.done();
@@ -68,14 +91,30 @@ public class MessageDelayReport extends Report implements MessageListener {
 
 		for (int i=0; i < delays.size(); i++) {
 			cumProb += 1.0/nrofCreated;
-			write(format(delays.get(i)) + " " + format(cumProb));
+			write(delays.get(i), cumProb);
 		}
 		super.done();
 	}
 
-	// nothing to implement for the rest
-	public void messageDeleted(Message m, DTNHost where, boolean dropped) {}
-	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {}
-	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {}
+	/**
+	 * Writes the delay distribution from the streaming statistics and
+	 * finishes the report
+	 */
+	private void writeStreamingStats() {
+		if (delayStats.getCount() == 0) {
+			write("# no messages delivered in sim time "+format(getSimTime()));
+			super.done();
+			return;
+		}
+
+		delayStats.visitBuckets(new StreamingStats.BucketVisitor() {
+			private long cumCount = 0;
+			public void bucket(double value, long count) {
+				cumCount += count;
+				write(value, (1.0 * cumCount) / nrofCreated);
+			}
+		});
+		super.done();
+	}
 
 }
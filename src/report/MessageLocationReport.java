@@ -7,6 +7,7 @@ package report;
 import java.util.HashSet;
 import java.util.List;
 
+import core.Coord;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
@@ -16,6 +17,7 @@ import core.UpdateListener;
 /**
  * Message location report. Reports the location (coordinates) of messages.
  * The messages that are reported and the reporting interval can be configured.
+ * Supports {@link Report#COLUMNAR_S} output.
  */
 public class MessageLocationReport extends Report implements UpdateListener {
 	/** Reporting granularity -setting id ({@value}).
@@ -32,6 +34,16 @@ public class MessageLocationReport extends Report implements UpdateListener {
 	protected double lastUpdate;
 	/** Identifiers of the message which are reported */
 	protected HashSet<String> reportedMessages;
+	/** Tables of the time stamps and message locations in columnar output */
+	private static final ColumnarWriter.Table TIME_STAMPS =
+		new ColumnarWriter.Table("timeStamps", "[{0}]",
+			ColumnarWriter.intColumn("time"));
+	private static final ColumnarWriter.Table LOCATIONS =
+		new ColumnarWriter.Table("locations", "({0},{1},{2}){3}",
+			ColumnarWriter.doubleColumn("x", "%.2f"),
+			ColumnarWriter.doubleColumn("y", "%.2f"),
+			ColumnarWriter.intColumn("routeId"),
+			ColumnarWriter.stringColumn("messages"));
 
 	/**
 	 * Constructor. Reads the settings and initializes the report module.
@@ -85,6 +97,11 @@ public class MessageLocationReport extends Report implements UpdateListener {
 		boolean isFirstMessage;
 		String reportLine;
 
+		if (isColumnar()) {
+			createColumnarSnapshot(hosts);
+			return;
+		}
+
 		write ("[" + (int)getSimTime() + "]"); /* write sim time stamp */
 
 		for (DTNHost host : hosts) {
@@ -105,4 +122,34 @@ public class MessageLocationReport extends Report implements UpdateListener {
 		}
 	}
 
+	/**
+	 * Creates a snapshot of message locations to the columnar output
+	 * @param hosts The list of hosts in the world
+	 */
+	private void createColumnarSnapshot(List<DTNHost> hosts) {
+		ColumnarWriter out = getColumnarOutput();
+		out.startRow(TIME_STAMPS);
+		out.addInt((int)getSimTime());
+		out.endRow();
+
+		StringBuilder ids = new StringBuilder();
+		for (DTNHost host : hosts) {
+			ids.setLength(0);
+			for (Message m : host.getMessageCollection()) {
+				if (isTracked(m)) {
+					ids.append(' ').append(m.getId());
+				}
+			}
+			if (ids.length() > 0) {
+				Coord location = host.getLocation();
+				out.startRow(LOCATIONS);
+				out.addDouble(location.getX());
+				out.addDouble(location.getY());
+				out.addInt(location.getRouteId());
+				out.addString(ids.toString());
+				out.endRow();
+			}
+		}
+	}
+
 }
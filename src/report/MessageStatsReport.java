@@ -5,13 +5,10 @@
 package report;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-import core.DTNHost;
-import core.Message;
-import core.MessageListener;
+import core.EventBatch;
+import core.EventBatchListener;
 
 /**
  * Report for generating different kind of total statistics about message
@@ -20,13 +17,22 @@ import core.MessageListener;
  * <P><strong>Note:</strong> if some statistics could not be created (e.g.
  * overhead ratio if no messages were delivered) "NaN" is reported for
  * double values and zero for integer median(s).
+ * <P>With {@link Report#STREAMING_STATS_S} enabled, latencies, hop counts,
+ * buffer times and round trip times are not stored but collected to
+ * {@link StreamingStats}: averages stay exact but medians are estimates.
+ * <P>The report receives the message events in batches from the
+ * {@link core.EventBus}.
  */
-public class MessageStatsReport extends Report implements MessageListener {
-	private Map<String, Double> creationTimes;
+public class MessageStatsReport extends Report implements EventBatchListener {
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
 	private List<Double> msgBufferTime;
 	private List<Double> rtt; // round trip times
+	/* streaming statistics of the same values (if enabled) */
+	private StreamingStats latencyStats;
+	private StreamingStats hopCountStats;
+	private StreamingStats msgBufferTimeStats;
+	private StreamingStats rttStats;
 
 	private int nrofDropped;
 	private int nrofRemoved;
@@ -48,11 +54,18 @@ public class MessageStatsReport extends Report implements MessageListener {
 	@Override
 	protected void init() {
 		super.init();
-		this.creationTimes = new HashMap<String, Double>();
-		this.latencies = new ArrayList<Double>();
-		this.msgBufferTime = new ArrayList<Double>();
-		this.hopCounts = new ArrayList<Integer>();
-		this.rtt = new ArrayList<Double>();
+		if (isStreamingStats()) {
+			this.latencyStats = newStreamingStats();
+			this.msgBufferTimeStats = newStreamingStats();
+			this.hopCountStats = newStreamingStats();
+			this.rttStats = newStreamingStats();
+		}
+		else {
+			this.latencies = new ArrayList<Double>();
+			this.msgBufferTime = new ArrayList<Double>();
+			this.hopCounts = new ArrayList<Integer>();
+			this.rtt = new ArrayList<Double>();
+		}
 
 		this.nrofDropped = 0;
 		this.nrofRemoved = 0;
@@ -66,75 +79,102 @@ public class MessageStatsReport extends Report implements MessageListener {
 	}
 
 
-	public void messageDeleted(Message m, DTNHost where, boolean dropped) {
-		if (isWarmupID(m.getId())) {
+	public void eventsDispatched(EventBatch batch) {
+		for (int i=0, n=batch.size(); i<n; i++) {
+			switch (batch.getType(i)) {
+			case EventBatch.MSG_CREATED:
+				newMessage(batch, i);
+				break;
+			case EventBatch.MSG_TRANSFER_STARTED:
+				if (!isWarmupID(batch.getMessageId(i))) {
+					this.nrofStarted++;
+				}
+				break;
+			case EventBatch.MSG_TRANSFER_ABORTED:
+				if (!isWarmupID(batch.getMessageId(i))) {
+					this.nrofAborted++;
+				}
+				break;
+			case EventBatch.MSG_RELAYED:
+			case EventBatch.MSG_DELIVERED:
+				messageTransferred(batch, i);
+				break;
+			case EventBatch.MSG_DROPPED:
+			case EventBatch.MSG_REMOVED:
+				messageDeleted(batch, i);
+				break;
+			}
+		}
+	}
+
+	private void messageDeleted(EventBatch batch, int i) {
+		if (isWarmupID(batch.getMessageId(i))) {
 			return;
 		}
 
-		if (dropped) {
+		if (batch.getType(i) == EventBatch.MSG_DROPPED) {
 			this.nrofDropped++;
 		}
 		else {
 			this.nrofRemoved++;
 		}
 
-		this.msgBufferTime.add(getSimTime() - m.getReceiveTime());
-	}
-
-
-	public void messageTransferAborted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
-			return;
+		double bufferTime = batch.getBufferTime(i);
+		if (this.msgBufferTimeStats != null) {
+			this.msgBufferTimeStats.add(bufferTime);
+		}
+		else {
+			this.msgBufferTime.add(bufferTime);
 		}
-
-		this.nrofAborted++;
 	}
 
 
-	public void messageTransferred(Message m, DTNHost from, DTNHost to,
-			boolean finalTarget) {
-		if (isWarmupID(m.getId())) {
+	private void messageTransferred(EventBatch batch, int i) {
+		if (isWarmupID(batch.getMessageId(i))) {
 			return;
 		}
 
 		this.nrofRelayed++;
-		if (finalTarget) {
-			this.latencies.add(getSimTime() -
-				this.creationTimes.get(m.getId()) );
+		if (batch.getType(i) == EventBatch.MSG_DELIVERED) {
+			double latency = batch.getAge(i);
+			int hopCount = batch.getHopCount(i);
 			this.nrofDelivered++;
-			this.hopCounts.add(m.getHops().size() - 1);
+			if (this.latencyStats != null) {
+				this.latencyStats.add(latency);
+				this.hopCountStats.add(hopCount);
+			}
+			else {
+				this.latencies.add(latency);
+				this.hopCounts.add(hopCount);
+			}
 
-			if (m.isResponse()) {
-				this.rtt.add(getSimTime() -	m.getRequest().getCreationTime());
+			if (batch.isResponse(i)) {
+				double roundTrip = batch.getRequestAge(i);
+				if (this.rttStats != null) {
+					this.rttStats.add(roundTrip);
+				}
+				else {
+					this.rtt.add(roundTrip);
+				}
 				this.nrofResponseDelivered++;
 			}
 		}
 	}
 
 
-	public void newMessage(Message m) {
-		if (isWarmup()) {
-			addWarmupID(m.getId());
+	private void newMessage(EventBatch batch, int i) {
+		if (isWarmup(batch.getTime(i))) {
+			addWarmupID(batch.getMessageId(i));
 			return;
 		}
 
-		this.creationTimes.put(m.getId(), getSimTime());
 		this.nrofCreated++;
-		if (m.getResponseSize() > 0) {
+		if (batch.isResponseRequested(i)) {
 			this.nrofResponseReqCreated++;
 		}
 	}
 
 
-	public void messageTransferStarted(Message m, DTNHost from, DTNHost to) {
-		if (isWarmupID(m.getId())) {
-			return;
-		}
-
-		this.nrofStarted++;
-	}
-
-
 	@Override
 	public void done() {
 		write("Message stats for scenario " + getScenarioName() +
@@ -164,16 +204,30 @@ public class MessageStatsReport extends Report implements MessageListener {
 			"\ndelivered: " + this.nrofDelivered +
 			"\ndelivery_prob: " + format(deliveryProb) +
 			"\nresponse_prob: " + format(responseProb) +
-			"\noverhead_ratio: " + format(overHead) +
-			"\nlatency_avg: " + getAverage(this.latencies) +
-			"\nlatency_med: " + getMedian(this.latencies) +
-			"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
-			"\nhopcount_med: " + getIntMedian(this.hopCounts) +
-			"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
-			"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
-			"\nrtt_avg: " + getAverage(this.rtt) +
-			"\nrtt_med: " + getMedian(this.rtt)
-			;
+			"\noverhead_ratio: " + format(overHead);
+
+		if (this.latencyStats != null) {
+			statsText +=
+				"\nlatency_avg: " + getAverage(this.latencyStats) +
+				"\nlatency_med: " + getMedian(this.latencyStats) +
+				"\nhopcount_avg: " + getAverage(this.hopCountStats) +
+				"\nhopcount_med: " + getIntMedian(this.hopCountStats) +
+				"\nbuffertime_avg: " + getAverage(this.msgBufferTimeStats) +
+				"\nbuffertime_med: " + getMedian(this.msgBufferTimeStats) +
+				"\nrtt_avg: " + getAverage(this.rttStats) +
+				"\nrtt_med: " + getMedian(this.rttStats);
+		}
+		else {
+			statsText +=
+				"\nlatency_avg: " + getAverage(this.latencies) +
+				"\nlatency_med: " + getMedian(this.latencies) +
+				"\nhopcount_avg: " + getIntAverage(this.hopCounts) +
+				"\nhopcount_med: " + getIntMedian(this.hopCounts) +
+				"\nbuffertime_avg: " + getAverage(this.msgBufferTime) +
+				"\nbuffertime_med: " + getMedian(this.msgBufferTime) +
+				"\nrtt_avg: " + getAverage(this.rtt) +
+				"\nrtt_med: " + getMedian(this.rtt);
+		}
 
 		write(statsText);
 		super.done();
@@ -13,7 +13,8 @@ import core.Settings;
  * Movement report that generates suitable movement data for ns-2 simulator
  * as described in <A HREF="http://www.isi.edu/nsnam/ns/doc/node174.html">
  * http://www.isi.edu/nsnam/ns/doc/node174.html</A>.
- * This report ignores the warm up settings.
+ * This report ignores the warm up settings. Supports
+ * {@link Report#COLUMNAR_S} output.
  */
 public class MovementNs2Report extends Report implements MovementListener {
 	/** node array's name -setting id ({@value})*/
@@ -32,6 +33,9 @@ public class MovementNs2Report extends Report implements MovementListener {
 
 	private String nodeArray;
 	private String nsCmd;
+	/** tables of initial locations and new destinations in columnar output */
+	private ColumnarWriter.Table locations;
+	private ColumnarWriter.Table destinations;
 
 	/**
 	 * Constructor. Reads {@link #NODE_ARR_S} and {@link #NS_CMD_S} settings
@@ -56,11 +60,36 @@ public class MovementNs2Report extends Report implements MovementListener {
 			nsCmd = DEF_NS_CMD;
 		}
 
+		this.locations = new ColumnarWriter.Table("locations",
+				nodeArray + "({0}) set X_ {1}\n" +
+				nodeArray + "({0}) set Y_ {2}\n" +
+				nodeArray + "({0}) set Z_ 0",
+				ColumnarWriter.intColumn("node"),
+				ColumnarWriter.doubleColumn("x", COORD_FORMAT),
+				ColumnarWriter.doubleColumn("y", COORD_FORMAT));
+		this.destinations = new ColumnarWriter.Table("destinations",
+				nsCmd + " at {0} \"\\" + nodeArray +
+				"({1}) setdest {2} {3} {4}\"",
+				ColumnarWriter.doubleColumn("time", ""),
+				ColumnarWriter.intColumn("node"),
+				ColumnarWriter.doubleColumn("x", COORD_FORMAT),
+				ColumnarWriter.doubleColumn("y", COORD_FORMAT),
+				ColumnarWriter.doubleColumn("speed", ""));
+
 		init();
 	}
 
 	public void initialLocation(DTNHost host, Coord location) {
 		int index = host.getAddress();
+		if (isColumnar()) {
+			ColumnarWriter out = getColumnarOutput();
+			out.startRow(locations);
+			out.addInt(index);
+			out.addDouble(nonZero(location.getX()));
+			out.addDouble(nonZero(location.getY()));
+			out.endRow();
+			return;
+		}
 		write(nodeArray + "("+ index + ") set X_ " + fix(location.getX()));
 		write(nodeArray + "("+ index + ") set Y_ " + fix(location.getY()));
 		write(nodeArray + "("+ index + ") set Z_ 0");
@@ -70,6 +99,17 @@ public class MovementNs2Report extends Report implements MovementListener {
 		int index = host.getAddress();
 		double time = getSimTime();
 
+		if (isColumnar()) {
+			ColumnarWriter out = getColumnarOutput();
+			out.startRow(destinations);
+			out.addDouble(time);
+			out.addInt(index);
+			out.addDouble(nonZero(dst.getX()));
+			out.addDouble(nonZero(dst.getY()));
+			out.addDouble(speed);
+			out.endRow();
+			return;
+		}
 		write(nsCmd + " at " + time + " \"\\" + nodeArray +	"(" + index + ")" +
 				" setdest " + fix(dst.getX()) + " " + fix(dst.getY()) +
 				" " + speed + "\"");
@@ -83,7 +123,15 @@ public class MovementNs2Report extends Report implements MovementListener {
 	 * @return The fixed value
 	 */
 	private String fix(double val) {
-		val = val == 0 ? EPSILON : val;
-		return String.format(COORD_FORMAT, val);
+		return String.format(COORD_FORMAT, nonZero(val));
+	}
+
+	/**
+	 * Converts zero values to {@value EPSILON}
+	 * @param val The value to fix
+	 * @return The value or {@value EPSILON} if the value was zero
+	 */
+	private double nonZero(double val) {
+		return val == 0 ? EPSILON : val;
 	}
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import core.Profiler;
+import core.Settings;
+import core.SettingsError;
+import core.SimScenario;
+
+/**
+ * Report of where the simulation time goes. Turns on the profiling of
+ * the world updates (see {@link Profiler}) and at the end of the run
+ * reports, for each update phase (events, movement, connectivity, routing
+ * and reports) and for each movement model, network interface, router and
+ * update listener class, the total time and the spread of the time per
+ * profiled update.
+ * <P>
+ * Only every {@link #SAMPLE_INTERVAL_S}th update is profiled. The totals
+ * are estimates for the whole run (the profiled time scaled by the ratio
+ * of all updates to profiled updates); share is the entry's part of the
+ * total time of all phases and calls is the number of timed calls per
+ * profiled update. The mean, percentiles and maximum are of the time per
+ * profiled update in microseconds.
+ * </P>
+ */
+public class ProfileReport extends Report {
+	/** How often the updates are profiled -setting id ({@value}).
+	 * Every sampleInterval'th update is profiled.
+	 * Default = {@value #DEF_SAMPLE_INTERVAL} */
+	public static final String SAMPLE_INTERVAL_S = "sampleInterval";
+	/** Default value of the sample interval */
+	public static final int DEF_SAMPLE_INTERVAL = 10;
+	/** Header of the report's columns */
+	public static final String HEADER = "# kind name total_s share calls " +
+		"mean_us p50_us p90_us p99_us max_us";
+
+	private Profiler profiler;
+
+	/**
+	 * Constructor.
+	 */
+	public ProfileReport() {
+		Settings s = getSettings();
+		int interval = s.getInt(SAMPLE_INTERVAL_S, DEF_SAMPLE_INTERVAL);
+		if (interval < 1) {
+			throw new SettingsError("Invalid " + SAMPLE_INTERVAL_S + " " +
+					interval + " for " + getClass().getSimpleName());
+		}
+		this.profiler = SimScenario.getInstance().getWorld().startProfiling(
+				interval);
+		init();
+	}
+
+	@Override
+	public void done() {
+		long profiled = profiler.getNrofProfiledUpdates();
+		write("# Profile of scenario " + getScenarioName());
+		write("# updates: " + profiler.getNrofUpdates() + ", profiled: " +
+				profiled + " (every " + profiler.getSampleInterval() + ")");
+		if (profiled == 0) {
+			super.done();
+			return;
+		}
+		write(HEADER);
+
+		double scale = (double)profiler.getNrofUpdates() / profiled;
+		double phaseTotal = 0;
+		for (Profiler.Entry e : profiler.getEntries()) {
+			if (e.getKind().equals("phase")) {
+				phaseTotal += e.getTotalTime();
+			}
+		}
+
+		for (Profiler.Entry e : profiler.getEntries()) {
+			StreamingStats perUpdate = e.getTimePerUpdate();
+			StringBuilder sb = newLine();
+			sb.append(e.getKind()).append(' ').append(e.getName());
+			append(sb.append(' '), e.getTotalTime() * scale);
+			append(sb.append(' '), phaseTotal > 0 ?
+					e.getTotalTime() / phaseTotal : 0);
+			append(sb.append(' '), (double)e.getNrofCalls() / profiled);
+			append(sb.append(' '), perUpdate.getMean());
+			append(sb.append(' '), perUpdate.getQuantile(0.5));
+			append(sb.append(' '), perUpdate.getQuantile(0.9));
+			append(sb.append(' '), perUpdate.getQuantile(0.99));
+			append(sb.append(' '), perUpdate.getMax());
+			write(sb);
+		}
+
+		super.done();
+	}
+}
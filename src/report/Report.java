@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Set;
 
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
@@ -49,12 +50,30 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Streaming statistics -setting id ({@value}). Boolean. If true, reports
+	 * that support it use bounded memory {@link StreamingStats} instead of
+	 * storing all values. Medians and other quantiles are then estimates
+	 * within {@link #STATS_ACCURACY_S} relative accuracy. Default = false. */
+	public static final String STREAMING_STATS_S = "streamingStats";
+	/** Relative accuracy of the quantiles of streaming statistics -setting id
+	 * ({@value}). Default = {@link StreamingStats#DEF_ACCURACY}. */
+	public static final String STATS_ACCURACY_S = "statsAccuracy";
+	/** Columnar output -setting id ({@value}). Boolean. If true, the report
+	 * is written to a binary {@link ColumnarWriter} file (with the
+	 * {@link #COLUMNAR_SUFFIX} suffix instead of {@link #OUT_SUFFIX}) that
+	 * can be converted to the text layout with {@link ColumnarReader}.
+	 * Default = false. */
+	public static final String COLUMNAR_S = "columnar";
+	/** Suffix of columnar report files without explicit output */
+	public static final String COLUMNAR_SUFFIX = ".col";
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX;
 	/** The print writer used to write output. See {@link #write(String)} */
 	protected PrintWriter out;
+	/** The writer of columnar output (null if the output is text) */
+	protected ColumnarWriter columnarOut;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
@@ -67,6 +86,15 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	private boolean streamingStats;
+	private boolean columnar;
+	private double statsAccuracy;
+	/** reusable builder of report lines (see {@link #newLine()}) */
+	private StringBuilder line;
+	/** reusable builder for {@link #format(double)} */
+	private StringBuilder formatBuffer;
+	/** reusable buffer for copying lines to the output writer */
+	private char[] lineChars;
 
 	/**
 	 * Constructor.
@@ -107,6 +135,19 @@ public abstract class Report {
 			precision = DEF_PRECISION;
 		}
 
+		this.line = new StringBuilder(128);
+		this.formatBuffer = new StringBuilder(32);
+		this.lineChars = new char[128];
+
+		this.streamingStats = settings.getBoolean(STREAMING_STATS_S, false);
+		this.columnar = settings.getBoolean(COLUMNAR_S, false);
+		this.statsAccuracy = settings.getDouble(STATS_ACCURACY_S,
+				StreamingStats.DEF_ACCURACY);
+		if (this.statsAccuracy <= 0 || this.statsAccuracy >= 1) {
+			throw new SettingsError("Invalid " + STATS_ACCURACY_S + " " +
+					this.statsAccuracy + ". Must be between 0 and 1");
+		}
+
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
 			// fill value place holders in the name
@@ -122,7 +163,8 @@ public abstract class Report {
 			outFileName = outDir + scenarioName +
 				"_" + this.getClass().getSimpleName();
 			if (outputInterval == -1) {
-				outFileName += OUT_SUFFIX; // no intervalled reports
+				// no intervalled reports
+				outFileName += (columnar ? COLUMNAR_SUFFIX : OUT_SUFFIX);
 			}
 
 		}
@@ -191,6 +233,10 @@ public abstract class Report {
 	 * @param outFileName Name (&path) of the file to create
 	 */
 	private void createOutput(String outFileName) {
+		if (this.columnar) {
+			this.columnarOut = new ColumnarWriter(outFileName);
+			return;
+		}
 		try {
 			this.out = new PrintWriter(new FileWriter(outFileName));
 		} catch (IOException e) {
@@ -206,6 +252,10 @@ public abstract class Report {
 	private void createSuffixedOutput(String outFileName) {
 		String suffix = String.format(INTERVALLED_FORMAT,
 				this.lastOutputSuffix);
+		if (this.columnar) {
+			suffix = suffix.substring(0, suffix.length() -
+					OUT_SUFFIX.length()) + COLUMNAR_SUFFIX;
+		}
 		createOutput(outFileName+suffix);
 		this.lastOutputSuffix++;
 	}
@@ -232,12 +282,124 @@ public abstract class Report {
 	 * @see #setPrefix(String)
 	 */
 	protected void write(String txt) {
+		if (this.columnar) {
+			getColumnarOutput().writeLine(prefix + txt);
+			return;
+		}
 		if (out == null) {
 			init();
 		}
 		out.println(prefix + txt);
 	}
 
+	/**
+	 * Writes a line that was built in a StringBuilder (e.g., the one from
+	 * {@link #newLine()}) without creating a string of it.
+	 * @param txt The line to write
+	 * @see #write(String)
+	 */
+	protected void write(StringBuilder txt) {
+		if (this.columnar) {
+			write(txt.toString());
+			return;
+		}
+		if (out == null) {
+			init();
+		}
+
+		int length = txt.length();
+		if (lineChars.length < length) {
+			lineChars = new char[Math.max(length, lineChars.length * 2)];
+		}
+		txt.getChars(0, length, lineChars, 0);
+		out.write(prefix);
+		out.write(lineChars, 0, length);
+		out.println();
+	}
+
+	/**
+	 * Writes a line of two space separated double values formatted with
+	 * the report's precision (see {@link #format(double)})
+	 * @param value1 The first value
+	 * @param value2 The second value
+	 */
+	protected void write(double value1, double value2) {
+		StringBuilder sb = newLine();
+		append(sb, value1).append(' ');
+		append(sb, value2);
+		write(sb);
+	}
+
+	/**
+	 * Writes a line of three space separated double values formatted with
+	 * the report's precision (see {@link #format(double)})
+	 * @param value1 The first value
+	 * @param value2 The second value
+	 * @param value3 The third value
+	 */
+	protected void write(double value1, double value2, double value3) {
+		StringBuilder sb = newLine();
+		append(sb, value1).append(' ');
+		append(sb, value2).append(' ');
+		append(sb, value3);
+		write(sb);
+	}
+
+	/**
+	 * Returns the report's reusable line builder, emptied. The line can be
+	 * written with {@link #write(StringBuilder)}. The same builder is
+	 * returned on every call, so a line must be written before starting
+	 * the next one.
+	 * @return an empty StringBuilder
+	 */
+	protected StringBuilder newLine() {
+		line.setLength(0);
+		return line;
+	}
+
+	/**
+	 * Appends a double value formatted according to the precision setting
+	 * (see {@link #PRECISION_SETTING}) to a StringBuilder
+	 * @param sb The builder where the value is appended
+	 * @param value The value to append
+	 * @return the builder
+	 */
+	protected StringBuilder append(StringBuilder sb, double value) {
+		return FixedPointFormat.append(sb, value, precision);
+	}
+
+	/**
+	 * Returns true if the report is written in the columnar format. Reports
+	 * that support columnar output write their rows with
+	 * {@link #getColumnarOutput()} instead of {@link #write(String)}.
+	 * @return true if {@link #COLUMNAR_S} is enabled
+	 */
+	protected boolean isColumnar() {
+		return this.columnar;
+	}
+
+	/**
+	 * Returns the writer of the columnar output (and initializes the output
+	 * if it isn't initialized yet)
+	 * @return the writer of the columnar output
+	 */
+	protected ColumnarWriter getColumnarOutput() {
+		if (columnarOut == null) {
+			init();
+		}
+		return columnarOut;
+	}
+
+	/**
+	 * Returns the <CODE>String.format</CODE> pattern that gives the same
+	 * result as {@link #format(double)} (e.g., for the columns of columnar
+	 * output)
+	 * @return the format pattern of double values
+	 */
+	protected String getDoubleFormat() {
+		return "%." + precision + "f";
+	}
+
 	/**
 	 * Formats a double value according to current precision setting (see
 	 * {@link #PRECISION_SETTING}) and returns it in a string.
@@ -245,7 +407,8 @@ public abstract class Report {
 	 * @return Formatted value in a string
 	 */
 	protected String format(double value) {
-		return String.format("%." + precision + "f", value);
+		formatBuffer.setLength(0);
+		return append(formatBuffer, value).toString();
 	}
 
 	/**
@@ -264,6 +427,33 @@ public abstract class Report {
 		return this.scenarioName;
 	}
 
+	/**
+	 * Returns the name (and path) of the output file as given in the
+	 * settings or constructed from the report's name. For intervalled
+	 * reports, this is the prefix of the output files.
+	 * @return the name of the output file
+	 */
+	protected String getOutputFileName() {
+		return this.outFileName;
+	}
+
+	/**
+	 * Returns true if the report should use streaming statistics
+	 * @return true if {@link #STREAMING_STATS_S} is enabled
+	 */
+	protected boolean isStreamingStats() {
+		return this.streamingStats;
+	}
+
+	/**
+	 * Creates new, empty streaming statistics with the relative accuracy
+	 * given in the settings
+	 * @return new streaming statistics
+	 */
+	protected StreamingStats newStreamingStats() {
+		return new StreamingStats(this.statsAccuracy);
+	}
+
 	/**
 	 * Returns the current simulation time from the SimClock
 	 * @return the current simulation time from the SimClock
@@ -280,6 +470,16 @@ public abstract class Report {
 		return this.warmupTime > SimClock.getTime();
 	}
 
+	/**
+	 * Returns true if the given time is within the warm up period (e.g.,
+	 * the time of a batched event)
+	 * @param time The simulation time
+	 * @return true if the time is before the end of the warm up period
+	 */
+	protected boolean isWarmup(double time) {
+		return this.warmupTime > time;
+	}
+
 	/**
 	 * Adds a new ID to the warm up ID set
 	 * @param id The ID
@@ -292,6 +492,16 @@ public abstract class Report {
 		this.warmupIDs.add(id);
 	}
 
+	/**
+	 * Marks a message that existed before this report was created (e.g.,
+	 * a message restored from a simulation checkpoint) to be handled like
+	 * the messages created during the warm up period.
+	 * @param id ID of the message
+	 */
+	public void addPreexistingMessage(String id) {
+		addWarmupID(id);
+	}
+
 	/**
 	 * Removes a warm up ID from the warm up ID set
 	 * @param id The ID to remove
@@ -333,6 +543,10 @@ public abstract class Report {
 		if (out != null) {
 			out.close();
 		}
+		if (columnarOut != null) {
+			columnarOut.close();
+			columnarOut = null;
+		}
 	}
 
 	/**
@@ -417,4 +631,54 @@ public abstract class Report {
 		return format(sum2/values.size() - (E_X*E_X));
 	}
 
+	/**
+	 * Returns the average of the values of streaming statistics
+	 * @param stats The statistics
+	 * @return average of the values or "NaN" if there are no values
+	 */
+	public String getAverage(StreamingStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getMean());
+	}
+
+	/**
+	 * Returns the (estimated) median of the values of streaming statistics
+	 * @param stats The statistics
+	 * @return median of the values or "NaN" if there are no values
+	 */
+	public String getMedian(StreamingStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getMedian());
+	}
+
+	/**
+	 * Returns the (estimated) median of the integer values of streaming
+	 * statistics
+	 * @param stats The statistics
+	 * @return median of the values rounded to integer or 0 if there are no
+	 * values
+	 */
+	public int getIntMedian(StreamingStats stats) {
+		if (stats.getCount() == 0) {
+			return 0;
+		}
+		return (int)Math.round(stats.getMedian());
+	}
+
+	/**
+	 * Returns the variance of the values of streaming statistics
+	 * @param stats The statistics
+	 * @return variance of the values or "NaN" if there are no values
+	 */
+	public String getVariance(StreamingStats stats) {
+		if (stats.getCount() == 0) {
+			return NAN;
+		}
+		return format(stats.getVariance());
+	}
+
 }
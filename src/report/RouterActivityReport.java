@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import routing.ActiveRouter;
+import routing.MessageRouter;
+import routing.util.ActivityTracker;
+import core.DTNHost;
+import core.SimScenario;
+
+/**
+ * Report of how much routing work the routers skipped while idle (see
+ * {@link ActivityTracker}). At the end of the run reports, for each active
+ * router class, the number of hosts, the number of routing decisions made
+ * and skipped, and the skipped decisions' share of all decisions.
+ */
+public class RouterActivityReport extends Report {
+	/** Header of the report's columns */
+	public static final String HEADER = "# router hosts decisions skipped " +
+		"skipped_share";
+
+	/**
+	 * Constructor.
+	 */
+	public RouterActivityReport() {
+		init();
+	}
+
+	@Override
+	public void done() {
+		/* hosts, decisions and skipped decisions by router class */
+		Map<String, long[]> counts = new LinkedHashMap<String, long[]>();
+		for (DTNHost host : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = host.getRouter();
+			if (!(r instanceof ActiveRouter)) {
+				continue;
+			}
+			String name = r.getClass().getSimpleName();
+			long[] c = counts.get(name);
+			if (c == null) {
+				c = new long[3];
+				counts.put(name, c);
+			}
+			ActivityTracker activity = ((ActiveRouter)r).getActivityTracker();
+			c[0]++;
+			c[1] += activity.getNrofDecisions();
+			c[2] += activity.getNrofSkipped();
+		}
+
+		write("# Router activity of scenario " + getScenarioName());
+		write(HEADER);
+		for (Map.Entry<String, long[]> e : counts.entrySet()) {
+			long[] c = e.getValue();
+			long total = c[1] + c[2];
+			StringBuilder sb = newLine();
+			sb.append(e.getKey()).append(' ').append(c[0]).append(' ').
+				append(c[1]).append(' ').append(c[2]);
+			append(sb.append(' '), total > 0 ? (double)c[2] / total : 0);
+			write(sb);
+		}
+
+		super.done();
+	}
+}
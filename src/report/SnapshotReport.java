@@ -29,6 +29,10 @@ public abstract class SnapshotReport extends Report implements UpdateListener {
 	protected double lastUpdate;
 	/** Networks addresses (integers) of the nodes which are reported */
 	protected HashSet<Integer> reportedNodes;
+	/** Table of the simulation time stamps in columnar output */
+	protected static final ColumnarWriter.Table TIME_STAMPS =
+		new ColumnarWriter.Table("timeStamps", "[{0}]",
+			ColumnarWriter.intColumn("time"));
 
 	/**
 	 * Constructor. Reads the settings and initializes the report module.
@@ -82,7 +86,15 @@ public abstract class SnapshotReport extends Report implements UpdateListener {
 	 * @param hosts The list of hosts in the world
 	 */
 	protected void createSnapshot(List<DTNHost> hosts) {
-		write ("[" + (int)getSimTime() + "]"); /* simulation time stamp */
+		if (isColumnar()) {
+			ColumnarWriter out = getColumnarOutput();
+			out.startRow(TIME_STAMPS);
+			out.addInt((int)getSimTime());
+			out.endRow();
+		}
+		else {
+			write ("[" + (int)getSimTime() + "]"); /* simulation time stamp */
+		}
 		for (DTNHost h : hosts) {
 			if (this.reportedNodes != null &&
 				!this.reportedNodes.contains(h.getAddress())) {
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+import core.SimError;
+
+/**
+ * Bounded memory statistics of a stream of values. Count, minimum, maximum,
+ * mean and variance are exact (mean and variance are updated with Welford's
+ * method). Quantiles are estimated from a sketch that counts the values in
+ * logarithmically sized buckets: every quantile estimate is within the
+ * relative accuracy of the true value. With the default relative accuracy
+ * of 1%, values between 0.001 and 10<sup>7</sup> take less than 1200
+ * buckets, no matter how many values are added.
+ * <P>
+ * Statistics with the same relative accuracy can be merged, e.g., to combine
+ * the statistics of several hosts or batch runs.
+ * </P>
+ */
+public class StreamingStats {
+	/** Default relative accuracy of the quantiles ({@value}) */
+	public static final double DEF_ACCURACY = 0.01;
+	/** Values with smaller magnitude than this are counted as zeros */
+	private static final double MIN_INDEXABLE = 1e-9;
+
+	private double accuracy;
+	private double gamma;
+	private double logGamma;
+
+	private long count;
+	private double mean;
+	/** sum of squared differences from the mean */
+	private double m2;
+	private double min;
+	private double max;
+
+	private Buckets positive;
+	private Buckets negative;
+	private long zeroCount;
+
+	/**
+	 * Creates statistics with the default relative accuracy
+	 */
+	public StreamingStats() {
+		this(DEF_ACCURACY);
+	}
+
+	/**
+	 * Creates statistics with the given relative accuracy of quantiles
+	 * @param accuracy The relative accuracy (between 0 and 1)
+	 */
+	public StreamingStats(double accuracy) {
+		if (accuracy <= 0 || accuracy >= 1) {
+			throw new SimError("Invalid relative accuracy " + accuracy);
+		}
+		this.accuracy = accuracy;
+		this.gamma = (1 + accuracy) / (1 - accuracy);
+		this.logGamma = Math.log(gamma);
+		this.positive = new Buckets();
+		this.negative = new Buckets();
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Adds a value to the statistics
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+
+		if (value > MIN_INDEXABLE) {
+			positive.add(index(value), 1);
+		}
+		else if (value < -MIN_INDEXABLE) {
+			negative.add(index(-value), 1);
+		}
+		else {
+			zeroCount++;
+		}
+	}
+
+	/**
+	 * Merges the values of other statistics to these statistics
+	 * @param other The statistics to merge
+	 * @throws SimError if the relative accuracies differ
+	 */
+	public void merge(StreamingStats other) {
+		if (other.accuracy != this.accuracy) {
+			throw new SimError("Can't merge statistics with relative " +
+					"accuracies " + this.accuracy + " and " + other.accuracy);
+		}
+		if (other.count == 0) {
+			return;
+		}
+
+		long n = this.count + other.count;
+		double delta = other.mean - this.mean;
+		this.mean += delta * other.count / n;
+		this.m2 += other.m2 + delta * delta * this.count * other.count / n;
+		this.count = n;
+		this.min = Math.min(this.min, other.min);
+		this.max = Math.max(this.max, other.max);
+
+		this.positive.merge(other.positive);
+		this.negative.merge(other.negative);
+		this.zeroCount += other.zeroCount;
+	}
+
+	/**
+	 * Returns the number of values
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns the mean of the values
+	 * @return the mean or NaN if there are no values
+	 */
+	public double getMean() {
+		return count == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * Returns the (population) variance of the values
+	 * @return the variance or NaN if there are no values
+	 */
+	public double getVariance() {
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return the smallest value or NaN if there are no values
+	 */
+	public double getMin() {
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return the largest value or NaN if there are no values
+	 */
+	public double getMax() {
+		return count == 0 ? Double.NaN : max;
+	}
+
+	/**
+	 * Returns an estimate of a quantile of the values. The estimate is the
+	 * value whose (zero based) rank in the sorted values is
+	 * <CODE>floor(q * count)</CODE>, i.e., the same value that
+	 * {@link Report#getMedian(java.util.List)} returns for q = 0.5.
+	 * @param q The quantile (between 0 and 1)
+	 * @return the estimate or NaN if there are no values
+	 */
+	public double getQuantile(double q) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		long rank = Math.min((long)(q * count), count - 1);
+
+		long seen = 0;
+		for (int i = negative.counts.length - 1; i >= 0; i--) {
+			seen += negative.counts[i];
+			if (seen > rank) {
+				return clamp(-value(negative.offset + i));
+			}
+		}
+		seen += zeroCount;
+		if (seen > rank) {
+			return clamp(0);
+		}
+		for (int i = 0; i < positive.counts.length; i++) {
+			seen += positive.counts[i];
+			if (seen > rank) {
+				return clamp(value(positive.offset + i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns an estimate of the median of the values
+	 * @return the estimate or NaN if there are no values
+	 * @see #getQuantile(double)
+	 */
+	public double getMedian() {
+		return getQuantile(0.5);
+	}
+
+	/**
+	 * Returns the number of non-empty buckets of the quantile sketch
+	 * @return the number of non-empty buckets
+	 */
+	public int getNrofBuckets() {
+		return positive.nrofNonEmpty() + negative.nrofNonEmpty() +
+			(zeroCount > 0 ? 1 : 0);
+	}
+
+	/**
+	 * Calls the visitor for each non-empty bucket of the sketch in increasing
+	 * order of values
+	 * @param visitor The visitor
+	 */
+	public void visitBuckets(BucketVisitor visitor) {
+		for (int i = negative.counts.length - 1; i >= 0; i--) {
+			if (negative.counts[i] > 0) {
+				visitor.bucket(clamp(-value(negative.offset + i)),
+						negative.counts[i]);
+			}
+		}
+		if (zeroCount > 0) {
+			visitor.bucket(clamp(0), zeroCount);
+		}
+		for (int i = 0; i < positive.counts.length; i++) {
+			if (positive.counts[i] > 0) {
+				visitor.bucket(clamp(value(positive.offset + i)),
+						positive.counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the bucket index of a positive value
+	 * @param value The value
+	 * @return the index
+	 */
+	private int index(double value) {
+		return (int)Math.ceil(Math.log(value) / logGamma);
+	}
+
+	/**
+	 * Returns the representative value of a bucket. All values of the
+	 * bucket are within the relative accuracy from it.
+	 * @param index Index of the bucket
+	 * @return the representative value
+	 */
+	private double value(int index) {
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	/**
+	 * Limits a value to the range of the added values
+	 * @param value The value
+	 * @return the value limited to [min, max]
+	 */
+	private double clamp(double value) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/**
+	 * Interface for visiting the buckets of the sketch
+	 */
+	public interface BucketVisitor {
+		/**
+		 * Called for a non-empty bucket
+		 * @param value Representative value of the bucket
+		 * @param count Number of values in the bucket
+		 */
+		public void bucket(double value, long count);
+	}
+
+	/**
+	 * Counts of consecutive buckets starting from an offset index. The
+	 * array grows to both directions as needed.
+	 */
+	private static class Buckets {
+		private long[] counts = new long[0];
+		private int offset = 0;
+
+		/**
+		 * Adds to the count of a bucket
+		 * @param index Index of the bucket
+		 * @param n The count to add
+		 */
+		private void add(int index, long n) {
+			if (counts.length == 0) {
+				counts = new long[8];
+				offset = index;
+			}
+			else if (index < offset) {
+				int grow = Math.max(offset - index, counts.length / 2);
+				long[] newCounts = new long[counts.length + grow];
+				System.arraycopy(counts, 0, newCounts, grow, counts.length);
+				counts = newCounts;
+				offset -= grow;
+			}
+			else if (index >= offset + counts.length) {
+				counts = Arrays.copyOf(counts, Math.max(index - offset + 1,
+						counts.length + counts.length / 2));
+			}
+			counts[index - offset] += n;
+		}
+
+		/**
+		 * Adds the counts of other buckets to these
+		 * @param other The other buckets
+		 */
+		private void merge(Buckets other) {
+			for (int i = 0; i < other.counts.length; i++) {
+				if (other.counts[i] > 0) {
+					add(other.offset + i, other.counts[i]);
+				}
+			}
+		}
+
+		/**
+		 * Returns the number of non-empty buckets
+		 * @return the number of non-empty buckets
+		 */
+		private int nrofNonEmpty() {
+			int n = 0;
+			for (long c : counts) {
+				if (c > 0) {
+					n++;
+				}
+			}
+			return n;
+		}
+	}
+}
@@ -40,13 +40,13 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
-		ConnectionInfo ci = removeConnection(host1, host2);
+		double time = removeConnection(host1, host2);
 
-		if (ci == null) {
+		if (time < 0) {
 			return; // connection started during the warm up period
 		}
 
-		oldContactTimes += ci.getConnectionTime();
+		oldContactTimes += time;
 	}
 
 	/**
@@ -63,8 +63,9 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 
 		// count also the times for connections that are still up
 		double othersTime = 0;
-		for (ConnectionInfo oth : this.connections.values()) {
-			othersTime += oth.getConnectionTime();
+		for (int i = connections.nextSlot(0); i >= 0;
+				i = connections.nextSlot(i + 1)) {
+			othersTime += simTime - connections.getValue(i);
 		}
 
 		double totalTime = oldContactTimes + othersTime;
@@ -19,46 +19,43 @@ import core.UpdateListener;
 public class UniqueEncountersReport extends Report implements
 	ConnectionListener, UpdateListener {
 
-	private int[][] nodeRelationships;
+	/** host pairs that have met */
+	private ContactPairTable encounteredPairs;
+	/** number of hosts (0 until the first update) */
+	private int nrofHosts;
 
 	public UniqueEncountersReport() {
-
+		this.encounteredPairs = new ContactPairTable();
+		this.nrofHosts = 0;
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
-		if (nodeRelationships == null) {
+		if (nrofHosts == 0) {
 			return;
 		}
-		nodeRelationships[host1.getAddress()][host2.getAddress()]++;
-		nodeRelationships[host2.getAddress()][host1.getAddress()]++;
+		encounteredPairs.put(host1.getAddress(), host2.getAddress(), 0);
 	}
 
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {}
 
 	public void updated(List<DTNHost> hosts) {
-		if (nodeRelationships == null) {
-			nodeRelationships = new int[hosts.size()][hosts.size()];
+		if (nrofHosts == 0) {
+			nrofHosts = hosts.size();
 		}
 	}
 
 	@Override
 	public void done() {
 		int[] distribution = new int[1000];
-		
-		if (nodeRelationships == null) {
+
+		if (nrofHosts == 0) {
 			super.done();
 			return;
 		}
 
-		for (int i=0; i<nodeRelationships.length; i++) {
-			int count = 0;
-			for (int j=0; j<nodeRelationships.length; j++) {
-				if (nodeRelationships[i][j] > 0) {
-					count++;
-				}
-			}
-
-			int promille = (count * 1000)/nodeRelationships.length;
+		int[] uniqueEncounters = getUniqueEncounters();
+		for (int i=0; i<nrofHosts; i++) {
+			int promille = (uniqueEncounters[i] * 1000)/nrofHosts;
 			distribution[promille]++;
 		}
 
@@ -70,12 +67,19 @@ public class UniqueEncountersReport extends Report implements
 		super.done();
 	}
 
-	public int[][] getNodeRelationships() {
-		return nodeRelationships;
-	}
-
-	public void setNodeRelationships(int[][] nodeRelationships) {
-		this.nodeRelationships = nodeRelationships;
+	/**
+	 * Returns the number of other hosts each host has encountered
+	 * @return the number of encountered hosts, indexed by host address
+	 * (empty array if there has been no updates)
+	 */
+	public int[] getUniqueEncounters() {
+		int[] uniqueEncounters = new int[nrofHosts];
+		for (int i = encounteredPairs.nextSlot(0); i >= 0;
+				i = encounteredPairs.nextSlot(i + 1)) {
+			uniqueEncounters[encounteredPairs.getAddress1(i)]++;
+			uniqueEncounters[encounteredPairs.getAddress2(i)]++;
+		}
+		return uniqueEncounters;
 	}
 
 }
@@ -7,9 +7,12 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Random;
 
+import routing.util.ActivityTracker;
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
@@ -28,13 +31,14 @@ import core.SimClock;
  * {@link #getNextMessageToRemove(boolean)}) and watching of sending connections (see
  * {@link #update()}).
  */
-//·
+//主动路由
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 1L;
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
-    //ǷɾѾͶݳɹϢboolֵ
-    //ΪtrueϢնѾܹ˸ϢͰѸϢɾĬΪfalse
+    //是否删除已经投递成功的消息，bool值
+    //若为true，当消息的终端主机已经接受过了该消息，就把该消息删除，默认为false
 	public static final String DELETE_DELIVERED_S = "deleteDelivered";
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
@@ -43,17 +47,24 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	/** how often TTL check (discarding old messages) is performed */
-	//üһttloldmessage
+	//多久检查一次ttl（丢弃oldmessage）
 	public static int TTL_CHECK_INTERVAL = 60;
 	/** connection(s) that are currently used for sending */
-	//"ǰϢ"ɵб
+	//由"当前被用来发送消息的连接"组成的列表
 	protected ArrayList<Connection> sendingConnections;
 	/** sim time when the last TTL check was done */
-	//һνttlʱ
+	//最后一次进行ttl检查的时间
 	private double lastTtlCheck;
 
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
+	/** Buffered messages by their destination host (in the order they were
+	 * added to the buffer) */
+	private HashMap<DTNHost, LinkedHashSet<Message>> destinations;
+	/** number of changes to the message buffer, connections and transfers */
+	private int changeCount;
+	/** activity tracker for skipping decisions while idle */
+	private ActivityTracker activity;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -90,6 +101,129 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.destinations = new HashMap<DTNHost, LinkedHashSet<Message>>();
+		this.activity = new ActivityTracker();
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getId());
+		if (old != null) {
+			removeFromDestinations(old); /* replaced by the new copy */
+		}
+		super.addToMessages(m, newMessage);
+
+		LinkedHashSet<Message> toSame = this.destinations.get(m.getTo());
+		if (toSame == null) {
+			toSame = new LinkedHashSet<Message>();
+			this.destinations.put(m.getTo(), toSame);
+		}
+		toSame.add(m);
+		this.changeCount++;
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			removeFromDestinations(m);
+			this.changeCount++;
+		}
+		return m;
+	}
+
+	/**
+	 * Removes a message from the index of messages by destination
+	 * @param m The message to remove
+	 */
+	private void removeFromDestinations(Message m) {
+		LinkedHashSet<Message> toSame = this.destinations.get(m.getTo());
+		if (toSame != null && toSame.remove(m) && toSame.isEmpty()) {
+			this.destinations.remove(m.getTo());
+		}
+	}
+
+	/**
+	 * Returns the buffered messages whose final recipient is the given host
+	 * @param to The recipient
+	 * @return The messages in the order they were added to the buffer or
+	 * null if there are no messages for the host
+	 */
+	protected Collection<Message> getMessagesTo(DTNHost to) {
+		return this.destinations.get(to);
+	}
+
+	/**
+	 * Returns the number of changes to this router's message buffer,
+	 * connections and transfers so far. Values computed from the buffer and
+	 * the connections stay valid for as long as the count stays the same.
+	 * @return The number of changes
+	 */
+	protected int getChangeCount() {
+		return this.changeCount;
+	}
+
+	/**
+	 * Counts a change that values computed from the buffer and the
+	 * connections depend on (see {@link #getChangeCount()}). Subclasses
+	 * that override {@link #changedConnection(Connection)} without calling
+	 * it must call this instead.
+	 */
+	protected void countChange() {
+		this.changeCount++;
+	}
+
+	/**
+	 * Returns true if nothing that the routing decisions depend on has
+	 * changed since the previous failed attempt to start a transfer (see
+	 * {@link #transferAttemptFailed()}), so trying again would fail too.
+	 * The inputs are the buffers, connections and transfers of this host
+	 * and the connected hosts, and whether the connected hosts are
+	 * transferring. Routers whose decisions also depend on something else
+	 * (e.g., time) must not use this. Hosts connected to hosts with other
+	 * kinds of routers, or with transfer policies that depend on the values
+	 * of the module communication bus, are never idle.
+	 * @return True if the routing decisions can be skipped
+	 */
+	protected boolean isIdle() {
+		activity.beginState();
+		if (policy.hasMcbConditions()) {
+			activity.addUntrackedState();
+			return activity.isIdle();
+		}
+		activity.addState(this.changeCount);
+
+		List<Connection> connections = getConnections();
+		for (int i=0, n=connections.size(); i<n; i++) {
+			MessageRouter r = connections.get(i).getOtherNode(
+					getHost()).getRouter();
+			if (r.getClass() != getClass() ||
+					((ActiveRouter)r).policy.hasMcbConditions()) {
+				activity.addUntrackedState();
+				break;
+			}
+			ActiveRouter other = (ActiveRouter)r;
+			activity.addState(other.changeCount);
+			activity.addState(other.isTransferring() ? 1 : 0);
+		}
+
+		return activity.isIdle();
+	}
+
+	/**
+	 * Tells the activity tracker that the routing decisions made after
+	 * {@link #isIdle()} didn't start any transfer
+	 */
+	protected void transferAttemptFailed() {
+		activity.attemptFailed();
+	}
+
+	/**
+	 * Returns the activity tracker of this router
+	 * @return The activity tracker
+	 */
+	public ActivityTracker getActivityTracker() {
+		return this.activity;
 	}
 
 	/**
@@ -100,22 +234,26 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	@Override
 	public void changedConnection(Connection con) {
+		this.changeCount++;
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
 	}
 
 	@Override
-	//ͶϢ
-	//ǰ·ģڴ䣬򷵻fasleʧ
-	//򣺾ʹԼĴϢбҵĿΪ"ӵĶԶ"Ϣзͣtrueɹ
-	//falseʧ
+	//请求投递消息
+	//如果当前路由模块正在传输，则返回fasle，请求传输失败
+	//否则：就从自己的待发送消息列表中找到目的主机为"连接的对端主机"的消息，进行发送，返回true，请求传输成功
+	//其他情况，返回false，请求传输失败
 	public boolean requestDeliverableMessages(Connection con) {
 		if (isTransferring()) {
 			return false;
 		}
 
 		DTNHost other = con.getOtherNode(getHost());
+		if (getMessagesTo(other) == null) {
+			return false; /* no messages for the other host */
+		}
 		/* do a copy to avoid concurrent modification exceptions
 		 * (startTransfer may remove messages) */
 		ArrayList<Message> temp =
@@ -131,11 +269,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	@Override
-	//ʵдmakeRoomForNewMessageʵֶӦĽ
+	//给实现类改写makeRoomForNewMessage方法，以实现对应的解决策略
 	/**
-	 * һϢm
-	 * Ȼжϣ·ģ"Ϣб"ڴСǷ㹻ϢĴСڴĴСʱfalseʱӦòٴϢmakeRoomForNewMessageúδж
-	 *                                                       ֮ǰ洢ϢֱʣڴܹµϢ
+	 * 传递一个消息对象：m
+	 * 然后进行判断，路由模块存放"待发送消息列表"的内存大小是否足够，若是消息本身的大小超过了整个内存的大小，此时返回false，此时理论上应该不再创建消息，但是makeRoomForNewMessage该函数并未进行判断
+	 *                                                       否则就清理之前存储的消息，直到剩余内存能够容纳新的消息
 	 * 
 	 * 
 	 */
@@ -145,7 +283,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	@Override
-	//ʹttlѾľˣǸϢѾԴ䵽ĿʱҲϢܴ뻺
+	//即使ttl已经耗尽了，但是该消息已经可以传输到目的主机，此时这种情况也允许把消息接受存入缓存区
 	public int receiveMessage(Message m, DTNHost from) {
 		int recvCheck = checkReceiving(m, from);
 		if (recvCheck != RCV_OK) {
@@ -158,7 +296,7 @@ public abstract class ActiveRouter extends MessageRouter {
 
 	@Override
 	public Message messageTransferred(String id, DTNHost from) {
-	    //ѻϢȡ뵽ڴ
+	    //把缓存区的消息取出存入到内存区
 		Message m = super.messageTransferred(id, from);
 
 		/**
@@ -167,7 +305,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		 *  to zero.
 		 */
 		// check if msg was for this host and a response was requested
-		//ϢѴ͵ĿͬʱϢҪĿԴһӦϢ
+		//如果消息已传送到其目的主机，同时该消息需要目的主机给源主机一个响应消息
 		if (m.getTo() == getHost() && m.getResponseSize() > 0) {
 			// generate a response message
 			Message res = new Message(this.getHost(),m.getFrom(),
@@ -195,8 +333,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return the value returned by
 	 * {@link Connection#startTransfer(DTNHost, Message)}
 	 */
-	//ʹָConnectionʼϢ
-	//ʼɹ򽫸Connection뵽sendingConnections
+	//尝试使用指定的Connection开始传输信息，
+	//如果开始成功，则将该Connection对象加入到sendingConnections集合内
 	protected int startTransfer(Message m, Connection con) {
 		int retVal;
 
@@ -250,8 +388,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * this router (as final recipient), or DENIED_NO_SPACE if the message
 	 * does not fit into buffer
 	 */
-	//ʹttlѾľˣǸϢѾԴ䵽ĿʱҲϢܴ뻺
-	//ϢĽ񣬸ּ飬ڸúԼд
+	//即使ttl已经耗尽了，但是该消息已经可以传输到目的主机，此时这种情况也允许把消息接受存入缓存区
+	//关于消息的接受与否，各种检查，可以在该函数自己写
 	protected int checkReceiving(Message m, DTNHost from) {
 		if (isTransferring()) {
 			return TRY_LATER_BUSY; // only one connection at a time
@@ -261,7 +399,7 @@ public abstract class ActiveRouter extends MessageRouter {
 				super.isBlacklistedMessage(m.getId())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
-		//˵ʹttlѾľˣǸϢѾԴ䵽ĿʱҲϢܴ뻺
+		//这里说明，即使ttl已经耗尽了，但是该消息已经可以传输到目的主机，此时这种情况也允许把消息接受存入缓存区
 		if (m.getTtl() <= 0 && m.getTo() != getHost()) {
 			/* TTL has expired and this host is not the final recipient */
 			return DENIED_TTL;
@@ -290,9 +428,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * transferred, the transfer is aborted before message is removed
 	 * @return True if enough space could be freed, false if not
 	 */
-	//ӦÿŻÿζȡһϢֱƳƳϢȫɾռȻ͵ڴڵϢû˰µϢҲûӽȥ
-	//жϿƳϢƳ󣬿ռ乻ʼɾϢ򲻽ɾϢ
-	//ƳϢǲƳڷ͵Ϣ
+	//这里应该可以优化，这里每次读取下一个消息并直接移除，如果可移除的消息全都删除掉，空间仍然不够，这就导致内存内的消息没了啊，新的消息也没加进去
+	//可以先判断可移除消息移除后，空间够不够，如果够则开始删除消息，如果不够，则不进行删除消息
+	//移除旧消息，但是不移除正在发送的消息
 	protected boolean makeRoomForMessage(int size){
 		if (size > this.getBufferSize()) {
 			return false; // message too big for the buffer
@@ -318,7 +456,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Drops messages whose TTL is less than zero.
 	 */
-	//Ϣбttl<=0 Ϣdelete
+	//遍历待发送消息列表，将ttl<=0 的消息delete掉
 	protected void dropExpiredMessages() {
 		Message[] messages = getMessageCollection().toArray(new Message[0]);
 		for (int i=0; i<messages.length; i++) {
@@ -351,9 +489,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
 	 */
-	//ӴϢбУõһԱɾϢ(ΪյϢȽȳ)
-	//excludeMsgBeingSent=trueɾڷ͵Ϣ
-	//򣬽ڴϢҲڿԱɾ֮
+	//从待发送消息的列表中，得到一个可以被删除的消息对象(为最早接收的消息对象，先进先出)
+	//若excludeMsgBeingSent=true，则不删除正在发送的消息
+	//否则，将正在传输的信息也考虑在可以被删除之列
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
 		Collection<Message> messages = this.getMessageCollection();
 		Message oldest = null;
@@ -377,24 +515,38 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Returns a list of message-connections tuples of the messages whose
 	 * recipient is some host that we're connected to at the moment.
+	 * The index of buffered messages by destination is checked first, so
+	 * the buffer is only scanned if there are such messages; the tuples are
+	 * in the order of the buffer.
 	 * @return a list of message-connections tuples
 	 */
-	//õһMessage---->ConnectionɵList
-	//ڽ˺ܶ
-	//ȡĿΪ"Connectionһ˵"Ϣ
-	//ϢӦConnectionһTupleTupleList
+	//得到一个Message---->Connection组成的List，
+	//假设现在建立了很多的连接
+	//获取目的主机为"Connection另一端的主机"的消息
+	//消息与其对应的Connection组成一个Tuple，多个Tuple组成List
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
 		if (getNrofMessages() == 0 || getConnections().size() == 0) {
 			/* no messages -> empty list */
 			return new ArrayList<Tuple<Message, Connection>>(0);
 		}
 
+		List<Connection> connections = getConnections();
+		boolean found = false;
+		for (int i=0, n=connections.size(); i<n && !found; i++) {
+			found = getMessagesTo(
+					connections.get(i).getOtherNode(getHost())) != null;
+		}
+		if (!found) {
+			/* no messages for the connected hosts -> empty list */
+			return new ArrayList<Tuple<Message, Connection>>(0);
+		}
+
 		List<Tuple<Message, Connection>> forTuples =
 			new ArrayList<Tuple<Message, Connection>>();
 		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
+			for (int i=0, n=connections.size(); i<n; i++) {
+				Connection con = connections.get(i);
+				if (m.getTo() == con.getOtherNode(getHost())) {
 					forTuples.add(new Tuple<Message, Connection>(m,con));
 				}
 			}
@@ -411,7 +563,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return The tuple whose connection accepted the message or null if
 	 * none of the connections accepted the message that was meant for them.
 	 */
-	//Message---->ConnectionɵListбʼд䣬һ俪ʼѭѭܿʼ򷵻null
+	//从Message---->Connection组成的List中遍历，开始进行传输，如果有一个传输开始，则跳出循环，否则继续循环，如果都不能开始，则返回null
 	protected Tuple<Message, Connection> tryMessagesForConnected( List<Tuple<Message, Connection>> tuples) {
 		if (tuples.size() == 0) {
 			return null;
@@ -437,7 +589,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	  * @return The message whose transfer was started or null if no
 	  * transfer was started.
 	  */
-	//·ģдϢбֱһضConnectionд
+	//拿着路由模块中待发送消息列表分别尝试在一个特定的Connection中传输
 	protected Message tryAllMessages(Connection con, List<Message> messages) {
 		for (Message m : messages) {
 			int retVal = startTransfer(m, con);
@@ -463,7 +615,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
-	//List<Message>List<Connection>о
+	//List<Message>与List<Connection>进行矩阵遍历
 	protected Connection tryMessagesToConnections(List<Message> messages,
 			List<Connection> connections) {
 		for (int i=0, n=connections.size(); i<n; i++) {
@@ -485,7 +637,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
-	//List<Message>List<Connection>оֻڱ֮ǰļsendQueueModeģʽ֯List<Message>
+	//List<Message>与List<Connection>进行矩阵遍历，只不过在遍历之前，根据配置文件中sendQueueMode的模式，重新组织List<Message>
 	protected Connection tryAllMessagesToAllConnections(){
 		List<Connection> connections = getConnections();
 		if (connections.size() == 0 || this.getNrofMessages() == 0) {
@@ -507,8 +659,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return A connection that started a transfer or null if no transfer
 	 * was started
 	 */
-	//ȼ鱾ûпԷԶϢоͷTuple<Message, Connection>
-	//ûпھӽڵĻǷϢĿĽڵǸýڵ㣬ǣԴ
+	//先检查本身的主机有没有可以发往对端主机的消息，如果有就返回Tuple<Message, Connection>
+	//如果没有看邻居节点的缓冲区是否有消息的目的节点是该节点，若是，尝试传输
 	protected Connection exchangeDeliverableMessages() {
 		List<Connection> connections = getConnections();
 
@@ -516,16 +668,20 @@ public abstract class ActiveRouter extends MessageRouter {
 			return null;
 		}
 
-		@SuppressWarnings(value = "unchecked")
-		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));
+		List<Tuple<Message, Connection>> forConnected =
+			getMessagesForConnected();
+		if (forConnected.size() > 0) {
+			@SuppressWarnings(value = "unchecked")
+			Tuple<Message, Connection> t =
+				tryMessagesForConnected(sortByQueueMode(forConnected));
 
-		if (t != null) {
-			return t.getValue(); // started transfer
+			if (t != null) {
+				return t.getValue(); // started transfer
+			}
 		}
 
 		// didn't start transfer to any node -> ask messages from connected
-		 //ûͳɹھӽڵĻǷϢĿĽڵǸýڵ㣬ǣԴ
+		 //如果没发送成功，看邻居节点的缓冲区是否有消息的目的节点是该节点，若是，尝试传输
 		for (Connection con : connections) {
 			if (con.getOtherNode(getHost()).requestDeliverableMessages(con)) {
 				return con;
@@ -541,7 +697,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Shuffles a messages list so the messages are in random order.
 	 * @param messages The list to sort and shuffle
 	 */
-	//ԴϢбϴƣԴﵽЧ
+	//对待发送消息列表进行重新洗牌，以达到随机的效果
 	protected void shuffleMessages(List<Message> messages) {
 		if (messages.size() <= 1) {
 			return; // nothing to shuffle
@@ -557,9 +713,10 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @see #update()
 	 * @param con The connection to add
 	 */
-	//һ"ڷϢ""ǰϢ"ɵб
+	//将一个"正在发送消息的连接"加入由"当前被用来发送消息的连接"组成的列表
 	protected void addToSendingConnections(Connection con) {
 		this.sendingConnections.add(con);
+		this.changeCount++;
 	}
 
 	/**
@@ -567,8 +724,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * some transfer has not been finalized.
 	 * @return true if this router is transferring something
 	 */
-	//ǰ·ģڴߵǰ·ģѾڴˣǻδ׼ô䣬򷵻true
-	//ɴ˿ɼһֻһConnection
+	//如果当前路由模块正在传输或者当前路由模块已经不在传输了，但是还连接未准备好传输，则返回true，
+	//由此可见，一次只能有一个Connection传输数据
 	public boolean isTransferring() {
 		if (this.sendingConnections.size() > 0) {
 			return true; // sending something
@@ -596,7 +753,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @param msgId The ID of the message
 	 * @return True if the message is being sent false if not
 	 */
-	//жϵǰ·ģǷڷϢ
+	//判断当前路由模块是否正在发送消息
 	public boolean isSending(String msgId) {
 		for (Connection con : this.sendingConnections) {
 			if (con.getMessage() == null) {
@@ -614,7 +771,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * enabled OR (is enabled and model has energy left))
 	 * @return has the node energy
 	 */
-	//жϵǰ·ģǷʣ
+	//判断当前路由模块是否还有能量剩余
 	public boolean hasEnergy() {
 		return this.energy == null || this.energy.getEnergy() > 0;
 	}
@@ -625,21 +782,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * whose TTL <= 0 (checking every one simulated minute).
 	 * @see #addToSendingConnections(Connection)
 	 */
-	//connectionsǷ׼õķͣҶӹرյģTTLС0messageϿкܶconnectionsеroutersֻ֧һconnection
-
-	//sendingConnectionsԪmessageɣisTransferred
-	//connectionеmessageûбôtransferDone(Connection)пд
-	//finalizeTransfer()ĿǰݵmessageĴݣ֮messageconnectionоͲѯˣɱδݡ
-	//connectionرգƳconnection
-	//ͺmessageȻѳֻ棬ͷţ
-	//ƳconnectionsendingConnectionsƳ
-	//һconnection
-	//˼TTLʱ䣬ڵmessages󴥷energy.update
+	//检查所有connections是否完成准备好的发送，并且丢弃掉连接关闭的，丢弃掉TTL小于0的message。（理论上可以有很多个发送connections，但现在所有的routers只能支持一个发送connection。）
+
+	//遍历sendingConnections中所有元素如果message传递完成（isTransferred），
+	//如果connection中的message没有被丢弃，那么调用transferDone(Connection)（子类中可以重写这个函数）
+	//和finalizeTransfer()（用于完成目前被传递的message的传递，调用这个函数之后，这个message在这个connection中就查询不到了）完成本次传递。
+	//如果connection关闭，移除这个connection。
+	//如果发送后message依然把持缓存，将其释放，
+	//最后将满足移除条件的connection从sendingConnections中移除，
+	//若不满足条件，继续遍历下一个connection。
+	//如果到了检查TTL的时间，丢弃过期的messages。最后触发energy.update。
 	@Override
 	public void update() {
 		super.update();
-		//ÿ·ģList<Connection>ԵϢ
-		//ǵǰϵͳ֮ĳһʱֻһConnectionϢ
+		//理论上每个路由模块的List<Connection>都可以单独发送消息
+		//但是当前仿真系统之允许某一时间只有一个Connection发送消息
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
 		for (int i=0; i<this.sendingConnections.size(); ) {
@@ -665,12 +822,13 @@ public abstract class ActiveRouter extends MessageRouter {
 
 			if (removeCurrent) {
 				// if the message being sent was holding excess buffer, free it
-			    //Ƴ˵еcon.getMessage()Ƴ
-			    //ǰ"Ϣб"еȿԱƳϢƳȽȳ
+			    //这个移除并不是说把上面代码中的con.getMessage()给移除
+			    //而是把"待发送消息列表"中的最先可以被移除的信息移除，即先进先出
 				if (this.getFreeBufferSize() < 0) {
 					this.makeRoomForMessage(0);
 				}
 				sendingConnections.remove(i);
+				this.changeCount++;
 			}
 			else {
 				/* index increase needed only if nothing was removed */
@@ -715,6 +873,11 @@ public abstract class ActiveRouter extends MessageRouter {
 			top.addMoreInfo(new RoutingInfo("Energy level: " +
 					String.format("%.2f", energy.getEnergy())));
 		}
+		if (activity.getNrofSkipped() > 0) {
+			top.addMoreInfo(new RoutingInfo(activity.getNrofDecisions() +
+					" routing decision(s), " + activity.getNrofSkipped() +
+					" skipped while idle"));
+		}
 		return top;
 	}
 
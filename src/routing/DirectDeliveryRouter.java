@@ -10,6 +10,7 @@ import core.Settings;
  * Router that will deliver messages only to the final recipient.
  */
 public class DirectDeliveryRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	public DirectDeliveryRouter(Settings s) {
 		super(s);
@@ -26,9 +27,13 @@ public class DirectDeliveryRouter extends ActiveRouter {
 			return; // can't start a new transfer
 		}
 
+		if (isIdle()) {
+			return; // nothing has changed since the previous failed attempt
+		}
+
 		// Try only the messages that can be delivered to final recipient
-		if (exchangeDeliverableMessages() != null) {
-			return; // started a transfer
+		if (exchangeDeliverableMessages() == null) {
+			transferAttemptFailed();
 		}
 	}
 
@@ -5,8 +5,10 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import routing.util.MessageHolderIndex;
 import core.*;
 
 import static core.Constants.DEBUG;
@@ -17,15 +19,26 @@ import static core.Constants.DEBUG;
  * and that message is then removed from all nodes that use this routing module.
  * This router also <B>ignores message size and all messages are delivered
  * immediately</B>.</P><P>
+ * The routers keep a shared index of the routers holding each message, so
+ * a delivered message is removed only from the routers that have it.
+ * </P><P>
  * <B>Note:</B> This router module also bypasses ActiveRouter.update()
  */
 public class EpidemicOracleRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	/** List of all routers in this node group */
 	private static List<EpidemicOracleRouter> allRouters;
+	/** Holders of the messages (routers by their index in allRouters) */
+	private static MessageHolderIndex holders;
+
+	/** Index of this router in the list of all routers */
+	private int routerIndex;
 
 	static {
 		DTNSim.registerForReset(EpidemicOracleRouter.class.getCanonicalName());
+		Checkpoint.registerRoutingState(EpidemicOracleRouter.class,
+				"allRouters", "holders");
 		reset();
 	}
 
@@ -44,9 +57,25 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	 */
 	protected EpidemicOracleRouter(EpidemicOracleRouter r) {
 		super(r);
+		this.routerIndex = allRouters.size();
 		allRouters.add(this);
 	}
 
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		super.addToMessages(m, newMessage);
+		holders.addHolder(m.getId(), this.routerIndex);
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			holders.removeHolder(id, this.routerIndex);
+		}
+		return m;
+	}
+
 	@Override
 	public void changedConnection(Connection con) {
 		super.changedConnection(con);
@@ -114,7 +143,10 @@ public class EpidemicOracleRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 
 		if (m.getTo() == this.getHost()) {
-			for (EpidemicOracleRouter r : allRouters) {
+			BitSet holding = holders.getHolders(id);
+			for (int i = (holding != null ? holding.nextSetBit(0) : -1);
+					i >= 0; i = holding.nextSetBit(i + 1)) {
+				EpidemicOracleRouter r = allRouters.get(i);
 				if (r != this && r != from.getRouter()) {
 					r.removeDeliveredMessage(id);
 				}
@@ -174,10 +206,11 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	/**
-	 * Resets the static router list
+	 * Resets the static router list and message index
 	 */
 	public static void reset() {
 		allRouters = new ArrayList<EpidemicOracleRouter>();
+		holders = new MessageHolderIndex();
 	}
 
 }
@@ -11,6 +11,7 @@ import core.Settings;
  * connections at a time.
  */
 public class EpidemicRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -33,20 +34,26 @@ public class EpidemicRouter extends ActiveRouter {
 
 	@Override
 	public void update() {
-	    //Ϣ
+	    //垃圾消息处理
 		super.update();
-		//Ϣ
+		//传输消息
 		if (isTransferring() || !canStartTransfer()) {
 			return; // transferring, don't try other connections yet
 		}
 
+		if (isIdle()) {
+			return; // nothing has changed since the previous failed attempt
+		}
+
 		// Try first the messages that can be delivered to final recipient
 		if (exchangeDeliverableMessages() != null) {
 			return; // started a transfer, don't try others (yet)
 		}
 
 		// then try any/all message to any/all connection
-		this.tryAllMessagesToAllConnections();
+		if (this.tryAllMessagesToAllConnections() == null) {
+			transferAttemptFailed();
+		}
 	}
 
 
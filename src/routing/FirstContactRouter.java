@@ -14,6 +14,7 @@ import core.Settings;
  * (or fragments) and forwards it to the first available contact.
  */
 public class FirstContactRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -53,11 +54,17 @@ public class FirstContactRouter extends ActiveRouter {
 			return;
 		}
 
+		if (isIdle()) {
+			return; // nothing has changed since the previous failed attempt
+		}
+
 		if (exchangeDeliverableMessages() != null) {
 			return;
 		}
 
-		tryAllMessagesToAllConnections();
+		if (tryAllMessagesToAllConnections() == null) {
+			transferAttemptFailed();
+		}
 	}
 
 	@Override
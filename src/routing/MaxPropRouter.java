@@ -16,6 +16,7 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.CandidateList;
 import routing.util.RoutingInfo;
 import util.Tuple;
 import core.Connection;
@@ -36,66 +37,71 @@ import core.Settings;
  * Protocols</I> Chants, 2008
  */
 public class MaxPropRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
     /** Router's setting namespace ({@value})*/
-    //ռ
+    //命名空间
 	public static final String MAXPROP_NS = "MaxPropRouter";
 	/**
 	 * Meeting probability set maximum size -setting id ({@value}).
 	 * The maximum amount of meeting probabilities to store.  */
-	//
+	//最大相遇概率
 	public static final String PROB_SET_MAX_SIZE_S = "probSetMaxSize";
     /** Default value for the meeting probability set maximum size ({@value}).*/
-	//ʵĬֵ
+	//最大相遇概率的默认值
     public static final int DEFAULT_PROB_SET_MAX_SIZE = 50;
-    //
+    //最大相遇概率
     private static int probSetMaxSize;
 
 	/** probabilities of meeting hosts */
-    //Ŀ
+    //主机相遇的可能性
 	private MeetingProbabilitySet probs;
 	/** meeting probabilities of all hosts from this host's point of view
 	 * mapped using host's network address */
-	//Ŀ
-	//ʹĵַӳ<int,<int,double>>ӦнڵϢ
+	//本主机与其他主机相遇的可能性
+	//使用主机的地址进行映射<int,<int,double>>，这个应该是整个网络所有节点的信息
 	private Map<Integer, MeetingProbabilitySet> allProbs;
 	/** the cost-to-node calculator */
-	//
+	//开销计算
 	private MaxPropDijkstra dijkstra;
 	/** IDs of the messages that are known to have reached the final dst */
-	//֪ĿϢid(͵ϢĿĽڵ㣺Ͷݳɹ)
+	//已知送往目的主机的消息id(发送到消息的目的节点：投递成功)
 	private Set<String> ackedMessageIds;
 	/** mapping of the current costs for all messages. This should be set to
 	 * null always when the costs should be updated (a host is met or a new
 	 * message is received) */
-	//ϢĿ
-    //ʹĵַӳ
+	//本主机与其他主机传输消息的开销
+    //使用主机的地址进行映射
 	private Map<Integer, Double> costsForMessages;
 	/** From host of the last cost calculation */
-	//һο
+	//上一次开销计算的主机
 	private DTNHost lastCostFrom;
+	/** messages to send sorted by MaxProp's message ordering scheme */
+	private transient CandidateList candidates;
+	/** threshold the candidates were sorted with */
+	private transient int candidateThreshold;
 
 	/** Map of which messages have been sent to which hosts from this host */
-	//Ѿ͵ -->Ϣmap(͵мڵ)
+	//本主机已经发送到其他主机的 主机-->消息map(发送到中间节点)
 	private Map<DTNHost, Set<String>> sentMessages;
 
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
-	//int[] avgSamples
+	//int[] avgSamples该数组的上限
 	public static int BYTES_TRANSFERRED_AVG_SAMPLES = 10;
-	//
+	//存放样本
 	private int[] avgSamples;
-	//һint[] avgSamplesһδݵ±
+	//下一次样本的索引即int[] avgSamples，该数组下一次存放数据的下标
 	private int nextSampleIndex = 0;
 	/** current value for the "avg number of bytes transferred per transfer
 	 * opportunity"  */
-	//"ÿδƽֽ"ĵǰֵavgSamplesڵ"ֵٳܵݸ"
+	//"每次传输机会的平均传输字节数"的当前值即avgSamples数组内的"所有值相加再除以总的数据个数"
 	private int avgTransferredBytes = 0;
 
 	/** The alpha parameter string*/
 	public static final String ALPHA_S = "alpha";
 
 	/** The alpha variable, default = 1;*/
-	//alphaֵĬΪ1
+	//变量alpha的值，默认为1
 	private double alpha;
 
 	/** The default value for alpha */
@@ -144,7 +150,7 @@ public class MaxPropRouter extends ActiveRouter {
 		
 		if (con.isUp()) { // new connection
 			this.costsForMessages = null; // invalidate old cost estimates
-			//ڵ·ӵķsource host=====dest host
+			//如果本节点是链路连接的发起段source host=====dest host
 			if (con.isInitiator(getHost())) {
 				/* initiator performs all the actions on behalf of the
 				 * other node too (so that the meeting probs are updated
@@ -163,7 +169,7 @@ public class MaxPropRouter extends ActiveRouter {
 				otherRouter.deleteAckedMessages();
 
 				/* update both meeting probabilities */
-				//ֵ
+				//更新相遇概率值
 				probs.updateMeetingProbFor(otherHost.getAddress());
 				otherRouter.probs.updateMeetingProbFor(getHost().getAddress());
 //================================BEGIN=====================================================      
@@ -206,7 +212,7 @@ public class MaxPropRouter extends ActiveRouter {
 	/**
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
-	//ɾϢɹɾϢ
+	//删除该消息被成功交付，就删除该消息
 	private void deleteAckedMessages() {
 		for (String id : this.ackedMessageIds) {
 			if (this.hasMessage(id) && !isSending(id)) {
@@ -232,9 +238,9 @@ public class MaxPropRouter extends ActiveRouter {
 	 * delivered messages so their IDs are stored.
 	 * @param con The connection whose transfer was finalized
 	 */
-	//Ҫ
-	//1.Ϣ͵"Ϣdestination"ôԼackedMessageIdsмidȻӱɾϢ
-	//2.Ϣ͵мڵ㣬ôͰ---->ϢбMap<DTNHost, Set<String>> мentryֹظ
+	//主要做了两件事
+	//1.消息发送到"消息的destination"，那么就在自己的ackedMessageIds中加入该id，然后从本机删除该消息
+	//2.消息发送到中间节点，那么，就把向：主机---->消息列表Map<DTNHost, Set<String>> 中加入该entry，防止重复发送
 	@Override
 	protected void transferDone(Connection con) {
 		Message m = con.getMessage();
@@ -261,7 +267,7 @@ public class MaxPropRouter extends ActiveRouter {
 	 * transfer opportunity.
 	 * @param newValue The new value to add to the estimate
 	 */
-	//ÿδƽֽ
+	//更新每次传输机会的平均传输字节数
 	private void updateTransferredBytesAvg(int newValue) {
 		int realCount = 0;
 		int sum = 0;
@@ -288,7 +294,7 @@ public class MaxPropRouter extends ActiveRouter {
 
 	/**
 	 * Returns the next message that should be dropped, according to MaxProp's
-	 * message ordering scheme (see MaxPropTupleComparator).
+	 * message ordering scheme (see MaxPropComparator).
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the next-to-be-dropped check (i.e., if next message to
 	 * drop is being sent, the following message is returned)
@@ -296,9 +302,9 @@ public class MaxPropRouter extends ActiveRouter {
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
 	 */
-	//excludeMsgBeingSent=true"ڷ͵Ϣ"ų Ƴڷ͵Ϣ
-	//excludeMsgBeingSent=falseƳڷ͵Ϣ
-	//һϢΪһҪɾϢ
+	//excludeMsgBeingSent=true，把"正在发送的消息"排除在外 即不移除正在发送的消息
+	//excludeMsgBeingSent=false，移除正在发送的消息
+	//把排序后的最后一个消息，置为下一次要删除的消息
     @Override
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
 		Collection<Message> messages = this.getMessageCollection();
@@ -324,12 +330,18 @@ public class MaxPropRouter extends ActiveRouter {
 			return; // nothing to transfer or is currently transferring
 		}
 
+		if (isIdle()) {
+			return; // nothing has changed since the previous failed attempt
+		}
+
 		// try messages that could be delivered to final recipient
 		if (exchangeDeliverableMessages() != null) {
 			return;
 		}
 
-		tryOtherMessages();
+		if (tryOtherMessages() == null) {
+			transferAttemptFailed();
+		}
 	}
 
 	/**
@@ -342,7 +354,7 @@ public class MaxPropRouter extends ActiveRouter {
 	 * @return The cost of the cheapest path to the destination or
 	 * Double.MAX_VALUE if such a path doesn't exist
 	 */
-	//dijsktra㷨С
+	//利用dijsktra算法，求出最小代价
 	public double getCost(DTNHost from, DTNHost to) {
 		/* check if the cached values are OK */
 		if (this.costsForMessages == null || lastCostFrom != from) {
@@ -372,58 +384,105 @@ public class MaxPropRouter extends ActiveRouter {
 
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
-	 * hop counts and their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * hop counts and their delivery probability. The costs and the
+	 * threshold depend only on this host's buffer and meeting
+	 * probabilities, so the messages are scored and sorted again only if
+	 * the buffer or connections of this host or any connected host, or the
+	 * set of connected hosts that are transferring have changed since the
+	 * previous try.
+	 * @return The message-connection tuple whose transfer was started or
+	 * null if no transfer was started
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getConnections();
+		if (this.candidates == null) {
+			this.candidates = new CandidateList(new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					/* equal hop counts below the threshold keep their order,
+					 * equal costs are ordered by hop count and queue mode */
+					int hopc1 = m1.getHopCount();
+					int hopc2 = m2.getHopCount();
+					if (hopc1 < candidateThreshold) {
+						return 0;
+					}
+					else if (hopc1 == hopc2) {
+						return compareByQueueMode(m1, m2);
+					}
+					return hopc1 - hopc2;
+				}
+			});
+		}
 
-		Collection<Message> msgCollection = getMessageCollection();
+		candidates.beginState();
+		candidates.addState(getChangeCount());
+		for (Connection con : connections) {
+			MaxPropRouter othRouter = (MaxPropRouter)con.getOtherNode(
+					getHost()).getRouter();
+			candidates.addState(othRouter.getChangeCount());
+			candidates.addState(othRouter.isTransferring() ? 1 : 0);
+		}
+		if (candidates.isStateChanged()) {
+			scoreCandidates(connections);
+		}
 
-		/* for all connected hosts that are not transferring at the moment,
-		 * collect all the messages that could be sent */
-		for (Connection con : getConnections()) {
-			DTNHost other = con.getOtherNode(getHost());
+		for (int i = 0, n = candidates.size(); i < n; i++) {
+			Message m = candidates.getMessage(i);
+			Connection con = connections.get(candidates.getConnection(i));
+			Set<String> sentMsgIds = this.sentMessages.get(
+					con.getOtherNode(getHost()));
+
+			/* skip message if this host has already sent it to the other
+			   host (regardless of if the other host still has it) */
+			if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+				continue;
+			}
+			if (startTransfer(m, con) == RCV_OK) {
+				return new Tuple<Message, Connection>(m, con);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Collects the messages that could be sent to the connected hosts that
+	 * are not transferring and sorts them like {@link MaxPropComparator}
+	 * would, with the cost of each message calculated from the host on the
+	 * other end of the connection. Messages with a hop count below the
+	 * threshold are scored by their hop count (minus the threshold) and the
+	 * other messages by their cost, so that each cost is calculated only
+	 * once and the costs from one host are calculated one after another.
+	 * @param connections The connections of this host
+	 */
+	private void scoreCandidates(List<Connection> connections) {
+		this.candidateThreshold = calcThreshold();
+		candidates.clear();
+
+		for (int i = 0, n = connections.size(); i < n; i++) {
+			DTNHost other = connections.get(i).getOtherNode(getHost());
 			MaxPropRouter othRouter = (MaxPropRouter)other.getRouter();
-			Set<String> sentMsgIds = this.sentMessages.get(other);
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
 			}
 
-			for (Message m : msgCollection) {
+			for (Message m : getMessageCollection()) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
 						m.getHops().contains(other)) {
 					continue;
 				}
-				/* skip message if this host has already sent it to the other
-				   host (regardless of if the other host still has it) */
-				if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
-					continue;
+				int hopCount = m.getHopCount();
+				if (hopCount < candidateThreshold) {
+					candidates.add(m, i, hopCount - candidateThreshold);
+				}
+				else {
+					candidates.add(m, i, getCost(other, m.getTo()));
 				}
-				/* message was a good candidate for sending */
-				messages.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
-
-		if (messages.size() == 0) {
-			return null;
-		}
-
-		/* sort the message-connection tuples according to the criteria
-		 * defined in MaxPropTupleComparator */
-		  /*
-    	     * ޣthreshold
-    	      Ϣȫֵʱ
-    	              Сǰ棬ź
-    	     Ϣȫֵʱ
-    	             Сǰ棬ź
-	     */
-		Collections.sort(messages, new MaxPropTupleComparator(calcThreshold()));
-		return tryMessagesForConnected(messages);
+		candidates.sort();
 	}
 
 	/**
@@ -435,8 +494,8 @@ public class MaxPropRouter extends ActiveRouter {
 	 */
 	public int calcThreshold() {
 		/* b, x and p refer to respective variables in the paper's equations */
-		long b = this.getBufferSize();//洢ϢĻС
-		long x = this.avgTransferredBytes;//ÿδƽֽ
+		long b = this.getBufferSize();//存储待发送消息的缓存大小
+		long x = this.avgTransferredBytes;//每次传输机会的平均传输字节数
 		long p;
 
 		if (x == 0) {
@@ -449,7 +508,7 @@ public class MaxPropRouter extends ActiveRouter {
 			p = x;
 		}
 		else if (b/2 <= x && x < b) {
-			p = Math.min(x, b-x);//ڸx>=b/2,b-x<=b/2,Ȼx>=b-x,p=b-x;
+			p = Math.min(x, b-x);//这是在干嘛？。x>=b/2,b-x<=b/2,显然x>=b-x,所以p=b-x;
 		}
 		else {
 			return 0; // no need for the threshold
@@ -493,13 +552,13 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Other messages are ordered by their delivery cost.
 	 */
 	/**
-	 * ޣthreshold
-	 * Ϣȫֵʱ
-	 *         Сǰ棬ź
-	 *Ϣȫֵʱ
-	 *        Сǰ棬ź
-	 *        ȣСǰ棬ź
-	 *                  ȣļ
+	 * 跳数门限：threshold
+	 * 当两个消息对象的跳数，不全超过门限值时：
+	 *         跳数小的排前面，跳数大的排后面
+	 *当两个消息对象的跳数，全超过门限值时：
+	 *        开销小的排前面，开销大的排后面
+	 *        若开销相等：跳数小的排前面，跳数大的排后面
+	 *                  若跳数相等，则按配置文件排序
 	 *
 	 */
 	private class MaxPropComparator implements Comparator<Message> {
@@ -513,7 +572,7 @@ public class MaxPropRouter extends ActiveRouter {
 		 * @param treshold Messages with the hop count smaller than this
 		 * value are transferred first (and ordered by the hop count)
 		 */
-		//ӱϢĿĿ
+		//计算从本主机到消息目的主机的开销
 		public MaxPropComparator(int treshold) {
 			this.threshold = treshold;
 			this.from1 = this.from2 = getHost();
@@ -526,7 +585,7 @@ public class MaxPropRouter extends ActiveRouter {
 		 * @param from1 The host where the cost of msg1 is calculated from
 		 * @param from2 The host where the cost of msg2 is calculated from
 		 */
-		//from1from2ϢĿĿ
+		//计算从主机from1，from2到消息目的主机的开销
 		public MaxPropComparator(int treshold, DTNHost from1, DTNHost from2) {
 			this.threshold = treshold;
 			this.from1 = from1;
@@ -592,37 +651,6 @@ public class MaxPropRouter extends ActiveRouter {
 		}
 	}
 
-	/**
-	 * Message-Connection tuple comparator for the MaxProp routing
-	 * module. Uses {@link MaxPropComparator} on the messages of the tuples
-	 * setting the "from" host for that message to be the one in the connection
-	 * tuple (i.e., path is calculated starting from the host on the other end
-	 * of the connection).
-	 */
-	private class MaxPropTupleComparator
-			implements Comparator <Tuple<Message, Connection>>  {
-		private int threshold;
-
-		public MaxPropTupleComparator(int threshold) {
-			this.threshold = threshold;
-		}
-
-		/**
-		 * Compares two message-connection tuples using the
-		 * {@link MaxPropComparator#compare(Message, Message)}.
-		 */
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			MaxPropComparator comp;
-			DTNHost from1 = tuple1.getValue().getOtherNode(getHost());
-			DTNHost from2 = tuple2.getValue().getOtherNode(getHost());
-
-			comp = new MaxPropComparator(threshold, from1, from2);
-			return comp.compare(tuple1.getKey(), tuple2.getKey());
-		}
-	}
-
-
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
@@ -16,6 +16,7 @@ import java.util.Set;
 
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
+import routing.util.CandidateList;
 import routing.util.RoutingInfo;
 import util.Tuple;
 import core.Connection;
@@ -44,6 +45,7 @@ import core.SimClock;
  * @version 1.0
  */
 public class MaxPropRouterWithEstimation extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
 	/** meeting probabilities of all hosts from this host's point of view
@@ -59,6 +61,10 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	private Map<Integer, Double> costsForMessages;
 	/** From host of the last cost calculation */
 	private DTNHost lastCostFrom;
+	/** messages to send sorted by MaxProp's message ordering scheme */
+	private transient CandidateList candidates;
+	/** threshold the candidates were sorted with */
+	private transient int candidateThreshold;
 
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -388,7 +394,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 
 	/**
 	 * Returns the next message that should be dropped, according to MaxProp's
-	 * message ordering scheme (see MaxPropTupleComparator).
+	 * message ordering scheme (see MaxPropComparator).
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the next-to-be-dropped check (i.e., if next message to
 	 * drop is being sent, the following message is returned)
@@ -420,12 +426,18 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 			return; // nothing to transfer or is currently transferring
 		}
 
+		if (isIdle()) {
+			return; // nothing has changed since the previous failed attempt
+		}
+
 		// try messages that could be delivered to final recipient
 		if (exchangeDeliverableMessages() != null) {
 			return;
 		}
 
-		tryOtherMessages();
+		if (tryOtherMessages() == null) {
+			transferAttemptFailed();
+		}
 	}
 
 	/**
@@ -467,44 +479,97 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
-	 * hop counts and their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * hop counts and their delivery probability. The costs and the
+	 * threshold depend only on this host's buffer and meeting
+	 * probabilities, so the messages are scored and sorted again only if
+	 * the buffer or connections of this host or any connected host, or the
+	 * set of connected hosts that are transferring have changed since the
+	 * previous try.
+	 * @return The message-connection tuple whose transfer was started or
+	 * null if no transfer was started
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getConnections();
+		if (this.candidates == null) {
+			this.candidates = new CandidateList(new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					/* equal hop counts below the threshold keep their order,
+					 * equal costs are ordered by hop count and queue mode */
+					int hopc1 = m1.getHopCount();
+					int hopc2 = m2.getHopCount();
+					if (hopc1 < candidateThreshold) {
+						return 0;
+					}
+					else if (hopc1 == hopc2) {
+						return compareByQueueMode(m1, m2);
+					}
+					return hopc1 - hopc2;
+				}
+			});
+		}
 
-		Collection<Message> msgCollection = getMessageCollection();
+		candidates.beginState();
+		candidates.addState(getChangeCount());
+		for (Connection con : connections) {
+			MaxPropRouterWithEstimation othRouter = (MaxPropRouterWithEstimation)con.getOtherNode(
+					getHost()).getRouter();
+			candidates.addState(othRouter.getChangeCount());
+			candidates.addState(othRouter.isTransferring() ? 1 : 0);
+		}
+		if (candidates.isStateChanged()) {
+			scoreCandidates(connections);
+		}
 
-		/* for all connected hosts that are not transferring at the moment,
-		 * collect all the messages that could be sent */
-		for (Connection con : getConnections()) {
-			DTNHost other = con.getOtherNode(getHost());
+		for (int i = 0, n = candidates.size(); i < n; i++) {
+			Message m = candidates.getMessage(i);
+			Connection con = connections.get(candidates.getConnection(i));
+			if (startTransfer(m, con) == RCV_OK) {
+				return new Tuple<Message, Connection>(m, con);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Collects the messages that could be sent to the connected hosts that
+	 * are not transferring and sorts them like {@link MaxPropComparator} would, with the cost of each
+	 * message calculated from the host on the other end of the connection.
+	 * Messages with a hop count below the threshold are scored by their
+	 * hop count (minus the threshold) and the other messages by their cost,
+	 * so that each cost is calculated only once and the costs from one host
+	 * are calculated one after another.
+	 * @param connections The connections of this host
+	 */
+	private void scoreCandidates(List<Connection> connections) {
+		this.candidateThreshold = calcThreshold();
+		candidates.clear();
+
+		for (int i = 0, n = connections.size(); i < n; i++) {
+			DTNHost other = connections.get(i).getOtherNode(getHost());
 			MaxPropRouterWithEstimation othRouter = (MaxPropRouterWithEstimation)other.getRouter();
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
 			}
 
-			for (Message m : msgCollection) {
+			for (Message m : getMessageCollection()) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
 						m.getHops().contains(other)) {
 					continue;
 				}
-				messages.add(new Tuple<Message, Connection>(m,con));
+				int hopCount = m.getHopCount();
+				if (hopCount < candidateThreshold) {
+					candidates.add(m, i, hopCount - candidateThreshold);
+				}
+				else {
+					candidates.add(m, i, getCost(other, m.getTo()));
+				}
 			}
 		}
-
-		if (messages.size() == 0) {
-			return null;
-		}
-
-		/* sort the message-connection tuples according to the criteria
-		 * defined in MaxPropTupleComparator */
-		Collections.sort(messages, new MaxPropTupleComparator(calcThreshold()));
-		return tryMessagesForConnected(messages);
+		candidates.sort();
 	}
 
 	/**
@@ -658,37 +723,6 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 		}
 	}
 
-	/**
-	 * Message-Connection tuple comparator for the MaxProp routing
-	 * module. Uses MaxPropComparator on the messages of the tuples
-	 * setting the "from" host for that message to be the one in the connection
-	 * tuple (i.e., path is calculated starting from the host on the other end
-	 * of the connection).
-	 */
-	private class MaxPropTupleComparator
-			implements Comparator <Tuple<Message, Connection>>  {
-		private int threshold;
-
-		public MaxPropTupleComparator(int threshold) {
-			this.threshold = threshold;
-		}
-
-		/**
-		 * Compares two message-connection tuples using the
-		 * {@link MaxPropComparator#compare(Message, Message)}.
-		 */
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			MaxPropComparator comp;
-			DTNHost from1 = tuple1.getValue().getOtherNode(getHost());
-			DTNHost from2 = tuple2.getValue().getOtherNode(getHost());
-
-			comp = new MaxPropComparator(threshold, from1, from2);
-			return comp.compare(tuple1.getKey(), tuple2.getKey());
-		}
-	}
-
-
 	@Override
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo top = super.getRoutingInfo();
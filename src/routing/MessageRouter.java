@@ -4,14 +4,21 @@
  */
 package routing;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import core.Application;
+import core.ApplicationListener;
 import core.Connection;
 import core.DTNHost;
 import core.Message;
@@ -26,14 +33,15 @@ import util.Tuple;
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Message buffer size -setting id ({@value}). Long value in bytes.*/
-	public static final String B_SIZE_S = "bufferSize";//ÿڵϢС
+	public static final String B_SIZE_S = "bufferSize";//每个节点消息缓存大小
 	/**
 	 * Message TTL -setting id ({@value}). Value is in minutes and must be
 	 * an integer.
 	 */
-	public static final String MSG_TTL_S = "msgTtl";//Ϣ
+	public static final String MSG_TTL_S = "msgTtl";//消息的生存周期
 	/**
 	 * Message/fragment sending queue type -setting id ({@value}).
 	 * This setting affects the order the messages and fragments are sent if the
@@ -45,7 +53,7 @@ public abstract class MessageRouter {
 	 * <LI/> 2 : FIFO (most recently received messages are sent last)
 	 * </UL>
 	 */
-	public static final String SEND_QUEUE_MODE_S = "sendQueue";//Ͷģʽ֡ȳ
+	public static final String SEND_QUEUE_MODE_S = "sendQueue";//发送队列模式，两种——先入先出和随机
 
 	/** Setting value for random queue mode */
 	public static final int Q_MODE_RANDOM = 1;
@@ -65,9 +73,9 @@ public abstract class MessageRouter {
 	 * Values in the range [-100, 100] are reserved for general return values
 	 * (and specified here), values beyond that are free for use in
 	 * implementation specific cases */
-	//0ʾڵmessageתʼ
-	//С0ֵʾսڵ㲢ûнոϢ
-	//0ֵʾĿǰܽոϢ
+	//0表示节点接收message并且转发开始，
+	//小于0的值表示接收节点并没有接收该信息；
+	//大于0的值表示目前不能接收该信息
 	/** Receive return value for OK */
 	public static final int RCV_OK = 0;
 	/** Receive return value for busy receiver */
@@ -85,26 +93,28 @@ public abstract class MessageRouter {
 	/** Receive return value for unspecified reason */
 	public static final int DENIED_UNSPECIFIED = -99;
 
-	private List<MessageListener> mListeners;//Ϣб
+	private transient List<MessageListener> mListeners;//消息监听器列表
 	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;//ڵȴתϢΪϢб
+	private HashMap<String, Message> incomingMessages;//正在等待转发的消息：不妨称为：缓存消息列表
 	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;//·ģЯϢHashMapϢѾĿԼϢ    ΪϢб
+	private transient HashMap<String, Message> messages;//该路由模块携带的所有消息都存在HashMap：自身产生的消息已经其他主机传过来的目的主机不是自己的消息    不妨称为：待发送消息列表
+	/** the largest number of messages that has been in the buffer */
+	private int maxNrofMessages;
 	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;//ýڵΪն˽ڵ㣬յϢڸHashMap൱ڴ      ΪѽϢб
+	private HashMap<String, Message> deliveredMessages;//该节点作为终端节点，接收到的消息都存在该HashMap：相当于内存      不妨称为：已接受消息列表
 	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;//·ģϳصӦóеĺϢ
+	private HashMap<String, Object> blacklistedMessages;//该路由模块上承载的应用程序中的黑名单消息
 	/** Host where this router belongs to */
-	private DTNHost host;//·ģ
+	private DTNHost host;//该路由模块的所属主机
 	/** size of the buffer */
-	private long bufferSize;//·ģ黺ССmessagesĴС
+	private long bufferSize;//该路由模块缓存大小：这个缓存大小仅仅用来限制messages的大小
 	/** TTL for all messages */
-	protected int msgTtl;//Ϣttl
+	protected int msgTtl;//所有消息的ttl
 	/** Queue mode for sending messages */
-	private int sendQueueMode;//Ͷģʽ
+	private int sendQueueMode;//发送队列模式
 
 	/** applications attached to the host */
-	private HashMap<String, Collection<Application>> applications = null;//·ģϳصӦóļ
+	private HashMap<String, Collection<Application>> applications = null;//该路由模块上承载的应用程序的集合
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -112,10 +122,10 @@ public abstract class MessageRouter {
 	 * {@link #B_SIZE_S} setting. Default value is Integer.MAX_VALUE.
 	 * @param s The settings object
 	 */
-	//캯ֻǸļʼһЩϢģԹеϢ磺СttlϢͷʽ
+	//构造函数只是根据设置文件，初始化一些各消息模块可以共有的信息：如：缓存大小，ttl，消息发送方式
 	public MessageRouter(Settings s) {
-		this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer//·ģ黺СĬΪ
-		this.msgTtl = Message.INFINITE_TTL;//ϢttlĬΪ
+		this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer//路由模块缓存大小默认为无穷大
+		this.msgTtl = Message.INFINITE_TTL;//所有消息的ttl默认为无穷大
 		this.applications = new HashMap<String, Collection<Application>>();
 
 		if (s.contains(B_SIZE_S)) {
@@ -154,7 +164,7 @@ public abstract class MessageRouter {
 	 * @param host The host this router is in
 	 * @param mListeners The message listeners
 	 */
-	//initڳʼ·ģϢ
+	//该init函数用于初始化路由模块的特有信息
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		this.incomingMessages = new HashMap<String, Message>();
 		this.messages = new HashMap<String, Message>();
@@ -168,7 +178,7 @@ public abstract class MessageRouter {
 	 * Copy-constructor.
 	 * @param r Router to copy the settings from.
 	 */
-	//ƹ캯ƸϢģԹеϢ磺СttlϢͷʽӦó
+	//复制构造函数，复制各消息模块可以共有的信息，如：缓存大小，ttl，消息发送方式，应用程序
 	protected MessageRouter(MessageRouter r) {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
@@ -187,7 +197,7 @@ public abstract class MessageRouter {
 	 * This method should be called (at least once) on every simulation
 	 * interval to update the status of transfer(s).
 	 */
-	//÷ÿηڵһ(ٵһ)Ը´״̬
+	//该方法在每次仿真间隔内调用一次(至少调用一次)以更新传输的状态
 	public void update(){
 		for (Collection<Application> apps : this.applications.values()) {
 			for (Application app : apps) {
@@ -200,7 +210,7 @@ public abstract class MessageRouter {
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
 	 */
-	//֪ͨ·״̬ı
+	//通知路由连接状态改变
 	public abstract void changedConnection(Connection con);
 
 	/**
@@ -229,7 +239,7 @@ public abstract class MessageRouter {
 	 * @return true if a message with the same ID has been received by
 	 * this host as the final recipient.
 	 */
-	//ýڵΪϢյյmessagetrue
+	//如果该节点作为消息终点接收到参数message，返回true
 	protected boolean isDeliveredMessage(Message m) {
 		return (this.deliveredMessages.containsKey(m.getId()));
 	}
@@ -309,7 +319,7 @@ public abstract class MessageRouter {
 	 * @param id Id of the message to send
 	 * @param to The host to send the message to
 	 */
-	//ʼmessageһڵ
+	//开始发送message给另一个节点
 	public void sendMessage(String id, DTNHost to) {
 		Message m = getMessage(id);
 		Message m2;
@@ -326,7 +336,7 @@ public abstract class MessageRouter {
 	 * @param con The connection to send the messages trough
 	 * @return True if this router started a transfer, false if not
 	 */
-	//ͨѽͨϢҪʹҪ
+	//请求通过已建立的连接通道发送消息，若要使用需要被子类重载
 	public boolean requestDeliverableMessages(Connection con) {
 		return false; // default behavior is to not start -- subclasses override
 	}
@@ -339,11 +349,11 @@ public abstract class MessageRouter {
 	 * than zero if node rejected the message (e.g. DENIED_OLD), value bigger
 	 * than zero if the other node should try later (e.g. TRY_LATER_BUSY).
 	 */
-	//ʼմһڵ㷢͹message
-	//յϢӵincomingBufferУ
-	//ؽڵ뵽message·У
-	//ȻmessageõϢ
-	//Ϊ÷һֱokԻӦҪд
+	//开始接收从另一节点发送过来的message。
+	//将接收到信息添加到incomingBuffer中，
+	//将本地节点加入到message的路径表中，
+	//然后，message监视器得到接受信息。
+	//因为该方法一直返回ok，所以基本应该是需要被重写的
 	public int receiveMessage(Message m, DTNHost from) {
 		Message newMessage = m.replicate();
 
@@ -365,14 +375,14 @@ public abstract class MessageRouter {
 	 * @param from Host the message was from (previous hop)
 	 * @return The message that this host received
 	 */
-	//һmessageɹתúϢն˷
-	//ȽתmessageincomingбȡȻýʱ
-	//messageapplicationеĻapplicationһmessage󷵻һmessage
-	//message app¶Ŀĵأômessageתˡڵ㡣
-	//жmessageǷ񵽴ĿģжǷǵһαתؽڵĿģ֮ǰûбת
-	//Ŀģappӵmessage뻺棬messages
-	//ǵһתڵ㣬ӵdeliveredMessagesУ
-	//ûʾٽܸmessage
+	//当一个message成功被转发，该函数由消息接收端发起。
+	//先将转发的message从incoming列表中取出，然后设置接收时间戳；
+	//将message交给application（如果有的话），application接收一个输入message，处理后返回一个输出message，
+	//如果输出message 被app重新定义了目的地，那么本message将不会算作“转发给了”本节点。
+	//判定该message是否到达最终目的，判定是否是第一次被转发（本地节点是最终目的，并且之前没有被转发过）。
+	//如果不是最终目的，而且app不想扔掉该message，则将其加入缓存，存入messages表；
+	//否则，如果是第一次转发节点，将其添加到deliveredMessages表中；
+	//否则，如果没有输出，将其加入黑名单，表示不再接受该message。
 	public Message messageTransferred(String id, DTNHost from) {
 		Message incoming = removeFromIncomingBuffer(id, from);
 		boolean isFinalRecipient;
@@ -459,11 +469,14 @@ public abstract class MessageRouter {
 	 * @param newMessage If true, message listeners are informed about a new
 	 * message, if false, nothing is informed.
 	 */
-	//һϢڴ棬
-	//newMessageΪtrue֪ͨϢµϢ
-	//newMessageΪfalse֪ͨϢ
+	//添加一个消息进入内存，
+	//若newMessage为true，则通知消息监听器：有新的消息被添加
+	//若newMessage为false，则不通知消息监听器
 	protected void addToMessages(Message m, boolean newMessage) {
 		this.messages.put(m.getId(), m);
+		if (this.messages.size() > this.maxNrofMessages) {
+			this.maxNrofMessages = this.messages.size();
+		}
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -477,7 +490,7 @@ public abstract class MessageRouter {
 	 * @param id Identifier of the message to remove
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
-	//ӴϢбƳϢظϢ
+	//从待发送消息列表中移除消息，并返回该消息
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
 		return m;
@@ -491,9 +504,9 @@ public abstract class MessageRouter {
 	 * @param bytesRemaining Nrof bytes that were left before the transfer
 	 * would have been ready; or -1 if the number of bytes is not known
 	 */
-	//洢Ϊڴ棻1Ϣȴ뻺 2ȻɻתƵڴ棬
-	//һԶɹִеڶ֮ǰִmessageAbortedΪϢж
-	//Ϣжϵø÷÷ѻϢӻƳ֪ͨϢ
+	//存储分为缓存和内存；1：消息先传入缓存 2：然后再由缓存转移到内存，
+	//第一步永远成功，在执行第二步之前执行messageAborted方法，即为消息传输中断
+	//消息传输中断调用该方法，该方法将已缓存的消息从缓存中移除，并通知消息监听器
 	public void messageAborted(String id, DTNHost from, int bytesRemaining) {
 		Message incoming = removeFromIncomingBuffer(id, from);
 		if (incoming == null) {
@@ -526,9 +539,9 @@ public abstract class MessageRouter {
 	 * should be set to true. False value indicates e.g. remove of message
 	 * because it was delivered to final destination.
 	 */
-	//ӴϢбƳϢ֪ͨϢϢƳ
-	//drop=trueʾΪڴ汻մϢ
-	//drop=falseʾϢΪѾ͵ն˽ڵ㣬
+	//从待发送消息列表中移除消息，并通知消息监听器：消息被移除
+	//drop=true；表示因为内存被沾满，该消息被丢弃
+	//drop=false：表示该消息因为已经被传送到终端节点，而被丢弃
 	public void deleteMessage(String id, boolean drop) {
 		Message removed = removeFromMessages(id);
 		if (removed == null) throw new SimError("no message for id " +
@@ -622,7 +635,7 @@ public abstract class MessageRouter {
 	 * Returns routing information about this router.
 	 * @return The routing information.
 	 */
-	//صǰ··Ϣ
+	//返回当前路由器的路由信息
 	public RoutingInfo getRoutingInfo() {
 		RoutingInfo ri = new RoutingInfo(this);
 		RoutingInfo incoming = new RoutingInfo(this.incomingMessages.size() +
@@ -657,7 +670,7 @@ public abstract class MessageRouter {
 	 *
 	 * @param app	The application to attach to this router.
 	 */
-	//Ӧó򵽸·ģ
+	//添加应用程序到该路由模块
 	public void addApplication(Application app) {
 		if (!this.applications.containsKey(app.getAppID())) {
 			this.applications.put(app.getAppID(),
@@ -690,6 +703,76 @@ public abstract class MessageRouter {
 		return apps;
 	}
 
+	/**
+	 * Re-attaches the message and application listeners to a router that
+	 * was restored from a simulation checkpoint. Listeners are not part of
+	 * the checkpointed state.
+	 * @param mListeners The message listeners
+	 * @param template A freshly initialized router whose applications'
+	 * listeners are taken into use for the applications with the same IDs
+	 */
+	public void restoreListeners(List<MessageListener> mListeners,
+			MessageRouter template) {
+		this.mListeners = mListeners;
+
+		for (Map.Entry<String, Collection<Application>> e :
+				this.applications.entrySet()) {
+			Collection<Application> tApps = template.applications.get(
+					e.getKey());
+			List<ApplicationListener> aListeners = null;
+			if (tApps != null && !tApps.isEmpty()) {
+				aListeners = tApps.iterator().next().getAppListeners();
+			}
+			for (Application app : e.getValue()) {
+				app.setAppListeners(aListeners);
+			}
+		}
+	}
+
+	/**
+	 * Writes the message buffer of the router in its iteration order.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(new ArrayList<Message>(this.messages.values()));
+	}
+
+	/**
+	 * Reads the message buffer of the router. The iteration order of the
+	 * buffer (that e.g., the random send queue mode depends on) must be the
+	 * same as in the original buffer, also for the messages added after
+	 * the restore, so the buffer is rebuilt as a HashMap with the capacity
+	 * that the original buffer grew to and the messages are put to it in
+	 * their original iteration order. This assumes the growth rules of
+	 * java.util.HashMap (power of two table that is doubled when it gets
+	 * more than 3/4 full) and that messages in the same bucket keep their
+	 * insertion order. The rebuilt order is checked against the original.
+	 * @throws SimError if the rebuilt buffer iterates in a different order
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int capacity = 16;
+		while (this.maxNrofMessages > capacity * 3 / 4) {
+			capacity *= 2;
+		}
+		List<Message> buffer = (List<Message>)in.readObject();
+		this.messages = new HashMap<String, Message>(capacity);
+		for (Message m : buffer) {
+			this.messages.put(m.getId(), m);
+		}
+
+		int i = 0;
+		for (Message m : this.messages.values()) {
+			if (m != buffer.get(i++)) {
+				throw new SimError("Can't restore the message buffer order " +
+						"of " + getClass().getSimpleName() + "; HashMap " +
+						"implementation differs from the checkpoint's");
+			}
+		}
+	}
+
 	/**
 	 * Creates a replicate of this router. The replicate has the same
 	 * settings as this router but empty buffers and routing tables.
@@ -13,6 +13,7 @@ import core.Settings;
  * For implementation specifics, see MessageRouter class.
  */
 public class PassiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 1L;
 
 	public PassiveRouter(Settings s) {
 		super(s);
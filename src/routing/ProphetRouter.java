@@ -5,13 +5,12 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.CandidateList;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -28,36 +27,37 @@ import core.SimClock;
  * Anders Lindgren et al.
  */
 public class ProphetRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** delivery predictability initialization constant*/
-    //Ԥʵĳʼ
+    //传输预测概率的初始化常数
 	public static final double P_INIT = 0.75;
 	/** delivery predictability transitivity scaling constant default value */
-	//ɴԶԴݴԤʵӰ̶
+	//可传递属性对传递传输预测概率的影响程度
 	public static final double DEFAULT_BETA = 0.25;
-	//Ԥʵϻ
+	//传输预测概率的老化常数
 	/** delivery predictability aging constant */
 	public static final double DEFAULT_GAMMA = 0.98;
-	//Prophet·ɵռ
+	//Prophet路由的命名空间
 	/** Prophet router's setting namespace ({@value})*/
 	public static final String PROPHET_NS = "ProphetRouter";
 	/**
 	 * Number of seconds in time unit -setting id ({@value}).
 	 * How many seconds one time unit is when calculating aging of
 	 * delivery predictions. Should be tweaked for the scenario.*/
-	//һʱ䵥λΪ
+	//一个时间单位为多少秒
 	public static final String SECONDS_IN_UNIT_S ="secondsInTimeUnit";
 	/**
 	 * Transitivity scaling constant (beta) -setting id ({@value}).
 	 * Default value for setting is {@link #DEFAULT_BETA}.
 	 */
-	//ProphetRouter.beta൱ڹʽеĴԤʳP_init
+	//ProphetRouter.beta就相当于公式中的传输预测概率常数：P_init
 	public static final String BETA_S = "beta";
 
 	/**
 	 * Predictability aging constant (gamma) -setting id ({@value}).
 	 * Default value for setting is {@link #DEFAULT_GAMMA}.
 	 */
-	//ProphetRouter.gammaԤʵϻr
+	//ProphetRouter.gamma：传输预测概率的老化常数：r
 	public static final String GAMMA_S = "gamma";
 
 	/** the value of nrof seconds in time unit -setting */
@@ -66,12 +66,18 @@ public class ProphetRouter extends ActiveRouter {
 	private double beta;
 	/** value of gamma setting */
 	private double gamma;
-	//key:  valuekeyĸ
+	//key:其他主机  value：本主机遇见key的概率
 	/** delivery predictabilities */
 	private Map<DTNHost, Double> preds;
 	/** last delivery predictability update (sim)time */
-	//һϻԤʵʱ
+	//上一次老化传输预测概率的时间
 	private double lastAgeUpdate;
+	/** candidate messages sorted by the delivery probabilities of the
+	 * connected hosts */
+	private transient CandidateList candidates;
+	/** routers whose probabilities were read when the candidates were
+	 * scored */
+	private transient List<ProphetRouter> scoredRouters;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -134,7 +140,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * <CODE>P(a,b) = P(a,b)_old + (1 - P(a,b)_old) * P_INIT</CODE>
 	 * @param host The host we just met
 	 */
-	//´ԤP(a,b)
+	//更新传输预测概率P(a,b)
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * P_INIT;
@@ -147,7 +153,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * @param host The host to look the P for
 	 * @return the current P value
 	 */
-	//õԤP(a,b)
+	//得到传输预测概率P(a,b)
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
 		if (preds.containsKey(host)) {
@@ -164,7 +170,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * </CODE>
 	 * @param host The B host who we just met
 	 */
-	//´ԤP(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * BETA
+	//更新传输预测概率P(a,c) = P(a,c)_old + (1 - P(a,c)_old) * P(a,b) * P(b,c) * BETA
 	private void updateTransitivePreds(DTNHost host) {
 		MessageRouter otherRouter = host.getRouter();
 		assert otherRouter instanceof ProphetRouter : "PRoPHET only works " +
@@ -191,7 +197,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * time units that have elapsed since the last time the metric was aged.
 	 * @see #SECONDS_IN_UNIT_S
 	 */
-	//ϻԤ
+	//老化传输预测概率
 	private void ageDeliveryPreds() {
 		double timeDiff = (SimClock.getTime() - this.lastAgeUpdate) /
 			secondsInTimeUnit;
@@ -212,7 +218,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * Returns a map of this router's delivery predictions
 	 * @return a map of this router's delivery predictions
 	 */
-	//ȡ·ģMap<DTNHost, Double>
+	//获取该路由模块的Map<DTNHost, Double>
 	private Map<DTNHost, Double> getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
@@ -235,77 +241,95 @@ public class ProphetRouter extends ActiveRouter {
 
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
-	 * their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * their delivery probability. The messages are scored and sorted again
+	 * only if the buffer or connections of this host or any connected host,
+	 * or the set of connected hosts that are transferring have changed since
+	 * the previous try.
+	 * @return The message-connection tuple whose transfer was started or
+	 * null if no transfer was started
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getConnections();
+		if (this.candidates == null) {
+			this.candidates = new CandidateList(new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					/* equal probabilities -> let queue mode decide */
+					return compareByQueueMode(m1, m2);
+				}
+			});
+			this.scoredRouters = new ArrayList<ProphetRouter>();
+		}
+
+		/* the probabilities change when the hosts meet other hosts. Aging
+		 * multiplies all of them by the same factor, which doesn't change
+		 * the comparisons or the order of the candidates */
+		candidates.beginState();
+		candidates.addState(getChangeCount());
+		for (Connection con : connections) {
+			ProphetRouter othRouter = (ProphetRouter)con.getOtherNode(
+					getHost()).getRouter();
+			candidates.addState(othRouter.getChangeCount());
+			candidates.addState(othRouter.isTransferring() ? 1 : 0);
+		}
+		if (candidates.isStateChanged()) {
+			scoreCandidates(connections);
+		} else {
+			/* age the probabilities that scoring would have read, as
+			 * aging in different steps rounds differently */
+			for (int i = 0, n = scoredRouters.size(); i < n; i++) {
+				scoredRouters.get(i).ageDeliveryPreds();
+			}
+		}
 
-		Collection<Message> msgCollection = getMessageCollection();
+		for (int i = 0, n = candidates.size(); i < n; i++) {
+			Message m = candidates.getMessage(i);
+			Connection con = connections.get(candidates.getConnection(i));
+			if (startTransfer(m, con) == RCV_OK) {
+				return new Tuple<Message, Connection>(m, con);
+			}
+		}
+
+		return null;
+	}
 
-		/* for all connected hosts collect all messages that have a higher
-		   probability of delivery by the other host */
-		for (Connection con : getConnections()) {
-			DTNHost other = con.getOtherNode(getHost());
-			ProphetRouter othRouter = (ProphetRouter)other.getRouter();
+	/**
+	 * Collects the messages that a connected host, which is not
+	 * transferring, doesn't have and has a higher probability of delivering,
+	 * and sorts them by that probability, bigger probability first
+	 * (GRTRMax). Each probability is looked up only once.
+	 * @param connections The connections of this host
+	 */
+	private void scoreCandidates(List<Connection> connections) {
+		candidates.clear();
+		scoredRouters.clear();
+		for (int i = 0, n = connections.size(); i < n; i++) {
+			ProphetRouter othRouter = (ProphetRouter)connections.get(i).
+				getOtherNode(getHost()).getRouter();
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
 			}
 
-			for (Message m : msgCollection) {
+			boolean read = false;
+			for (Message m : getMessageCollection()) {
 				if (othRouter.hasMessage(m.getId())) {
 					continue; // skip messages that the other one has
 				}
-				//˵һϢĿĽڵĸʽϴ󣬾ͼбmessages
-				if (othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
+				read = true;
+				double pOther = othRouter.getPredFor(m.getTo());
+				if (pOther > getPredFor(m.getTo())) {
 					// the other node has higher probability of delivery
-					messages.add(new Tuple<Message, Connection>(m,con));
+					candidates.add(m, i, -pOther);
 				}
 			}
-		}
-
-		if (messages.size() == 0) {
-			return null;
-		}
-
-		// sort the message-connection tuples
-		Collections.sort(messages, new TupleComparator());
-		return tryMessagesForConnected(messages);	// try to send messages
-	}
-
-	/**
-	 * Comparator for Message-Connection-Tuples that orders the tuples by
-	 * their delivery probability by the host on the other side of the
-	 * connection (GRTRMax)
-	 */
-	private class TupleComparator implements Comparator
-		<Tuple<Message, Connection>> {
-
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			// delivery probability of tuple1's message with tuple1's connection
-			double p1 = ((ProphetRouter)tuple1.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple1.getKey().getTo());
-			// -"- tuple2...
-			double p2 = ((ProphetRouter)tuple2.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple2.getKey().getTo());
-
-			// bigger probability should come first
-			if (p2-p1 == 0) {
-				/* equal probabilities -> let queue mode decide */
-				return compareByQueueMode(tuple1.getKey(), tuple2.getKey());
-			}
-			else if (p2-p1 < 0) {
-				return -1;
-			}
-			else {
-				return 1;
+			if (read) {
+				scoredRouters.add(othRouter);
 			}
 		}
+		if (!scoredRouters.isEmpty()) {
+			scoredRouters.add(this);
+		}
+		candidates.sort();
 	}
 
 	@Override
@@ -5,13 +5,12 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import routing.util.CandidateList;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -36,6 +35,7 @@ import core.SimClock;
  *
  */
 public class ProphetRouterWithEstimation extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** delivery predictability initialization constant*/
 	public static final double P_INIT = 0.75;
 	/** delivery predictability transitivity scaling constant default value */
@@ -81,6 +81,12 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
 	/** last delivery predictability update (sim)time */
 	private double lastAgeUpdate;
+	/** candidate messages sorted by the delivery probabilities of the
+	 * connected hosts */
+	private transient CandidateList candidates;
+	/** routers whose probabilities were read when the candidates were
+	 * scored */
+	private transient List<ProphetRouterWithEstimation> scoredRouters;
 
 
 	/**
@@ -418,76 +424,101 @@ public class ProphetRouterWithEstimation extends ActiveRouter {
 
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
-	 * their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * their delivery probability. The messages are scored and sorted again
+	 * only if the buffer or connections of this host or any connected host,
+	 * or the set of connected hosts that are transferring have changed since
+	 * the previous try, or if the time has changed and the hosts' aging
+	 * constants differ.
+	 * @return The message-connection tuple whose transfer was started or
+	 * null if no transfer was started
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Connection> connections = getConnections();
+		if (this.candidates == null) {
+			this.candidates = new CandidateList(new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					/* equal probabilities -> let queue mode decide */
+					return compareByQueueMode(m1, m2);
+				}
+			});
+			this.scoredRouters = new ArrayList<ProphetRouterWithEstimation>();
+		}
 
-		Collection<Message> msgCollection = getMessageCollection();
+		/* the probabilities and the aging constants change when the hosts
+		 * meet other hosts. Aging only changes the comparisons and the order
+		 * of the candidates if the hosts have different aging constants */
+		candidates.beginState();
+		candidates.addState(getChangeCount());
+		boolean sameGamma = true;
+		for (Connection con : connections) {
+			ProphetRouterWithEstimation othRouter = (ProphetRouterWithEstimation)con.getOtherNode(
+					getHost()).getRouter();
+			candidates.addState(othRouter.getChangeCount());
+			candidates.addState(othRouter.isTransferring() ? 1 : 0);
+			sameGamma &= othRouter.gamma == this.gamma;
+		}
+		if (!sameGamma) {
+			candidates.addState(Double.doubleToLongBits(SimClock.getTime()));
+		}
+		if (candidates.isStateChanged()) {
+			scoreCandidates(connections);
+		} else {
+			/* age the probabilities that scoring would have read, as
+			 * aging in different steps rounds differently */
+			for (int i = 0, n = scoredRouters.size(); i < n; i++) {
+				scoredRouters.get(i).ageDeliveryPreds();
+			}
+		}
 
-		/* for all connected hosts collect all messages that have a higher
-		   probability of delivery by the other host */
-		for (Connection con : getConnections()) {
-			DTNHost other = con.getOtherNode(getHost());
-			ProphetRouterWithEstimation othRouter = (ProphetRouterWithEstimation)other.getRouter();
+		for (int i = 0, n = candidates.size(); i < n; i++) {
+			Message m = candidates.getMessage(i);
+			Connection con = connections.get(candidates.getConnection(i));
+			if (startTransfer(m, con) == RCV_OK) {
+				return new Tuple<Message, Connection>(m, con);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Collects the messages that a connected host, which is not
+	 * transferring, doesn't have and has a higher probability of delivering,
+	 * and sorts them by that probability, bigger probability first
+	 * (GRTRMax). Each probability is looked up only once.
+	 * @param connections The connections of this host
+	 */
+	private void scoreCandidates(List<Connection> connections) {
+		candidates.clear();
+		scoredRouters.clear();
+		for (int i = 0, n = connections.size(); i < n; i++) {
+			ProphetRouterWithEstimation othRouter = (ProphetRouterWithEstimation)connections.get(i).
+				getOtherNode(getHost()).getRouter();
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
 			}
 
-			for (Message m : msgCollection) {
+			boolean read = false;
+			for (Message m : getMessageCollection()) {
 				if (othRouter.hasMessage(m.getId())) {
 					continue; // skip messages that the other one has
 				}
-				if (othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
+				read = true;
+				double pOther = othRouter.getPredFor(m.getTo());
+				if (pOther > getPredFor(m.getTo())) {
 					// the other node has higher probability of delivery
-					messages.add(new Tuple<Message, Connection>(m,con));
+					candidates.add(m, i, -pOther);
 				}
 			}
-		}
-
-		if (messages.size() == 0) {
-			return null;
-		}
-
-		// sort the message-connection tuples
-		Collections.sort(messages, new TupleComparator());
-		return tryMessagesForConnected(messages);	// try to send messages
-	}
-
-	/**
-	 * Comparator for Message-Connection-Tuples that orders the tuples by
-	 * their delivery probability by the host on the other side of the
-	 * connection (GRTRMax)
-	 */
-	private class TupleComparator implements Comparator
-	<Tuple<Message, Connection>> {
-
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			// delivery probability of tuple1's message with tuple1's connection
-			double p1 = ((ProphetRouterWithEstimation)tuple1.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-							tuple1.getKey().getTo());
-			// -"- tuple2...
-			double p2 = ((ProphetRouterWithEstimation)tuple2.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-							tuple2.getKey().getTo());
-
-			// bigger probability should come first
-			if (p2-p1 == 0) {
-				/* equal probabilities -> let queue mode decide */
-				return compareByQueueMode(tuple1.getKey(), tuple2.getKey());
-			}
-			else if (p2-p1 < 0) {
-				return -1;
-			}
-			else {
-				return 1;
+			if (read) {
+				scoredRouters.add(othRouter);
 			}
 		}
+		if (!scoredRouters.isEmpty()) {
+			scoredRouters.add(this);
+		}
+		candidates.sort();
 	}
 
 	@Override
@@ -7,8 +7,6 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -16,6 +14,7 @@ import java.util.Map;
 
 import java.util.Random;
 
+import routing.util.CandidateList;
 import routing.util.RoutingInfo;
 
 
@@ -31,6 +30,7 @@ import util.Tuple;
  * http://tools.ietf.org/html/draft-irtf-dtnrg-prophet-09
  */
 public class ProphetV2Router extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** delivery predictability initialization constant*/
 	public static final double PEncMax = 0.5;
 	/** typical interconnection time in seconds*/
@@ -76,6 +76,12 @@ public class ProphetV2Router extends ActiveRouter {
 
 	/** last delivery predictability update (sim)time */
 	private double lastAgeUpdate;
+	/** candidate messages sorted by the delivery probabilities of the
+	 * connected hosts */
+	private transient CandidateList candidates;
+	/** routers whose probabilities were read when the candidates were
+	 * scored */
+	private transient List<ProphetV2Router> scoredRouters;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -133,6 +139,10 @@ public class ProphetV2Router extends ActiveRouter {
 
 	@Override
 	public void changedConnection(Connection con) {
+		/* not counted by ActiveRouter, which would also reduce the
+		 * discovery energy */
+		countChange();
+
 		if (con.isUp()) {
 			DTNHost otherHost = con.getOtherNode(getHost());
 			updateDeliveryPredFor(otherHost);
@@ -276,77 +286,95 @@ public class ProphetV2Router extends ActiveRouter {
 
 	/**
 	 * Tries to send all other messages to all connected hosts ordered by
-	 * their delivery probability
-	 * @return The return value of {@link #tryMessagesForConnected(List)}
+	 * their delivery probability. The messages are scored and sorted again
+	 * only if the buffer or connections of this host or any connected host,
+	 * or the set of connected hosts that are transferring have changed since
+	 * the previous try.
+	 * @return The message-connection tuple whose transfer was started or
+	 * null if no transfer was started
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
-
-		Collection<Message> msgCollection = getMessageCollection();
-
-		/* for all connected hosts collect all messages that have a higher
-		   probability of delivery by the other host */
-		for (Connection con : getConnections()) {
-			DTNHost other = con.getOtherNode(getHost());
-			ProphetV2Router othRouter = (ProphetV2Router)other.getRouter();
-
-			if (othRouter.isTransferring()) {
-				continue; // skip hosts that are transferring
-			}
-
-			for (Message m : msgCollection) {
-				if (othRouter.hasMessage(m.getId())) {
-					continue; // skip messages that the other one has
+		List<Connection> connections = getConnections();
+		if (this.candidates == null) {
+			this.candidates = new CandidateList(new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					/* equal probabilities -> let queue mode decide */
+					return compareByQueueMode(m1, m2);
 				}
-				if((othRouter.getPredFor(m.getTo()) >= getPredFor(m.getTo())))
-				{
+			});
+			this.scoredRouters = new ArrayList<ProphetV2Router>();
+		}
 
-					messages.add(new Tuple<Message, Connection>(m,con));
-				}
+		/* the probabilities change when the hosts meet other hosts. Aging
+		 * multiplies all of them by the same factor, which doesn't change
+		 * the comparisons or the order of the candidates */
+		candidates.beginState();
+		candidates.addState(getChangeCount());
+		for (Connection con : connections) {
+			ProphetV2Router othRouter = (ProphetV2Router)con.getOtherNode(
+					getHost()).getRouter();
+			candidates.addState(othRouter.getChangeCount());
+			candidates.addState(othRouter.isTransferring() ? 1 : 0);
+		}
+		if (candidates.isStateChanged()) {
+			scoreCandidates(connections);
+		} else {
+			/* age the probabilities that scoring would have read, as
+			 * aging in different steps rounds differently */
+			for (int i = 0, n = scoredRouters.size(); i < n; i++) {
+				scoredRouters.get(i).ageDeliveryPreds();
 			}
 		}
 
-		if (messages.size() == 0) {
-			return null;
+		for (int i = 0, n = candidates.size(); i < n; i++) {
+			Message m = candidates.getMessage(i);
+			Connection con = connections.get(candidates.getConnection(i));
+			if (startTransfer(m, con) == RCV_OK) {
+				return new Tuple<Message, Connection>(m, con);
+			}
 		}
 
-		// sort the message-connection tuples
-		Collections.sort(messages, new TupleComparator());
-		return tryMessagesForConnected(messages);	// try to send messages
+		return null;
 	}
 
 	/**
-	 * Comparator for Message-Connection-Tuples that orders the tuples by
-	 * their delivery probability by the host on the other side of the
-	 * connection (GRTRMax)
+	 * Collects the messages that a connected host, which is not
+	 * transferring, doesn't have and has a higher probability of delivering,
+	 * and sorts them by that probability, bigger probability first
+	 * (GRTRMax). Each probability is looked up only once.
+	 * @param connections The connections of this host
 	 */
-	private class TupleComparator implements Comparator
-		<Tuple<Message, Connection>> {
-
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			// delivery probability of tuple1's message with tuple1's connection
-			double p1 = ((ProphetV2Router)tuple1.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple1.getKey().getTo());
-			// -"- tuple2...
-			double p2 = ((ProphetV2Router)tuple2.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple2.getKey().getTo());
-
-			// bigger probability should come first
-			if (p2-p1 == 0) {
-				/* equal probabilities -> let queue mode decide */
-				return compareByQueueMode(tuple1.getKey(), tuple2.getKey());
+	private void scoreCandidates(List<Connection> connections) {
+		candidates.clear();
+		scoredRouters.clear();
+		for (int i = 0, n = connections.size(); i < n; i++) {
+			ProphetV2Router othRouter = (ProphetV2Router)connections.get(i).
+				getOtherNode(getHost()).getRouter();
+
+			if (othRouter.isTransferring()) {
+				continue; // skip hosts that are transferring
 			}
-			else if (p2-p1 < 0) {
-				return -1;
+
+			boolean read = false;
+			for (Message m : getMessageCollection()) {
+				if (othRouter.hasMessage(m.getId())) {
+					continue; // skip messages that the other one has
+				}
+				read = true;
+				double pOther = othRouter.getPredFor(m.getTo());
+				if (pOther >= getPredFor(m.getTo())) {
+					// the other node has at least as high probability
+					candidates.add(m, i, -pOther);
+				}
 			}
-			else {
-				return 1;
+			if (read) {
+				scoredRouters.add(othRouter);
 			}
 		}
+		if (!scoredRouters.isEmpty()) {
+			scoredRouters.add(this);
+		}
+		candidates.sort();
 	}
 
 	@Override
@@ -19,15 +19,19 @@ import core.Settings;
  *
  */
 public class SprayAndWaitRouter extends ActiveRouter {
+	private static final long serialVersionUID = 1L;
 	/** identifier for the initial number of copies setting ({@value})*/
 	public static final String NROF_COPIES = "nrofCopies";
 	/** identifier for the binary-mode setting ({@value})*/
 	public static final String BINARY_MODE = "binaryMode";
 	/** SprayAndWait router's settings name space ({@value})*/
 	public static final String SPRAYANDWAIT_NS = "SprayAndWaitRouter";
-	/** Message property key */
+	/** Message metadata field name */
 	public static final String MSG_COUNT_PROPERTY = SPRAYANDWAIT_NS + "." +
 		"copies";
+	/** Message metadata field of the number of copies */
+	protected static final int MSG_COUNT_FIELD =
+		Message.registerMetadataField(MSG_COUNT_PROPERTY);
 
 	protected int initialNrofCopies;
 	protected boolean isBinary;
@@ -56,12 +60,11 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	}
 
 	@Override
-	//½նϢķ
+	//更新接收端消息的份数
 	public Message messageTransferred(String id, DTNHost from) {
 		Message msg = super.messageTransferred(id, from);
-		Integer nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
-
-		assert nrofCopies != null : "Not a SnW message: " + msg;
+		assert msg.hasMetadata(MSG_COUNT_FIELD) : "Not a SnW message: " + msg;
+		int nrofCopies = msg.getIntMetadata(MSG_COUNT_FIELD);
 
 		if (isBinary) {
 			/* in binary S'n'W the receiving node gets floor(n/2) copies */
@@ -72,7 +75,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			nrofCopies = 1;
 		}
 
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setIntMetadata(MSG_COUNT_FIELD, nrofCopies);
 		return msg;
 	}
 
@@ -81,7 +84,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		makeRoomForNewMessage(msg.getSize());
 
 		msg.setTtl(this.msgTtl);
-		msg.addProperty(MSG_COUNT_PROPERTY, new Integer(initialNrofCopies));
+		msg.addIntMetadata(MSG_COUNT_FIELD, initialNrofCopies);
 		addToMessages(msg, true);
 		return true;
 	}
@@ -93,6 +96,10 @@ public class SprayAndWaitRouter extends ActiveRouter {
 			return; // nothing to transfer or is currently transferring
 		}
 
+		if (isIdle()) {
+			return; // nothing has changed since the previous failed attempt
+		}
+
 		/* try messages that could be delivered to final recipient */
 		if (exchangeDeliverableMessages() != null) {
 			return;
@@ -102,9 +109,11 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		@SuppressWarnings(value = "unchecked")
 		List<Message> copiesLeft = sortByQueueMode(getMessagesWithCopiesLeft());
 
-		if (copiesLeft.size() > 0) {
-			/* try to send those messages */
-			this.tryMessagesToConnections(copiesLeft, getConnections());
+		/* try to send those messages */
+		if (copiesLeft.size() == 0 ||
+				this.tryMessagesToConnections(copiesLeft,
+						getConnections()) == null) {
+			transferAttemptFailed();
 		}
 	}
 
@@ -117,10 +126,9 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		List<Message> list = new ArrayList<Message>();
 
 		for (Message m : getMessageCollection()) {
-			Integer nrofCopies = (Integer)m.getProperty(MSG_COUNT_PROPERTY);
-			assert nrofCopies != null : "SnW message " + m + " didn't have " +
-				"nrof copies property!";
-			if (nrofCopies > 1) {
+			assert m.hasMetadata(MSG_COUNT_FIELD) : "SnW message " + m +
+				" didn't have nrof copies field!";
+			if (m.getIntMetadata(MSG_COUNT_FIELD) > 1) {
 				list.add(m);
 			}
 		}
@@ -135,10 +143,10 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	 * In binary Spray and Wait, sending host is left with floor(n/2) copies,
 	 * but in standard mode, nrof copies left is reduced by one.
 	 */
-	//·ͶϢķ
+	//更新发送端消息的份数
 	@Override
 	protected void transferDone(Connection con) {
-		Integer nrofCopies;
+		int nrofCopies;
 		String msgId = con.getMessage().getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
@@ -148,7 +156,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		}
 
 		/* reduce the amount of copies left */
-		nrofCopies = (Integer)msg.getProperty(MSG_COUNT_PROPERTY);
+		nrofCopies = msg.getIntMetadata(MSG_COUNT_FIELD);
 		if (isBinary) {
 			/* in binary S'n'W the sending node keeps ceil(n/2) copies */
 			nrofCopies = (int)Math.ceil(nrofCopies/2.0);
@@ -156,7 +164,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		else {
 			nrofCopies--;
 		}
-		msg.updateProperty(MSG_COUNT_PROPERTY, nrofCopies);
+		msg.setIntMetadata(MSG_COUNT_FIELD, nrofCopies);
 	}
 
 	@Override
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Tracks the activity of a router so that the router can skip its routing
+ * decisions while nothing they depend on changes. Before deciding, the
+ * router records the state of the inputs of the decision (e.g., change
+ * counts of its own and the connected hosts' buffers, connections and
+ * transfers) with {@link #beginState()} and {@link #addState(long)}, and
+ * asks with {@link #isIdle()} whether the state is the same as at the
+ * previous failed attempt (see {@link #attemptFailed()}). The tracker also
+ * counts how many decisions were made and how many were skipped.
+ */
+public class ActivityTracker implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** Initial capacity of the state arrays */
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** the state being recorded */
+	private long[] state;
+	private int stateSize;
+	/** can the recorded state be tracked */
+	private boolean tracked;
+	/** the state of the previous failed attempt */
+	private long[] failedState;
+	private int failedStateSize;
+	/** is the failed state valid */
+	private boolean failed;
+
+	private long nrofDecisions;
+	private long nrofSkipped;
+
+	/**
+	 * Creates a new tracker
+	 */
+	public ActivityTracker() {
+		this.state = new long[INITIAL_CAPACITY];
+		this.failedState = new long[INITIAL_CAPACITY];
+		this.failed = false;
+	}
+
+	/**
+	 * Starts recording the state of the inputs of a decision
+	 */
+	public void beginState() {
+		this.stateSize = 0;
+		this.tracked = true;
+	}
+
+	/**
+	 * Records a value of the state
+	 * @param value The value
+	 */
+	public void addState(long value) {
+		if (this.stateSize == this.state.length) {
+			this.state = Arrays.copyOf(this.state, this.stateSize * 2);
+		}
+		this.state[this.stateSize++] = value;
+	}
+
+	/**
+	 * Records that the decision has inputs that can't be tracked (e.g.,
+	 * values that can change at any time). Such decisions are never skipped.
+	 */
+	public void addUntrackedState() {
+		this.tracked = false;
+	}
+
+	/**
+	 * Returns true if the recorded state is the same as the state of the
+	 * previous failed attempt, i.e., if the decision can be skipped. Counts
+	 * the decision as skipped or made.
+	 * @return True if the decision can be skipped
+	 */
+	public boolean isIdle() {
+		if (this.tracked && this.failed && isSameAsFailed()) {
+			this.nrofSkipped++;
+			return true;
+		}
+
+		this.failed = false;
+		this.nrofDecisions++;
+		return false;
+	}
+
+	/**
+	 * Returns true if the recorded state equals the failed state
+	 * @return True if the states are equal
+	 */
+	private boolean isSameAsFailed() {
+		if (this.stateSize != this.failedStateSize) {
+			return false;
+		}
+		for (int i = 0; i < this.stateSize; i++) {
+			if (this.state[i] != this.failedState[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the decision made with the recorded state as failed (e.g., no
+	 * transfer could be started), so that decisions with the same state
+	 * can be skipped
+	 */
+	public void attemptFailed() {
+		if (!this.tracked) {
+			return;
+		}
+		long[] tmp = this.failedState;
+		this.failedState = this.state;
+		this.failedStateSize = this.stateSize;
+		this.state = tmp;
+		this.failed = true;
+	}
+
+	/**
+	 * Returns the number of decisions that were made
+	 * @return The number of decisions
+	 */
+	public long getNrofDecisions() {
+		return this.nrofDecisions;
+	}
+
+	/**
+	 * Returns the number of decisions that were skipped because nothing
+	 * had changed since the previous failed attempt
+	 * @return The number of skipped decisions
+	 */
+	public long getNrofSkipped() {
+		return this.nrofSkipped;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import core.Message;
+
+/**
+ * Reusable list of message transfer candidates for routers that order the
+ * messages they offer to the connected hosts by a score (e.g., delivery
+ * predictability or delivery cost through the other host). The score of
+ * each candidate is computed only once, when the candidate is added, and
+ * the candidates are ordered by sorting an index array by the scores; the
+ * arrays are reused from update to update.
+ * <P>
+ * The list also records the state that the candidates were scored for
+ * (see {@link #beginState()}), so that a router can keep using the sorted
+ * candidates for as long as the state stays the same.
+ * </P>
+ */
+public class CandidateList {
+	/** Initial capacity of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+	/** Runs shorter than this are sorted with insertion sort */
+	private static final int INSERTION_SORT_LIMIT = 8;
+
+	/** Orders the candidates with equal scores */
+	private Comparator<Message> tieBreaker;
+
+	private Message[] messages;
+	private int[] connections;
+	private double[] scores;
+	/** candidate indexes in the sorted order */
+	private int[] order;
+	private int[] scratch;
+	private int size;
+
+	/** values of the state the candidates were scored for */
+	private long[] state;
+	private int stateSize;
+	private int oldStateSize;
+	private boolean stateChanged;
+
+	/**
+	 * Creates an empty candidate list
+	 * @param tieBreaker Comparator that orders the candidates whose scores
+	 * are equal (e.g., by the router's send queue mode). If it returns zero,
+	 * the candidates stay in the order they were added in.
+	 */
+	public CandidateList(Comparator<Message> tieBreaker) {
+		this.tieBreaker = tieBreaker;
+		this.messages = new Message[INITIAL_CAPACITY];
+		this.connections = new int[INITIAL_CAPACITY];
+		this.scores = new double[INITIAL_CAPACITY];
+		this.order = new int[INITIAL_CAPACITY];
+		this.scratch = new int[INITIAL_CAPACITY];
+		this.state = new long[INITIAL_CAPACITY];
+		this.oldStateSize = -1; /* nothing scored yet */
+	}
+
+	/**
+	 * Removes all candidates from the list
+	 */
+	public void clear() {
+		Arrays.fill(this.messages, 0, this.size, null);
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a candidate to the list
+	 * @param m The message to send
+	 * @param connection Index of the connection to send the message through
+	 * (in the router's list of connections)
+	 * @param score Score of the candidate; the candidates with smaller
+	 * scores are first in the sorted order
+	 */
+	public void add(Message m, int connection, double score) {
+		if (this.size == this.messages.length) {
+			int capacity = this.size * 2;
+			this.messages = Arrays.copyOf(this.messages, capacity);
+			this.connections = Arrays.copyOf(this.connections, capacity);
+			this.scores = Arrays.copyOf(this.scores, capacity);
+			this.order = new int[capacity];
+			this.scratch = new int[capacity];
+		}
+		this.messages[this.size] = m;
+		this.connections[this.size] = connection;
+		this.scores[this.size] = score;
+		this.order[this.size] = this.size;
+		this.size++;
+	}
+
+	/**
+	 * Returns the number of candidates in the list
+	 * @return The number of candidates
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the message of a candidate
+	 * @param index Index of the candidate in the sorted order
+	 * @return The message
+	 */
+	public Message getMessage(int index) {
+		return this.messages[this.order[index]];
+	}
+
+	/**
+	 * Returns the connection index of a candidate
+	 * @param index Index of the candidate in the sorted order
+	 * @return Index of the connection in the router's list of connections
+	 */
+	public int getConnection(int index) {
+		return this.connections[this.order[index]];
+	}
+
+	/**
+	 * Sorts the candidates by their scores (smallest first) and the
+	 * candidates with equal scores with the tie breaker. The sort is stable.
+	 */
+	public void sort() {
+		for (int i = 0; i < this.size; i++) {
+			this.order[i] = i;
+		}
+		mergeSort(0, this.size);
+	}
+
+	/**
+	 * Sorts a range of the order array
+	 * @param from First index of the range (inclusive)
+	 * @param to Last index of the range (exclusive)
+	 */
+	private void mergeSort(int from, int to) {
+		if (to - from < INSERTION_SORT_LIMIT) {
+			for (int i = from + 1; i < to; i++) {
+				int c = this.order[i];
+				int j = i - 1;
+				while (j >= from && compare(this.order[j], c) > 0) {
+					this.order[j + 1] = this.order[j];
+					j--;
+				}
+				this.order[j + 1] = c;
+			}
+			return;
+		}
+
+		int mid = (from + to) >>> 1;
+		mergeSort(from, mid);
+		mergeSort(mid, to);
+		if (compare(this.order[mid - 1], this.order[mid]) <= 0) {
+			return; /* already in order */
+		}
+
+		System.arraycopy(this.order, from, this.scratch, from, to - from);
+		int i = from;
+		int j = mid;
+		for (int k = from; k < to; k++) {
+			if (j >= to || (i < mid &&
+					compare(this.scratch[i], this.scratch[j]) <= 0)) {
+				this.order[k] = this.scratch[i++];
+			}
+			else {
+				this.order[k] = this.scratch[j++];
+			}
+		}
+	}
+
+	/**
+	 * Compares two candidates by their scores and, if the scores are
+	 * equal, with the tie breaker
+	 * @param c1 Index of the first candidate
+	 * @param c2 Index of the second candidate
+	 * @return -1, 0 or 1 if the first candidate is before, equal to or
+	 * after the second candidate
+	 */
+	private int compare(int c1, int c2) {
+		double s1 = this.scores[c1];
+		double s2 = this.scores[c2];
+		if (s1 < s2) {
+			return -1;
+		}
+		else if (s1 > s2) {
+			return 1;
+		}
+		return this.tieBreaker.compare(this.messages[c1], this.messages[c2]);
+	}
+
+	/**
+	 * Starts recording the state that the scores of the candidates depend
+	 * on. The state is recorded with {@link #addState(long)} and compared
+	 * to the state recorded before the previous scoring with
+	 * {@link #isStateChanged()}.
+	 */
+	public void beginState() {
+		this.stateSize = 0;
+		this.stateChanged = false;
+	}
+
+	/**
+	 * Records a value of the state
+	 * @param value The value
+	 */
+	public void addState(long value) {
+		if (this.stateSize == this.state.length) {
+			this.state = Arrays.copyOf(this.state, this.stateSize * 2);
+		}
+		if (this.stateSize >= this.oldStateSize ||
+				this.state[this.stateSize] != value) {
+			this.stateChanged = true;
+		}
+		this.state[this.stateSize++] = value;
+	}
+
+	/**
+	 * Returns true if the recorded state differs from the state that was
+	 * recorded before the previous call of this method (or if this is the
+	 * first call), i.e., if the candidates should be scored again.
+	 * @return True if the state has changed
+	 */
+	public boolean isStateChanged() {
+		boolean changed = this.stateChanged ||
+			this.stateSize != this.oldStateSize;
+		this.oldStateSize = this.stateSize;
+		return changed;
+	}
+}
@@ -4,6 +4,7 @@
  */
 package routing.util;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import core.*;
@@ -14,7 +15,8 @@ import core.*;
  * often than 1/s, constant scanning is assumed (and power consumption does not
  * increase from {@link #scanEnergy} value).
  */
-public class EnergyModel implements ModuleCommunicationListener {
+public class EnergyModel implements ModuleCommunicationListener, Serializable {
+	private static final long serialVersionUID = 1L;
 	/** Initial units of energy -setting id ({@value}). Can be either a
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -42,6 +44,9 @@ public class EnergyModel implements ModuleCommunicationListener {
 	/** {@link ModuleCommunicationBus} identifier for the "current amount of
 	 * energy left" variable. Value type: double */
 	public static final String ENERGY_VALUE_ID = "Energy.value";
+	/** Bus slot of {@link #ENERGY_VALUE_ID} */
+	public static final int ENERGY_VALUE_SLOT =
+		ModuleCommunicationBus.getSlot(ENERGY_VALUE_ID);
 
 	/** Initial energy levels from the settings */
 	private final double[] initEnergy;
@@ -150,9 +155,9 @@ public class EnergyModel implements ModuleCommunicationListener {
 		}
 
 		if (amount >= this.currentEnergy) {
-			comBus.updateProperty(ENERGY_VALUE_ID, 0.0);
+			comBus.setDouble(ENERGY_VALUE_SLOT, 0.0);
 		} else {
-			comBus.updateDouble(ENERGY_VALUE_ID, -amount);
+			comBus.updateDouble(ENERGY_VALUE_SLOT, -amount);
 		}
 
 	}
@@ -175,8 +180,8 @@ public class EnergyModel implements ModuleCommunicationListener {
 
 		if (this.comBus == null) {
 			this.comBus = comBus;
-			this.comBus.addProperty(ENERGY_VALUE_ID, this.currentEnergy);
-			this.comBus.subscribe(ENERGY_VALUE_ID, this);
+			this.comBus.addProperty(ENERGY_VALUE_SLOT, this.currentEnergy);
+			this.comBus.subscribe(ENERGY_VALUE_SLOT, this);
 		}
 
 		if (simTime > this.lastUpdate && iface.isTransferring()) {
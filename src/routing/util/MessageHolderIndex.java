@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Global index of the holders of each message. The holders of a message
+ * are kept in a bit set keyed by the message ID; the bit indexes are
+ * chosen by the user of the index (e.g., host addresses or positions in a
+ * list of routers). Routers that share an index update it when messages
+ * are added to or removed from their buffers, so that all the holders of a
+ * message (or just the number of copies) can be found without going
+ * through all the routers.
+ */
+public class MessageHolderIndex implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** holders of the messages by message ID */
+	private HashMap<String, BitSet> holders;
+
+	/**
+	 * Creates an empty index
+	 */
+	public MessageHolderIndex() {
+		this.holders = new HashMap<String, BitSet>();
+	}
+
+	/**
+	 * Marks a holder as having a copy of a message
+	 * @param id ID of the message
+	 * @param holder Index of the holder
+	 */
+	public void addHolder(String id, int holder) {
+		BitSet bits = this.holders.get(id);
+		if (bits == null) {
+			bits = new BitSet();
+			this.holders.put(id, bits);
+		}
+		bits.set(holder);
+	}
+
+	/**
+	 * Marks a holder as not having a copy of a message anymore. The message
+	 * is removed from the index when its last holder is removed.
+	 * @param id ID of the message
+	 * @param holder Index of the holder
+	 */
+	public void removeHolder(String id, int holder) {
+		BitSet bits = this.holders.get(id);
+		if (bits == null) {
+			return;
+		}
+		bits.clear(holder);
+		if (bits.isEmpty()) {
+			this.holders.remove(id);
+		}
+	}
+
+	/**
+	 * Returns the holders of a message. The returned set is the live set of
+	 * the index, so it must not be modified, but it can be iterated with
+	 * {@link BitSet#nextSetBit(int)} while holders are removed.
+	 * @param id ID of the message
+	 * @return The holders or null if no-one holds the message
+	 */
+	public BitSet getHolders(String id) {
+		return this.holders.get(id);
+	}
+
+	/**
+	 * Returns true if the holder has a copy of the message
+	 * @param id ID of the message
+	 * @param holder Index of the holder
+	 * @return true if the holder has a copy, false if not
+	 */
+	public boolean isHolder(String id, int holder) {
+		BitSet bits = this.holders.get(id);
+		return bits != null && bits.get(holder);
+	}
+
+	/**
+	 * Returns the number of copies of a message
+	 * @param id ID of the message
+	 * @return The number of holders of the message
+	 */
+	public int getCopyCount(String id) {
+		BitSet bits = this.holders.get(id);
+		return bits == null ? 0 : bits.cardinality();
+	}
+
+	/**
+	 * Returns the IDs of the messages that have at least one holder
+	 * @return The message IDs
+	 */
+	public Collection<String> getMessageIds() {
+		return this.holders.keySet();
+	}
+
+	/**
+	 * Returns the number of messages that have at least one holder
+	 * @return The number of messages
+	 */
+	public int getNrofMessages() {
+		return this.holders.size();
+	}
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package ui;
+
+import input.ScenarioGenerator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.SimMetrics;
+
+/**
+ * Headless user interface that measures how the simulator scales. The
+ * harness generates synthetic scenarios (see {@link ScenarioGenerator})
+ * with each of the given host counts, runs each scenario in a new JVM and
+ * writes the wall clock time, simulated seconds per second, peak heap
+ * usage and allocation rate of the runs to a CSV file.
+ * <P>
+ * Usage: <CODE>java ui.DTNSimBenchmarkUI [options]</CODE><BR>
+ * Options:<BR>
+ * <CODE>-nodes n1,n2,...</CODE> host counts of the scenarios
+ * (100,500,2000)<BR>
+ * <CODE>-scaleWorld</CODE> scale the world with the host count so that
+ * the host density stays the same as in the first scenario<BR>
+ * <CODE>-csv file</CODE> the CSV file (scaling.csv)<BR>
+ * <CODE>-dir dir</CODE> directory of the generated settings files, created
+ * if it doesn't exist (the system's temporary directory)<BR>
+ * <CODE>-heap size</CODE> maximum heap of the scenario JVMs (2G)<BR>
+ * and the scenario options of {@link ScenarioGenerator#setOption(String,
+ * String)}. By default the scenarios are simulated for
+ * {@value #DEF_END_TIME} seconds and write no reports.
+ * </P>
+ * <P>
+ * The wall clock time, allocations and garbage collections are measured
+ * from the first update after the movement warmup to the end of the
+ * simulation. The peak heap is the sum of the peak usages of the JVM's heap
+ * memory pools. The wall time exponent is the slope of the wall time
+ * against the host count from the previous scenario on a log-log scale;
+ * values clearly over one show super-linear scaling.
+ * </P>
+ */
+public class DTNSimBenchmarkUI extends DTNSimUI {
+	/** Default simulated time of the scenarios ({@value}) */
+	public static final String DEF_END_TIME = "3600";
+	/** Default host counts of the scenarios ({@value}) */
+	public static final String DEF_NODES = "100,500,2000";
+	/** Prefix of the result line a scenario JVM prints ({@value}) */
+	public static final String RESULT_PREFIX = "BENCHMARK_RESULT ";
+	/** Header of the CSV file */
+	public static final String CSV_HEADER = "scenario,nodes,world_width," +
+		"world_height,range,msg_rate,router,sim_time,updates,wall_s," +
+		"sim_s_per_s,peak_heap_mb,allocated_mb,alloc_mb_per_s,gc_count," +
+		"gc_s,wall_exponent";
+	/** Option that makes the JVM run one scenario ({@value}) */
+	private static final String RUN_OPTION = "-run";
+
+	/** measured values of the run (printed on the result line) */
+	private String result;
+
+	@Override
+	protected void runSim() {
+		double endTime = scen.getEndTime();
+		double simStart = SimClock.getTime();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long allocStart = getAllocatedBytes(threads);
+		long gcCountStart = getGcCount();
+		long gcTimeStart = getGcTime();
+		long updates = 0;
+
+		long start = System.nanoTime();
+		while (SimClock.getTime() < endTime && !simCancelled) {
+			world.update();
+			updates++;
+		}
+		double wallTime = (System.nanoTime() - start) / 1e9;
+
+		long allocated = getAllocatedBytes(threads) - allocStart;
+		double simTime = SimClock.getTime() - simStart;
+		double mb = 1024.0 * 1024.0;
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		simDone = true;
+		done();
+
+		this.result = simTime + "," + updates + "," + wallTime + "," +
+			(simTime / wallTime) + "," + (peakHeap / mb) + "," +
+			(allocated < 0 ? "" : Double.toString(allocated / mb)) + "," +
+			(allocated < 0 ? "" : Double.toString(allocated / mb / wallTime)) +
+			"," + (getGcCount() - gcCountStart) + "," +
+			((getGcTime() - gcTimeStart) / 1000.0);
+	}
+
+	/**
+	 * Returns the bytes allocated by the simulation (this) thread
+	 * @param threads The thread management bean
+	 * @return the allocated bytes or -1 if the JVM doesn't measure them
+	 */
+	private static long getAllocatedBytes(ThreadMXBean threads) {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean t =
+				(com.sun.management.ThreadMXBean)threads;
+			if (t.isThreadAllocatedMemorySupported() &&
+					t.isThreadAllocatedMemoryEnabled()) {
+				return t.getThreadAllocatedBytes(
+						Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the total number of garbage collections
+	 * @return the number of collections
+	 */
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the total time of garbage collections
+	 * @return the time (milliseconds)
+	 */
+	private static long getGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Runs one scenario in this JVM and prints the result line
+	 * @param settingsFile The settings file of the scenario
+	 */
+	private static void runScenario(String settingsFile) {
+		Locale.setDefault(Locale.US);
+		Settings.init(settingsFile);
+		Settings.setRunIndex(0);
+		DTNSimBenchmarkUI ui = new DTNSimBenchmarkUI();
+		ui.start();
+		SimMetrics.stop();
+		System.out.println(RESULT_PREFIX + ui.result);
+	}
+
+	/**
+	 * Runs a scenario in a new JVM
+	 * @param settingsFile The settings file of the scenario
+	 * @param heap Maximum heap of the JVM
+	 * @return the result line of the scenario or null if the run failed
+	 * @throws IOException if starting the JVM or reading its output failed
+	 */
+	private static String fork(String settingsFile, String heap)
+			throws IOException {
+		List<String> cmd = new ArrayList<String>();
+		cmd.add(new File(System.getProperty("java.home"), "bin/java")
+				.getPath());
+		cmd.add("-Xmx" + heap);
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(DTNSimBenchmarkUI.class.getName());
+		cmd.add(RUN_OPTION);
+		cmd.add(settingsFile);
+
+		Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				p.getInputStream()));
+		String result = null;
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith(RESULT_PREFIX)) {
+				result = line.substring(RESULT_PREFIX.length());
+			}
+			else {
+				System.out.println("  " + line);
+			}
+		}
+		try {
+			if (p.waitFor() != 0) {
+				return null;
+			}
+		} catch (InterruptedException e) {
+			p.destroy();
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * Generates and runs the scenarios (or runs one scenario if the first
+	 * argument is {@value #RUN_OPTION})
+	 * @param args Command line arguments (see class description)
+	 * @throws IOException if generating the scenarios or writing the CSV
+	 * failed
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 2 && args[0].equals(RUN_OPTION)) {
+			runScenario(args[1]);
+			System.exit(0);
+		}
+
+		ScenarioGenerator gen = new ScenarioGenerator();
+		gen.setOption("-endTime", DEF_END_TIME);
+		gen.setOption("-report", "none");
+		String nodes = DEF_NODES;
+		boolean scaleWorld = false;
+		String csvFile = "scaling.csv";
+		String dir = System.getProperty("java.io.tmpdir");
+		String heap = "2G";
+		int[] counts = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String a = args[i];
+				if (a.equals("-scaleWorld")) {
+					scaleWorld = true;
+					continue;
+				}
+				if (i + 1 >= args.length) {
+					throw new SettingsError("No value for option " + a);
+				}
+				String value = args[++i];
+				if (a.equals("-nodes")) {
+					nodes = value;
+				} else if (a.equals("-csv")) {
+					csvFile = value;
+				} else if (a.equals("-dir")) {
+					dir = value;
+				} else if (a.equals("-heap")) {
+					heap = value;
+				} else if (!gen.setOption(a, value)) {
+					throw new SettingsError("Unknown option " + a);
+				}
+			}
+			String[] parts = nodes.split(",");
+			counts = new int[parts.length];
+			for (int i = 0; i < parts.length; i++) {
+				counts[i] = Integer.parseInt(parts[i].trim());
+			}
+			File outDir = new File(dir);
+			if (!outDir.isDirectory() && !outDir.mkdirs()) {
+				throw new SettingsError("Can't create directory " + dir);
+			}
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid host counts " + nodes);
+			System.exit(1);
+		} catch (SettingsError e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+
+		int[] baseWorld = gen.getWorldSize();
+		boolean ok = true;
+		PrintWriter csv = new PrintWriter(new FileWriter(csvFile));
+		csv.println(CSV_HEADER);
+		csv.flush();
+
+		double prevWall = 0;
+		int prevCount = 0;
+		for (int count : counts) {
+			gen.setNrofHosts(count);
+			if (scaleWorld) {
+				double scale = Math.sqrt((double)count / counts[0]);
+				gen.setWorldSize((int)Math.round(baseWorld[0] * scale),
+						(int)Math.round(baseWorld[1] * scale));
+			}
+			File settingsFile = new File(dir, gen.getName() + ".txt");
+			gen.write(settingsFile.getPath());
+			System.out.println("Running " + gen.getName());
+
+			String result = fork(settingsFile.getPath(), heap);
+			if (result == null) {
+				System.err.println(gen.getName() + " failed");
+				ok = false;
+				continue;
+			}
+			double wall = Double.parseDouble(result.split(",")[2]);
+			String exponent = "";
+			if (prevCount > 0 && prevCount != count && prevWall > 0) {
+				exponent = Double.toString(Math.log(wall / prevWall) /
+						Math.log((double)count / prevCount));
+			}
+			prevWall = wall;
+			prevCount = count;
+
+			int[] world = gen.getWorldSize();
+			csv.println(gen.getName() + "," + count + "," + world[0] + "," +
+					world[1] + "," + gen.getRange() + "," +
+					gen.getRealisedMsgRate() +
+					"," + gen.getRouter() + "," + result + "," + exponent);
+			csv.flush();
+			System.out.println(String.format("  %d hosts: %.2f s wall, " +
+					"%.1f sim s/s%s", count, wall, gen.getEndTime() / wall,
+					exponent.length() > 0 ? String.format(", exponent %.2f",
+							Double.parseDouble(exponent)) : ""));
+		}
+		csv.close();
+		System.exit(ok ? 0 : 1);
+	}
+}
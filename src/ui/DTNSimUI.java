@@ -8,13 +8,22 @@ import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
+import core.Checkpoint;
+import core.Connection;
 import core.ConnectionListener;
+import core.ContactSweep;
+import core.DTNHost;
+import core.EventBatchListener;
+import core.EventBus;
+import core.Message;
 import core.MessageListener;
 import core.MovementListener;
+import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import core.SimMetrics;
 import core.SimScenario;
 import core.UpdateListener;
 import core.World;
@@ -59,6 +68,9 @@ public abstract class DTNSimUI {
 	protected SimScenario scen;
 	/** simtime of last UI update */
 	protected double lastUpdate;
+	/** Event bus of the reports that receive events in batches (or null if
+	 * there are no such reports) */
+	protected EventBus eventBus;
 
 	/**
 	 * Constructor.
@@ -102,6 +114,16 @@ public abstract class DTNSimUI {
 				}
 			}
 			this.scen = SimScenario.getInstance();
+			this.world = this.scen.getWorld();
+
+			Settings cs = new Settings(Checkpoint.CHECKPOINT_NS);
+			boolean restore = cs.contains(Checkpoint.RESTORE_S);
+			if (restore) {
+				Checkpoint.restore(world,
+						cs.valueFillString(cs.getSetting(Checkpoint.RESTORE_S)),
+						cs.getBoolean(Checkpoint.KEEP_ROUTING_S, true));
+			}
+
 			// add reports
 			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
 				String reportClass = settings.getSetting(REPORT_S + i);
@@ -109,8 +131,27 @@ public abstract class DTNSimUI {
 						reportClass));
 			}
 
-			this.world = this.scen.getWorld();
-			world.warmupMovementModel(warmupTime);
+			if (restore) {
+				addRestoredMessages();
+			}
+			else {
+				world.warmupMovementModel(warmupTime);
+			}
+
+			Checkpoint cp = new Checkpoint(world);
+			if (!restore && cs.getBoolean(Checkpoint.AFTER_WARMUP_S, false)) {
+				System.out.println("Saved checkpoint " + cp.save());
+			}
+			if (cp.isPeriodic()) {
+				scen.addUpdateListener(cp);
+			}
+
+			SimMetrics metrics = SimMetrics.start();
+			if (metrics != null) {
+				scen.addMessageListener(metrics);
+				scen.addConnectionListener(metrics);
+				world.setMetrics(metrics);
+			}
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
@@ -124,13 +165,41 @@ public abstract class DTNSimUI {
 		}
 	}
 
+	/**
+	 * Tells all reports about the messages that were restored from
+	 * a checkpoint so that they are not confused by messages whose
+	 * creation they did not see.
+	 */
+	private void addRestoredMessages() {
+		for (DTNHost h : this.world.getHosts()) {
+			for (Message m : h.getMessageCollection()) {
+				for (Report r : this.reports) {
+					r.addPreexistingMessage(m.getId());
+				}
+			}
+			for (NetworkInterface ni : h.getInterfaces()) {
+				for (Connection c : ni.getConnections()) {
+					if (c.getMessage() != null) {
+						for (Report r : this.reports) {
+							r.addPreexistingMessage(c.getMessage().getId());
+						}
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
+		if (this.eventBus != null) {
+			this.eventBus.flush();
+		}
 		for (Report r : this.reports) {
 			r.done();
 		}
+		ContactSweep.runDone();
 	}
 
 	/**
@@ -138,6 +207,17 @@ public abstract class DTNSimUI {
 	 * @param r Report to add
 	 */
 	protected void addReport(Report r) {
+		if (r instanceof EventBatchListener) {
+			if (this.eventBus == null) {
+				/* one bus for all batch listeners; registered before the
+				 * reports so the batch is out before their updates */
+				this.eventBus = new EventBus();
+				scen.addMessageListener(this.eventBus);
+				scen.addConnectionListener(this.eventBus);
+				scen.addUpdateListener(this.eventBus);
+			}
+			this.eventBus.subscribe((EventBatchListener)r);
+		}
 		if (r instanceof MessageListener) {
 			scen.addMessageListener((MessageListener)r);
 		}
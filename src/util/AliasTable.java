@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Draws indexes with probabilities proportional to given weights in
+ * constant time using Walker's alias method (Vose's construction).
+ */
+public class AliasTable implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private double[] prob;
+	private int[] alias;
+
+	/**
+	 * Creates a table for the given weights
+	 * @param weights The weights of the indexes (non-negative, at least
+	 * one positive)
+	 * @throws IllegalArgumentException if the weights are not valid
+	 */
+	public AliasTable(double[] weights) {
+		int n = weights.length;
+		double sum = 0;
+		for (double w : weights) {
+			if (!(w >= 0) || Double.isInfinite(w)) {
+				throw new IllegalArgumentException("Invalid weight " + w);
+			}
+			sum += w;
+		}
+		if (!(sum > 0)) {
+			throw new IllegalArgumentException("No positive weights");
+		}
+
+		this.prob = new double[n];
+		this.alias = new int[n];
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int nrofSmall = 0;
+		int nrofLarge = 0;
+
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / sum;
+			if (scaled[i] < 1) {
+				small[nrofSmall++] = i;
+			}
+			else {
+				large[nrofLarge++] = i;
+			}
+		}
+		while (nrofSmall > 0 && nrofLarge > 0) {
+			int s = small[--nrofSmall];
+			int l = large[--nrofLarge];
+			prob[s] = scaled[s];
+			alias[s] = l;
+			scaled[l] = (scaled[l] + scaled[s]) - 1;
+			if (scaled[l] < 1) {
+				small[nrofSmall++] = l;
+			}
+			else {
+				large[nrofLarge++] = l;
+			}
+		}
+		/* the rest are (up to rounding errors) full columns */
+		while (nrofLarge > 0) {
+			prob[large[--nrofLarge]] = 1;
+		}
+		while (nrofSmall > 0) {
+			prob[small[--nrofSmall]] = 1;
+		}
+	}
+
+	/**
+	 * Draws an index
+	 * @param rng The random number generator to use
+	 * @return an index with probability proportional to its weight
+	 */
+	public int draw(Random rng) {
+		int i = rng.nextInt(prob.length);
+		return rng.nextDouble() < prob[i] ? i : alias[i];
+	}
+
+	/**
+	 * Returns the number of indexes in the table
+	 * @return the number of indexes
+	 */
+	public int size() {
+		return prob.length;
+	}
+}
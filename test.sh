@@ -0,0 +1,17 @@
+#! /bin/sh
+# Compiles the simulator and the tests (test/src) and runs the tests, i.e.,
+# the classes whose name ends with "Test". Exits with status 1 if a test
+# failed.
+targetdir=test/target
+libs=lib/ECLA.jar:lib/DTNConsoleConnection.jar
+
+if [ ! -d "$targetdir" ]; then mkdir $targetdir; fi
+
+javac -nowarn -encoding GBK -sourcepath src:test/src -cp $libs -d $targetdir `find src test/src -name "*.java"` || exit 1
+
+status=0
+for test in `cd test/src && find . -name "*Test.java" | sed -e 's|^\./||' -e 's|\.java$||' -e 's|/|.|g'`; do
+	echo "Running $test"
+	java -Xmx1G -cp $targetdir:$libs $test || status=1
+done
+exit $status
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Tests that the replay runs of a {@link ContactSweep} reproduce the
+ * simulation they replace. Runs a sweep of the default scenario with
+ * Spray and Wait routing over the numbers of copies 2, 2 and 4, and the
+ * default scenario with 4 copies without a sweep. The report of the
+ * replay with 2 copies must be identical to the report of the recording
+ * run, and the report of the replay with 4 copies identical to the report
+ * of the run without a sweep.
+ * <P>
+ * The messages are sent in FIFO order since the random order depends on
+ * the identity hash codes of the messages, which differ between the runs.
+ * The trams have only their first interface since the contacts are
+ * replayed for the first interface.
+ * </P>
+ * Must be run in the simulator's directory (see <CODE>test.sh</CODE>).
+ */
+public class ContactSweepReplayTest {
+	/** End time of the runs */
+	public static final int END_TIME = 5000;
+
+	private File dir;
+
+	/**
+	 * Creates the test
+	 * @param dir Directory for the settings and report files
+	 */
+	public ContactSweepReplayTest(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Runs the test
+	 * @throws IOException if the settings couldn't be written or the
+	 * reports read
+	 */
+	public void run() throws IOException {
+		runScenario(3, "SprayAndWaitRouter.nrofCopies = [2; 2; 4]",
+				"Sweep.enabled = true",
+				"Report.reportDir = [" + reportDir("rec") + "; " +
+				reportDir("rep2") + "; " + reportDir("rep4") + "]");
+		runScenario(1, "SprayAndWaitRouter.nrofCopies = 4",
+				"Report.reportDir = " + reportDir("sim4"));
+
+		assertSameReport("rec", "rep2");
+		assertSameReport("sim4", "rep4");
+	}
+
+	/**
+	 * Runs the default scenario with Spray and Wait routing and the given
+	 * additional settings
+	 * @param nrofRuns Number of batch runs
+	 * @param settings The additional settings
+	 * @throws IOException if the settings couldn't be written
+	 */
+	private void runScenario(int nrofRuns, String... settings)
+			throws IOException {
+		File file = new File(dir, "settings.txt");
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		out.println("Scenario.name = sweep");
+		out.println("Scenario.endTime = " + END_TIME);
+		out.println("Group.router = SprayAndWaitRouter");
+		out.println("SprayAndWaitRouter.binaryMode = true");
+		out.println("Group.sendQueue = 2");
+		out.println("Group4.nrofInterfaces = 1");
+		out.println("Report.nrofReports = 1");
+		out.println("Report.report1 = MessageStatsReport");
+		for (String s : settings) {
+			out.println(s);
+		}
+		out.close();
+
+		DTNSim.main(new String[] {"-b", "" + nrofRuns, file.getPath()});
+	}
+
+	/**
+	 * Returns the report directory of a run
+	 * @param run Name of the run
+	 * @return Path of the directory
+	 */
+	private String reportDir(String run) {
+		return new File(dir, run).getPath() + File.separator;
+	}
+
+	/**
+	 * Asserts that two runs produced identical message statistics reports
+	 * @param run1 Name of the first run
+	 * @param run2 Name of the second run
+	 * @throws IOException if the reports couldn't be read
+	 */
+	private void assertSameReport(String run1, String run2)
+			throws IOException {
+		String report1 = readReport(run1);
+		String report2 = readReport(run2);
+		assertTrue(report1.equals(report2), "Reports of " + run1 + " and " +
+				run2 + " differ:\n" + report1 + "\n" + report2);
+	}
+
+	/**
+	 * Reads the message statistics report of a run
+	 * @param run Name of the run
+	 * @return Contents of the report
+	 * @throws IOException if the report couldn't be read
+	 */
+	private String readReport(String run) throws IOException {
+		File file = new File(reportDir(run), "sweep_MessageStatsReport.txt");
+		assertTrue(file.exists(), "No report " + file);
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = in.readLine()) != null) {
+			sb.append(line).append('\n');
+		}
+		in.close();
+		return sb.toString();
+	}
+
+	/**
+	 * Throws an AssertionError with the message if the condition is false
+	 * @param condition The condition
+	 * @param message The message
+	 */
+	private static void assertTrue(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * Deletes a directory and its contents
+	 * @param file The directory (or file) to delete
+	 */
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				delete(f);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Runs the test in a temporary directory
+	 * @param args Not used
+	 * @throws IOException if the temporary files couldn't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File dir = File.createTempFile("sweeptest", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			new ContactSweepReplayTest(dir).run();
+		} finally {
+			delete(dir);
+		}
+		System.out.println("OK");
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import routing.util.MessageHolderIndex;
+import core.Checkpoint;
+import core.DTNHost;
+import core.DTNSim;
+import core.Message;
+import core.SimScenario;
+
+/**
+ * Tests restoring checkpoints of simulations that use
+ * {@link EpidemicOracleRouter}, whose routers share static state. Runs the
+ * default scenario with the oracle router, saving a checkpoint half way,
+ * and then continues from the checkpoint both with the restored routers
+ * and with new routers (see {@link Checkpoint#KEEP_ROUTING_S}).
+ * <P>
+ * A run that is continued with the restored routers must end with the
+ * same messages in the same hosts as the uninterrupted run. In the end of
+ * all runs, the routers' shared list of routers and index of message
+ * holders must match the hosts' routers and their buffers.
+ * </P>
+ * Must be run in the simulator's directory (see <CODE>test.sh</CODE>).
+ */
+public class EpidemicOracleRouterRestoreTest {
+	/** Simulation time when the checkpoint is saved */
+	public static final int CHECKPOINT_TIME = 1000;
+	/** End time of the runs */
+	public static final int END_TIME = 2000;
+
+	private File dir;
+
+	/**
+	 * Creates the test
+	 * @param dir Directory for the settings and checkpoint files
+	 */
+	public EpidemicOracleRouterRestoreTest(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Runs the test
+	 * @throws IOException if the settings couldn't be written
+	 */
+	public void run() throws IOException {
+		String checkpoint = new File(dir, "oracle_" + CHECKPOINT_TIME +
+				Checkpoint.CHECKPOINT_EXT).getPath();
+
+		Map<Integer, TreeSet<String>> uninterrupted = runScenario(
+				"Checkpoint.interval = " + CHECKPOINT_TIME,
+				"Checkpoint.output = " + new File(dir, "oracle").getPath());
+		assertTrue(new File(checkpoint).exists(), "No checkpoint " +
+				checkpoint);
+		assertIndexConsistent("uninterrupted run");
+
+		Map<Integer, TreeSet<String>> restored = runScenario(
+				"Checkpoint.restore = " + checkpoint);
+		assertIndexConsistent("run with restored routers");
+		assertTrue(uninterrupted.equals(restored), "Buffers of the run " +
+				"with restored routers differ from the uninterrupted run");
+
+		runScenario("Checkpoint.restore = " + checkpoint,
+				"Checkpoint.keepRouting = false");
+		assertIndexConsistent("run with new routers");
+	}
+
+	/**
+	 * Runs the default scenario with the oracle router and the given
+	 * additional settings
+	 * @param settings The additional settings
+	 * @return IDs of the messages in the hosts' buffers in the end of the
+	 * run, by host address
+	 * @throws IOException if the settings couldn't be written
+	 */
+	private Map<Integer, TreeSet<String>> runScenario(String... settings)
+			throws IOException {
+		File file = new File(dir, "settings.txt");
+		PrintWriter out = new PrintWriter(new FileWriter(file));
+		out.println("Scenario.name = oracle");
+		out.println("Scenario.endTime = " + END_TIME);
+		out.println("Group.router = EpidemicOracleRouter");
+		out.println("Report.nrofReports = 0");
+		for (String s : settings) {
+			out.println(s);
+		}
+		out.close();
+
+		DTNSim.main(new String[] {"-b", "1", file.getPath()});
+
+		Map<Integer, TreeSet<String>> buffers =
+			new TreeMap<Integer, TreeSet<String>>();
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			TreeSet<String> ids = new TreeSet<String>();
+			for (Message m : h.getMessageCollection()) {
+				ids.add(m.getId());
+			}
+			buffers.put(h.getAddress(), ids);
+		}
+		return buffers;
+	}
+
+	/**
+	 * Asserts that the router of each host is in the shared list of routers
+	 * at the router's index, and that the shared index of message holders
+	 * has exactly the messages in the routers' buffers
+	 * @param run Name of the run for the error messages
+	 */
+	@SuppressWarnings("unchecked")
+	private void assertIndexConsistent(String run) {
+		List<EpidemicOracleRouter> allRouters =
+			(List<EpidemicOracleRouter>)getValue(null, "allRouters");
+		MessageHolderIndex holders = (MessageHolderIndex)getValue(null,
+				"holders");
+
+		int nrofCopies = 0;
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			EpidemicOracleRouter r = (EpidemicOracleRouter)h.getRouter();
+			int index = (Integer)getValue(r, "routerIndex");
+			assertTrue(index < allRouters.size() &&
+					allRouters.get(index) == r, "Router of " + h + " isn't at " +
+					"its index " + index + " in the " + run);
+			for (Message m : h.getMessageCollection()) {
+				assertTrue(holders.isHolder(m.getId(), index), h + " isn't " +
+						"a holder of " + m + " in the " + run);
+				nrofCopies++;
+			}
+		}
+
+		int nrofHeld = 0;
+		for (String id : holders.getMessageIds()) {
+			nrofHeld += holders.getCopyCount(id);
+		}
+		assertTrue(nrofHeld == nrofCopies, nrofHeld + " holders indexed " +
+				"for " + nrofCopies + " buffered messages in the " + run);
+	}
+
+	/**
+	 * Returns the value of a private field of {@link EpidemicOracleRouter}
+	 * @param r The router (null for static fields)
+	 * @param name Name of the field
+	 * @return The value of the field
+	 */
+	private static Object getValue(EpidemicOracleRouter r, String name) {
+		try {
+			Field f = EpidemicOracleRouter.class.getDeclaredField(name);
+			f.setAccessible(true);
+			return f.get(r);
+		} catch (Exception e) {
+			throw new AssertionError("Can't read " + name + ": " + e);
+		}
+	}
+
+	/**
+	 * Throws an AssertionError with the message if the condition is false
+	 * @param condition The condition
+	 * @param message The message
+	 */
+	private static void assertTrue(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * Runs the test in a temporary directory
+	 * @param args Not used
+	 * @throws IOException if the temporary files couldn't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		File dir = File.createTempFile("restoretest", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			new EpidemicOracleRouterRestoreTest(dir).run();
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+		System.out.println("OK");
+	}
+}